@@ -0,0 +1,24 @@
+-- Indexes for the joins and filters the menu queries actually run
+-- (airline.Operations, airline.BookingEngine). The primary keys already
+-- have b-tree indexes, so nothing here duplicates them.
+--
+-- Check the resulting plans with: java airline.PlanCheck <dbname> <port> <user>
+
+-- Option 6 and the booking seat check look FlightInfo up by flight and only
+-- need the plane id, so this index answers them without touching the heap.
+CREATE INDEX IF NOT EXISTS flightinfo_flight_id_idx ON FlightInfo (flight_id) INCLUDE (plane_id);
+
+-- FlightInfo -> Plane in the other direction (foreign key checks on Plane).
+CREATE INDEX IF NOT EXISTS flightinfo_plane_id_idx ON FlightInfo (plane_id);
+
+-- Option 7 groups repairs by plane; a scan of this index comes out already
+-- grouped, so no hash or sort is needed.
+CREATE INDEX IF NOT EXISTS repairs_plane_id_idx ON Repairs (plane_id);
+
+-- Option 8 groups repairs by year. Including repair_date lets the planner use
+-- an index-only scan, which it cannot do for a plain expression index.
+CREATE INDEX IF NOT EXISTS repairs_year_idx ON Repairs ((EXTRACT(YEAR FROM repair_date))) INCLUDE (repair_date);
+
+-- Option 9 counts reservations for one flight and status; cid is included so
+-- the join to Customer is answered from the index as well.
+CREATE INDEX IF NOT EXISTS reservation_fid_status_idx ON Reservation (fid, status) INCLUDE (cid);
@@ -0,0 +1,92 @@
+-- The key triggers from triggers.sql always overwrite the key with nextval,
+-- so a caller that already holds a key (airline.KeyAllocator hands out
+-- blocks of them for bulk loads) would have it replaced. Only draw from the
+-- sequence when no key was given; inserts that leave the key out behave
+-- exactly as before.
+
+CREATE OR REPLACE FUNCTION plane_id_func()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF new.id IS NULL THEN
+		new.id := nextval('plane_id_seq');
+	END IF;
+	RETURN NEW;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+CREATE OR REPLACE FUNCTION pilot_id_func()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF new.id IS NULL THEN
+		new.id := nextval('pilot_id_seq');
+	END IF;
+	RETURN NEW;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+CREATE OR REPLACE FUNCTION fiid_func()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF new.fiid IS NULL THEN
+		new.fiid := nextval('fiid_seq');
+	END IF;
+	IF new.flight_id IS NULL THEN
+		new.flight_id := nextval('flight_id_seq');
+	END IF;
+	RETURN NEW;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+CREATE OR REPLACE FUNCTION fnum_func()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF new.fnum IS NULL THEN
+		new.fnum := nextval('fnum_seq');
+	END IF;
+	RETURN NEW;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+CREATE OR REPLACE FUNCTION tech_func()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF new.id IS NULL THEN
+		new.id := nextval('tech_seq');
+	END IF;
+	RETURN NEW;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+CREATE OR REPLACE FUNCTION res_func()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF new.rnum IS NULL THEN
+		new.rnum := nextval('res_seq');
+	END IF;
+	RETURN NEW;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+CREATE OR REPLACE FUNCTION cus_func()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF new.id IS NULL THEN
+		new.id := nextval('cus_seq');
+	END IF;
+	RETURN NEW;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
@@ -0,0 +1,68 @@
+-- Tells airline.SeatCache when a flight's available seats may have changed.
+-- Notifications go out on commit on the 'flight_seats' channel; the payload
+-- is the flight number, or '*' when a plane's seat count changes and every
+-- cached flight has to be dropped.
+
+CREATE OR REPLACE FUNCTION flight_seats_notify()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF TG_OP = 'DELETE' THEN
+		PERFORM pg_notify('flight_seats', OLD.fnum::text);
+	ELSIF TG_OP = 'INSERT' OR NEW.num_sold IS DISTINCT FROM OLD.num_sold OR NEW.fnum <> OLD.fnum THEN
+		PERFORM pg_notify('flight_seats', NEW.fnum::text);
+		IF TG_OP = 'UPDATE' AND NEW.fnum <> OLD.fnum THEN
+			PERFORM pg_notify('flight_seats', OLD.fnum::text);
+		END IF;
+	END IF;
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+DROP TRIGGER IF EXISTS flight_seats_notify_trig ON Flight;
+CREATE TRIGGER flight_seats_notify_trig
+AFTER INSERT OR UPDATE OR DELETE
+ON Flight
+FOR EACH ROW
+EXECUTE PROCEDURE flight_seats_notify();
+
+-- A flight's seats come from the plane its FlightInfo row points at.
+CREATE OR REPLACE FUNCTION flightinfo_seats_notify()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF TG_OP <> 'INSERT' THEN
+		PERFORM pg_notify('flight_seats', OLD.flight_id::text);
+	END IF;
+	IF TG_OP <> 'DELETE' THEN
+		PERFORM pg_notify('flight_seats', NEW.flight_id::text);
+	END IF;
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+DROP TRIGGER IF EXISTS flightinfo_seats_notify_trig ON FlightInfo;
+CREATE TRIGGER flightinfo_seats_notify_trig
+AFTER INSERT OR UPDATE OR DELETE
+ON FlightInfo
+FOR EACH ROW
+EXECUTE PROCEDURE flightinfo_seats_notify();
+
+CREATE OR REPLACE FUNCTION plane_seats_notify()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	PERFORM pg_notify('flight_seats', '*');
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+DROP TRIGGER IF EXISTS plane_seats_notify_trig ON Plane;
+CREATE TRIGGER plane_seats_notify_trig
+AFTER UPDATE OF seats
+ON Plane
+FOR EACH ROW
+EXECUTE PROCEDURE plane_seats_notify();
@@ -0,0 +1,123 @@
+-- Repair counts per plane and per year for menu options 7 and 8, kept up to
+-- date by triggers on Repairs so the reports read a row per plane or year
+-- instead of aggregating the whole repair log.
+--
+-- The triggers are statement-level with transition tables: a bulk insert of
+-- N repairs updates each affected summary row once, not N times. V009
+-- replaces the trigger functions so they lock the summary rows in key order.
+
+CREATE TABLE IF NOT EXISTS repairs_per_plane
+(
+	plane_id INTEGER NOT NULL,
+	repairs BIGINT NOT NULL,
+	PRIMARY KEY (plane_id)
+);
+
+CREATE TABLE IF NOT EXISTS repairs_per_year
+(
+	repair_year INTEGER NOT NULL,
+	repairs BIGINT NOT NULL,
+	PRIMARY KEY (repair_year)
+);
+
+-- blocks writers while the summaries are backfilled so no repair is missed
+LOCK TABLE Repairs IN SHARE MODE;
+
+DELETE FROM repairs_per_plane;
+INSERT INTO repairs_per_plane (plane_id, repairs)
+	SELECT plane_id, COUNT(*) FROM Repairs GROUP BY plane_id;
+
+DELETE FROM repairs_per_year;
+INSERT INTO repairs_per_year (repair_year, repairs)
+	SELECT EXTRACT(YEAR FROM repair_date)::int, COUNT(*) FROM Repairs GROUP BY 1;
+
+CREATE OR REPLACE FUNCTION repairs_summary_add()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	INSERT INTO repairs_per_plane AS s (plane_id, repairs)
+		SELECT plane_id, COUNT(*) FROM new_repairs GROUP BY plane_id ORDER BY plane_id
+	ON CONFLICT (plane_id) DO UPDATE SET repairs = s.repairs + EXCLUDED.repairs;
+
+	INSERT INTO repairs_per_year AS s (repair_year, repairs)
+		SELECT EXTRACT(YEAR FROM repair_date)::int, COUNT(*) FROM new_repairs GROUP BY 1 ORDER BY 1
+	ON CONFLICT (repair_year) DO UPDATE SET repairs = s.repairs + EXCLUDED.repairs;
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+CREATE OR REPLACE FUNCTION repairs_summary_subtract()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	UPDATE repairs_per_plane s SET repairs = s.repairs - d.n
+		FROM (SELECT plane_id, COUNT(*) AS n FROM old_repairs GROUP BY plane_id ORDER BY plane_id) d
+		WHERE s.plane_id = d.plane_id;
+	DELETE FROM repairs_per_plane s
+		WHERE s.repairs <= 0 AND s.plane_id IN (SELECT plane_id FROM old_repairs);
+
+	UPDATE repairs_per_year s SET repairs = s.repairs - d.n
+		FROM (SELECT EXTRACT(YEAR FROM repair_date)::int AS repair_year, COUNT(*) AS n FROM old_repairs GROUP BY 1 ORDER BY 1) d
+		WHERE s.repair_year = d.repair_year;
+	DELETE FROM repairs_per_year s
+		WHERE s.repairs <= 0 AND s.repair_year IN (SELECT EXTRACT(YEAR FROM repair_date)::int FROM old_repairs);
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+DROP TRIGGER IF EXISTS repairs_summary_insert_trig ON Repairs;
+CREATE TRIGGER repairs_summary_insert_trig
+AFTER INSERT
+ON Repairs
+REFERENCING NEW TABLE AS new_repairs
+FOR EACH STATEMENT
+EXECUTE PROCEDURE repairs_summary_add();
+
+DROP TRIGGER IF EXISTS repairs_summary_delete_trig ON Repairs;
+CREATE TRIGGER repairs_summary_delete_trig
+AFTER DELETE
+ON Repairs
+REFERENCING OLD TABLE AS old_repairs
+FOR EACH STATEMENT
+EXECUTE PROCEDURE repairs_summary_subtract();
+
+-- an update moves a repair: subtract the old row first, then add the new one
+DROP TRIGGER IF EXISTS repairs_summary_update_old_trig ON Repairs;
+CREATE TRIGGER repairs_summary_update_old_trig
+AFTER UPDATE
+ON Repairs
+REFERENCING OLD TABLE AS old_repairs
+FOR EACH STATEMENT
+EXECUTE PROCEDURE repairs_summary_subtract();
+
+DROP TRIGGER IF EXISTS repairs_summary_update_trig ON Repairs;
+CREATE TRIGGER repairs_summary_update_trig
+AFTER UPDATE
+ON Repairs
+REFERENCING NEW TABLE AS new_repairs
+FOR EACH STATEMENT
+EXECUTE PROCEDURE repairs_summary_add();
+
+-- TRUNCATE bypasses row triggers; start the summaries over
+CREATE OR REPLACE FUNCTION repairs_summary_truncate()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	DELETE FROM repairs_per_plane;
+	DELETE FROM repairs_per_year;
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+DROP TRIGGER IF EXISTS repairs_summary_truncate_trig ON Repairs;
+CREATE TRIGGER repairs_summary_truncate_trig
+AFTER TRUNCATE
+ON Repairs
+FOR EACH STATEMENT
+EXECUTE PROCEDURE repairs_summary_truncate();
+
+ANALYZE repairs_per_plane;
+ANALYZE repairs_per_year;
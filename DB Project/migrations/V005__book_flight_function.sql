@@ -0,0 +1,31 @@
+-- book_flight(cid, fnum) does what BookingEngine does over several
+-- statements in one call: reserve a seat if the plane has one left, or
+-- waitlist the customer, and return the status and reservation number.
+--
+-- The seat check and the num_sold increment are one conditional UPDATE, so
+-- the row lock on the Flight row serializes concurrent bookings of the same
+-- flight and num_sold can never exceed the plane's seat count. Called with
+-- autocommit on, the whole booking is a single round trip and a single
+-- transaction.
+
+CREATE OR REPLACE FUNCTION book_flight(p_cid INTEGER, p_fnum INTEGER, OUT status CHAR(1), OUT rnum INTEGER)
+AS
+$BODY$
+BEGIN
+	UPDATE Flight F SET num_sold = F.num_sold + 1
+		WHERE F.fnum = p_fnum AND F.num_sold <
+			(SELECT MIN(P.seats) FROM FlightInfo FI, Plane P WHERE FI.flight_id = F.fnum AND FI.plane_id = P.id);
+	IF FOUND THEN
+		status := 'R';
+	ELSIF EXISTS (SELECT 1 FROM Flight WHERE fnum = p_fnum) THEN
+		status := 'W';
+	ELSE
+		RAISE EXCEPTION 'Flight % does not exist', p_fnum USING ERRCODE = 'no_data_found';
+	END IF;
+
+	-- rnum comes from the res_seq trigger
+	INSERT INTO Reservation (cid, fid, status) VALUES (p_cid, p_fnum, status)
+		RETURNING Reservation.rnum INTO rnum;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
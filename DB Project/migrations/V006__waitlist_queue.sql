@@ -0,0 +1,37 @@
+-- Waitlisted reservations form a per-flight FIFO queue, oldest rnum first,
+-- that airline.WaitlistWorker promotes when seats free up. This partial
+-- index holds only the queue, so finding the flights with a waitlist and
+-- the head of each flight's queue stays cheap however many reservations
+-- have been confirmed or cancelled.
+CREATE INDEX IF NOT EXISTS reservation_waitlist_idx ON Reservation (fid, rnum) WHERE status = 'W';
+
+-- With p_behind_waitlist, a booking only takes a free seat when nobody is
+-- waiting for the flight, otherwise it joins the end of the queue; a seat
+-- freed by a cancellation goes to the head of the queue, not to whoever
+-- books next. Callers pass it only while a worker promotes the queue, or
+-- the queue would hold every later booking of the flight as well.
+DROP FUNCTION IF EXISTS book_flight(INTEGER, INTEGER);
+
+CREATE OR REPLACE FUNCTION book_flight(p_cid INTEGER, p_fnum INTEGER, p_behind_waitlist BOOLEAN,
+	OUT status CHAR(1), OUT rnum INTEGER)
+AS
+$BODY$
+BEGIN
+	UPDATE Flight F SET num_sold = F.num_sold + 1
+		WHERE F.fnum = p_fnum AND F.num_sold <
+			(SELECT MIN(P.seats) FROM FlightInfo FI, Plane P WHERE FI.flight_id = F.fnum AND FI.plane_id = P.id)
+		AND NOT (p_behind_waitlist AND EXISTS (SELECT 1 FROM Reservation W WHERE W.fid = F.fnum AND W.status = 'W'));
+	IF FOUND THEN
+		status := 'R';
+	ELSIF EXISTS (SELECT 1 FROM Flight WHERE fnum = p_fnum) THEN
+		status := 'W';
+	ELSE
+		RAISE EXCEPTION 'Flight % does not exist', p_fnum USING ERRCODE = 'no_data_found';
+	END IF;
+
+	-- rnum comes from the res_seq trigger
+	INSERT INTO Reservation (cid, fid, status) VALUES (p_cid, p_fnum, status)
+		RETURNING Reservation.rnum INTO rnum;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
@@ -0,0 +1,293 @@
+-- Declarative range partitioning for the two tables that grow with history.
+-- Flight is partitioned by fnum and Reservation by fid, in the same blocks
+-- of flight numbers, so a block's flights and their reservations sit in
+-- partitions with the same bounds and expire together.
+--
+-- Flight numbers come from fnum_seq as flights are scheduled, so a block
+-- holds the flights scheduled together. It expires once fnum_seq has moved
+-- past it and every flight in it departed before the retention cutoff. The
+-- expired blocks of both tables are then detached.
+--
+-- Why blocks of flight numbers and not departure dates: retention is by
+-- date, but almost every query is by flight number. The menu, book_flight,
+-- the waitlist and the seat cache all name a flight by its number, and
+-- none of them knows its date. With one partition per month, each of those
+-- lookups would probe every month's index. With blocks of numbers, they
+-- prune to one partition. Reservation could not follow a date scheme
+-- anyway. It has no date column, and the inserts that the menu and
+-- book_flight run give only (cid, fid, status). A trigger cannot fill one
+-- in to choose the partition, because Postgres routes a row before its
+-- BEFORE triggers fire. The cost is that a block whose flights depart over
+-- a long span is kept until its last flight is past the cutoff.
+--
+-- Each table also has a DEFAULT partition, so an insert past the blocks
+-- made so far still works. maintain_partitions() creates blocks ahead of
+-- fnum_seq, moves rows out of the default partitions, and detaches expired
+-- blocks. airline.PartitionMaintainer calls it on a schedule. Detached
+-- partitions stay behind as ordinary tables to archive or drop.
+--
+-- Detaching a block must not trip the foreign keys of FlightInfo and
+-- Schedule, which keep their rows. So those foreign keys, and the one from
+-- Reservation, now reference flight_key, which is never partitioned. A
+-- partitioned table's primary key must include its partition key, so
+-- Reservation's key becomes (rnum, fid). That alone lets two flights share
+-- a reservation number; V010 adds reservation_key to keep rnum unique
+-- across partitions.
+--
+-- The menu queries, book_flight and the triggers are unchanged. The
+-- conversion copies both tables under an exclusive lock. It needs V002:
+-- a flight whose number changes to one in another block is moved there
+-- with an insert. That insert runs the BEFORE INSERT triggers again, and
+-- the key triggers from triggers.sql would give the flight a new number.
+
+-- One row per flight number in Flight or in a detached Flight partition,
+-- so archived flights keep their numbers and the rows that refer to them
+-- stay valid.
+CREATE TABLE flight_key
+(
+	fnum INTEGER NOT NULL,
+	PRIMARY KEY (fnum)
+);
+
+-- Creates one range partition of p_parent. Rows of the new range that
+-- landed in the default partition first are moved into it. The default
+-- partition's triggers are off for the move, which changes no flight,
+-- key or seat count.
+CREATE OR REPLACE FUNCTION create_range_partition(p_parent REGCLASS, p_default REGCLASS, p_name TEXT,
+	p_column TEXT, p_from BIGINT, p_to BIGINT)
+RETURNS BIGINT AS
+$BODY$
+DECLARE
+	found_rows BOOLEAN;
+	moved BIGINT := 0;
+BEGIN
+	EXECUTE format('CREATE TABLE %I (LIKE %s INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', p_name, p_parent);
+	EXECUTE format('SELECT EXISTS (SELECT 1 FROM %s WHERE %I >= %s AND %I < %s)',
+		p_default, p_column, p_from, p_column, p_to) INTO STRICT found_rows;
+	IF found_rows THEN
+		EXECUTE format('ALTER TABLE %s DISABLE TRIGGER USER', p_default);
+		EXECUTE format('WITH m AS (DELETE FROM %s WHERE %I >= %s AND %I < %s RETURNING *) INSERT INTO %I SELECT * FROM m',
+			p_default, p_column, p_from, p_column, p_to, p_name);
+		GET DIAGNOSTICS moved = ROW_COUNT;
+		EXECUTE format('ALTER TABLE %s ENABLE TRIGGER USER', p_default);
+	END IF;
+	EXECUTE format('ALTER TABLE %s ATTACH PARTITION %I FOR VALUES FROM (%s) TO (%s)',
+		p_parent, p_name, p_from, p_to);
+	RETURN moved;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+-- One end of an integer range partition, 'FROM' or 'TO', read from its
+-- bound expression "FOR VALUES FROM (x) TO (y)".
+CREATE OR REPLACE FUNCTION partition_bound(p_partition REGCLASS, p_end TEXT)
+RETURNS BIGINT AS
+$BODY$
+	SELECT substring(pg_get_expr(c.relpartbound, c.oid) FROM p_end || ' \((-?\d+)\)')::bigint
+	FROM pg_class c WHERE c.oid = p_partition;
+$BODY$
+LANGUAGE sql STABLE;
+
+LOCK TABLE Flight, Reservation, FlightInfo, Schedule IN ACCESS EXCLUSIVE MODE;
+
+-- the foreign keys to Flight(fnum) go now and point at flight_key(fnum)
+-- once it is filled
+DO $$
+DECLARE
+	fk RECORD;
+BEGIN
+	FOR fk IN SELECT conrelid::regclass AS tbl, conname FROM pg_constraint
+			WHERE contype = 'f' AND confrelid = 'flight'::regclass LOOP
+		EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.tbl, fk.conname);
+	END LOOP;
+END $$;
+
+-- the old tables keep their data until it is copied; their index names go
+-- to the new tables
+ALTER TABLE Flight RENAME TO flight_unpartitioned;
+ALTER INDEX flight_pkey RENAME TO flight_unpartitioned_pkey;
+ALTER TABLE Reservation RENAME TO reservation_unpartitioned;
+ALTER INDEX reservation_pkey RENAME TO reservation_unpartitioned_pkey;
+ALTER INDEX IF EXISTS reservation_fid_status_idx RENAME TO reservation_unpartitioned_fid_status_idx;
+ALTER INDEX IF EXISTS reservation_waitlist_idx RENAME TO reservation_unpartitioned_waitlist_idx;
+
+CREATE TABLE Flight
+(
+	LIKE flight_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS,
+	PRIMARY KEY (fnum)
+) PARTITION BY RANGE (fnum);
+CREATE TABLE flight_default PARTITION OF Flight DEFAULT;
+-- Postgres routes a row before BEFORE triggers run, so an insert that
+-- leaves fnum out gets it from this default instead of from fnumTrig
+ALTER TABLE Flight ALTER COLUMN fnum SET DEFAULT nextval('fnum_seq');
+
+CREATE TABLE Reservation
+(
+	LIKE reservation_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS,
+	PRIMARY KEY (rnum, fid)
+) PARTITION BY RANGE (fid);
+CREATE TABLE reservation_default PARTITION OF Reservation DEFAULT;
+
+-- the V001 and V006 indexes, now built on every partition
+CREATE INDEX reservation_fid_status_idx ON Reservation (fid, status) INCLUDE (cid);
+CREATE INDEX reservation_waitlist_idx ON Reservation (fid, rnum) WHERE status = 'W';
+
+-- a block for every flight number handed out so far; maintain_partitions()
+-- below adds the blocks ahead
+DO $$
+DECLARE
+	top BIGINT := 0;
+	last_fnum BIGINT;
+BEGIN
+	SELECT greatest((SELECT coalesce(max(fnum), 0) FROM flight_unpartitioned),
+		(SELECT coalesce(max(fid), 0) FROM reservation_unpartitioned), (SELECT last_value FROM fnum_seq)) INTO last_fnum;
+	WHILE top <= last_fnum LOOP
+		PERFORM create_range_partition('flight', 'flight_default', 'flight_p' || lpad(top::text, 10, '0'),
+			'fnum', top, top + 10000);
+		PERFORM create_range_partition('reservation', 'reservation_default', 'reservation_p' || lpad(top::text, 10, '0'),
+			'fid', top, top + 10000);
+		top := top + 10000;
+	END LOOP;
+END $$;
+
+-- copied before the triggers exist: the rows keep their keys and no seat
+-- notifications go out
+INSERT INTO Flight SELECT * FROM flight_unpartitioned;
+INSERT INTO Reservation SELECT * FROM reservation_unpartitioned;
+INSERT INTO flight_key (fnum) SELECT fnum FROM Flight;
+DROP TABLE reservation_unpartitioned;
+DROP TABLE flight_unpartitioned;
+
+ALTER TABLE FlightInfo ADD CONSTRAINT flightinfo_flight_id_fkey FOREIGN KEY (flight_id) REFERENCES flight_key(fnum);
+ALTER TABLE Schedule ADD CONSTRAINT schedule_flightnum_fkey FOREIGN KEY (flightNum) REFERENCES flight_key(fnum);
+ALTER TABLE Reservation ADD CONSTRAINT reservation_cid_fkey FOREIGN KEY (cid) REFERENCES Customer(id);
+ALTER TABLE Reservation ADD CONSTRAINT reservation_fid_fkey FOREIGN KEY (fid) REFERENCES flight_key(fnum);
+
+-- Keeps flight_key in step with Flight. Deleting a flight that is still
+-- referenced fails on flight_key's foreign keys, as it used to on Flight's.
+CREATE OR REPLACE FUNCTION flight_key_sync()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF TG_OP = 'INSERT' THEN
+		INSERT INTO flight_key (fnum) VALUES (NEW.fnum);
+	ELSIF TG_OP = 'UPDATE' THEN
+		UPDATE flight_key SET fnum = NEW.fnum WHERE fnum = OLD.fnum;
+	ELSE
+		DELETE FROM flight_key WHERE fnum = OLD.fnum;
+	END IF;
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+CREATE TRIGGER flight_key_sync_trig
+AFTER INSERT OR DELETE
+ON Flight
+FOR EACH ROW
+EXECUTE PROCEDURE flight_key_sync();
+
+-- bookings update num_sold on every call; only a new number matters
+CREATE TRIGGER flight_key_update_trig
+AFTER UPDATE OF fnum
+ON Flight
+FOR EACH ROW
+WHEN (NEW.fnum <> OLD.fnum)
+EXECUTE PROCEDURE flight_key_sync();
+
+-- the triggers from triggers.sql and V003 went with the old tables
+CREATE TRIGGER fnumTrig
+BEFORE INSERT
+ON Flight
+FOR EACH ROW
+EXECUTE PROCEDURE fnum_func();
+
+CREATE TRIGGER flight_seats_notify_trig
+AFTER INSERT OR UPDATE OR DELETE
+ON Flight
+FOR EACH ROW
+EXECUTE PROCEDURE flight_seats_notify();
+
+CREATE TRIGGER resTrig
+BEFORE INSERT
+ON Reservation
+FOR EACH ROW
+EXECUTE PROCEDURE res_func();
+
+-- Creates the blocks of p_flights_per_block flight numbers that Flight and
+-- Reservation need up to p_blocks_ahead blocks past fnum_seq. With
+-- p_retain_months > 0 it then detaches the expired blocks of both tables,
+-- oldest first. A block has expired once fnum_seq has passed it and none
+-- of its flights departs within the last p_retain_months months. Detaching
+-- stops at the first block that has not expired, so the attached blocks
+-- stay contiguous. Returns one row per partition created or detached, with
+-- the rows moved out of the default partition into a new one.
+--
+-- Runs take turns through an advisory lock. A detach holds an exclusive
+-- lock on its table for a moment, so the function gives up after
+-- lock_timeout instead of queueing bookings behind a long transaction.
+CREATE OR REPLACE FUNCTION maintain_partitions(p_retain_months INTEGER DEFAULT 0, p_blocks_ahead INTEGER DEFAULT 2,
+	p_flights_per_block INTEGER DEFAULT 10000)
+RETURNS TABLE (action TEXT, partition_name TEXT, moved_rows BIGINT) AS
+$BODY$
+DECLARE
+	last_fnum BIGINT;
+	top BIGINT;
+	cutoff DATE;
+	block RECORD;
+BEGIN
+	PERFORM pg_advisory_xact_lock(hashtext('maintain_partitions'));
+	SELECT last_value INTO last_fnum FROM fnum_seq;
+
+	SELECT coalesce(max(partition_bound(inh.inhrelid, 'TO')), 0) INTO top
+		FROM pg_inherits inh WHERE inh.inhparent = 'flight'::regclass AND inh.inhrelid <> 'flight_default'::regclass;
+	action := 'created';
+	WHILE top <= last_fnum + p_blocks_ahead::bigint * p_flights_per_block LOOP
+		partition_name := 'flight_p' || lpad(top::text, 10, '0');
+		moved_rows := create_range_partition('flight', 'flight_default', partition_name, 'fnum',
+			top, top + p_flights_per_block);
+		RETURN NEXT;
+		partition_name := 'reservation_p' || lpad(top::text, 10, '0');
+		moved_rows := create_range_partition('reservation', 'reservation_default', partition_name, 'fid',
+			top, top + p_flights_per_block);
+		RETURN NEXT;
+		top := top + p_flights_per_block;
+	END LOOP;
+
+	IF coalesce(p_retain_months, 0) <= 0 THEN
+		RETURN;
+	END IF;
+	cutoff := (current_date - make_interval(months => p_retain_months))::date;
+	action := 'detached';
+	moved_rows := NULL;
+
+	FOR block IN SELECT inh.inhrelid::regclass AS rel, partition_bound(inh.inhrelid, 'FROM') AS lower_bound,
+			partition_bound(inh.inhrelid, 'TO') AS upper_bound
+			FROM pg_inherits inh WHERE inh.inhparent = 'flight'::regclass AND inh.inhrelid <> 'flight_default'::regclass
+			ORDER BY 2 LOOP
+		EXIT WHEN block.upper_bound > last_fnum + 1;
+		EXIT WHEN EXISTS (SELECT 1 FROM Flight F
+			WHERE F.fnum >= block.lower_bound AND F.fnum < block.upper_bound AND F.actual_departure_date >= cutoff);
+		EXECUTE format('ALTER TABLE Flight DETACH PARTITION %s', block.rel);
+		partition_name := block.rel::text;
+		RETURN NEXT;
+		-- the block's reservations, when Reservation has a partition with the same bounds
+		SELECT inh.inhrelid::regclass::text INTO partition_name FROM pg_inherits inh
+			WHERE inh.inhparent = 'reservation'::regclass AND inh.inhrelid <> 'reservation_default'::regclass
+			AND partition_bound(inh.inhrelid, 'FROM') = block.lower_bound
+			AND partition_bound(inh.inhrelid, 'TO') = block.upper_bound;
+		IF FOUND THEN
+			EXECUTE format('ALTER TABLE Reservation DETACH PARTITION %s', partition_name);
+			RETURN NEXT;
+		END IF;
+	END LOOP;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE
+SET lock_timeout = '5s';
+
+SELECT count(*) FROM maintain_partitions();
+
+ANALYZE flight_key;
+ANALYZE Flight;
+ANALYZE Reservation;
@@ -0,0 +1,18 @@
+-- Flight search by route and departure window (airline.Operations.searchFlights).
+-- Both indexes start with the route, so a search reads one contiguous range
+-- of each partition's index, already in the order it returns, and the
+-- planner merges the partitions instead of sorting. Pages continue from the
+-- last row returned, (sort key, fnum) > (?, ?), which the index seeks to
+-- directly, so page 100 costs what page 1 does.
+--
+-- Partitions attached later by maintain_partitions() get both indexes.
+-- Neither covers num_sold, so bookings keep their HOT updates.
+
+-- Cheapest first. The departure date is the last key column so the date
+-- window is checked on the index entry, before the heap is read.
+CREATE INDEX IF NOT EXISTS flight_route_cost_idx
+	ON Flight (departure_airport, arrival_airport, cost, fnum, actual_departure_date);
+
+-- Earliest departure first.
+CREATE INDEX IF NOT EXISTS flight_route_departure_idx
+	ON Flight (departure_airport, arrival_airport, actual_departure_date, fnum);
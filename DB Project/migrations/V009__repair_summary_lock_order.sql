@@ -0,0 +1,106 @@
+-- Lock the repair summary rows in key order before changing them.
+--
+-- The V004 triggers only ordered the rows they fed to INSERT and UPDATE, and
+-- UPDATE ... FROM does not visit the target rows in the order of its source
+-- rows, so two writers subtracting repairs of the same planes or years could
+-- lock them in opposite orders and deadlock. An UPDATE of Repairs also ran
+-- two triggers, locking the old keys before the new ones.
+--
+-- Every trigger now first takes the row locks of the summary rows it will
+-- touch with SELECT ... ORDER BY key FOR UPDATE, planes before years, and an
+-- update of Repairs runs one trigger that locks its old and new keys
+-- together. A key seen for the first time has no row to lock yet; its insert
+-- still follows the ORDER BY of the INSERT, but two writers racing to create
+-- the same new keys can in rare cases still deadlock, and PostgreSQL then
+-- aborts one of them with 40P01 for the writer to retry.
+
+CREATE OR REPLACE FUNCTION repairs_summary_add()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	PERFORM 1 FROM repairs_per_plane
+		WHERE plane_id IN (SELECT plane_id FROM new_repairs) ORDER BY plane_id FOR UPDATE;
+	PERFORM 1 FROM repairs_per_year
+		WHERE repair_year IN (SELECT EXTRACT(YEAR FROM repair_date)::int FROM new_repairs) ORDER BY repair_year FOR UPDATE;
+
+	INSERT INTO repairs_per_plane AS s (plane_id, repairs)
+		SELECT plane_id, COUNT(*) FROM new_repairs GROUP BY plane_id ORDER BY plane_id
+	ON CONFLICT (plane_id) DO UPDATE SET repairs = s.repairs + EXCLUDED.repairs;
+
+	INSERT INTO repairs_per_year AS s (repair_year, repairs)
+		SELECT EXTRACT(YEAR FROM repair_date)::int, COUNT(*) FROM new_repairs GROUP BY 1 ORDER BY 1
+	ON CONFLICT (repair_year) DO UPDATE SET repairs = s.repairs + EXCLUDED.repairs;
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+CREATE OR REPLACE FUNCTION repairs_summary_subtract()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	PERFORM 1 FROM repairs_per_plane
+		WHERE plane_id IN (SELECT plane_id FROM old_repairs) ORDER BY plane_id FOR UPDATE;
+	PERFORM 1 FROM repairs_per_year
+		WHERE repair_year IN (SELECT EXTRACT(YEAR FROM repair_date)::int FROM old_repairs) ORDER BY repair_year FOR UPDATE;
+
+	UPDATE repairs_per_plane s SET repairs = s.repairs - d.n
+		FROM (SELECT plane_id, COUNT(*) AS n FROM old_repairs GROUP BY plane_id) d
+		WHERE s.plane_id = d.plane_id;
+	DELETE FROM repairs_per_plane s
+		WHERE s.repairs <= 0 AND s.plane_id IN (SELECT plane_id FROM old_repairs);
+
+	UPDATE repairs_per_year s SET repairs = s.repairs - d.n
+		FROM (SELECT EXTRACT(YEAR FROM repair_date)::int AS repair_year, COUNT(*) AS n FROM old_repairs GROUP BY 1) d
+		WHERE s.repair_year = d.repair_year;
+	DELETE FROM repairs_per_year s
+		WHERE s.repairs <= 0 AND s.repair_year IN (SELECT EXTRACT(YEAR FROM repair_date)::int FROM old_repairs);
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+-- an update moves repairs: lock the old and new keys, subtract the old rows, add the new ones
+CREATE OR REPLACE FUNCTION repairs_summary_move()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	PERFORM 1 FROM repairs_per_plane
+		WHERE plane_id IN (SELECT plane_id FROM old_repairs UNION SELECT plane_id FROM new_repairs)
+		ORDER BY plane_id FOR UPDATE;
+	PERFORM 1 FROM repairs_per_year
+		WHERE repair_year IN (SELECT EXTRACT(YEAR FROM repair_date)::int FROM old_repairs
+			UNION SELECT EXTRACT(YEAR FROM repair_date)::int FROM new_repairs)
+		ORDER BY repair_year FOR UPDATE;
+
+	UPDATE repairs_per_plane s SET repairs = s.repairs - d.n
+		FROM (SELECT plane_id, COUNT(*) AS n FROM old_repairs GROUP BY plane_id) d
+		WHERE s.plane_id = d.plane_id;
+	UPDATE repairs_per_year s SET repairs = s.repairs - d.n
+		FROM (SELECT EXTRACT(YEAR FROM repair_date)::int AS repair_year, COUNT(*) AS n FROM old_repairs GROUP BY 1) d
+		WHERE s.repair_year = d.repair_year;
+
+	INSERT INTO repairs_per_plane AS s (plane_id, repairs)
+		SELECT plane_id, COUNT(*) FROM new_repairs GROUP BY plane_id ORDER BY plane_id
+	ON CONFLICT (plane_id) DO UPDATE SET repairs = s.repairs + EXCLUDED.repairs;
+	INSERT INTO repairs_per_year AS s (repair_year, repairs)
+		SELECT EXTRACT(YEAR FROM repair_date)::int, COUNT(*) FROM new_repairs GROUP BY 1 ORDER BY 1
+	ON CONFLICT (repair_year) DO UPDATE SET repairs = s.repairs + EXCLUDED.repairs;
+
+	DELETE FROM repairs_per_plane s
+		WHERE s.repairs <= 0 AND s.plane_id IN (SELECT plane_id FROM old_repairs);
+	DELETE FROM repairs_per_year s
+		WHERE s.repairs <= 0 AND s.repair_year IN (SELECT EXTRACT(YEAR FROM repair_date)::int FROM old_repairs);
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+DROP TRIGGER IF EXISTS repairs_summary_update_old_trig ON Repairs;
+DROP TRIGGER IF EXISTS repairs_summary_update_trig ON Repairs;
+CREATE TRIGGER repairs_summary_update_trig
+AFTER UPDATE
+ON Repairs
+REFERENCING OLD TABLE AS old_repairs NEW TABLE AS new_repairs
+FOR EACH STATEMENT
+EXECUTE PROCEDURE repairs_summary_move();
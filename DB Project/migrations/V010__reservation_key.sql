@@ -0,0 +1,60 @@
+-- Reservation numbers unique across every partition of Reservation.
+--
+-- V007 made Reservation's primary key (rnum, fid), which only stops a
+-- number repeating within one flight. res_seq hands out each number once,
+-- but V002 keeps an rnum that an insert gives explicitly, as bulk loads and
+-- imports do, so two flights could share one. Cancellation, the waitlist
+-- worker and the reservation lookup name a reservation by rnum alone.
+--
+-- reservation_key holds the number of every reservation in Reservation or
+-- in a partition detached from it, as flight_key does for flights. Its
+-- primary key is the global unique constraint: an insert or update that
+-- reuses a number fails with unique_violation. Each booking pays one more
+-- index insert for it. Partitions detached before this migration are not
+-- covered.
+--
+-- A database that already holds a repeated number fails here; renumber
+-- the duplicates and apply it again.
+
+CREATE TABLE reservation_key
+(
+	rnum INTEGER NOT NULL,
+	PRIMARY KEY (rnum)
+);
+
+-- blocks writers until the keys are copied and the triggers are in place
+LOCK TABLE Reservation IN SHARE ROW EXCLUSIVE MODE;
+
+INSERT INTO reservation_key (rnum) SELECT rnum FROM Reservation;
+
+CREATE OR REPLACE FUNCTION reservation_key_sync()
+RETURNS trigger AS
+$BODY$
+BEGIN
+	IF TG_OP = 'INSERT' THEN
+		INSERT INTO reservation_key (rnum) VALUES (NEW.rnum);
+	ELSIF TG_OP = 'UPDATE' THEN
+		UPDATE reservation_key SET rnum = NEW.rnum WHERE rnum = OLD.rnum;
+	ELSE
+		DELETE FROM reservation_key WHERE rnum = OLD.rnum;
+	END IF;
+	RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+CREATE TRIGGER reservation_key_sync_trig
+AFTER INSERT OR DELETE
+ON Reservation
+FOR EACH ROW
+EXECUTE PROCEDURE reservation_key_sync();
+
+-- waitlist promotions update status; only a new number matters
+CREATE TRIGGER reservation_key_update_trig
+AFTER UPDATE OF rnum
+ON Reservation
+FOR EACH ROW
+WHEN (NEW.rnum <> OLD.rnum)
+EXECUTE PROCEDURE reservation_key_sync();
+
+ANALYZE reservation_key;
@@ -0,0 +1,114 @@
+package airline.bench;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airline.AnalyticsSnapshot;
+import airline.Flight;
+import airline.Operations;
+import airline.Repair;
+
+/**
+ * The repair and seat reports as SQL against the same reports from an
+ * {@link AnalyticsSnapshot}, plus what a refresh costs when nothing changed.
+ *
+ * The per-plane and per-year reports run three ways: from the V004 summary
+ * tables, as the aggregate over Repairs, and from the snapshot. Run with
+ * <code>java -jar target/benchmarks.jar AnalyticsBenchmark -p scale=1000000</code>
+ * to give the snapshot enough rows to split a report across cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBenchmark {
+	static final Date FROM = Date.valueOf("2021-01-01");
+	static final Date TO = Date.valueOf("2021-12-31");
+
+	@State(Scope.Benchmark)
+	public static class Snapshot {
+		AnalyticsSnapshot analytics;
+
+		@Setup(Level.Trial)
+		public void load(BenchmarkDatabase db) throws Exception {
+			this.analytics = new AnalyticsSnapshot(db.pool());
+			this.analytics.refresh();
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			this.analytics.close();
+		}
+	}
+
+	/** Option 7 from the summary table. */
+	@Benchmark
+	public List<Repair.Total> perPlaneSummary(BenchmarkDatabase db) throws Exception {
+		return db.ops().getDatabase().executeQueryAndMap(Operations.REPAIRS_PER_PLANE, Repair.Total.MAPPER);
+	}
+
+	/** Option 7 as GROUP BY over Repairs. */
+	@Benchmark
+	public List<Repair.Total> perPlaneScan(BenchmarkDatabase db) throws Exception {
+		return db.ops().getDatabase().executeQueryAndMap(Operations.REPAIRS_PER_PLANE_SCAN, Repair.Total.MAPPER);
+	}
+
+	/** Option 7 from the snapshot. */
+	@Benchmark
+	public List<Repair.Total> perPlaneSnapshot(Snapshot snapshot) {
+		return snapshot.analytics.repairsPerPlane();
+	}
+
+	/** Option 8 from the summary table. */
+	@Benchmark
+	public List<Repair.Total> perYearSummary(BenchmarkDatabase db) throws Exception {
+		return db.ops().getDatabase().executeQueryAndMap(Operations.REPAIRS_PER_YEAR, Repair.Total.MAPPER);
+	}
+
+	/** Option 8 as GROUP BY over Repairs. */
+	@Benchmark
+	public List<Repair.Total> perYearScan(BenchmarkDatabase db) throws Exception {
+		return db.ops().getDatabase().executeQueryAndMap(Operations.REPAIRS_PER_YEAR_SCAN, Repair.Total.MAPPER);
+	}
+
+	/** Option 8 from the snapshot. */
+	@Benchmark
+	public List<Repair.Total> perYearSnapshot(Snapshot snapshot) {
+		return snapshot.analytics.repairsPerYear();
+	}
+
+	/** A year of the seat report as the Flight/FlightInfo/Plane join. */
+	@Benchmark
+	public List<Flight.SeatTotal> seatsSql(BenchmarkDatabase db) throws Exception {
+		return db.ops().getDatabase().executeQueryAndMap(Operations.SEATS_BY_DEPARTURE_AIRPORT, Flight.SeatTotal.MAPPER, FROM, TO);
+	}
+
+	/** A year of the seat report from the snapshot. */
+	@Benchmark
+	public List<Flight.SeatTotal> seatsSnapshot(Snapshot snapshot) {
+		return snapshot.analytics.seatsByDepartureAirport(LocalDate.of(2021, 1, 1), LocalDate.of(2021, 12, 31));
+	}
+
+	/** A refresh that finds nothing new; num_sold is still read for every flight. */
+	@Benchmark
+	public long refresh(Snapshot snapshot) throws Exception {
+		snapshot.analytics.refresh();
+		return snapshot.analytics.getLoadedRows();
+	}
+}
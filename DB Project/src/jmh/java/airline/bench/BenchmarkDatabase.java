@@ -0,0 +1,159 @@
+package airline.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import airline.ConnectionPool;
+import airline.Database;
+import airline.Migrations;
+import airline.Operations;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * A seeded database shared by all benchmark threads of a trial.
+ *
+ * By default an embedded PostgreSQL server is started in-process. Set
+ * <code>-Dbench.url=jdbc:postgresql://host:port/db</code> (plus
+ * <code>bench.user</code> and <code>bench.password</code>) to use a running
+ * server instead; either way everything is created in its own
+ * <code>dbproject_bench</code> schema, which is dropped and re-seeded at the
+ * start of each trial.
+ *
+ * The <code>scale</code> parameter sets the number of flights and customers;
+ * there are three reservations per flight, one repair per flight and one
+ * plane, pilot and technician per hundred flights.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+	static final String SCHEMA = "dbproject_bench";
+
+	@Param({ "10000" })
+	public int scale;
+
+	private EmbeddedPostgres _embedded;
+	private ConnectionPool _pool;
+	private Operations _ops;
+	int flights;
+	int customers;
+
+	@Setup(Level.Trial)
+	public void start() throws Exception {
+		String url = System.getProperty("bench.url");
+		String user = System.getProperty("bench.user", "postgres");
+		String passwd = System.getProperty("bench.password", "");
+		if (url == null) {
+			this._embedded = EmbeddedPostgres.start();
+			url = this._embedded.getJdbcUrl("postgres", "postgres");
+			user = "postgres";
+		}
+
+		seed(url, user, passwd);
+
+		Properties props = new Properties();
+		props.setProperty("currentSchema", SCHEMA);
+		// as DBproject sets it, for the partitioned tables from V007
+		props.setProperty("options", "-c plan_cache_mode=force_generic_plan");
+		int threads = Integer.getInteger("bench.pool", 16);
+		this._pool = new ConnectionPool(url, user, passwd, props, 1, threads, 300000L, 30000L, 64);
+		this._ops = new Operations(new Database(this._pool, 1000));
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() throws IOException {
+		if (this._pool != null) {
+			this._pool.close();
+		}
+		if (this._embedded != null) {
+			this._embedded.close();
+		}
+	}
+
+	public Operations ops() {
+		return this._ops;
+	}
+
+	public ConnectionPool pool() {
+		return this._pool;
+	}
+
+	private void seed(String url, String user, String passwd) throws SQLException, IOException {
+		this.flights = this.scale;
+		this.customers = this.scale;
+		int planes = Math.max(10, this.scale / 100);
+		int pilots = planes;
+		int techs = planes;
+
+		try (Connection c = DriverManager.getConnection(url, user, passwd);
+				Statement stmt = c.createStatement()){
+			stmt.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+			stmt.execute("CREATE SCHEMA " + SCHEMA);
+			stmt.execute("SET search_path TO " + SCHEMA);
+			stmt.execute(script("/create_tables.sql"));
+
+			stmt.execute("INSERT INTO Plane SELECT i, 'Make' || (i % 10), 'Model' || (i % 50), 1980 + i % 40, 100 + i % 300 FROM generate_series(1, " + planes + ") i");
+			stmt.execute("INSERT INTO Pilot SELECT i, 'Pilot ' || i, 'Nation' || (i % 20) FROM generate_series(1, " + pilots + ") i");
+			stmt.execute("INSERT INTO Technician SELECT i, 'Technician ' || i FROM generate_series(1, " + techs + ") i");
+			stmt.execute("INSERT INTO Customer SELECT i, 'First' || i, 'Last' || i, CASE WHEN i % 2 = 0 THEN 'M' ELSE 'F' END, "
+					+ "DATE '1950-01-01' + (i % 18000), i || ' Main St', lpad(i::text, 10, '0'), lpad((i % 100000)::text, 5, '0') "
+					+ "FROM generate_series(1, " + this.customers + ") i");
+			stmt.execute("INSERT INTO Flight SELECT i, 100 + i % 900, i % 100, i % 3, DATE '2020-01-01' + (i % 1500), "
+					+ "DATE '2020-01-01' + (i % 1500) + 1, 'A' || lpad(((i * 7) % 50)::text, 4, '0'), 'A' || lpad((i % 50)::text, 4, '0') "
+					+ "FROM generate_series(1, " + this.flights + ") i");
+			stmt.execute("INSERT INTO FlightInfo SELECT i, i, 1 + i % " + pilots + ", 1 + i % " + planes
+					+ " FROM generate_series(1, " + this.flights + ") i");
+			stmt.execute("INSERT INTO Reservation SELECT i, 1 + i % " + this.customers + ", 1 + i % " + this.flights
+					+ ", (ARRAY['W','C','R'])[1 + i % 3] FROM generate_series(1, " + (3 * this.flights) + ") i");
+			stmt.execute("INSERT INTO Repairs SELECT i, DATE '2000-01-01' + (i % 7300), (ARRAY['MJ','MN','SV'])[1 + i % 3], "
+					+ "1 + i % " + pilots + ", 1 + i % " + planes + ", 1 + i % " + techs
+					+ " FROM generate_series(1, " + this.flights + ") i");
+
+			// the key triggers go in after seeding; move their sequences past the seeded keys
+			stmt.execute(script("/triggers.sql"));
+			stmt.execute("SELECT setval('plane_id_seq', (SELECT MAX(id) FROM Plane)), "
+					+ "setval('pilot_id_seq', (SELECT MAX(id) FROM Pilot)), "
+					+ "setval('tech_seq', (SELECT MAX(id) FROM Technician)), "
+					+ "setval('cus_seq', (SELECT MAX(id) FROM Customer)), "
+					+ "setval('fnum_seq', (SELECT MAX(fnum) FROM Flight)), "
+					+ "setval('flight_id_seq', (SELECT MAX(flight_id) FROM FlightInfo)), "
+					+ "setval('fiid_seq', (SELECT MAX(fiid) FROM FlightInfo)), "
+					+ "setval('res_seq', (SELECT MAX(rnum) FROM Reservation))");
+		}
+
+		Properties props = new Properties();
+		props.setProperty("currentSchema", SCHEMA);
+		ConnectionPool pool = new ConnectionPool(url, user, passwd, props, 1, 1, 60000L, 30000L, 16);
+		try{
+			new Migrations(pool).apply(Migrations.fromClasspath());
+		}finally{
+			pool.close();
+		}
+
+		try (Connection c = DriverManager.getConnection(url, user, passwd);
+				Statement stmt = c.createStatement()){
+			stmt.execute("VACUUM ANALYZE");
+		}
+	}
+
+	static String script(String resource) throws IOException {
+		try (InputStream in = BenchmarkDatabase.class.getResourceAsStream(resource)){
+			if (in == null) {
+				throw new IOException(resource + " is not on the classpath");
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+}
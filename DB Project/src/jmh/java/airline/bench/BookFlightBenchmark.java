@@ -0,0 +1,72 @@
+package airline.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airline.BookingEngine;
+
+/**
+ * The booking transaction run from the client, statement by statement,
+ * against the same booking as one call to the <code>book_flight</code>
+ * function.
+ *
+ * Run with <code>java -jar target/benchmarks.jar BookFlightBenchmark</code>.
+ * The gap grows with the round-trip time to the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookFlightBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Engines {
+		BookingEngine statements;
+		BookingEngine function;
+
+		@Setup(Level.Trial)
+		public void setup(BenchmarkDatabase db) {
+			this.statements = new BookingEngine(db.pool());
+			this.statements.setUseFunction(false);
+			this.function = new BookingEngine(db.pool());
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Keys {
+		private final SplittableRandom _random = new SplittableRandom(42);
+
+		int flight(BenchmarkDatabase db) {
+			return 1 + this._random.nextInt(db.flights);
+		}
+
+		int customer(BenchmarkDatabase db) {
+			return 1 + this._random.nextInt(db.customers);
+		}
+	}
+
+	/** UPDATE, INSERT and COMMIT sent one at a time. */
+	@Benchmark
+	public BookingEngine.Booking statements(BenchmarkDatabase db, Engines engines, Keys keys) throws Exception {
+		return engines.statements.book(keys.customer(db), keys.flight(db));
+	}
+
+	/** The same booking as a single function call. */
+	@Benchmark
+	public BookingEngine.Booking function(BenchmarkDatabase db, Engines engines, Keys keys) throws Exception {
+		return engines.function.book(keys.customer(db), keys.flight(db));
+	}
+}
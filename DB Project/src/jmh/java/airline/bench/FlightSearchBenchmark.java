@@ -0,0 +1,79 @@
+package airline.bench;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airline.Flight;
+
+/**
+ * One page of a route search, cheapest first, reached by keyset against
+ * the same page reached with OFFSET.
+ *
+ * The seeded data has fifty routes, each with a fiftieth of the flights.
+ * Run with <code>java -jar target/benchmarks.jar FlightSearchBenchmark -p scale=1000000 -p page=1,100,1000</code>
+ * to see OFFSET slow down with depth while keyset stays flat.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlightSearchBenchmark {
+	static final String FROM = "A0001";
+	static final String TO = "A0007";
+	static final Date FIRST = Date.valueOf("2020-01-01");
+	static final Date LAST = Date.valueOf("2024-12-31");
+	static final String BY_COST_OFFSET =
+		"SELECT " + Flight.COLUMNS + " FROM Flight WHERE departure_airport = CAST(? AS CHAR(5)) AND arrival_airport = CAST(? AS CHAR(5)) " +
+		"AND actual_departure_date BETWEEN ? AND ? ORDER BY cost, fnum OFFSET ? LIMIT ?;";
+
+	@State(Scope.Benchmark)
+	public static class Page {
+		@Param({ "1", "10" })
+		public int page;
+
+		@Param({ "20" })
+		public int size;
+
+		// the last flight of the page before, found by paging up to it
+		Flight after;
+
+		@Setup(Level.Trial)
+		public void seek(BenchmarkDatabase db) throws Exception {
+			for (int p = 1; p < this.page; ++p) {
+				List<Flight> flights = db.ops().searchFlights(FROM, TO, FIRST, LAST, Flight.Order.COST, this.after, this.size);
+				if (flights.isEmpty()) {
+					throw new IllegalStateException("the route has fewer than " + this.page + " pages; raise scale");
+				}
+				this.after = flights.get(flights.size() - 1);
+			}
+		}
+	}
+
+	/** The page, continuing after the last flight of the one before. */
+	@Benchmark
+	public List<Flight> keyset(BenchmarkDatabase db, Page page) throws Exception {
+		return db.ops().searchFlights(FROM, TO, FIRST, LAST, Flight.Order.COST, page.after, page.size);
+	}
+
+	/** The page, skipping the flights of the pages before. */
+	@Benchmark
+	public List<Flight> offset(BenchmarkDatabase db, Page page) throws Exception {
+		return db.ops().getDatabase().executeQueryAndMap(BY_COST_OFFSET, Flight.MAPPER, FROM, TO, FIRST, LAST,
+				(page.page - 1) * page.size, page.size);
+	}
+}
@@ -0,0 +1,83 @@
+package airline.bench;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airline.BookingEngine;
+import airline.Repair;
+
+/**
+ * One benchmark per hot menu query, all going through
+ * {@link airline.Operations} so they run exactly the SQL the menu runs.
+ *
+ * Run with <code>java -jar target/benchmarks.jar MenuQueryBenchmark -p scale=100000</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MenuQueryBenchmark {
+
+	@State(Scope.Thread)
+	public static class Keys {
+		private final SplittableRandom _random = new SplittableRandom(42);
+
+		int flight(BenchmarkDatabase db) {
+			return 1 + this._random.nextInt(db.flights);
+		}
+
+		int customer(BenchmarkDatabase db) {
+			return 1 + this._random.nextInt(db.customers);
+		}
+	}
+
+	/** Option 6: the Plane/Flight/FlightInfo seat-availability join. */
+	@Benchmark
+	public int availableSeats(BenchmarkDatabase db, Keys keys) throws Exception {
+		return db.ops().availableSeats(keys.flight(db));
+	}
+
+	/** Option 7: repairs grouped by plane. */
+	@Benchmark
+	public List<Repair.Total> repairsPerPlane(BenchmarkDatabase db) throws Exception {
+		return db.ops().repairsPerPlane();
+	}
+
+	/** Option 8: repairs grouped by year. */
+	@Benchmark
+	public List<Repair.Total> repairsPerYear(BenchmarkDatabase db) throws Exception {
+		return db.ops().repairsPerYear();
+	}
+
+	/** Option 9: the Reservation/Flight/Customer join. */
+	@Benchmark
+	public int passengerCount(BenchmarkDatabase db, Keys keys) throws Exception {
+		return db.ops().passengerCount(keys.flight(db), "R");
+	}
+
+	/**
+	 * Option 5 as the menu runs it: customer check, flight cost, seat
+	 * availability, then the booking transaction.
+	 */
+	@Benchmark
+	public BookingEngine.Booking bookFlight(BenchmarkDatabase db, Keys keys) throws Exception {
+		int cid = keys.customer(db);
+		int fnum = keys.flight(db);
+		db.ops().customerExists(cid);
+		db.ops().flightCost(fnum);
+		db.ops().availableSeats(fnum);
+		return db.ops().bookFlight(cid, fnum);
+	}
+}
@@ -0,0 +1,97 @@
+package airline.bench;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airline.Itinerary;
+import airline.RouteGraph;
+import airline.RowMapper;
+
+/**
+ * The ten cheapest itineraries with up to two connections, from the
+ * {@link RouteGraph} against a recursive query over Flight that applies
+ * the same connection rules.
+ *
+ * In the seeded data each airport flies to one other, every fifty days, so
+ * A0001 reaches A0049 through A0007 with a five-day layover.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteSearchBenchmark {
+	static final String FROM = "A0001";
+	static final String TO = "A0049";
+	static final LocalDate FIRST = LocalDate.of(2020, 1, 1);
+	static final LocalDate LAST = LocalDate.of(2023, 12, 31);
+	static final int CONNECTIONS = 2;
+	static final int LIMIT = 10;
+	static final String RECURSIVE =
+		"WITH RECURSIVE trip(legs, airports, last_airport, arrival, cost) AS (" +
+		"SELECT 1, ARRAY[departure_airport::text, arrival_airport::text], arrival_airport::text, actual_arrival_date, cost::bigint " +
+		"FROM Flight WHERE departure_airport = CAST(? AS CHAR(5)) AND actual_departure_date BETWEEN ? AND ? AND arrival_airport <> departure_airport " +
+		"UNION ALL SELECT t.legs + 1, t.airports || F.arrival_airport::text, F.arrival_airport::text, F.actual_arrival_date, t.cost + F.cost " +
+		"FROM trip t, Flight F WHERE F.departure_airport = CAST(t.last_airport AS CHAR(5)) " +
+		"AND F.actual_departure_date BETWEEN t.arrival + ? AND t.arrival + ? " +
+		"AND t.legs <= ? AND t.last_airport <> ? AND NOT (F.arrival_airport::text = ANY(t.airports))) " +
+		"SELECT cost FROM trip WHERE last_airport = ? ORDER BY cost, arrival, legs LIMIT ?";
+
+	@State(Scope.Benchmark)
+	public static class Graph {
+		@Param({ "0" })
+		public int minConnectionDays;
+
+		@Param({ "7" })
+		public int maxLayoverDays;
+
+		RouteGraph routes;
+
+		@Setup(Level.Trial)
+		public void load(BenchmarkDatabase db) throws Exception {
+			this.routes = new RouteGraph(db.pool(), this.minConnectionDays, this.maxLayoverDays);
+			this.routes.refresh();
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			this.routes.close();
+		}
+	}
+
+	/** From the route graph. */
+	@Benchmark
+	public List<Itinerary> graph(Graph graph) {
+		return graph.routes.itineraries(FROM, TO, FIRST, LAST, CONNECTIONS, LIMIT);
+	}
+
+	/** As a recursive query; returns the costs only. */
+	@Benchmark
+	public List<Integer> recursiveSql(BenchmarkDatabase db, Graph graph) throws Exception {
+		return db.ops().getDatabase().executeQueryAndMap(RECURSIVE, RowMapper.INT, FROM, Date.valueOf(FIRST), Date.valueOf(LAST),
+				graph.minConnectionDays, graph.maxLayoverDays, CONNECTIONS, TO, TO, LIMIT);
+	}
+
+	/** A refresh that finds no new flights. */
+	@Benchmark
+	public long refresh(Graph graph) throws Exception {
+		graph.routes.refresh();
+		return graph.routes.getLoadedRows();
+	}
+}
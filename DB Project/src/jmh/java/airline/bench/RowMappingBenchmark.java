@@ -0,0 +1,71 @@
+package airline.bench;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import airline.Flight;
+
+/**
+ * Reading a page of flights as strings and parsing the numbers and dates
+ * back, against mapping the rows to {@link Flight} with typed getters.
+ *
+ * Run with <code>java -jar target/benchmarks.jar RowMappingBenchmark -prof gc</code>
+ * to see the allocation per page as well as the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+	static final String PAGE = "SELECT " + Flight.COLUMNS + " FROM Flight WHERE fnum BETWEEN ? AND ? ORDER BY fnum";
+
+	@State(Scope.Thread)
+	public static class Page {
+		@Param({ "500" })
+		public int rows;
+
+		private final SplittableRandom _random = new SplittableRandom(42);
+
+		int first(BenchmarkDatabase db) {
+			return 1 + this._random.nextInt(Math.max(1, db.flights - this.rows));
+		}
+	}
+
+	/** The rows as strings, with every number and date parsed back. */
+	@Benchmark
+	public void strings(BenchmarkDatabase db, Page page, Blackhole bh) throws Exception {
+		int first = page.first(db);
+		for (List<String> row : db.ops().getDatabase().executeQueryAndReturnResult(PAGE, first, first + page.rows - 1)) {
+			bh.consume(Integer.parseInt(row.get(0)));
+			bh.consume(Integer.parseInt(row.get(1)));
+			bh.consume(Integer.parseInt(row.get(2)));
+			bh.consume(Integer.parseInt(row.get(3)));
+			bh.consume(Date.valueOf(row.get(4)));
+			bh.consume(Date.valueOf(row.get(5)));
+			bh.consume(row.get(6).trim());
+			bh.consume(row.get(7).trim());
+		}
+	}
+
+	/** The rows mapped to Flight records. */
+	@Benchmark
+	public List<Flight> typed(BenchmarkDatabase db, Page page) throws Exception {
+		int first = page.first(db);
+		return db.ops().getDatabase().executeQueryAndMap(PAGE, Flight.MAPPER, first, first + page.rows - 1);
+	}
+}
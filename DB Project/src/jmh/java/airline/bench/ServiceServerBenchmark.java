@@ -0,0 +1,151 @@
+package airline.bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airline.ServiceServer;
+
+/**
+ * Requests per second through {@link ServiceServer}, and the latency of
+ * each, with every benchmark thread holding one session open and sending
+ * requests back to back.
+ *
+ * <code>mixed</code> cycles through a workload of reads, a booking and the
+ * reports, each session starting at its own line so the sessions do not
+ * all hit the same row at the same moment. Run with
+ * <code>java -jar target/benchmarks.jar ServiceServerBenchmark -t 64 -p maxInFlight=4,16</code>
+ * to see how admission holds throughput as sessions outnumber connections;
+ * replies of <code>ERR busy</code> fail the run.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class ServiceServerBenchmark {
+	static final Pattern ROWS = Pattern.compile("OK (\\d+) rows");
+
+	@State(Scope.Benchmark)
+	public static class Server {
+		@Param({ "16" })
+		public int maxInFlight;
+
+		ServiceServer server;
+		final AtomicInteger sessions = new AtomicInteger();
+
+		@Setup(Level.Trial)
+		public void start(BenchmarkDatabase db) throws IOException {
+			this.server = new ServiceServer(db.ops(), 0, 10000, this.maxInFlight, 30000L);
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() {
+			this.server.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Session {
+		private Socket _socket;
+		private BufferedReader _in;
+		private Writer _out;
+		String[] workload;
+		int next;
+
+		@Setup(Level.Trial)
+		public void open(BenchmarkDatabase db, Server server) throws IOException {
+			this._socket = new Socket(InetAddress.getLoopbackAddress(), server.server.getPort());
+			this._socket.setTcpNoDelay(true);
+			this._in = new BufferedReader(new InputStreamReader(this._socket.getInputStream(), StandardCharsets.UTF_8));
+			this._out = new BufferedWriter(new OutputStreamWriter(this._socket.getOutputStream(), StandardCharsets.UTF_8));
+			int s = server.sessions.getAndIncrement();
+			int flight = 1 + s % db.flights;
+			int customer = 1 + s % db.customers;
+			this.workload = new String[] {
+				"seats," + flight,
+				"status_count," + flight + ",R",
+				"book_flight," + customer + "," + flight,
+				"seats_by_airport,2020-01-01,2020-12-31",
+				"repairs_per_plane",
+				"search_flights,A0001,A0007,2020-01-01,2020-12-31,cost,20",
+			};
+			this.next = s;
+		}
+
+		@TearDown(Level.Trial)
+		public void close() throws IOException {
+			this._out.write("quit\n");
+			this._out.flush();
+			this._socket.close();
+		}
+
+		/*
+		 * Sends one request and reads the whole reply; returns its first line.
+		 */
+		String request(String line) throws IOException {
+			this._out.write(line);
+			this._out.write('\n');
+			this._out.flush();
+			String reply = this._in.readLine();
+			if (reply == null) {
+				throw new IOException("server closed the session");
+			}
+			if (reply.startsWith("ERR")) {
+				throw new IOException(reply + " <- " + line);
+			}
+			Matcher m = ROWS.matcher(reply);
+			if (m.matches()) {
+				for (int r = Integer.parseInt(m.group(1)); r > 0; --r) {
+					this._in.readLine();
+				}
+			}
+			return reply;
+		}
+	}
+
+	/** Available seats of one flight: a single indexed read. */
+	@Benchmark
+	public String seats(Session session) throws IOException {
+		return session.request(session.workload[0]);
+	}
+
+	/** A booking: a write that takes the flight's row lock. */
+	@Benchmark
+	public String bookFlight(Session session) throws IOException {
+		return session.request(session.workload[2]);
+	}
+
+	/** The workload's requests in turn. */
+	@Benchmark
+	public String mixed(Session session) throws IOException {
+		String[] workload = session.workload;
+		return session.request(workload[session.next++ % workload.length]);
+	}
+}
@@ -0,0 +1,52 @@
+package airline.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airline.Operations;
+import airline.StatementMetrics;
+
+/**
+ * The cost of recording one statement, and one operation around it, in
+ * {@link StatementMetrics}. No database is involved.
+ *
+ * Run with <code>java -jar target/benchmarks.jar StatementMetricsBenchmark -prof gc</code>;
+ * <code>gc.alloc.rate.norm</code> should be 0 B/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class StatementMetricsBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Metrics {
+		final StatementMetrics metrics = new StatementMetrics();
+	}
+
+	@Benchmark
+	public void statement(Metrics m) {
+		StatementMetrics.Stats stats = m.metrics.statement(Operations.AVAILABLE_SEATS);
+		m.metrics.endStatement(stats, m.metrics.beginStatement(stats), 1);
+	}
+
+	@Benchmark
+	public void operationWithStatement(Metrics m) {
+		long start = m.metrics.beginOperation("seats");
+		StatementMetrics.Stats stats = m.metrics.statement(Operations.AVAILABLE_SEATS);
+		m.metrics.endStatement(stats, m.metrics.beginStatement(stats), 1);
+		m.metrics.endOperation("seats", start, false);
+	}
+}
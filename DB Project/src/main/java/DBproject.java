@@ -0,0 +1,1624 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.io.FileReader;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.*;
+import java.text.SimpleDateFormat;
+import java.util.stream.Stream;
+import java.util.concurrent.CountDownLatch;
+
+import airline.AnalyticsSnapshot;
+import airline.BookingEngine;
+import airline.BulkLoader;
+import airline.ConnectionPool;
+import airline.Database;
+import airline.KeyFilter;
+import airline.Migrations;
+import airline.Operations;
+import airline.PartitionMaintainer;
+import airline.QueryCursor;
+import airline.QueryExporter;
+import airline.Repair;
+import airline.RouteGraph;
+import airline.ReplicaRouter;
+import airline.Row;
+import airline.ScheduleImporter;
+import airline.RowHandler;
+import airline.ServiceServer;
+import airline.SlowQueryLog;
+import airline.StatementMetrics;
+import airline.Validation;
+import airline.WaitlistWorker;
+import airline.WorkloadDriver;
+
+/**
+ * This class defines a simple embedded SQL utility class that is designed to
+ * work with PostgreSQL JDBC drivers.
+ *
+ */
+
+public class DBproject{
+	//pooled database access shared by every menu operation
+	private Database _db = null;
+	private Operations _ops = null;
+	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+	
+	public DBproject(String dbname, String dbport, String user, String passwd) throws SQLException {
+		System.out.print("Connecting to database...");
+		try{
+			// constructs the connection URL, unless -Ddbproject.url names the primary
+			String url = System.getProperty("dbproject.url", "jdbc:postgresql://localhost:" + dbport + "/" + dbname);
+			System.out.println ("Connection URL: " + url + "\n");
+			
+			// statements reused this many times switch to server-side prepared statements
+			Properties driverProps = new Properties();
+			driverProps.setProperty("prepareThreshold", System.getProperty("dbproject.prepareThreshold", "3"));
+			// Once V007 has partitioned Flight and Reservation, prepared statements keep one generic plan:
+			// the auto mode keeps re-planning lookups there, since a generic plan is costed over every
+			// partition.  Otherwise the server's plan_cache_mode applies unless -Ddbproject.planCacheMode sets one
+			boolean partitioned = isMigrationApplied(url, user, passwd, driverProps, 7);
+			String planCacheMode = System.getProperty("dbproject.planCacheMode", partitioned ? "force_generic_plan" : "");
+			if (!planCacheMode.isEmpty()) {
+				driverProps.setProperty("options", "-c plan_cache_mode=" + planCacheMode);
+			}
+			
+			// opens the connection pool, sized through -Ddbproject.pool.* system properties
+			ConnectionPool pool = new ConnectionPool(url, user, passwd, driverProps,
+					Integer.getInteger("dbproject.pool.min", 1),
+					Integer.getInteger("dbproject.pool.max", 8),
+					Long.getLong("dbproject.pool.idleTimeoutMillis", 300000L),
+					Long.getLong("dbproject.pool.borrowTimeoutMillis", 30000L),
+					Integer.getInteger("dbproject.statementCacheSize", 64));
+			this._db = new Database(pool, Integer.getInteger("dbproject.fetchSize", 1000),
+					Integer.getInteger("dbproject.seatCache.size", 4096));
+			this._ops = new Operations(this._db);
+			// BookFlight calls the book_flight function unless -Ddbproject.booking.function=false
+			this._db.getBookingEngine().setUseFunction(
+					Boolean.parseBoolean(System.getProperty("dbproject.booking.function", "true")));
+			
+			// options 6 to 9 read from the -Ddbproject.replicas (comma-separated JDBC URLs or host:port)
+			// while they are at most -Ddbproject.replica.maxLagMillis behind, and from the primary otherwise
+			String replicas = System.getProperty("dbproject.replicas", "").trim();
+			if (!replicas.isEmpty()) {
+				this._db.setReplicaRouter(newReplicaRouter(pool, replicas, dbname, user, passwd, driverProps));
+			}
+			
+			// with -Ddbproject.analytics.refreshSeconds, options 7 and 8 and the seat report are answered
+			// from an in-memory copy of Repairs, Flight and FlightInfo refreshed that often
+			long analyticsSeconds = Long.getLong("dbproject.analytics.refreshSeconds", 0L);
+			if (analyticsSeconds > 0) {
+				AnalyticsSnapshot analytics = new AnalyticsSnapshot(pool);
+				this._db.setAnalytics(analytics);
+				analytics.start(analyticsSeconds * 1000L);
+			}
+			
+			// with -Ddbproject.routes.refreshSeconds, itinerary search runs on an in-memory route graph
+			// refreshed that often; connections leave -Ddbproject.routes.minConnectionDays to maxLayoverDays after landing
+			long routeSeconds = Long.getLong("dbproject.routes.refreshSeconds", 0L);
+			if (routeSeconds > 0) {
+				RouteGraph routes = new RouteGraph(pool,
+						Integer.getInteger("dbproject.routes.minConnectionDays", 0),
+						Integer.getInteger("dbproject.routes.maxLayoverDays", 2));
+				this._db.setRouteGraph(routes);
+				routes.start(routeSeconds * 1000L);
+			}
+			
+			// statement metrics over JMX, plus a text dump every -Ddbproject.metrics.dumpSeconds
+			StatementMetrics metrics = this._db.getMetrics();
+			if (Boolean.parseBoolean(System.getProperty("dbproject.metrics.jmx", "true"))) {
+				metrics.register(dbname + "@" + dbport);
+			}
+			long dumpSeconds = Long.getLong("dbproject.metrics.dumpSeconds", 0L);
+			if (dumpSeconds > 0) {
+				String dumpFile = System.getProperty("dbproject.metrics.dumpFile");
+				metrics.startDump(dumpSeconds, dumpFile == null ? System.err
+						: new PrintStream(new FileOutputStream(dumpFile, true), true, "UTF-8"));
+			}
+			
+			// statements slower than -Ddbproject.slowQuery.thresholdMillis go to a rotating log with their plans
+			long slowMillis = Long.getLong("dbproject.slowQuery.thresholdMillis", 0L);
+			if (slowMillis > 0) {
+				this._db.setSlowQueryLog(new SlowQueryLog(pool, slowMillis,
+						Integer.getInteger("dbproject.slowQuery.explainsPerShape", 3),
+						System.getProperty("dbproject.slowQuery.file", "slow-queries.log"),
+						Integer.getInteger("dbproject.slowQuery.maxBytes", 10 << 20),
+						Integer.getInteger("dbproject.slowQuery.files", 5)));
+			}
+	        System.out.println("Done");
+		}catch(Exception e){
+			System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
+	        System.out.println("Make sure you started postgres on this machine");
+	        System.exit(-1);
+		}
+	}
+	
+	/*
+	 * Checks the schema version on a connection of its own, before the
+	 * pool's session options are settled.
+	 */
+	private static boolean isMigrationApplied(String url, String user, String passwd, Properties driverProps,
+			int version) throws SQLException {
+		ConnectionPool probe = new ConnectionPool(url, user, passwd, driverProps, 1, 1, 60000L, 30000L, 4);
+		try{
+			return new Migrations(probe).isApplied(version);
+		}finally{
+			probe.close();
+		}
+	}
+	
+	private static ReplicaRouter newReplicaRouter(ConnectionPool primary, String replicas, String dbname,
+			String user, String passwd, Properties driverProps) throws SQLException {
+		ReplicaRouter router = new ReplicaRouter(primary,
+				Long.getLong("dbproject.replica.maxLagMillis", 1000L),
+				Long.getLong("dbproject.replica.checkMillis", 1000L));
+		// a replica that is down should fail the check quickly, not hold up the reads
+		Properties replicaProps = new Properties();
+		replicaProps.putAll(driverProps);
+		replicaProps.setProperty("connectTimeout", "2");
+		for (String replica : replicas.split(",")) {
+			replica = replica.trim();
+			String url = replica.startsWith("jdbc:") ? replica : "jdbc:postgresql://" + replica + "/" + dbname;
+			router.addReplica(replica, new ConnectionPool(url, user, passwd, replicaProps, 0,
+					Integer.getInteger("dbproject.replica.pool.max", 4),
+					Long.getLong("dbproject.pool.idleTimeoutMillis", 300000L),
+					Long.getLong("dbproject.replica.borrowTimeoutMillis", 1000L),
+					Integer.getInteger("dbproject.statementCacheSize", 64)));
+		}
+		router.start();
+		return router;
+	}
+	
+	private static PartitionMaintainer newPartitionMaintainer(ConnectionPool pool) {
+		return new PartitionMaintainer(pool, Integer.getInteger("dbproject.partitions.retainMonths", 0),
+				Integer.getInteger("dbproject.partitions.blocksAhead", 2),
+				Integer.getInteger("dbproject.partitions.flightsPerBlock", 10000));
+	}
+	
+	/**
+	 * @return the database helpers backing this instance
+	 */
+	public Database getDatabase() {
+		return this._db;
+	}
+	
+	/**
+	 * @return the non-interactive implementations of the menu operations
+	 */
+	public Operations getOperations() {
+		return this._ops;
+	}
+	
+	/**
+	 * @return the booking engine used by BookFlight
+	 */
+	public BookingEngine getBookingEngine() {
+		return this._db.getBookingEngine();
+	}
+	
+	/**
+	 * @return the connection pool backing this instance
+	 */
+	public ConnectionPool getPool() {
+		return this._db.getPool();
+	}
+	
+	/**
+	 * Method to start promoting waitlisted passengers as seats free up, on
+	 * -Ddbproject.waitlist.workers threads (default 1, 0 turns it off).  Only
+	 * the menu and serve call it; the batch modes never poll the waitlist, so
+	 * their bookings take free seats without queueing behind it.
+	 */
+	public void startWaitlistWorker() {
+		int workers = Integer.getInteger("dbproject.waitlist.workers", 1);
+		if (workers > 0 && this._db.getWaitlistWorker() == null) {
+			WaitlistWorker waitlist = new WaitlistWorker(this._db.getPool(), workers,
+					Integer.getInteger("dbproject.waitlist.flightsPerBatch", 100),
+					Long.getLong("dbproject.waitlist.pollMillis", 1000L));
+			this._db.setWaitlistWorker(waitlist);
+			waitlist.start();
+		}
+	}
+	
+	/**
+	 * Method to start the scheduled partition maintenance once V007 has
+	 * partitioned Flight and Reservation: blocks are created ahead every
+	 * -Ddbproject.partitions.maintainMinutes (default 60, 0 turns it off) and
+	 * detached after -Ddbproject.partitions.retainMonths.  Only the menu and
+	 * serve call it; the batch modes would run maintain_partitions() at
+	 * startup, against their own COPY and DDL.
+	 * 
+	 * @throws java.sql.SQLException when the migration check fails
+	 */
+	public void startPartitionMaintainer() throws SQLException {
+		long maintainMinutes = Long.getLong("dbproject.partitions.maintainMinutes", 60L);
+		if (maintainMinutes > 0 && this._db.getPartitionMaintainer() == null
+				&& new Migrations(this._db.getPool()).isApplied(7)) {
+			PartitionMaintainer partitions = newPartitionMaintainer(this._db.getPool());
+			this._db.setPartitionMaintainer(partitions);
+			partitions.start(maintainMinutes);
+		}
+	}
+	
+	/**
+	 * Method to execute an update SQL statement.  Update SQL instructions
+	 * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
+	 * 
+	 * @param sql the input SQL string
+	 * @throws java.sql.SQLException when update failed
+	 * */
+	public void executeUpdate (String sql) throws SQLException { 
+		this._db.executeUpdate (sql);
+	}//end executeUpdate
+
+	/**
+	 * Method to execute a parameterized update SQL statement.
+	 * 
+	 * @param sql the input SQL string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows affected
+	 * @throws java.sql.SQLException when update failed
+	 * */
+	public int executeUpdate (String sql, Object... params) throws SQLException { 
+		return this._db.executeUpdate (sql, params);
+	}//end executeUpdate
+
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and outputs the results to
+	 * standard out.
+	 * 
+	 * @param query the input query string
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQueryAndPrintResult (String query) throws SQLException {
+		return this._db.executeQueryAndPrintResult (query);
+	}
+
+	/**
+	 * Method to execute a parameterized query and output the results to
+	 * standard out.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+		return this._db.executeQueryAndPrintResult (query, params);
+	}
+	
+	/**
+	 * Method to run a parameterized query as one menu operation and output
+	 * the results to standard out, so its statements and latency are
+	 * counted against that operation in the statement metrics.
+	 * 
+	 * @param operation the operation name, as used by airline.Command
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeOperationAndPrintResult (String operation, String query, Object... params) throws SQLException {
+		StatementMetrics metrics = this._db.getMetrics ();
+		long start = metrics.beginOperation (operation);
+		boolean failed = false;
+		try{
+			return this._db.executeQueryAndPrintResult (query, params);
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			metrics.endOperation (operation, start, failed);
+		}
+	}
+	
+	/**
+	 * Method to check whether the repair reports come from a loaded
+	 * analytics snapshot rather than a query
+	 * 
+	 * @return true when an analytics snapshot is set and loaded
+	 */
+	public boolean usesAnalytics () {
+		AnalyticsSnapshot analytics = this._db.getAnalytics ();
+		return analytics != null && analytics.isLoaded ();
+	}
+	
+	/**
+	 * Method to execute a read-only query as a named operation and output
+	 * the results to standard out, as executeOperationAndPrintResult does,
+	 * on a replica when one is configured and fresh enough.
+	 * 
+	 * @param operation the operation name the query is timed under
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeReplicaOperationAndPrintResult (String operation, String query, Object... params) throws SQLException {
+		StatementMetrics metrics = this._db.getMetrics ();
+		long start = metrics.beginOperation (operation);
+		boolean failed = false;
+		try{
+			return this._db.executeReplicaQueryAndPrintResult (query, params);
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			metrics.endOperation (operation, start, failed);
+		}
+	}
+	
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and returns the results as
+	 * a list of records. Each record in turn is a list of attribute values
+	 * 
+	 * @param query the input query string
+	 * @return the query result as a list of records
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException { 
+		return this._db.executeQueryAndReturnResult (query);
+	}//end executeQueryAndReturnResult
+
+	/**
+	 * Method to execute a parameterized query and return the results as
+	 * a list of records. Each record in turn is a list of attribute values
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the query result as a list of records
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException { 
+		return this._db.executeQueryAndReturnResult (query, params);
+	}//end executeQueryAndReturnResult
+	
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and returns the number of results
+	 * 
+	 * @param query the input query string
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQuery (String query) throws SQLException {
+		return this._db.executeQuery (query);
+	}
+
+	/**
+	 * Method to execute a parameterized query and return the number of
+	 * results
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQuery (String query, Object... params) throws SQLException {
+		return this._db.executeQuery (query, params);
+	}
+
+	/**
+	 * Method to open a server-side cursor over a query.  Rows are fetched
+	 * from the DBMS in batches of the configured fetch size, so memory use
+	 * stays constant no matter how many rows the query returns.  The cursor
+	 * holds a pooled connection until it is closed.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return an open cursor; close it with try-with-resources
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public QueryCursor openCursor (String query, Object... params) throws SQLException {
+		return this._db.openCursor (query, params);
+	}
+
+	/**
+	 * Method to stream a query's rows to a callback through a server-side
+	 * cursor.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param handler called once per row
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows handled
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long forEachRow (String query, RowHandler handler, Object... params) throws SQLException {
+		return this._db.forEachRow (query, handler, params);
+	}
+
+	/**
+	 * Method to stream a query's rows as a java.util.stream.Stream.  The
+	 * stream must be closed (try-with-resources) to release its connection.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return a stream over the rows
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public Stream<Row> streamQuery (String query, Object... params) throws SQLException {
+		return this._db.streamQuery (query, params);
+	}
+
+	/**
+	 * @param fetchSize rows fetched per round trip by cursors opened afterwards
+	 */
+	public void setFetchSize (int fetchSize) {
+		this._db.setFetchSize (fetchSize);
+	}
+	
+	/**
+	 * Method to close the connection pool if it is open.
+	 */
+	public void cleanup(){
+		if (this._db != null){
+			this._db.close ();
+		}//end if
+	}//end cleanup
+
+	/**
+	 * The main execution method
+	 * 
+	 * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
+	 */
+	public static void main (String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + DBproject.class.getName () +
+		            " <dbname> <port> <user> [<mode> <mode arguments>]\n" +
+		            "Modes:\n" +
+		            "\tload <table> <file.csv> [<table> <file.csv> ...]\n" +
+		            "\treplay <workload file> [threads] [ops/s, 0 = max] [repeat]\n" +
+		            "\tmigrate [<migrations directory>]\n" +
+		            "\tserve [port] [max sessions] [max requests in flight]\n" +
+		            "\texport <csv|tsv|json> <output file, - for stdout> <query> [<parameter> ...]\n" +
+		            "\tschedule <routes.csv>\n" +
+		            "\tpartitions");
+			return;
+		}//end if
+		
+		DBproject esql = null;
+		
+		try{
+			System.out.println("(1)");
+			
+			try {
+				Class.forName("org.postgresql.Driver");
+			}catch(Exception e){
+
+				System.out.println("Where is your PostgreSQL JDBC Driver? " + "Include in your library path!");
+				e.printStackTrace();
+				return;
+			}
+			
+			System.out.println("(2)");
+			String dbname = args[0];
+			String dbport = args[1];
+			String user = args[2];
+			
+			esql = new DBproject (dbname, dbport, user, "");
+			
+			if (args.length > 3) {
+				// runs a non-interactive mode instead of the menu
+				runMode (esql, Arrays.copyOfRange (args, 3, args.length));
+				return;
+			}//end if
+			
+			esql.startWaitlistWorker ();
+			esql.startPartitionMaintainer ();
+			boolean keepon = true;
+			while(keepon){
+				System.out.println("MAIN MENU");
+				System.out.println("---------");
+				System.out.println("1. Add Plane");
+				System.out.println("2. Add Pilot");
+				System.out.println("3. Add Flight");
+				System.out.println("4. Add Technician");
+				System.out.println("5. Book Flight");
+				System.out.println("6. List number of available seats for a given flight.");
+				System.out.println("7. List total number of repairs per plane in descending order");
+				System.out.println("8. List total number of repairs per year in ascending order");
+				System.out.println("9. Find total number of passengers with a given status");
+				System.out.println("10. Cancel Reservation");
+				System.out.println("11. < EXIT");
+				
+				switch (readChoice()){
+					case 1: AddPlane(esql); break;
+					case 2: AddPilot(esql); break;
+					case 3: AddFlight(esql); break;
+					case 4: AddTechnician(esql); break;
+					case 5: BookFlight(esql); break;
+					case 6: ListNumberOfAvailableSeats(esql); break;
+					case 7: ListsTotalNumberOfRepairsPerPlane(esql); break;
+					case 8: ListTotalNumberOfRepairsPerYear(esql); break;
+					case 9: FindPassengersCountWithStatus(esql); break;
+					case 10: CancelReservation(esql); break;
+					case 11: keepon = false; break;
+				}
+			}
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}finally{
+			try{
+				if(esql != null) {
+					// -Ddbproject.stats prints the pool's and the background services' counters on the way out
+					if (Boolean.getBoolean("dbproject.stats")) {
+						System.out.println(esql.getPool ());
+						if (esql.getDatabase ().getSeatCache () != null) {
+							System.out.println(esql.getDatabase ().getSeatCache ());
+						}
+						if (esql.getDatabase ().getSlowQueryLog () != null) {
+							System.out.println(esql.getDatabase ().getSlowQueryLog ());
+						}
+						if (esql.getDatabase ().getWaitlistWorker () != null) {
+							System.out.println(esql.getDatabase ().getWaitlistWorker ());
+						}
+						if (esql.getDatabase ().getPartitionMaintainer () != null) {
+							System.out.println(esql.getDatabase ().getPartitionMaintainer ());
+						}
+						if (esql.getDatabase ().getReplicaRouter () != null) {
+							System.out.println(esql.getDatabase ().getReplicaRouter ());
+						}
+						if (esql.getDatabase ().getAnalytics () != null) {
+							System.out.println(esql.getDatabase ().getAnalytics ());
+						}
+						if (esql.getDatabase ().getRouteGraph () != null) {
+							System.out.println(esql.getDatabase ().getRouteGraph ());
+						}
+						for (KeyFilter filter : esql.getOperations ().getKeyFilters ()) {
+							System.out.println(filter);
+						}
+					}
+					System.out.print("Disconnecting from database...");
+					esql.cleanup ();
+					System.out.println("Done\n\nBye !");
+				}//end if				
+			}catch(Exception e){
+				// ignored.
+			}
+		}
+	}
+
+	/*
+	 * Dispatches the non-interactive modes selected on the command line.
+	 */
+	private static void runMode (DBproject esql, String[] mode) throws Exception {
+		switch (mode[0]){
+			case "load": BulkLoad(esql, mode); break;
+			case "replay": ReplayWorkload(esql, mode); break;
+			case "migrate": Migrate(esql, mode); break;
+			case "serve": Serve(esql, mode); break;
+			case "export": Export(esql, mode); break;
+			case "schedule": ImportSchedule(esql, mode); break;
+			case "partitions": MaintainPartitions(esql, mode); break;
+			default: System.err.println("Unknown mode: " + mode[0]);
+		}
+	}
+
+	public static int readChoice() {
+		int input;
+		// returns only if a correct value is given.
+		do {
+			System.out.print("Please make your choice: ");
+			try { // read the integer, parse it and break.
+				input = Integer.parseInt(in.readLine());
+				break;
+			}catch (Exception e) {
+				System.out.println("Your input is invalid!");
+				continue;
+			}//end try
+		}while (true);
+		return input;
+	}//end readChoice
+
+	/**
+	 * Loads CSV files into Plane, Pilot, Technician, Customer or Flight through
+	 * COPY, applying the same validation as the menu.
+	 * 
+	 * @param args "load" followed by pairs of table name and CSV file
+	 */
+	public static void BulkLoad(DBproject esql, String[] args) throws Exception {
+		if (args.length < 3 || args.length % 2 != 1) {
+			System.err.println("Usage: load <table> <file.csv> [<table> <file.csv> ...]");
+			return;
+		}
+		BulkLoader loader = new BulkLoader(esql.getPool(), !Boolean.getBoolean("dbproject.load.noCopy"),
+				Integer.getInteger("dbproject.load.batchSize", 1000), Integer.getInteger("dbproject.load.keyBlockSize", 1000));
+		for (int i = 1; i < args.length; i += 2) {
+			BulkLoader.Result result = loader.load(BulkLoader.Table.of(args[i]), Paths.get(args[i + 1]));
+			System.out.println(result);
+		}
+	}
+
+	/**
+	 * Replays a workload file against the menu operations from several
+	 * threads and reports per-operation throughput and latency.  Size the
+	 * pool with -Ddbproject.pool.max to at least the number of threads.
+	 * 
+	 * @param args "replay" followed by the workload file and optional
+	 *        thread count, target rate and repeat count
+	 */
+	public static void ReplayWorkload(DBproject esql, String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: replay <workload file> [threads] [ops/s, 0 = max] [repeat]");
+			return;
+		}
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+		double rate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+		int repeat = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+		WorkloadDriver.load(esql.getOperations(), Paths.get(args[1])).run(threads, rate, repeat);
+	}
+
+	/**
+	 * Applies the versioned index and schema migrations that have not been
+	 * applied to this database yet.
+	 * 
+	 * @param args "migrate" and optionally the migrations directory; the
+	 *        scripts packaged with the program are used when it is omitted
+	 */
+	public static void Migrate(DBproject esql, String[] args) throws Exception {
+		List<Migrations.Migration> migrations = args.length > 1
+				? Migrations.fromDirectory(Paths.get(args[1])) : Migrations.fromClasspath();
+		List<Migrations.Migration> applied = new Migrations(esql.getPool()).apply(migrations);
+		for (Migrations.Migration migration : applied) {
+			System.out.println("Applied " + migration);
+		}
+		System.out.println(applied.size() + " of " + migrations.size() + " migration(s) applied");
+	}
+
+	/**
+	 * Generates the flights of the recurring routes in a schedule file (see
+	 * airline.ScheduleImporter) and inserts them with their FlightInfo in
+	 * one transaction.
+	 * 
+	 * @param args "schedule" followed by the schedule file
+	 */
+	public static void ImportSchedule(DBproject esql, String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: schedule <routes.csv>");
+			return;
+		}
+		ScheduleImporter importer = new ScheduleImporter(esql.getPool(), Integer.getInteger("dbproject.load.batchSize", 1000));
+		System.out.println(importer.importFile(Paths.get(args[1])));
+	}
+
+	/**
+	 * Runs the partition maintenance from migration V007 once (see
+	 * airline.PartitionMaintainer) and lists the partitions it created or
+	 * detached.  Retention and block size come from the same
+	 * -Ddbproject.partitions.* properties as the scheduled runs.
+	 * 
+	 * @param args "partitions"
+	 */
+	public static void MaintainPartitions(DBproject esql, String[] args) throws Exception {
+		if (!new Migrations(esql.getPool()).isApplied(7)) {
+			System.err.println("Flight and Reservation are not partitioned; run migrate first");
+			return;
+		}
+		PartitionMaintainer partitions = newPartitionMaintainer(esql.getPool());
+		esql.getDatabase().setPartitionMaintainer(partitions);
+		for (String action : partitions.maintain()) {
+			System.out.println(action);
+		}
+	}
+
+	/**
+	 * Streams the result of a query to a file or standard out as CSV, TSV or
+	 * JSON (see airline.QueryExporter), e.g. a flight manifest:
+	 * <pre>
+	 * export csv manifest.csv "SELECT C.* FROM Customer C, Reservation R WHERE R.cid = C.id AND R.fid = ?" 42
+	 * </pre>
+	 * Parameters that look like integers are bound as integers, the rest as
+	 * strings.  The rows and bytes per second go to standard error.
+	 * 
+	 * @param args "export", the format, the output file and the query,
+	 *        followed by its parameters
+	 */
+	public static void Export(DBproject esql, String[] args) throws Exception {
+		if (args.length < 4) {
+			System.err.println("Usage: export <csv|tsv|json> <output file, - for stdout> <query> [<parameter> ...]");
+			return;
+		}
+		QueryExporter.Format format = QueryExporter.Format.valueOf(args[1].toUpperCase());
+		Object[] params = new Object[args.length - 4];
+		for (int i = 0; i < params.length; ++i) {
+			String p = args[i + 4];
+			params[i] = p.matches("-?\\d{1,9}") ? (Object) Integer.valueOf(p) : p;
+		}
+		QueryExporter.Result result;
+		if (args[2].equals("-")) {
+			System.out.flush();
+			// not closed; that would close standard out
+			FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+			result = esql.getDatabase().executeQueryAndExport(format, out, args[3], params);
+		}else{
+			try (FileChannel out = FileChannel.open(Paths.get(args[2]), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+				result = esql.getDatabase().executeQueryAndExport(format, out, args[3], params);
+			}
+		}
+		System.err.println(result);
+	}
+
+	/**
+	 * Serves the menu operations to concurrent clients over TCP on the
+	 * loopback interface until the process is stopped (see
+	 * airline.ServiceServer for the protocol).  Size the connection pool with
+	 * -Ddbproject.pool.max; requests beyond the in-flight limit wait up to
+	 * -Ddbproject.serve.queueTimeoutMillis before they are refused.
+	 * 
+	 * @param args "serve" and optionally the port (default 5480), the
+	 *        session limit (default 1000) and the in-flight limit (default
+	 *        the pool size)
+	 */
+	public static void Serve(DBproject esql, String[] args) throws Exception {
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 5480;
+		int maxSessions = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		int maxInFlight = args.length > 3 ? Integer.parseInt(args[3]) : esql.getPool().getMaxSize();
+		esql.startWaitlistWorker();
+		esql.startPartitionMaintainer();
+		final ServiceServer server = new ServiceServer(esql.getOperations(), port, maxSessions, maxInFlight,
+				Long.getLong("dbproject.serve.queueTimeoutMillis", 5000L));
+		final CountDownLatch stopped = new CountDownLatch(1);
+		final Thread mainThread = Thread.currentThread();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try{
+				System.out.println(server.shutdown(10000L) ? "Drained all requests"
+						: "Requests still running after 10s; closed anyway");
+				stopped.countDown();
+				// lets main print the stats and close the pool before the JVM exits
+				mainThread.join(15000L);
+			}catch(InterruptedException e){
+				// exiting anyway.
+			}
+		}, "service-shutdown"));
+		System.out.println("Serving on 127.0.0.1:" + server.getPort() + " with "
+				+ (server.isVirtualThreads() ? "virtual" : "platform") + " threads; press Ctrl-C to stop");
+		stopped.await();
+		System.out.println(server);
+	}
+
+	public static void AddPlane(DBproject esql) {//1
+		try{	
+			System.out.print("\t Enter make: "); 
+			String make_in;
+			do{
+				try{
+					make_in = in.readLine();
+					if(!Validation.isValidMake(make_in)){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception e){
+					System.out.println("Your input is invalid!");
+					continue;
+				}
+			}while(true);
+			
+			System.out.print("\t Enter model: ");
+			String model_in;
+			do{
+				try{
+					model_in = in.readLine(); 
+					if(!Validation.isValidModel(model_in)){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception e){
+					System.out.println("Your input is invalid!");
+					continue;
+				}
+			}while(true);
+			
+			System.out.print("\t Enter age_year: ");
+			int age_in;
+			do{
+				try{
+					String age_year = in.readLine(); 
+					age_in = Integer.parseInt(age_year);
+					if(!Validation.isValidAge(age_in)){
+						throw new RuntimeException();
+				}
+				break;
+				}catch (Exception e) {
+					System.out.println("Your input is invalid! Try again");
+					continue;
+				}//end try
+			}while(true);
+			
+			System.out.print("\t Enter seats: ");
+			int seats_in;
+			do{
+				try{
+					String seats = in.readLine(); 
+					seats_in = Integer.parseInt(seats);
+					if(!Validation.isValidSeats(seats_in)) {
+						throw new RuntimeException();
+					}
+					break;
+				}catch (Exception e) {
+					System.out.println("Your input is invalid!");
+					continue;
+				}//end try
+			}while(true);
+			
+			int id = esql.getOperations().addPlane(make_in, model_in, age_in, seats_in);
+			System.out.println("Plane added with id " + id);
+			
+		}catch(Exception e){
+			System.err.println(e.getMessage());
+		}
+		
+	}
+		
+			
+	public static void AddPilot(DBproject esql) {//2
+		try{
+			System.out.print("\t Enter Pilot fullname: "); 
+			String pname;
+			do{
+				try{
+					pname = in.readLine();
+					if(!Validation.isValidFullName(pname)){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception e){
+					System.out.println("Your input is invalid!");
+					continue;
+				}
+			}while(true);
+			
+			System.out.print("\t Enter nationality: ");
+			String pnationality; 
+			do{
+				try{
+					pnationality = in.readLine();
+					if(!Validation.isValidNationality(pnationality)){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception e){
+					System.out.println("Your input is invalid! Please enter valid input: ");
+					continue;
+				}
+			}while(true);
+			
+			int id = esql.getOperations().addPilot(pname, pnationality);
+			System.out.println("Pilot added with id " + id);
+			
+		}catch(Exception e){
+			System.err.println(e.getMessage());
+		}
+	}
+
+	public static void AddFlight(DBproject esql) {//3
+		// Given a pilot, plane and flight, adds a flight in the DB
+		int num_s = 0;
+		String comma = ", ";
+			String apos = "'";
+			String cost, num_sold, num_stops, departure, arrival, to, from, plane_id, pilot_id;
+			//try{
+			
+			
+			System.out.println("You've chosen to add new flight to DB!");
+			
+	//String query1 = "INSERT INTO Flight(cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_airport, departure_airport) Values (";
+			
+			do{
+				try{
+					System.out.print("\t Enter cost: ");
+					cost = in.readLine();
+					if(!Validation.isValidCost(Integer.parseInt(cost))){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception e){
+					System.out.println("Your input is invalid! Please enter valid input");
+					continue;
+				}
+			}while(true);
+				
+				
+			do{
+				try{
+			
+					System.out.print("\t Enter number sold: ");
+			
+					num_sold = in.readLine(); 
+					//num_s = Integer.parseInt(num_sold);
+					//query1 += num_sold;
+					//query1 += comma;
+					
+					if(!Validation.isValidNumSold(Integer.parseInt(num_sold))){
+						throw new RuntimeException();
+					}
+						break;
+				}catch(Exception a){
+					System.out.println("Your input is invalid! Please enter valid input");
+					continue;
+				}
+			}while(true);
+			
+			
+			do{
+				try{
+					
+					System.out.print("\t Enter number of stops: ");
+					num_stops = in.readLine(); 
+					//query1 += num_stops;
+					//query1 += comma;
+					if(!Validation.isValidNumStops(Integer.parseInt(num_stops))){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception b){
+					System.out.println("Your input is invalid! Please enter valid input");
+					continue;
+				}
+			}while(true);
+					
+					
+					//DEPARTURE
+			
+				
+			do{
+				
+				try{
+					String pattern = "yyyy-MM-dd";
+					SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
+					System.out.print("\t Enter departure date(yyyy-mm-dd): ");
+					simpleDateFormat.setLenient(false);
+					departure = in.readLine();
+					Date date = simpleDateFormat.parse(departure);
+			
+					//query1 += apos;
+					//query1 += departure;
+					//query1 += apos;
+					//query1 += comma;
+					break;
+				}catch(Exception c){
+					System.out.println("Invalid Date Format, please enter in format (yyyy-mm-dd)");
+					continue;
+				}
+			}while(true);
+			 
+			//ARRIVAL DATE
+			do{
+		
+				try{
+					String pattern = "yyyy-MM-dd";
+					SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
+					
+					System.out.print("\t Enter arrival date(yyyy-mm-dd): ");
+					
+					/*System.out.print("\t Enter arrival year(yyyy): ");
+					String year = in.readLine();
+					System.out.print("\t Enter arrival month(mm): ");
+					String month = in.readLine();
+					System.out.print("\t Enter arrival day(dd): ");
+					String year = in.readLine();
+					*/
+					simpleDateFormat.setLenient(false);
+					arrival = in.readLine();
+					Date date2 = simpleDateFormat.parse(arrival);
+					//query1 += apos;
+					//query1 += arrival;
+					//query1 += apos;
+					//query1 += comma;
+					break;
+					}catch(Exception c){
+						System.out.println("Invalid Date Format: ");
+						continue;
+					}
+				}while(true);	
+				
+				//ARRIVAL DESTINATION
+				
+			do{
+				try{
+					
+			
+					System.out.print("\t Enter arrival airport: ");
+					to = in.readLine();
+					//query1 += apos;
+					//query1 += to;
+					//query1 += apos;
+					//query1 += comma;
+					if(!Validation.isValidAirport(to)){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception d){
+					System.out.println("Invalid airport code, enter a 5-digit numeric code");
+					continue;
+				}
+			}while(true);
+				
+			
+			//String from = "";
+			//while(from.length() != 5){
+			
+			do{
+				try{
+					
+					System.out.print("\t Enter departure airport: ");
+					from = in.readLine();
+					//query1 += apos;
+					//query1 += from;
+					//query1 += apos;
+					//query1 += ");";
+					if(!Validation.isValidAirport(from)){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception d){
+					System.out.println("Invalid airport code, enter a 5-digit numeric code");
+					continue;
+				}
+			}while(true);
+		
+			//System.out.println("test 1");
+			//System.out.println(query1);
+			//int rowCount1 = esql.executeQuery(query1); 
+			//System.out.println("total row(s): " + rowCount1);
+			//}catch(Exception d){
+			//System.err.println(d.getMessage());
+			//}	
+
+			//String query = "INSERT INTO FlightInfo(pilot_id, plane_id) Values ( "; //updated to have trigger for both flight_id and fiid
+			
+			
+			//System.out.print("\t Enter flight id: ");
+			//query += apos;
+			//String flight_id = in.readLine(); 
+			//query += flight_id;
+			//query += apos;
+			//query += comma;
+			
+			do{
+				try{
+
+					System.out.print("\t Enter pilot id: ");
+					//query += apos;
+					pilot_id = in.readLine(); 
+				
+					if(!esql.getOperations().pilotExists(Integer.parseInt(pilot_id))){	
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception f){
+					System.out.println("This Pilot does not exist, enter a valid pilot id");
+					continue;
+				}
+			}while(true);
+			
+			//query += pilot_id;
+			//query += apos;
+			//query += comma;
+			
+			do{
+				try{
+					System.out.print("\t Enter plane_id: ");
+			
+					//query += apos;
+					plane_id = in.readLine(); 
+			
+					if(!esql.getOperations().planeExists(Integer.parseInt(plane_id))){	
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception g){
+					System.out.println("This Pilot does not exist, enter a valid pilot id");
+					continue;
+				}
+			}while(true);
+			//int test2 = esql.executeQuery(testQuery);
+			/*if(esql.executeQuery(testQuery2) < 1){
+				System.out.println("This Plane does not exist, deleting flight created using non-existent plane.");
+				String delete = "DELETE FROM Flight WHERE fnum IN (SELECT MAX(fnum) FROM Flight limit 1);";
+				int del = esql.executeQuery(delete);
+				return;
+			}
+			*/
+			//query += plane_id;
+			//query += apos;
+
+			
+			
+			//query += ");";
+			/*
+			
+			
+			
+				
+				String delete = "DELETE FROM Flight WHERE fnum IN (SELECT MAX(fnum) FROM Flight limit 1);";
+				int del = esql.executeQuery(delete);
+				return;
+			}*/
+			
+			do{
+				try{
+					num_s = Integer.parseInt(num_sold);
+					System.out.println("Checking to see if seats sold doesn't exceed seats on plane");
+					
+					int t = esql.getOperations().planeSeats(Integer.parseInt(plane_id));
+					if(t < num_s){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception h){
+					System.out.println("Number of seats sold exceeds seats available, enter new valid number of seats sold: ");
+				}
+				
+				do{
+					try{
+					
+						System.out.print("\t Enter number of seats sold: ");
+						num_sold = in.readLine(); 
+						//query1 += num_stops;
+						//query1 += comma;
+						if(!Validation.isValidNumSold(Integer.parseInt(num_sold))){
+							throw new RuntimeException();
+						}	
+						break;					
+					}catch(Exception i){
+						System.out.println("Your input is invalid! Please enter valid input");
+						continue;
+					}
+				}while(true);
+			
+			}while(true);			
+					
+		do{
+					
+			try{
+				String check = "Cost: " + cost + "\nSeats sold: " + num_sold + "\nDeparture date: " + departure + "\nArrival date: " + arrival + "\nArrival airport: "  + to + "\nDeparture airport: " + from + "\nPilot ID: " + pilot_id + "\nPlane ID: "  + plane_id;  
+				
+				System.out.println("Would you like to add this flight?");
+				System.out.println(check);
+				System.out.println("Enter 'yes' or 'no' ");
+				String confirm = in.readLine();
+				
+				if(!confirm.equals("no") && !confirm.equals("yes") ){
+					throw new RuntimeException();
+				}else if(confirm.equals("no")){
+					return;
+				}else{
+					System.out.println("Answer confirmed: Attempting to add flight to DB...");
+					break;
+				}
+			}catch(Exception l){
+				System.out.println("Your input is invalid! Please enter 'yes' or 'no': ");
+				continue;
+			}
+		}while(true);
+				
+				//now getting information to create new flight
+				try{
+				int fnum = esql.getOperations().addFlight(Integer.parseInt(cost), Integer.parseInt(num_sold), Integer.parseInt(num_stops),
+						java.sql.Date.valueOf(departure), java.sql.Date.valueOf(arrival), to, from,
+						Integer.parseInt(pilot_id), Integer.parseInt(plane_id));
+				System.out.println("Flight added with number " + fnum);
+				}catch(Exception k){
+					System.err.println(k.getMessage());
+				}
+		//}while(true);
+		
+	}
+
+
+	public static void AddTechnician(DBproject esql) {//4
+		try{
+			System.out.print("\t Enter Technician full name: "); 
+			String tname;
+			do{
+				try{
+					tname = in.readLine();
+					if(!Validation.isValidFullName(tname)){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception e){
+					System.out.println("Your input is invalid! Try again: ");
+					continue;
+				}
+			}while(true);
+			
+			int id = esql.getOperations().addTechnician(tname);
+			System.out.println("Technician added with id " + id);
+			
+		}catch(Exception e){
+			System.err.println(e.getMessage());
+		}
+	}
+
+	public static void BookFlight(DBproject esql) {//5
+		// Given a customer and a flight that he/she wants to book, add a reservation to the DB
+		try{
+			//int flightID;
+			String flight_id = "";
+			String cust_id = "";
+			int fnum = 0;
+			int temp = 0; 
+			
+			do{ 
+			
+				try{
+					System.out.print("Enter Customer ID: ");
+					cust_id = in.readLine();
+					
+					if(!esql.getOperations().customerExists(Integer.parseInt(cust_id))){
+						System.out.println("This id is not in our database, would you like to sign up as a new guest? Enter 'Y' or 'N': ");
+						String newGuest = in.readLine();
+						if(!newGuest.equals("Y") && !newGuest.equals("N")){
+								System.out.println("Invalid answer. Enter 'Y' or 'N': ");
+								return;
+						}else if(newGuest.equals("Y")){
+							String fname, lname, gtype, dob, address, phone, zipcode;
+							
+						do{
+							try{
+
+							System.out.println("\tEnter first name: ");
+							fname = in.readLine();
+							if(!Validation.isValidFirstName(fname)){
+								throw new RuntimeException();
+							}
+							break;
+							}catch(Exception e){
+								System.out.println("Invalid entry");
+								continue;
+							}
+							
+						}while(true);
+						
+						
+						do{
+							try{
+
+							System.out.println("\tEnter last name: ");
+							lname = in.readLine();
+							if(!Validation.isValidLastName(lname)){
+								throw new RuntimeException();
+							}
+							break;
+							}catch(Exception e){
+								System.out.println("Invalid entry");
+								continue;
+							}
+						}while(true);
+						
+								
+						do{
+							try{
+
+							System.out.println("\tGender: ");
+							gtype = in.readLine(); 
+							if(!Validation.isValidGender(gtype)){
+								throw new RuntimeException();
+							}
+							break;
+							}catch(Exception e){
+								System.out.println("Invalid entry");
+								continue;
+							}
+						}while(true);
+						
+						
+								
+						do{
+							try{
+
+							System.out.println("\tDOB(yyyy-MM-dd: ");
+							dob = in.readLine();
+							String pattern = "yyyy-MM-dd";
+							SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
+							simpleDateFormat.setLenient(false);
+							Date dob1 = simpleDateFormat.parse(dob);
+							
+							break;
+							}catch(Exception c){
+								System.out.println("Invalid Date Format: ");
+								continue;
+							}
+						}while(true);	
+						
+						
+							
+						do{
+							try{
+
+							System.out.println("\tEnter address: ");
+							address = in.readLine();
+							if(!Validation.isValidAddress(address)){
+								throw new RuntimeException();
+							}
+							break;
+							}catch(Exception e){
+								System.out.println("Invalid entry");
+								continue;
+							}
+						}while(true);
+							
+						do{
+							try{
+
+							System.out.println("\tEnter phone ##########: ");
+							phone = in.readLine();
+							if(!Validation.isValidPhone(phone)){
+								throw new RuntimeException();
+							}
+							break;
+							}catch(Exception e){
+								System.out.println("Invalid entry");
+								continue;
+							}
+						}while(true);
+						
+							
+						do{
+							try{
+
+							System.out.println("\tEnter zipcode: ");
+							zipcode = in.readLine();
+							if(!Validation.isValidZipcode(zipcode)){
+								throw new RuntimeException();
+							}
+							break;
+							}catch(Exception e){
+								System.out.println("Invalid entry");
+								continue;
+							}
+						}while(true);
+						
+						System.out.println("Attempting to create new customer...");
+						cust_id = String.valueOf(esql.getOperations().addCustomer(fname, lname, gtype, java.sql.Date.valueOf(dob), address, phone, zipcode));
+						break;
+						}else{
+							return;
+						}
+									
+								
+					}
+					break;
+					
+					}catch(Exception e){
+						System.out.println("This customer does not exist, please enter valid customer ID");
+						//System.err.println(e.getMessage());
+			
+					}
+				}while(true);
+		
+			
+			do{			
+
+				try{
+					System.out.print("Enter Flight number: ");
+					flight_id = in.readLine();
+					fnum = Integer.parseInt(flight_id);
+					temp = esql.getOperations().flightCost(fnum);
+					String out = "Cost of flight " + flight_id + ": $";
+					System.out.print(out);
+					System.out.println(temp);
+					
+					if(temp == 0){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception e){
+					System.out.println("Your input is invalid! Try again");
+					continue;
+				}
+			}while(true);
+
+			
+			
+			
+				
+			int avail_seats = esql.getOperations().availableSeats(fnum);
+			//String out = "Flight " + flight_id + " has ";
+			//System.out.print(out);
+			System.out.print(avail_seats);
+			System.out.println(" seats remaining");
+			
+			
+			if(avail_seats > 0){
+				System.out.println("Flight has available seats. Reserve (Y or N)?");
+				String rstatus = "";
+				rstatus = in.readLine();
+				if(!rstatus.equals("Y")){
+					return;
+				}
+			}
+			
+			// the seat check, num_sold increment and reservation (or waitlist entry) happen in one transaction
+			BookingEngine.Booking booking = esql.getOperations().bookFlight(Integer.parseInt(cust_id), fnum);
+			if(booking.isWaitlisted()){
+				System.out.println("The flight you are trying to book is full, you have been added to the waitlist");
+			}
+			System.out.println("Booked " + booking);
+		}catch(Exception e){
+			System.err.println(e.getMessage());
+		}
+			
+	}
+	
+
+	
+
+	public static void ListNumberOfAvailableSeats(DBproject esql) {//6
+		// For flight number and date, find the number of availalbe seats (i.e. total plane capacity minus booked seats )
+		
+            String comma = ",";
+            String apos = "'";
+            String f_num;
+		do{
+            try{
+				System.out.print("Enter flight number: ");
+            	f_num = in.readLine();
+            	
+					if(!esql.getOperations().flightExists(Integer.parseInt(f_num))){	
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception e){
+					System.out.println("This flight does not exist, enter valid flight number");
+					continue;
+				}
+				
+			}while(true);
+			
+            try{
+			
+			//System.out.println("\t Number of seats available: ");
+			esql.executeReplicaOperationAndPrintResult("seats", Operations.AVAILABLE_SEATS, Integer.parseInt(f_num));
+			//int rowCount = esql.executeQuery(query);
+			
+			//System.out.println("Available seats: ");
+			
+			
+		}catch(Exception e){
+			System.err.println(e.getMessage());
+		}
+	}
+
+	public static void ListsTotalNumberOfRepairsPerPlane(DBproject esql) {//7
+		// Count number of repairs per planes and list them in descending order
+		try{
+			if (esql.usesAnalytics()) {
+				printTotals("id", esql.getOperations().repairsPerPlane());
+				return;
+			}
+			int ans = esql.executeReplicaOperationAndPrintResult("repairs_per_plane", esql.getOperations().repairsPerPlaneQuery());
+
+		}catch(Exception e){
+			System.err.println(e.getMessage());
+		}
+	}
+
+	public static void ListTotalNumberOfRepairsPerYear(DBproject esql) {//8
+		// Count repairs per year and list them in ascending order
+		try{
+			if (esql.usesAnalytics()) {
+				printTotals("year", esql.getOperations().repairsPerYear());
+				return;
+			}
+			int ans = esql.executeReplicaOperationAndPrintResult("repairs_per_year", esql.getOperations().repairsPerYearQuery());
+		}catch(Exception e){
+			System.err.println(e.getMessage());
+		}
+	}
+	
+	/*
+	 * Prints a repair report from the analytics snapshot the way the query
+	 * would have printed it.
+	 */
+	private static void printTotals(String key, List<Repair.Total> totals) {
+		System.out.println(key + "\tcount\t");
+		for (Repair.Total total : totals) {
+			System.out.println(total.key() + "\t" + total.repairs() + "\t");
+		}
+	}
+	
+	public static void FindPassengersCountWithStatus(DBproject esql) {//9
+		// Find how many passengers there are with a status (i.e. W,C,R) and list that number.
+		String flight, answer;
+		do{
+			try{
+				System.out.print("\t What flight are you interested in: ");
+				flight = in.readLine();
+					if(!esql.getOperations().flightExists(Integer.parseInt(flight))){	
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception e){
+					System.out.println("This flight does not exist, please enter valid flight");
+					continue;
+				}
+			}while(true);
+			
+			do{
+				try{
+					
+					System.out.print("\t What status would you like to check? Press 'W' for waitlisted, 'C' for confirmed, and 'R' for Reserved: ");
+					//int answer = Integer.parseInt(in.readLine());
+					answer = in.readLine();
+					if(!answer.equals("W") && !answer.equals("C") && !answer.equals("R")){
+						throw new RuntimeException();
+					}
+					break;
+				}catch(Exception E){
+					System.out.println("\t Invalid input entered, please enter 'W' 'C' or 'R'!! ");
+					continue;
+				}
+			}while(true);
+			
+			try{
+				
+				System.out.println("\t Number of seats available: ");
+				int ans = esql.executeReplicaOperationAndPrintResult("status_count", Operations.PASSENGERS_WITH_STATUS, Integer.parseInt(flight), answer);
+				//int rowCount = esql.executeQuery(query);
+			//if(rowCount <= 0){
+				//System.out.println("Invalid flight number entered!!");
+			//}
+			//System.out.println(query);
+			
+			//esql.executeQueryAndPrintResult(query);
+			
+			
+				
+		}catch(Exception e){
+		System.err.println(e.getMessage());
+		}
+	}
+
+	public static void CancelReservation(DBproject esql) {//10
+		// Given a reservation number, cancels the reservation; a freed seat goes to the waitlist
+		int rnum;
+		do{
+			try{
+				System.out.print("\t Enter reservation number: ");
+				rnum = Integer.parseInt(in.readLine());
+				break;
+			}catch(Exception e){
+				System.out.println("Your input is invalid!");
+				continue;
+			}
+		}while(true);
+		
+		try{
+			char status = esql.getOperations().cancelReservation(rnum);
+			System.out.println("Reservation " + rnum + " (status " + status + ") cancelled");
+			if(status != 'W'){
+				System.out.println("Its seat goes to the first waitlisted passenger, if any");
+			}
+		}catch(Exception e){
+			System.err.println(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,695 @@
+package airline;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * An in-memory, column-oriented copy of Repairs, Flight and FlightInfo that
+ * answers the group-by reports without a round trip.
+ *
+ * Each table is held as parallel primitive arrays, one per column, so a
+ * report is a loop over a few int arrays. Dates are kept as epoch days and
+ * airports as codes into a dictionary, so a row of Repairs takes 9 bytes and
+ * a row of Flight 32; the year of each day in the range of repair dates is
+ * worked out once per refresh, into a table. A report splits its loop into chunks that run on the
+ * common fork-join pool once the table has enough rows to make that worth
+ * it, and adds up the per-chunk counts at the end.
+ *
+ * {@link #refresh()} reads what changed since the last refresh in one
+ * repeatable-read transaction, so the three tables are always from the
+ * same moment:
+ * <ul>
+ * <li>Repairs and FlightInfo rows with a key above the highest key loaded
+ * are appended. The table's row count and checksum, the sum of a hash of
+ * each row, are then compared with those of the rows loaded. A difference
+ * means rows committed late below that key, or rows were deleted or
+ * updated, such as a repair moved to another plane, and the table is
+ * loaded again in full.</li>
+ * <li>New flights are appended the same way. <code>num_sold</code> changes
+ * with every booking, so it is read again for every flight, with the hash
+ * of its other columns; flights that show up there but were missed are
+ * loaded by key, and a flight that is gone or whose hashes no longer add
+ * up causes a full reload.</li>
+ * <li>Plane is read in full; it is small, and the seat report needs each
+ * flight's smallest plane.</li>
+ * </ul>
+ * The checksums make every refresh read each table in full once, even when
+ * nothing changed. The reports see the data as of the last refresh. A refresh publishes a new
+ * set of columns at once, so a report never mixes two refreshes, and
+ * reports do not wait for a refresh to finish.
+ */
+public class AnalyticsSnapshot implements AutoCloseable {
+	static final String PLANES = "SELECT id, seats FROM Plane";
+	// hashes of the columns held, less num_sold, which is read again on every refresh
+	static final String REPAIR_HASH =
+		"hashtext(concat_ws(',', rid, repair_date, plane_id, repair_code))::bigint";
+	static final String FLIGHT_HASH =
+		"hashtext(concat_ws(',', fnum, cost, actual_departure_date, actual_arrival_date, departure_airport, arrival_airport))::bigint";
+	static final String FLIGHT_INFO_HASH = "hashtext(concat_ws(',', fiid, flight_id, plane_id))::bigint";
+	static final String REPAIRS_AFTER =
+		"SELECT rid, repair_date - DATE '1970-01-01', plane_id, repair_code, " + REPAIR_HASH + " FROM Repairs WHERE rid > ? ORDER BY rid";
+	static final String REPAIR_CHECKSUM = "SELECT count(*), coalesce(sum(" + REPAIR_HASH + "), 0) FROM Repairs";
+	static final String FLIGHTS_AFTER =
+		"SELECT fnum, cost, num_sold, actual_departure_date - DATE '1970-01-01', actual_arrival_date - DATE '1970-01-01', " +
+		"departure_airport::text, arrival_airport::text, " + FLIGHT_HASH + " FROM Flight WHERE fnum > ? ORDER BY fnum";
+	static final String FLIGHTS_BY_FNUM =
+		"SELECT fnum, cost, num_sold, actual_departure_date - DATE '1970-01-01', actual_arrival_date - DATE '1970-01-01', " +
+		"departure_airport::text, arrival_airport::text, " + FLIGHT_HASH + " FROM Flight WHERE fnum = ANY(?) ORDER BY fnum";
+	static final String SOLD = "SELECT fnum, num_sold, " + FLIGHT_HASH + " FROM Flight";
+	static final String FLIGHT_INFO_AFTER =
+		"SELECT fiid, flight_id, plane_id, " + FLIGHT_INFO_HASH + " FROM FlightInfo WHERE fiid > ? ORDER BY fiid";
+	static final String FLIGHT_INFO_CHECKSUM = "SELECT count(*), coalesce(sum(" + FLIGHT_INFO_HASH + "), 0) FROM FlightInfo";
+
+	// repair codes, dictionary-encoded by their position
+	private static final String[] REPAIR_CODES = { "MJ", "MN", "SV" };
+	// rows per chunk below which a report runs on the calling thread
+	private static final int MIN_CHUNK = 1 << 16;
+
+	/*
+	 * One published state of the snapshot. The append-only arrays may be
+	 * shared with later states, which only write past this state's counts.
+	 */
+	private static final class Columns {
+		final int repairs;
+		final int[] repairDay;
+		final int[] repairPlane;
+		final byte[] repairCode;
+		final int maxPlaneId;
+		final int minRepairDay;
+		final int maxRepairDay;
+		// year of each day from minRepairDay, less the first year
+		final int[] repairYearOfDay;
+
+		final int flights;
+		final int[] cost;
+		final int[] numSold;
+		final int[] seats;
+		final int[] departureDay;
+		final int[] arrivalDay;
+		final int[] departure;
+		final int[] arrival;
+		final String[] airports;
+
+		Columns(AnalyticsSnapshot s, int[] seats) {
+			this.repairs = s._repairs;
+			this.repairDay = s._repairDay;
+			this.repairPlane = s._repairPlane;
+			this.repairCode = s._repairCode;
+			this.maxPlaneId = s._maxPlaneId;
+			this.minRepairDay = s._minRepairDay;
+			this.maxRepairDay = s._maxRepairDay;
+			this.repairYearOfDay = new int[this.repairs == 0 ? 0 : this.maxRepairDay - this.minRepairDay + 1];
+			int firstYear = yearOfEpochDay(this.minRepairDay);
+			for (int d = 0; d < this.repairYearOfDay.length; ++d) {
+				this.repairYearOfDay[d] = yearOfEpochDay(this.minRepairDay + d) - firstYear;
+			}
+			this.flights = s._flights;
+			this.cost = s._cost;
+			this.numSold = s._numSold;
+			this.seats = seats;
+			this.departureDay = s._departureDay;
+			this.arrivalDay = s._arrivalDay;
+			this.departure = s._departure;
+			this.arrival = s._arrival;
+			this.airports = s._airportNames.toArray(new String[0]);
+		}
+	}
+
+	/**
+	 * Sums one chunk of rows, [from, to), into its own counters.
+	 */
+	private interface ChunkCounter {
+		long[] count(int from, int to);
+	}
+
+	private final ConnectionPool _pool;
+	private final int _parallelism;
+	private final int _fetchSize;
+	private volatile Columns _columns = null;
+	private ScheduledExecutorService _scheduler = null;
+
+	// the writer's state, guarded by refresh()
+	private int _repairs = 0;
+	private int[] _repairDay = new int[0];
+	private int[] _repairPlane = new int[0];
+	private byte[] _repairCode = new byte[0];
+	private int _maxRid = Integer.MIN_VALUE;
+	private int _maxPlaneId = 0;
+	private int _minRepairDay = Integer.MAX_VALUE;
+	private int _maxRepairDay = Integer.MIN_VALUE;
+	private long _repairChecksum = 0;
+
+	private int _flights = 0;
+	private int[] _fnum = new int[0];
+	private int[] _cost = new int[0];
+	private int[] _numSold = new int[0];
+	private int[] _departureDay = new int[0];
+	private int[] _arrivalDay = new int[0];
+	private int[] _departure = new int[0];
+	private int[] _arrival = new int[0];
+	private int _maxFnum = Integer.MIN_VALUE;
+	private long _flightChecksum = 0;
+	// row of each flight number, -1 for none; flight numbers come from a sequence, so this stays dense
+	private int[] _rowOfFnum = new int[0];
+
+	private int _infos = 0;
+	private int[] _infoFlight = new int[0];
+	private int[] _infoPlane = new int[0];
+	private int _maxFiid = Integer.MIN_VALUE;
+	private long _infoChecksum = 0;
+
+	private int[] _planeSeats = new int[0];
+	private final Map<String, Integer> _airportCodes = new HashMap<String, Integer>();
+	private final List<String> _airportNames = new ArrayList<String>();
+
+	private final AtomicLong _refreshes = new AtomicLong();
+	private final AtomicLong _reloads = new AtomicLong();
+	private final AtomicLong _loadedRows = new AtomicLong();
+	private final AtomicLong _errors = new AtomicLong();
+	private volatile long _lastRefreshNanos = 0;
+	private volatile String _lastError = null;
+
+	public AnalyticsSnapshot(ConnectionPool pool) {
+		this(pool, Runtime.getRuntime().availableProcessors(), 10000);
+	}
+
+	/**
+	 * @param pool the pool a refresh borrows its connection from
+	 * @param parallelism the most chunks a report is split into
+	 * @param fetchSize rows fetched per round trip while loading
+	 */
+	public AnalyticsSnapshot(ConnectionPool pool, int parallelism, int fetchSize) {
+		if (parallelism < 1 || fetchSize < 1) {
+			throw new IllegalArgumentException("parallelism and fetch size must be positive");
+		}
+		this._pool = pool;
+		this._parallelism = parallelism;
+		this._fetchSize = fetchSize;
+	}
+
+	/**
+	 * Brings the snapshot up to date; the first call loads everything.
+	 *
+	 * @throws java.sql.SQLException when the refresh fails; the reports keep
+	 *         answering from the previous refresh
+	 */
+	public synchronized void refresh() throws SQLException {
+		long start = System.nanoTime();
+		PooledConnection conn = this._pool.borrow();
+		try{
+			Connection c = conn.connection();
+			c.setAutoCommit(false);
+			try (Statement stmt = c.createStatement()){
+				stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+			}
+			loadPlanes(c);
+			refreshRepairs(c);
+			refreshFlights(c);
+			refreshFlightInfo(c);
+			c.commit();
+			this._columns = new Columns(this, flightSeats());
+			this._refreshes.incrementAndGet();
+			this._lastRefreshNanos = System.nanoTime() - start;
+			this._lastError = null;
+		}catch(SQLException | RuntimeException e){
+			// the arrays may be half-updated; start over on the next refresh
+			this._errors.incrementAndGet();
+			this._lastError = e.getMessage();
+			reset();
+			throw e;
+		}finally{
+			this._pool.release(conn);
+		}
+	}
+
+	/**
+	 * Refreshes now and then every <code>periodMillis</code> on a daemon
+	 * thread. Failed refreshes are counted and retried on the next tick.
+	 */
+	public synchronized void start(long periodMillis) {
+		if (this._scheduler != null) {
+			return;
+		}
+		this._scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "analytics-refresh");
+			t.setDaemon(true);
+			return t;
+		});
+		this._scheduler.scheduleWithFixedDelay(() -> {
+			try{
+				refresh();
+			}catch(SQLException e){
+				// counted; the next refresh tries again.
+			}
+		}, 0L, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the scheduled refreshes.
+	 */
+	@Override
+	public void close() {
+		ScheduledExecutorService scheduler;
+		synchronized (this) {
+			scheduler = this._scheduler;
+			this._scheduler = null;
+		}
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return true once a refresh has succeeded
+	 */
+	public boolean isLoaded() {
+		return this._columns != null;
+	}
+
+	/**
+	 * Menu option 7 from the snapshot.
+	 *
+	 * @return the repair count of each plane id, most repaired first
+	 */
+	public List<Repair.Total> repairsPerPlane() {
+		final Columns cols = columns();
+		final int[] plane = cols.repairPlane;
+		long[] counts = count(cols.repairs, (from, to) -> {
+			long[] local = new long[cols.maxPlaneId + 1];
+			for (int i = from; i < to; ++i) {
+				++local[plane[i]];
+			}
+			return local;
+		});
+		return totals(counts, 0, false);
+	}
+
+	/**
+	 * Menu option 8 from the snapshot.
+	 *
+	 * @return the repair count of each year, fewest repairs first
+	 */
+	public List<Repair.Total> repairsPerYear() {
+		final Columns cols = columns();
+		if (cols.repairs == 0) {
+			return new ArrayList<Repair.Total>();
+		}
+		final int[] day = cols.repairDay;
+		final int[] yearOfDay = cols.repairYearOfDay;
+		final int minDay = cols.minRepairDay;
+		final int minYear = yearOfEpochDay(minDay);
+		final int years = yearOfEpochDay(cols.maxRepairDay) - minYear + 1;
+		long[] counts = count(cols.repairs, (from, to) -> {
+			long[] local = new long[years];
+			for (int i = from; i < to; ++i) {
+				++local[yearOfDay[day[i] - minDay]];
+			}
+			return local;
+		});
+		return totals(counts, minYear, true);
+	}
+
+	/**
+	 * The seat report from the snapshot: per departure airport, the flights
+	 * leaving between two dates, their seats and the seats sold. A flight's
+	 * seats are those of the smallest plane assigned to it; flights without
+	 * a plane are left out.
+	 *
+	 * @return one line per departure airport, by airport
+	 */
+	public List<Flight.SeatTotal> seatsByDepartureAirport(LocalDate from, LocalDate to) {
+		final Columns cols = columns();
+		final int first = (int) from.toEpochDay();
+		final int last = (int) to.toEpochDay();
+		final int airports = cols.airports.length;
+		final int[] day = cols.departureDay;
+		final int[] departure = cols.departure;
+		final int[] seats = cols.seats;
+		final int[] sold = cols.numSold;
+		// three counters per airport: flights, seats, seats sold
+		long[] counts = count(cols.flights, (start, end) -> {
+			long[] local = new long[3 * airports];
+			for (int i = start; i < end; ++i) {
+				int d = day[i];
+				if (d >= first && d <= last && seats[i] > 0) {
+					int a = 3 * departure[i];
+					++local[a];
+					local[a + 1] += seats[i];
+					local[a + 2] += sold[i];
+				}
+			}
+			return local;
+		});
+		List<Flight.SeatTotal> result = new ArrayList<Flight.SeatTotal>();
+		for (int a = 0; a < airports; ++a) {
+			if (counts[3 * a] > 0) {
+				result.add(new Flight.SeatTotal(cols.airports[a], counts[3 * a], counts[3 * a + 1], counts[3 * a + 2]));
+			}
+		}
+		result.sort((x, y) -> x.airport().compareTo(y.airport()));
+		return result;
+	}
+
+	private Columns columns() {
+		Columns cols = this._columns;
+		if (cols == null) {
+			throw new IllegalStateException("analytics snapshot not loaded yet");
+		}
+		return cols;
+	}
+
+	/*
+	 * Runs the counter over [0, rows) in chunks of at least MIN_CHUNK rows,
+	 * in parallel when there is more than one, and adds up their counters.
+	 */
+	private long[] count(int rows, ChunkCounter counter) {
+		int chunks = Math.max(1, Math.min(this._parallelism, rows / MIN_CHUNK));
+		if (chunks == 1) {
+			return counter.count(0, rows);
+		}
+		return IntStream.range(0, chunks).parallel()
+				.mapToObj(c -> counter.count((int) ((long) rows * c / chunks), (int) ((long) rows * (c + 1) / chunks)))
+				.reduce((x, y) -> {
+					for (int i = 0; i < x.length; ++i) {
+						x[i] += y[i];
+					}
+					return x;
+				}).get();
+	}
+
+	/*
+	 * The non-zero counters as report lines, sorted by count and then key.
+	 */
+	private static List<Repair.Total> totals(long[] counts, int firstKey, boolean ascending) {
+		List<Repair.Total> result = new ArrayList<Repair.Total>();
+		for (int i = 0; i < counts.length; ++i) {
+			if (counts[i] > 0) {
+				result.add(new Repair.Total(firstKey + i, counts[i]));
+			}
+		}
+		result.sort((x, y) -> {
+			int byCount = ascending ? Long.compare(x.repairs(), y.repairs()) : Long.compare(y.repairs(), x.repairs());
+			return byCount != 0 ? byCount : Integer.compare(x.key(), y.key());
+		});
+		return result;
+	}
+
+	/*
+	 * The proleptic Gregorian year of an epoch day, as LocalDate computes
+	 * it, in integer arithmetic (H. Hinnant's civil_from_days).
+	 */
+	static int yearOfEpochDay(int epochDay) {
+		int z = epochDay + 719468;
+		int era = (z >= 0 ? z : z - 146096) / 146097;
+		int doe = z - era * 146097;
+		int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		int mp = (5 * doy + 2) / 153;
+		return yoe + era * 400 + (mp >= 10 ? 1 : 0);
+	}
+
+	private void loadPlanes(Connection c) throws SQLException {
+		int[] seats = new int[0];
+		try (PreparedStatement ps = cursor(c, PLANES); ResultSet rs = ps.executeQuery()){
+			while (rs.next()) {
+				int id = rs.getInt(1);
+				if (id >= seats.length) {
+					seats = Arrays.copyOf(seats, Math.max(id + 1, 2 * seats.length));
+				}
+				seats[id] = rs.getInt(2);
+			}
+		}
+		this._planeSeats = seats;
+	}
+
+	private void refreshRepairs(Connection c) throws SQLException {
+		loadRepairs(c);
+		if (!matches(c, REPAIR_CHECKSUM, this._repairs, this._repairChecksum)) {
+			this._reloads.incrementAndGet();
+			this._repairs = 0;
+			this._repairDay = new int[0];
+			this._repairPlane = new int[0];
+			this._repairCode = new byte[0];
+			this._maxRid = Integer.MIN_VALUE;
+			this._maxPlaneId = 0;
+			this._minRepairDay = Integer.MAX_VALUE;
+			this._maxRepairDay = Integer.MIN_VALUE;
+			this._repairChecksum = 0;
+			loadRepairs(c);
+		}
+	}
+
+	private void loadRepairs(Connection c) throws SQLException {
+		try (PreparedStatement ps = cursor(c, REPAIRS_AFTER)){
+			ps.setInt(1, this._maxRid);
+			try (ResultSet rs = ps.executeQuery()){
+				while (rs.next()) {
+					int n = this._repairs;
+					if (n == this._repairDay.length) {
+						int capacity = Math.max(1024, 2 * n);
+						this._repairDay = Arrays.copyOf(this._repairDay, capacity);
+						this._repairPlane = Arrays.copyOf(this._repairPlane, capacity);
+						this._repairCode = Arrays.copyOf(this._repairCode, capacity);
+					}
+					int day = rs.getInt(2);
+					int plane = rs.getInt(3);
+					this._repairDay[n] = day;
+					this._repairPlane[n] = plane;
+					this._repairCode[n] = repairCode(rs.getString(4));
+					this._maxRid = rs.getInt(1);
+					this._maxPlaneId = Math.max(this._maxPlaneId, plane);
+					this._minRepairDay = Math.min(this._minRepairDay, day);
+					this._maxRepairDay = Math.max(this._maxRepairDay, day);
+					this._repairChecksum += rs.getLong(5);
+					this._repairs = n + 1;
+					this._loadedRows.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	private static byte repairCode(String code) {
+		for (int i = 0; code != null && i < REPAIR_CODES.length; ++i) {
+			if (REPAIR_CODES[i].equals(code)) {
+				return (byte) i;
+			}
+		}
+		return -1;
+	}
+
+	private void refreshFlights(Connection c) throws SQLException {
+		try (PreparedStatement ps = cursor(c, FLIGHTS_AFTER)){
+			ps.setInt(1, this._maxFnum);
+			loadFlights(ps);
+		}
+		// num_sold changes in place, so every flight's is read again into a new column
+		int known = this._flights;
+		int seen = 0;
+		long checksum = 0;
+		int[] sold = Arrays.copyOf(this._numSold, this._numSold.length);
+		List<Integer> late = new ArrayList<Integer>();
+		try (PreparedStatement ps = cursor(c, SOLD); ResultSet rs = ps.executeQuery()){
+			while (rs.next()) {
+				int fnum = rs.getInt(1);
+				int row = fnum >= 0 && fnum < this._rowOfFnum.length ? this._rowOfFnum[fnum] : -1;
+				if (row < 0) {
+					late.add(fnum);
+				}else{
+					sold[row] = rs.getInt(2);
+					checksum += rs.getLong(3);
+					++seen;
+				}
+			}
+		}
+		this._numSold = sold;
+		if (seen < known || checksum != this._flightChecksum) {
+			// flights were deleted, detached or updated
+			this._reloads.incrementAndGet();
+			this._flights = 0;
+			this._maxFnum = Integer.MIN_VALUE;
+			this._flightChecksum = 0;
+			this._rowOfFnum = new int[0];
+			this._fnum = this._cost = this._numSold = this._departureDay = this._arrivalDay = this._departure = this._arrival = new int[0];
+			try (PreparedStatement ps = cursor(c, FLIGHTS_AFTER)){
+				ps.setInt(1, Integer.MIN_VALUE);
+				loadFlights(ps);
+			}
+		}else if (!late.isEmpty()) {
+			int[] keys = new int[late.size()];
+			for (int i = 0; i < keys.length; ++i) {
+				keys[i] = late.get(i);
+			}
+			try (PreparedStatement ps = cursor(c, FLIGHTS_BY_FNUM)){
+				ps.setObject(1, keys);
+				loadFlights(ps);
+			}
+		}
+	}
+
+	private void loadFlights(PreparedStatement ps) throws SQLException {
+		try (ResultSet rs = ps.executeQuery()){
+			while (rs.next()) {
+				int n = this._flights;
+				if (n == this._fnum.length) {
+					int capacity = Math.max(1024, 2 * n);
+					this._fnum = Arrays.copyOf(this._fnum, capacity);
+					this._cost = Arrays.copyOf(this._cost, capacity);
+					this._numSold = Arrays.copyOf(this._numSold, capacity);
+					this._departureDay = Arrays.copyOf(this._departureDay, capacity);
+					this._arrivalDay = Arrays.copyOf(this._arrivalDay, capacity);
+					this._departure = Arrays.copyOf(this._departure, capacity);
+					this._arrival = Arrays.copyOf(this._arrival, capacity);
+				}
+				int fnum = rs.getInt(1);
+				this._fnum[n] = fnum;
+				this._cost[n] = rs.getInt(2);
+				this._numSold[n] = rs.getInt(3);
+				this._departureDay[n] = rs.getInt(4);
+				this._arrivalDay[n] = rs.getInt(5);
+				this._departure[n] = airportCode(rs.getString(6));
+				this._arrival[n] = airportCode(rs.getString(7));
+				this._flightChecksum += rs.getLong(8);
+				if (fnum >= 0) {
+					if (fnum >= this._rowOfFnum.length) {
+						int old = this._rowOfFnum.length;
+						this._rowOfFnum = Arrays.copyOf(this._rowOfFnum, Math.max(fnum + 1, 2 * old));
+						Arrays.fill(this._rowOfFnum, old, this._rowOfFnum.length, -1);
+					}
+					this._rowOfFnum[fnum] = n;
+				}
+				this._maxFnum = Math.max(this._maxFnum, fnum);
+				this._flights = n + 1;
+				this._loadedRows.incrementAndGet();
+			}
+		}
+	}
+
+	private int airportCode(String airport) {
+		Integer code = this._airportCodes.get(airport);
+		if (code == null) {
+			code = this._airportNames.size();
+			this._airportCodes.put(airport, code);
+			this._airportNames.add(airport);
+		}
+		return code;
+	}
+
+	private void refreshFlightInfo(Connection c) throws SQLException {
+		loadFlightInfo(c);
+		if (!matches(c, FLIGHT_INFO_CHECKSUM, this._infos, this._infoChecksum)) {
+			this._reloads.incrementAndGet();
+			this._infos = 0;
+			this._infoFlight = new int[0];
+			this._infoPlane = new int[0];
+			this._maxFiid = Integer.MIN_VALUE;
+			this._infoChecksum = 0;
+			loadFlightInfo(c);
+		}
+	}
+
+	private void loadFlightInfo(Connection c) throws SQLException {
+		try (PreparedStatement ps = cursor(c, FLIGHT_INFO_AFTER)){
+			ps.setInt(1, this._maxFiid);
+			try (ResultSet rs = ps.executeQuery()){
+				while (rs.next()) {
+					int n = this._infos;
+					if (n == this._infoFlight.length) {
+						int capacity = Math.max(1024, 2 * n);
+						this._infoFlight = Arrays.copyOf(this._infoFlight, capacity);
+						this._infoPlane = Arrays.copyOf(this._infoPlane, capacity);
+					}
+					this._maxFiid = rs.getInt(1);
+					this._infoFlight[n] = rs.getInt(2);
+					this._infoPlane[n] = rs.getInt(3);
+					this._infoChecksum += rs.getLong(4);
+					this._infos = n + 1;
+					this._loadedRows.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/*
+	 * Each flight's seats: the smallest plane among its FlightInfo rows, 0
+	 * when it has none. Recomputed into a new column on every refresh.
+	 */
+	private int[] flightSeats() {
+		int[] seats = new int[this._flights];
+		for (int i = 0; i < this._infos; ++i) {
+			int fnum = this._infoFlight[i];
+			int plane = this._infoPlane[i];
+			int row = fnum >= 0 && fnum < this._rowOfFnum.length ? this._rowOfFnum[fnum] : -1;
+			if (row < 0 || plane < 0 || plane >= this._planeSeats.length) {
+				continue;
+			}
+			int s = this._planeSeats[plane];
+			seats[row] = seats[row] == 0 ? s : Math.min(seats[row], s);
+		}
+		return seats;
+	}
+
+	private PreparedStatement cursor(Connection c, String sql) throws SQLException {
+		PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		ps.setFetchSize(this._fetchSize);
+		return ps;
+	}
+
+	/*
+	 * Whether the table's row count and checksum are those of the rows loaded.
+	 */
+	private static boolean matches(Connection c, String sql, int rows, long checksum) throws SQLException {
+		try (Statement stmt = c.createStatement(); ResultSet rs = stmt.executeQuery(sql)){
+			rs.next();
+			return rs.getLong(1) == rows && rs.getLong(2) == checksum;
+		}
+	}
+
+	private void reset() {
+		this._repairs = this._flights = this._infos = 0;
+		this._repairDay = this._repairPlane = new int[0];
+		this._repairCode = new byte[0];
+		this._fnum = this._cost = this._numSold = this._departureDay = this._arrivalDay = this._departure = this._arrival = new int[0];
+		this._infoFlight = this._infoPlane = new int[0];
+		this._rowOfFnum = new int[0];
+		this._maxRid = this._maxFnum = this._maxFiid = Integer.MIN_VALUE;
+		this._maxPlaneId = 0;
+		this._minRepairDay = Integer.MAX_VALUE;
+		this._maxRepairDay = Integer.MIN_VALUE;
+		this._repairChecksum = this._flightChecksum = this._infoChecksum = 0;
+	}
+
+	/** @return refreshes that succeeded */
+	public long getRefreshes() { return this._refreshes.get(); }
+
+	/** @return tables loaded again in full because an incremental refresh missed rows */
+	public long getReloads() { return this._reloads.get(); }
+
+	/** @return rows read from the database over all refreshes */
+	public long getLoadedRows() { return this._loadedRows.get(); }
+
+	/** @return refreshes that failed */
+	public long getErrors() { return this._errors.get(); }
+
+	@Override
+	public String toString() {
+		Columns cols = this._columns;
+		return String.format("analytics[repairs=%d flights=%d airports=%d refreshes=%d reloads=%d loadedRows=%d lastRefresh=%.3fms errors=%d%s]",
+				cols == null ? 0 : cols.repairs, cols == null ? 0 : cols.flights, cols == null ? 0 : cols.airports.length,
+				getRefreshes(), getReloads(), getLoadedRows(), this._lastRefreshNanos / 1e6, getErrors(),
+				this._lastError == null ? "" : " lastError=" + this._lastError);
+	}
+}
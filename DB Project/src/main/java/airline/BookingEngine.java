@@ -0,0 +1,238 @@
+package airline;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Books a seat on a flight in a single transaction.
+ *
+ * The seat check and the <code>num_sold</code> increment are one conditional
+ * UPDATE guarded by the plane's seat count, so the row lock Postgres takes on
+ * the Flight row serializes concurrent bookings of the same flight and
+ * <code>num_sold</code> can never exceed <code>seats</code>. When the guard
+ * fails the customer is put on the waitlist (status 'W') in the same
+ * transaction. While a {@link WaitlistWorker} promotes the waitlist (see
+ * {@link #setQueueBehindWaitlist}), a booking also joins the waitlist when
+ * other customers are already on it, so freed seats go to them in order;
+ * without a worker nobody would ever be promoted, so free seats are taken
+ * whatever the waitlist holds.
+ * Reservation numbers come from the <code>res_seq</code> trigger via
+ * <code>INSERT ... RETURNING</code>, so no MAX(rnum) scan is needed.
+ *
+ * By default the booking is a single call to the <code>book_flight</code>
+ * function from migrations V005 and V006, which runs the same statements
+ * server-side: one round trip instead of four or five, and no explicit
+ * transaction. When the function is not installed the engine falls back to
+ * running the statements itself.
+ *
+ * Serialization failures and deadlocks are retried with a short randomized
+ * backoff.
+ */
+public class BookingEngine {
+	static final String RESERVE_SEAT =
+		"UPDATE Flight F SET num_sold = F.num_sold + 1 WHERE F.fnum = ? AND F.num_sold < " +
+		"(SELECT MIN(P.seats) FROM FlightInfo FI, Plane P WHERE FI.flight_id = F.fnum AND FI.plane_id = P.id)";
+	static final String RESERVE_SEAT_BEHIND_WAITLIST =
+		RESERVE_SEAT + " AND NOT EXISTS (SELECT 1 FROM Reservation W WHERE W.fid = F.fnum AND W.status = 'W')";
+	static final String FLIGHT_EXISTS =
+		"SELECT 1 FROM Flight WHERE fnum = ?";
+	static final String INSERT_RESERVATION =
+		"INSERT INTO Reservation(cid, fid, status) VALUES(?, ?, ?) RETURNING rnum";
+	static final String BOOK_FLIGHT_CALL =
+		"{call book_flight(?, ?, ?, ?, ?)}";
+
+	private final ConnectionPool _pool;
+	private final int _maxRetries;
+	private volatile boolean _useFunction = true;
+	private volatile boolean _queueBehindWaitlist = false;
+
+	/**
+	 * The outcome of a booking.
+	 */
+	public static final class Booking {
+		private final int _rnum;
+		private final char _status;
+		private final int _attempts;
+
+		Booking(int rnum, char status, int attempts) {
+			this._rnum = rnum;
+			this._status = status;
+			this._attempts = attempts;
+		}
+
+		/** @return the reservation number assigned to the booking */
+		public int rnum() { return this._rnum; }
+
+		/** @return 'R' when a seat was reserved, 'W' when the customer was waitlisted */
+		public char status() { return this._status; }
+
+		/** @return how many transaction attempts the booking took */
+		public int attempts() { return this._attempts; }
+
+		public boolean isWaitlisted() { return this._status == 'W'; }
+
+		@Override
+		public String toString() {
+			return "reservation " + this._rnum + " (status " + this._status + ")";
+		}
+	}
+
+	public BookingEngine(ConnectionPool pool) {
+		this(pool, 5);
+	}
+
+	/**
+	 * @param pool the pool bookings borrow their connection from
+	 * @param maxRetries how many times a serialization failure is retried
+	 */
+	public BookingEngine(ConnectionPool pool, int maxRetries) {
+		this._pool = pool;
+		this._maxRetries = maxRetries;
+	}
+
+	/**
+	 * @param useFunction whether bookings call the <code>book_flight</code>
+	 *        function rather than running the statements from the client
+	 */
+	public void setUseFunction(boolean useFunction) {
+		this._useFunction = useFunction;
+	}
+
+	/**
+	 * @return whether bookings call the <code>book_flight</code> function
+	 */
+	public boolean isUsingFunction() {
+		return this._useFunction;
+	}
+
+	/**
+	 * @param queueBehindWaitlist whether a booking is waitlisted while other
+	 *        customers are waiting for the flight; only safe to turn on while
+	 *        a {@link WaitlistWorker} promotes them
+	 */
+	public void setQueueBehindWaitlist(boolean queueBehindWaitlist) {
+		this._queueBehindWaitlist = queueBehindWaitlist;
+	}
+
+	/**
+	 * @return whether bookings queue behind the flight's waitlist
+	 */
+	public boolean isQueueingBehindWaitlist() {
+		return this._queueBehindWaitlist;
+	}
+
+	/**
+	 * Reserves a seat for the customer, or waitlists them when the flight is
+	 * full.
+	 *
+	 * @param cid the customer id
+	 * @param fnum the flight number
+	 * @return the reservation that was created
+	 * @throws java.sql.SQLException when the flight does not exist, the retries
+	 *         are exhausted or the booking fails for any other reason
+	 */
+	public Booking book(int cid, int fnum) throws SQLException {
+		for (int attempt = 1; ; ++attempt) {
+			PooledConnection conn = this._pool.borrow();
+			boolean useFunction = this._useFunction;
+			try{
+				return useFunction ? callOnce(conn, cid, fnum, attempt) : bookOnce(conn, cid, fnum, attempt);
+			}catch(SQLException e){
+				rollbackQuietly(conn.connection());
+				if (useFunction && isUndefinedFunction(e)) {
+					// migration V005 has not been applied to this database
+					this._useFunction = false;
+					--attempt;
+					continue;
+				}
+				if (attempt > this._maxRetries || !isRetryable(e)) {
+					throw e;
+				}
+			}finally{
+				this._pool.release(conn);
+			}
+			backoff(attempt);
+		}
+	}
+
+	private Booking bookOnce(PooledConnection conn, int cid, int fnum, int attempt) throws SQLException {
+		Connection c = conn.connection();
+		c.setAutoCommit(false);
+
+		PreparedStatement reserve = conn.prepare(this._queueBehindWaitlist ? RESERVE_SEAT_BEHIND_WAITLIST : RESERVE_SEAT);
+		reserve.setInt(1, fnum);
+		char status = reserve.executeUpdate() == 1 ? 'R' : 'W';
+
+		if (status == 'W') {
+			PreparedStatement exists = conn.prepare(FLIGHT_EXISTS);
+			exists.setInt(1, fnum);
+			try (ResultSet rs = exists.executeQuery()){
+				if (!rs.next()) {
+					throw new SQLException("Flight " + fnum + " does not exist");
+				}
+			}
+		}
+
+		PreparedStatement insert = conn.prepare(INSERT_RESERVATION);
+		insert.setInt(1, cid);
+		insert.setInt(2, fnum);
+		insert.setString(3, String.valueOf(status));
+		int rnum;
+		try (ResultSet rs = insert.executeQuery()){
+			rs.next();
+			rnum = rs.getInt(1);
+		}
+
+		c.commit();
+		return new Booking(rnum, status, attempt);
+	}
+
+	private Booking callOnce(PooledConnection conn, int cid, int fnum, int attempt) throws SQLException {
+		CallableStatement call = conn.prepareCall(BOOK_FLIGHT_CALL);
+		call.setInt(1, cid);
+		call.setInt(2, fnum);
+		call.setBoolean(3, this._queueBehindWaitlist);
+		call.registerOutParameter(4, Types.CHAR);
+		call.registerOutParameter(5, Types.INTEGER);
+		call.execute();
+		return new Booking(call.getInt(5), call.getString(4).charAt(0), attempt);
+	}
+
+	/*
+	 * 42883 is undefined_function.
+	 */
+	static boolean isUndefinedFunction(SQLException e) {
+		return "42883".equals(e.getSQLState());
+	}
+
+	/*
+	 * 40001 is serialization_failure and 40P01 is deadlock_detected; both
+	 * leave the database unchanged and are safe to retry.
+	 */
+	static boolean isRetryable(SQLException e) {
+		String state = e.getSQLState();
+		return "40001".equals(state) || "40P01".equals(state);
+	}
+
+	private static void rollbackQuietly(Connection c) {
+		try{
+			if (!c.getAutoCommit()) {
+				c.rollback();
+			}
+		}catch(SQLException e){
+			// ignored.
+		}
+	}
+
+	private static void backoff(int attempt) {
+		try{
+			Thread.sleep((long) (Math.random() * 10 * attempt));
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+}
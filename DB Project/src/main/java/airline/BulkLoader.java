@@ -0,0 +1,483 @@
+package airline;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Streams CSV files into Plane, Pilot, Technician, Customer and Flight.
+ *
+ * Every row is checked against the same {@link Validation} rules the menu
+ * enforces; rejected rows are reported by line number and skipped. Valid rows
+ * are streamed to the server with <code>COPY ... FROM STDIN</code> through
+ * pgjdbc's CopyManager, or with JDBC batches of INSERTs when COPY is not
+ * available. Either way the whole file is loaded in one transaction.
+ *
+ * Id columns are not part of the CSV files. The loader draws keys from the
+ * table's sequence in blocks through a {@link KeyAllocator} and sends them
+ * with each row, so there is one sequence round trip per block rather than a
+ * nextval per row in the key trigger. Blocks are fetched on a second pooled
+ * connection while the load's own connection streams the COPY, so the pool
+ * needs room for two connections. Without the V002 migration the
+ * triggers from triggers.sql replace those keys with their own nextval,
+ * which is slower but still correct. A header line that repeats the column
+ * names is skipped.
+ *
+ * Flight rows are checked field by field only; the menu's "num_sold must not
+ * exceed the plane's seats" rule needs a FlightInfo row, which a Flight CSV
+ * does not carry.
+ */
+public class BulkLoader {
+	private static final int COPY_BUFFER_BYTES = 1 << 16;
+	private static final int MAX_REPORTED_ERRORS = 20;
+
+	enum Kind { TEXT, INT, DATE }
+
+	static final class Column {
+		final String name;
+		final Kind kind;
+		final Predicate<String> rule;
+
+		private Column(String name, Kind kind, Predicate<String> rule) {
+			this.name = name;
+			this.kind = kind;
+			this.rule = rule;
+		}
+
+		static Column text(String name, Predicate<String> rule) {
+			return new Column(name, Kind.TEXT, rule);
+		}
+
+		static Column integer(String name, IntPredicate rule) {
+			return new Column(name, Kind.INT, s -> {
+				try{
+					return rule.test(Integer.parseInt(s));
+				}catch(NumberFormatException e){
+					return false;
+				}
+			});
+		}
+
+		static Column date(String name) {
+			return new Column(name, Kind.DATE, Validation::isValidDate);
+		}
+	}
+
+	/**
+	 * The tables the loader accepts, with their CSV column order.
+	 */
+	public enum Table {
+		PLANE("Plane", "id", "plane_id_seq",
+			Column.text("make", Validation::isValidMake),
+			Column.text("model", Validation::isValidModel),
+			Column.integer("age", Validation::isValidAge),
+			Column.integer("seats", Validation::isValidSeats)),
+		PILOT("Pilot", "id", "pilot_id_seq",
+			Column.text("fullname", Validation::isValidFullName),
+			Column.text("nationality", Validation::isValidNationality)),
+		TECHNICIAN("Technician", "id", "tech_seq",
+			Column.text("full_name", Validation::isValidFullName)),
+		CUSTOMER("Customer", "id", "cus_seq",
+			Column.text("fname", Validation::isValidFirstName),
+			Column.text("lname", Validation::isValidLastName),
+			Column.text("gtype", Validation::isValidGender),
+			Column.date("dob"),
+			Column.text("address", Validation::isValidAddress),
+			Column.text("phone", Validation::isValidPhone),
+			Column.text("zipcode", Validation::isValidZipcode)),
+		FLIGHT("Flight", "fnum", "fnum_seq",
+			Column.integer("cost", Validation::isValidCost),
+			Column.integer("num_sold", Validation::isValidNumSold),
+			Column.integer("num_stops", Validation::isValidNumStops),
+			Column.date("actual_departure_date"),
+			Column.date("actual_arrival_date"),
+			Column.text("arrival_airport", Validation::isValidAirport),
+			Column.text("departure_airport", Validation::isValidAirport));
+
+		final String tableName;
+		final String keyColumn;
+		final String keySequence;
+		final Column[] columns;
+
+		Table(String tableName, String keyColumn, String keySequence, Column... columns) {
+			this.tableName = tableName;
+			this.keyColumn = keyColumn;
+			this.keySequence = keySequence;
+			this.columns = columns;
+		}
+
+		/*
+		 * The key column followed by the CSV columns, as the sinks write them.
+		 */
+		String columnList() {
+			StringBuilder sb = new StringBuilder(this.keyColumn);
+			for (Column col : this.columns) {
+				sb.append(", ").append(col.name);
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * @param name a table name in any case
+		 * @return the matching table
+		 * @throws IllegalArgumentException when the loader does not support the table
+		 */
+		public static Table of(String name) {
+			for (Table t : values()) {
+				if (t.tableName.equalsIgnoreCase(name)) {
+					return t;
+				}
+			}
+			throw new IllegalArgumentException("Bulk load is not supported for table " + name);
+		}
+	}
+
+	/**
+	 * What a load did and how fast.
+	 */
+	public static final class Result {
+		public final String table;
+		public final long rows;
+		public final long rejected;
+		public final long nanos;
+		public final boolean viaCopy;
+		public final long keyBlocks;
+
+		Result(String table, long rows, long rejected, long nanos, boolean viaCopy, long keyBlocks) {
+			this.table = table;
+			this.rows = rows;
+			this.rejected = rejected;
+			this.nanos = nanos;
+			this.viaCopy = viaCopy;
+			this.keyBlocks = keyBlocks;
+		}
+
+		public double rowsPerSecond() {
+			return this.nanos == 0 ? 0.0 : this.rows * 1e9 / this.nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: loaded %d row(s), rejected %d, in %.3fs (%.0f rows/s via %s, %d key block(s))",
+					this.table, this.rows, this.rejected, this.nanos / 1e9, rowsPerSecond(),
+					this.viaCopy ? "COPY" : "batched INSERT", this.keyBlocks);
+		}
+	}
+
+	private final ConnectionPool _pool;
+	private final boolean _useCopy;
+	private final int _batchSize;
+	private final int _keyBlockSize;
+
+	public BulkLoader(ConnectionPool pool) {
+		this(pool, true, 1000, 1000);
+	}
+
+	/**
+	 * @param pool the pool to borrow the load connection from
+	 * @param useCopy false to always use batched INSERTs
+	 * @param batchSize rows per executeBatch on the INSERT path
+	 * @param keyBlockSize keys fetched from the table's sequence per round trip
+	 */
+	public BulkLoader(ConnectionPool pool, boolean useCopy, int batchSize, int keyBlockSize) {
+		this._pool = pool;
+		this._useCopy = useCopy;
+		this._batchSize = batchSize;
+		this._keyBlockSize = keyBlockSize;
+	}
+
+	/**
+	 * Loads one CSV file into a table in a single transaction.
+	 *
+	 * @param table the target table
+	 * @param csv the file to read
+	 * @return counts and throughput of the load
+	 * @throws java.sql.SQLException when the database rejects the load; nothing is committed
+	 * @throws java.io.IOException when the file cannot be read
+	 */
+	public Result load(Table table, Path csv) throws SQLException, IOException {
+		long start = System.nanoTime();
+		PooledConnection conn = this._pool.borrow();
+		try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)){
+			boolean viaCopy = this._useCopy && conn.connection().isWrapperFor(PGConnection.class);
+			KeyAllocator keys = new KeyAllocator(this._pool, table.keySequence, this._keyBlockSize);
+			Sink sink = viaCopy ? new CopySink(conn.connection(), table) : new BatchSink(conn.connection(), table, this._batchSize);
+			long rejected = 0;
+			long lineNo = 0;
+			String line;
+			try{
+				while ((line = reader.readLine()) != null) {
+					++lineNo;
+					if (line.isEmpty()) {
+						continue;
+					}
+					List<String> fields = parseCsvLine(line);
+					if (lineNo == 1 && isHeader(table, fields)) {
+						continue;
+					}
+					Object[] values = new Object[table.columns.length];
+					String error = validate(table, fields, values);
+					if (error != null) {
+						if (++rejected <= MAX_REPORTED_ERRORS) {
+							System.err.println(csv + ":" + lineNo + ": " + error);
+						}
+						continue;
+					}
+					sink.add(keys.next(), values);
+				}
+				long rows = sink.finish();
+				return new Result(table.tableName, rows, rejected, System.nanoTime() - start, viaCopy, keys.getBlocksFetched());
+			}catch(SQLException | IOException | RuntimeException e){
+				sink.abort();
+				throw e;
+			}
+		}finally{
+			this._pool.release(conn);
+		}
+	}
+
+	private static boolean isHeader(Table table, List<String> fields) {
+		if (fields.size() != table.columns.length) {
+			return false;
+		}
+		for (int i = 0; i < fields.size(); ++i) {
+			if (!table.columns[i].name.equalsIgnoreCase(fields.get(i).trim())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Returns a description of the first rule the row breaks, or null when
+	 * the row is valid and its values, parsed to String, Integer or
+	 * LocalDate by column, are in values.
+	 */
+	private static String validate(Table table, List<String> fields, Object[] values) {
+		if (fields.size() != table.columns.length) {
+			return "expected " + table.columns.length + " fields but found " + fields.size();
+		}
+		for (int i = 0; i < fields.size(); ++i) {
+			Column col = table.columns[i];
+			String field = fields.get(i);
+			if (!col.rule.test(field)) {
+				return "invalid " + col.name + " '" + field + "'";
+			}
+			switch (col.kind) {
+				case INT: values[i] = Integer.valueOf(field); break;
+				case DATE: values[i] = Validation.parseDate(field); break;
+				default: values[i] = field; break;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Splits one CSV line. Fields may be double-quoted, with "" standing for
+	 * a literal quote; quoted fields cannot span lines.
+	 */
+	static List<String> parseCsvLine(String line) {
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); ++i) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"') {
+					if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						field.append('"');
+						++i;
+					}else{
+						quoted = false;
+					}
+				}else{
+					field.append(c);
+				}
+			}else if (c == '"') {
+				quoted = true;
+			}else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			}else{
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	private interface Sink {
+		void add(int key, Object[] values) throws SQLException, IOException;
+
+		long finish() throws SQLException, IOException;
+
+		void abort();
+	}
+
+	/*
+	 * Re-encodes validated rows as CSV and streams them into COPY FROM STDIN.
+	 */
+	private static final class CopySink implements Sink {
+		private final CopyIn _copy;
+		private final Writer _out;
+		private final Column[] _columns;
+
+		CopySink(Connection c, Table table) throws SQLException {
+			this._columns = table.columns;
+			this._copy = c.unwrap(PGConnection.class).getCopyAPI().copyIn(
+					"COPY " + table.tableName + " (" + table.columnList() + ") FROM STDIN WITH (FORMAT csv)");
+			this._out = new BufferedWriter(new OutputStreamWriter(new CopyInStream(this._copy), StandardCharsets.UTF_8),
+					COPY_BUFFER_BYTES);
+		}
+
+		@Override
+		public void add(int key, Object[] values) throws IOException {
+			this._out.write(Integer.toString(key));
+			for (int i = 0; i < values.length; ++i) {
+				this._out.write(',');
+				// dates go out as the ISO text they were parsed from, which the server reads the same way
+				String value = values[i].toString();
+				if (this._columns[i].kind == Kind.TEXT) {
+					this._out.write('"');
+					for (int j = 0; j < value.length(); ++j) {
+						char ch = value.charAt(j);
+						if (ch == '"') {
+							this._out.write('"');
+						}
+						this._out.write(ch);
+					}
+					this._out.write('"');
+				}else{
+					this._out.write(value);
+				}
+			}
+			this._out.write('\n');
+		}
+
+		@Override
+		public long finish() throws SQLException, IOException {
+			this._out.flush();
+			return this._copy.endCopy();
+		}
+
+		@Override
+		public void abort() {
+			try{
+				if (this._copy.isActive()) {
+					this._copy.cancelCopy();
+				}
+			}catch(SQLException e){
+				// ignored.
+			}
+		}
+	}
+
+	/*
+	 * Adapts CopyIn to an OutputStream so it can sit under a BufferedWriter.
+	 */
+	private static final class CopyInStream extends OutputStream {
+		private final CopyIn _copy;
+
+		CopyInStream(CopyIn copy) {
+			this._copy = copy;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] buf, int off, int len) throws IOException {
+			try{
+				this._copy.writeToCopy(buf, off, len);
+			}catch(SQLException e){
+				throw new IOException(e);
+			}
+		}
+	}
+
+	/*
+	 * Fallback that binds each row to a batched INSERT in one transaction.
+	 */
+	private static final class BatchSink implements Sink {
+		private final Connection _connection;
+		private final PreparedStatement _insert;
+		private final Column[] _columns;
+		private final int _batchSize;
+		private int _pending = 0;
+		private long _rows = 0;
+
+		BatchSink(Connection c, Table table, int batchSize) throws SQLException {
+			this._connection = c;
+			this._columns = table.columns;
+			this._batchSize = batchSize;
+			StringBuilder marks = new StringBuilder("?");
+			for (int i = 0; i < table.columns.length; ++i) {
+				marks.append(", ?");
+			}
+			c.setAutoCommit(false);
+			this._insert = c.prepareStatement("INSERT INTO " + table.tableName + " (" + table.columnList()
+					+ ") VALUES (" + marks + ")");
+		}
+
+		@Override
+		public void add(int key, Object[] values) throws SQLException {
+			this._insert.setInt(1, key);
+			for (int i = 0; i < values.length; ++i) {
+				Object value = values[i];
+				switch (this._columns[i].kind) {
+					case INT: this._insert.setInt(i + 2, (Integer) value); break;
+					case DATE: this._insert.setDate(i + 2, java.sql.Date.valueOf((LocalDate) value)); break;
+					default: this._insert.setString(i + 2, (String) value); break;
+				}
+			}
+			this._insert.addBatch();
+			if (++this._pending == this._batchSize) {
+				flush();
+			}
+		}
+
+		private void flush() throws SQLException {
+			for (int n : this._insert.executeBatch()) {
+				this._rows += Math.max(n, 0);
+			}
+			this._pending = 0;
+		}
+
+		@Override
+		public long finish() throws SQLException {
+			flush();
+			this._connection.commit();
+			this._insert.close();
+			return this._rows;
+		}
+
+		@Override
+		public void abort() {
+			try{
+				this._insert.close();
+				this._connection.rollback();
+			}catch(SQLException e){
+				// ignored.
+			}
+		}
+	}
+}
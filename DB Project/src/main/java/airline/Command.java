@@ -0,0 +1,142 @@
+package airline;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One menu operation written as a CSV line, as used by workload files and
+ * the service protocol:
+ * <pre>
+ * add_plane,make,model,age,seats
+ * add_pilot,fullname,nationality
+ * add_technician,full_name
+ * add_flight,cost,num_sold,num_stops,departure,arrival,arrival_airport,departure_airport,pilot_id,plane_id
+ * book_flight,cid,fnum
+ * seats,fnum
+ * repairs_per_plane
+ * repairs_per_year
+ * seats_by_airport,from,to
+ * search_flights,from_airport,to_airport,first,last,cost|departure,limit[,after_fnum]
+ * itineraries,from_airport,to_airport,first,last,max_connections,limit
+ * status_count,fnum,status
+ * cancel,rnum
+ * </pre>
+ * Arguments are parsed once, up front, so a command can be run many times.
+ */
+public final class Command {
+	/** Runs the operation and returns what the {@link Operations} method returned. */
+	public interface Call {
+		Object run(Operations ops) throws Exception;
+	}
+
+	private final String _op;
+	private final Call _call;
+
+	private Command(String op, Call call) {
+		this._op = op;
+		this._call = call;
+	}
+
+	/**
+	 * @return the operation name, e.g. <code>book_flight</code>
+	 */
+	public String op() {
+		return this._op;
+	}
+
+	/**
+	 * @return the operation's result: an Integer, a Character, a
+	 *         {@link BookingEngine.Booking}, or a list of {@link Repair.Total},
+	 *         {@link Flight.SeatTotal}, {@link Flight} or {@link Itinerary}
+	 */
+	public Object run(Operations ops) throws Exception {
+		return this._call.run(ops);
+	}
+
+	/**
+	 * @param line one CSV line; quoting follows {@link BulkLoader}
+	 * @throws IllegalArgumentException on an unknown operation, a wrong
+	 *         argument count or an argument that does not parse
+	 */
+	public static Command parse(String line) {
+		return parse(BulkLoader.parseCsvLine(line));
+	}
+
+	static Command parse(final List<String> f) {
+		String op = f.get(0).trim();
+		switch (op) {
+			case "add_plane":
+				arity(f, 4);
+				final int age = Integer.parseInt(f.get(3)), seats = Integer.parseInt(f.get(4));
+				return new Command(op, ops -> ops.addPlane(f.get(1), f.get(2), age, seats));
+			case "add_pilot":
+				arity(f, 2);
+				return new Command(op, ops -> ops.addPilot(f.get(1), f.get(2)));
+			case "add_technician":
+				arity(f, 1);
+				return new Command(op, ops -> ops.addTechnician(f.get(1)));
+			case "add_flight":
+				arity(f, 9);
+				final int cost = Integer.parseInt(f.get(1)), sold = Integer.parseInt(f.get(2)), stops = Integer.parseInt(f.get(3));
+				final Date dep = Date.valueOf(f.get(4)), arr = Date.valueOf(f.get(5));
+				final int pilot = Integer.parseInt(f.get(8)), plane = Integer.parseInt(f.get(9));
+				return new Command(op, ops -> ops.addFlight(cost, sold, stops, dep, arr, f.get(6), f.get(7), pilot, plane));
+			case "book_flight":
+				arity(f, 2);
+				final int cid = Integer.parseInt(f.get(1)), bookFnum = Integer.parseInt(f.get(2));
+				return new Command(op, ops -> ops.bookFlight(cid, bookFnum));
+			case "seats":
+				arity(f, 1);
+				final int seatsFnum = Integer.parseInt(f.get(1));
+				return new Command(op, ops -> ops.availableSeats(seatsFnum));
+			case "repairs_per_plane":
+				arity(f, 0);
+				return new Command(op, ops -> ops.repairsPerPlane());
+			case "repairs_per_year":
+				arity(f, 0);
+				return new Command(op, ops -> ops.repairsPerYear());
+			case "seats_by_airport":
+				arity(f, 2);
+				final Date from = Date.valueOf(f.get(1)), to = Date.valueOf(f.get(2));
+				return new Command(op, ops -> ops.seatsByDepartureAirport(from, to));
+			case "search_flights":
+				if (f.size() != 8) {
+					arity(f, 6);
+				}
+				final Date first = Date.valueOf(f.get(3)), last = Date.valueOf(f.get(4));
+				final Flight.Order order = Flight.Order.valueOf(f.get(5).trim().toUpperCase(Locale.ROOT));
+				final int limit = Integer.parseInt(f.get(6));
+				final Integer afterFnum = f.size() == 8 ? Integer.valueOf(f.get(7)) : null;
+				return new Command(op, ops -> {
+					// continues from a flight of the previous page, as it is now
+					Flight after = afterFnum == null ? null : ops.findFlight(afterFnum);
+					if (afterFnum != null && after == null) {
+						throw new IllegalArgumentException("flight " + afterFnum + " does not exist");
+					}
+					return ops.searchFlights(f.get(1), f.get(2), first, last, order, after, limit);
+				});
+			case "itineraries":
+				arity(f, 6);
+				final Date earliest = Date.valueOf(f.get(3)), latest = Date.valueOf(f.get(4));
+				final int connections = Integer.parseInt(f.get(5)), count = Integer.parseInt(f.get(6));
+				return new Command(op, ops -> ops.findItineraries(f.get(1), f.get(2), earliest, latest, connections, count));
+			case "status_count":
+				arity(f, 2);
+				final int statusFnum = Integer.parseInt(f.get(1));
+				return new Command(op, ops -> ops.passengerCount(statusFnum, f.get(2)));
+			case "cancel":
+				arity(f, 1);
+				final int rnum = Integer.parseInt(f.get(1));
+				return new Command(op, ops -> ops.cancelReservation(rnum));
+			default:
+				throw new IllegalArgumentException("unknown operation " + op);
+		}
+	}
+
+	private static void arity(List<String> f, int n) {
+		if (f.size() != n + 1) {
+			throw new IllegalArgumentException(f.get(0) + " takes " + n + " argument(s), got " + (f.size() - 1));
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package airline;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of physical PostgreSQL connections.
+ *
+ * At most <code>maxSize</code> connections are ever open; borrowers beyond
+ * that wait up to the borrow timeout and then fail with an SQLException.
+ * Idle connections are kept in LIFO order so the most recently used (and
+ * warmest) connection is handed out first, and a background task closes
+ * connections that sat idle longer than the idle timeout as long as at least
+ * <code>minSize</code> stay open. Every connection is validated before it is
+ * handed out.
+ *
+ * Each pooled connection carries its own {@link StatementCache}; the pool
+ * aggregates their hit and miss counts.
+ */
+public class ConnectionPool {
+	private final String _url;
+	private final Properties _props;
+	private final int _minSize;
+	private final int _maxSize;
+	private final long _idleTimeoutMillis;
+	private final long _borrowTimeoutMillis;
+	private final int _validationTimeoutSeconds;
+	private final int _statementCacheSize;
+
+	private final LinkedBlockingDeque<PooledConnection> _idle = new LinkedBlockingDeque<PooledConnection>();
+	private final Semaphore _permits;
+	private final ScheduledExecutorService _evictor;
+	private volatile boolean _closed = false;
+
+	// metrics
+	private final AtomicInteger _open = new AtomicInteger();
+	private final AtomicInteger _active = new AtomicInteger();
+	private final AtomicLong _borrows = new AtomicLong();
+	private final AtomicLong _waitNanos = new AtomicLong();
+	private final AtomicLong _maxWaitNanos = new AtomicLong();
+	private final AtomicLong _timeouts = new AtomicLong();
+	private final AtomicLong _evicted = new AtomicLong();
+	private final AtomicLong _invalidated = new AtomicLong();
+	private final AtomicLong _cacheHits = new AtomicLong();
+	private final AtomicLong _cacheMisses = new AtomicLong();
+
+	/**
+	 * Creates the pool and opens <code>minSize</code> connections up front.
+	 *
+	 * @param url the JDBC connection URL
+	 * @param user the database user
+	 * @param passwd the database password
+	 * @param minSize connections kept open even when idle
+	 * @param maxSize upper bound on open connections
+	 * @param idleTimeoutMillis how long a connection may stay idle before it is closed
+	 * @param borrowTimeoutMillis how long {@link #borrow()} waits for a free connection
+	 * @throws java.sql.SQLException when the initial connections cannot be opened
+	 */
+	public ConnectionPool(String url, String user, String passwd, int minSize, int maxSize,
+			long idleTimeoutMillis, long borrowTimeoutMillis) throws SQLException {
+		this(url, user, passwd, new Properties(), minSize, maxSize, idleTimeoutMillis, borrowTimeoutMillis, 64);
+	}
+
+	/**
+	 * Creates the pool and opens <code>minSize</code> connections up front.
+	 *
+	 * @param url the JDBC connection URL
+	 * @param user the database user
+	 * @param passwd the database password
+	 * @param driverProps extra driver properties (e.g. <code>prepareThreshold</code>)
+	 * @param minSize connections kept open even when idle
+	 * @param maxSize upper bound on open connections
+	 * @param idleTimeoutMillis how long a connection may stay idle before it is closed
+	 * @param borrowTimeoutMillis how long {@link #borrow()} waits for a free connection
+	 * @param statementCacheSize PreparedStatements cached per connection
+	 * @throws java.sql.SQLException when the initial connections cannot be opened
+	 */
+	public ConnectionPool(String url, String user, String passwd, Properties driverProps, int minSize,
+			int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis, int statementCacheSize)
+			throws SQLException {
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+			throw new IllegalArgumentException("invalid pool size: min=" + minSize + " max=" + maxSize);
+		}
+		this._url = url;
+		this._props = new Properties();
+		this._props.putAll(driverProps);
+		this._props.setProperty("user", user);
+		this._props.setProperty("password", passwd);
+		this._statementCacheSize = statementCacheSize;
+		this._minSize = minSize;
+		this._maxSize = maxSize;
+		this._idleTimeoutMillis = idleTimeoutMillis;
+		this._borrowTimeoutMillis = borrowTimeoutMillis;
+		this._validationTimeoutSeconds = 2;
+		this._permits = new Semaphore(maxSize, true);
+
+		for (int i = 0; i < minSize; ++i) {
+			this._idle.offerFirst(open());
+		}
+
+		this._evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "connection-pool-evictor");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(1000L, idleTimeoutMillis / 2);
+		this._evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Borrows a validated connection, waiting up to the borrow timeout when
+	 * every connection is in use.
+	 *
+	 * @return a connection that must be handed back with {@link #release(PooledConnection)}
+	 * @throws java.sql.SQLException when the pool is closed, the wait timed out or
+	 *         no new connection could be opened
+	 */
+	public PooledConnection borrow() throws SQLException {
+		if (this._closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+		long start = System.nanoTime();
+		try{
+			if (!this._permits.tryAcquire(this._borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				this._timeouts.incrementAndGet();
+				throw new SQLException("Timed out after " + this._borrowTimeoutMillis
+						+ " ms waiting for a database connection", "08001");
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", "08001", e);
+		}
+		recordWait(System.nanoTime() - start);
+
+		try{
+			PooledConnection conn;
+			while ((conn = this._idle.pollFirst()) != null) {
+				if (isValid(conn)) {
+					conn.markBorrowed();
+					this._active.incrementAndGet();
+					return conn;
+				}
+				this._invalidated.incrementAndGet();
+				discard(conn);
+			}
+			conn = open();
+			conn.markBorrowed();
+			this._active.incrementAndGet();
+			return conn;
+		}catch(SQLException e){
+			this._permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Hands a borrowed connection back to the pool. Any transaction left
+	 * open by the borrower is rolled back; a connection that cannot be reset
+	 * is closed instead of being reused.
+	 *
+	 * @param conn the connection obtained from {@link #borrow()}
+	 * @throws java.lang.IllegalStateException when the connection is not
+	 *         borrowed, e.g. because it was already released
+	 */
+	public void release(PooledConnection conn) {
+		if (conn == null) {
+			return;
+		}
+		if (!conn.markReturned()) {
+			throw new IllegalStateException("connection released twice or not borrowed from this pool");
+		}
+		this._active.decrementAndGet();
+		try{
+			if (this._closed) {
+				discard(conn);
+				return;
+			}
+			try{
+				conn.reset();
+				conn.touch();
+				this._idle.offerFirst(conn);
+				// close() may have drained the idle list between the check
+				// above and the offer; whoever removes it discards it.
+				if (this._closed && this._idle.remove(conn)) {
+					discard(conn);
+				}
+			}catch(SQLException e){
+				discard(conn);
+			}
+		}finally{
+			this._permits.release();
+		}
+	}
+
+	/**
+	 * Closes every idle connection and stops handing out new ones. Borrowed
+	 * connections are closed as they are released.
+	 */
+	public void close() {
+		this._closed = true;
+		this._evictor.shutdownNow();
+		PooledConnection conn;
+		while ((conn = this._idle.pollFirst()) != null) {
+			discard(conn);
+		}
+	}
+
+	/**
+	 * Opens a connection with the pool's URL and credentials that is not
+	 * managed by the pool, for sessions that stay open for the life of the
+	 * program such as a LISTEN.  The caller closes it.
+	 *
+	 * @return a new connection outside the pool
+	 * @throws java.sql.SQLException when the connection cannot be opened
+	 */
+	public Connection openDedicated() throws SQLException {
+		return DriverManager.getConnection(this._url, this._props);
+	}
+
+	private PooledConnection open() throws SQLException {
+		Connection c = DriverManager.getConnection(this._url, this._props);
+		this._open.incrementAndGet();
+		return new PooledConnection(c,
+				new StatementCache(c, this._statementCacheSize, this._cacheHits, this._cacheMisses));
+	}
+
+	private void discard(PooledConnection conn) {
+		this._open.decrementAndGet();
+		conn.closeQuietly();
+	}
+
+	private boolean isValid(PooledConnection conn) {
+		try{
+			return conn.connection().isValid(this._validationTimeoutSeconds);
+		}catch(SQLException e){
+			return false;
+		}
+	}
+
+	private void recordWait(long nanos) {
+		this._borrows.incrementAndGet();
+		this._waitNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = this._maxWaitNanos.get())) {
+			if (this._maxWaitNanos.compareAndSet(max, nanos)) {
+				break;
+			}
+		}
+	}
+
+	/*
+	 * Closes connections idle for longer than the idle timeout, oldest first,
+	 * without dropping below the minimum size.
+	 */
+	private void evictIdle() {
+		long cutoff = System.currentTimeMillis() - this._idleTimeoutMillis;
+		Iterator<PooledConnection> it = this._idle.descendingIterator();
+		while (it.hasNext() && this._open.get() > this._minSize) {
+			PooledConnection conn = it.next();
+			if (conn.lastUsed() > cutoff) {
+				break;
+			}
+			if (this._idle.removeLastOccurrence(conn)) {
+				this._evicted.incrementAndGet();
+				discard(conn);
+			}
+		}
+	}
+
+	public int getMaxSize() { return this._maxSize; }
+
+	public int getOpenCount() { return this._open.get(); }
+
+	public int getActiveCount() { return this._active.get(); }
+
+	public int getIdleCount() { return this._idle.size(); }
+
+	public long getBorrowCount() { return this._borrows.get(); }
+
+	public long getTimeoutCount() { return this._timeouts.get(); }
+
+	public long getEvictedCount() { return this._evicted.get(); }
+
+	public long getInvalidatedCount() { return this._invalidated.get(); }
+
+	public long getStatementCacheHits() { return this._cacheHits.get(); }
+
+	public long getStatementCacheMisses() { return this._cacheMisses.get(); }
+
+	public double getAverageWaitMillis() {
+		long borrows = this._borrows.get();
+		return borrows == 0 ? 0.0 : this._waitNanos.get() / 1e6 / borrows;
+	}
+
+	public double getMaxWaitMillis() {
+		return this._maxWaitNanos.get() / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("pool[open=%d active=%d idle=%d max=%d borrows=%d avgWait=%.3fms maxWait=%.3fms timeouts=%d evicted=%d invalid=%d stmtCacheHits=%d stmtCacheMisses=%d]",
+				getOpenCount(), getActiveCount(), getIdleCount(), this._maxSize, getBorrowCount(),
+				getAverageWaitMillis(), getMaxWaitMillis(), getTimeoutCount(), getEvictedCount(),
+				getInvalidatedCount(), getStatementCacheHits(), getStatementCacheMisses());
+	}
+}
@@ -0,0 +1,662 @@
+package airline;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The embedded SQL helpers behind DBproject.  Every call borrows a
+ * connection from the pool, runs one statement through the connection's
+ * statement cache and hands the connection back, so callers on different
+ * threads run in parallel.
+ *
+ * Each helper records its latency, row count and outcome in the
+ * {@link StatementMetrics} returned by {@link #getMetrics()}, and hands
+ * statements over the threshold to the {@link SlowQueryLog} when one is set.
+ *
+ * The <code>executeReplicaQuery...</code> helpers are for read-only
+ * queries that may be a little stale; with a {@link ReplicaRouter} set they
+ * run on a replica that keeps up with the primary.
+ */
+public class Database {
+	private final ConnectionPool _pool;
+	private final BookingEngine _booking;
+	private final SeatCache _seatCache;
+	private final StatementMetrics _metrics = new StatementMetrics();
+	private volatile SlowQueryLog _slowLog = null;
+	private volatile WaitlistWorker _waitlist = null;
+	private volatile PartitionMaintainer _partitions = null;
+	private volatile ReplicaRouter _replicas = null;
+	private volatile AnalyticsSnapshot _analytics = null;
+	private volatile RouteGraph _routes = null;
+	private volatile int _fetchSize;
+
+	/**
+	 * @param pool the pool every helper borrows its connection from
+	 * @param fetchSize rows fetched per round trip by cursors
+	 */
+	public Database(ConnectionPool pool, int fetchSize) {
+		this(pool, fetchSize, 0);
+	}
+
+	/**
+	 * @param pool the pool every helper borrows its connection from
+	 * @param fetchSize rows fetched per round trip by cursors
+	 * @param seatCacheSize flights kept in the seat cache; 0 disables it
+	 */
+	public Database(ConnectionPool pool, int fetchSize, int seatCacheSize) {
+		this._pool = pool;
+		this._booking = new BookingEngine(pool);
+		this._seatCache = seatCacheSize > 0 ? new SeatCache(pool, seatCacheSize) : null;
+		this._fetchSize = fetchSize;
+	}
+
+	/**
+	 * @return the connection pool backing this instance
+	 */
+	public ConnectionPool getPool() {
+		return this._pool;
+	}
+
+	/**
+	 * @return the transactional booking engine sharing this pool
+	 */
+	public BookingEngine getBookingEngine() {
+		return this._booking;
+	}
+
+	/**
+	 * @return the seat cache, or null when it is disabled
+	 */
+	public SeatCache getSeatCache() {
+		return this._seatCache;
+	}
+
+	/**
+	 * @return the latency, row and error counters of the helpers below
+	 */
+	public StatementMetrics getMetrics() {
+		return this._metrics;
+	}
+
+	/**
+	 * @param slowLog receives the statements slower than its threshold; null turns it off
+	 */
+	public void setSlowQueryLog (SlowQueryLog slowLog) {
+		this._slowLog = slowLog;
+	}
+
+	/**
+	 * @return the slow-query log, or null when it is off
+	 */
+	public SlowQueryLog getSlowQueryLog() {
+		return this._slowLog;
+	}
+
+	/**
+	 * @param waitlist the worker to wake when a cancellation frees a seat;
+	 *        it is closed with this instance. While one is set, bookings
+	 *        queue behind the waitlist it promotes.
+	 */
+	public void setWaitlistWorker (WaitlistWorker waitlist) {
+		this._waitlist = waitlist;
+		this._booking.setQueueBehindWaitlist(waitlist != null);
+	}
+
+	/**
+	 * @return the waitlist worker, or null when this process runs none
+	 */
+	public WaitlistWorker getWaitlistWorker() {
+		return this._waitlist;
+	}
+
+	/**
+	 * @param partitions the scheduled partition maintenance; it is closed
+	 *        with this instance
+	 */
+	public void setPartitionMaintainer (PartitionMaintainer partitions) {
+		this._partitions = partitions;
+	}
+
+	/**
+	 * @return the partition maintenance, or null when this process runs none
+	 */
+	public PartitionMaintainer getPartitionMaintainer() {
+		return this._partitions;
+	}
+
+	/**
+	 * @param replicas where the replica helpers send their queries; null
+	 *        sends them to the primary. It is closed with this instance
+	 */
+	public void setReplicaRouter (ReplicaRouter replicas) {
+		this._replicas = replicas;
+	}
+
+	/**
+	 * @return the replica router, or null when every query goes to the primary
+	 */
+	public ReplicaRouter getReplicaRouter() {
+		return this._replicas;
+	}
+
+	/**
+	 * @param analytics the in-memory copy the repair and seat reports are
+	 *        answered from; null runs them as queries. It is closed with
+	 *        this instance
+	 */
+	public void setAnalytics (AnalyticsSnapshot analytics) {
+		this._analytics = analytics;
+	}
+
+	/**
+	 * @return the analytics snapshot, or null when the reports run as queries
+	 */
+	public AnalyticsSnapshot getAnalytics() {
+		return this._analytics;
+	}
+
+	/**
+	 * @param routes the route graph itinerary searches run on; it is closed
+	 *        with this instance
+	 */
+	public void setRouteGraph (RouteGraph routes) {
+		this._routes = routes;
+	}
+
+	/**
+	 * @return the route graph, or null when this process searches no itineraries
+	 */
+	public RouteGraph getRouteGraph() {
+		return this._routes;
+	}
+
+	/**
+	 * @param fetchSize rows fetched per round trip by cursors opened afterwards
+	 */
+	public void setFetchSize (int fetchSize) {
+		this._fetchSize = fetchSize;
+	}
+
+	/**
+	 * Method to execute a parameterized update SQL statement.  The statement
+	 * is prepared once per pooled connection and the parameters are bound
+	 * in order to its <code>?</code> placeholders.
+	 * 
+	 * @param sql the input SQL string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows affected
+	 * @throws java.sql.SQLException when update failed
+	 * */
+	public int executeUpdate (String sql, Object... params) throws SQLException { 
+		StatementMetrics.Stats stats = this._metrics.statement (sql);
+		long start = this._metrics.beginStatement (stats);
+		int rows = -1;
+		try{
+			PooledConnection conn = this._pool.borrow ();
+			try{
+				// fetches the cached statement object and binds the parameters
+				PreparedStatement stmt = bind (conn.prepare (sql), params);
+
+				// issues the update instruction
+				rows = stmt.executeUpdate ();
+				return rows;
+			}finally{
+				// hands the connection back to the pool
+				this._pool.release (conn);
+			}
+		}finally{
+			finish (stats, start, rows, sql, params);
+		}
+	}//end executeUpdate
+
+	/**
+	 * Method to execute a parameterized <code>INSERT ... RETURNING</code>
+	 * statement and fetch the key the database generated for the new row,
+	 * so callers never have to look it up with MAX() or currval afterwards.
+	 * 
+	 * @param sql an INSERT whose RETURNING clause lists the key first
+	 * @param params the values bound to the placeholders
+	 * @return the generated key
+	 * @throws java.sql.SQLException when the insert failed or returned no row
+	 * */
+	public int executeInsert (String sql, Object... params) throws SQLException {
+		StatementMetrics.Stats stats = this._metrics.statement (sql);
+		long start = this._metrics.beginStatement (stats);
+		int rows = -1;
+		try{
+			PooledConnection conn = this._pool.borrow ();
+			try (ResultSet rs = bind (conn.prepare (sql), params).executeQuery ()){
+				if (!rs.next ()) {
+					throw new SQLException ("INSERT returned no key: " + sql);
+				}
+				int key = rs.getInt (1);
+				rows = 1;
+				return key;
+			}finally{
+				this._pool.release (conn);
+			}
+		}finally{
+			finish (stats, start, rows, sql, params);
+		}
+	}//end executeInsert
+
+	/**
+	 * Method to execute a parameterized query and output the results to
+	 * standard out.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+		StatementMetrics.Stats stats = this._metrics.statement (query);
+		long start = this._metrics.beginStatement (stats);
+		int rows = -1;
+		try{
+			rows = printResult (this._pool, query, params);
+			return rows;
+		}finally{
+			finish (stats, start, rows, query, params);
+		}
+	}
+
+	/**
+	 * Method to execute a parameterized read-only query on a replica and
+	 * output the results to standard out.  Without a replica router, or
+	 * when no replica is fresh enough, the query runs on the primary.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeReplicaQueryAndPrintResult (String query, Object... params) throws SQLException {
+		ReplicaRouter replicas = this._replicas;
+		if (replicas == null) {
+			return executeQueryAndPrintResult (query, params);
+		}
+		StatementMetrics.Stats stats = this._metrics.statement (query);
+		long start = this._metrics.beginStatement (stats);
+		int rows = -1;
+		try{
+			// buffered first, so a read that falls back to the primary prints its rows once;
+			// the first record holds the column names
+			List<List<String>> result = replicas.read (pool -> returnResult (pool, true, query, params));
+			rows = result.size () - 1;
+			if (rows > 0) {
+				for (List<String> record : result) {
+					for (String value : record)
+						System.out.print (value + "\t");
+					System.out.println ();
+				}
+			}
+			return rows;
+		}finally{
+			finish (stats, start, rows, query, params);
+		}
+	}
+
+	private int printResult (ConnectionPool pool, String query, Object... params) throws SQLException {
+		//streams the result through a server-side cursor so large results are never buffered
+		try (QueryCursor cursor = QueryCursor.open (pool, this._fetchSize, query, params)){
+			int numCol = cursor.columnCount ();
+			int rowCount = 0;
+			
+			//iterates through the result set and output them to standard out.
+			boolean outputHeader = true;
+			while (cursor.hasNext ()){
+				Row row = cursor.next ();
+				if(outputHeader){
+					for(int i = 1; i <= numCol; i++){
+						System.out.print(row.columnName(i) + "\t");
+				    }
+				    System.out.println();
+				    outputHeader = false;
+				}
+				for (int i=1; i<=numCol; ++i)
+					System.out.print (row.getString (i) + "\t");
+				System.out.println ();
+				++rowCount;
+			}//end while
+			return rowCount;
+		}
+	}
+	
+	/**
+	 * Method to execute a parameterized query and return the results as
+	 * a list of records. Each record in turn is a list of attribute values
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the query result as a list of records
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException { 
+		StatementMetrics.Stats stats = this._metrics.statement (query);
+		long start = this._metrics.beginStatement (stats);
+		int rows = -1;
+		try{
+			List<List<String>> result = returnResult (this._pool, false, query, params);
+			rows = result.size ();
+			return result;
+		}finally{
+			finish (stats, start, rows, query, params);
+		}
+	}//end executeQueryAndReturnResult
+
+	/**
+	 * Method to execute a parameterized read-only query on a replica and
+	 * return the results as a list of records.  Without a replica router,
+	 * or when no replica is fresh enough, the query runs on the primary.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the query result as a list of records
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<List<String>> executeReplicaQueryAndReturnResult (String query, Object... params) throws SQLException {
+		ReplicaRouter replicas = this._replicas;
+		if (replicas == null) {
+			return executeQueryAndReturnResult (query, params);
+		}
+		StatementMetrics.Stats stats = this._metrics.statement (query);
+		long start = this._metrics.beginStatement (stats);
+		int rows = -1;
+		try{
+			List<List<String>> result = replicas.read (pool -> returnResult (pool, false, query, params));
+			rows = result.size ();
+			return result;
+		}finally{
+			finish (stats, start, rows, query, params);
+		}
+	}
+
+	/**
+	 * Method to execute a parameterized query and map each record to an
+	 * object.  The mapper reads the columns with typed getters, so values
+	 * are not turned into strings and parsed back.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param mapper builds one object from the current row
+	 * @param params the values bound to the placeholders
+	 * @return one object per record, in order
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public <T> List<T> executeQueryAndMap (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+		return mapQuery (null, Integer.MAX_VALUE, query, mapper, params);
+	}
+
+	/**
+	 * Method to execute a parameterized query and map its first record to
+	 * an object, e.g. a lookup by primary key.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param mapper builds the object from the row
+	 * @param params the values bound to the placeholders
+	 * @return the first record's object, or null when the query returned no rows
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public <T> T executeQueryAndMapFirst (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+		List<T> result = mapQuery (null, 1, query, mapper, params);
+		return result.isEmpty () ? null : result.get (0);
+	}
+
+	/**
+	 * Method to execute a parameterized read-only query on a replica, as
+	 * executeReplicaQueryAndReturnResult does, and map each record to an
+	 * object.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param mapper builds one object from the current row
+	 * @param params the values bound to the placeholders
+	 * @return one object per record, in order
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public <T> List<T> executeReplicaQueryAndMap (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+		return mapQuery (this._replicas, Integer.MAX_VALUE, query, mapper, params);
+	}
+
+	/**
+	 * Method to execute a parameterized read-only query on a replica and
+	 * map its first record to an object.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param mapper builds the object from the row
+	 * @param params the values bound to the placeholders
+	 * @return the first record's object, or null when the query returned no rows
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public <T> T executeReplicaQueryAndMapFirst (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+		List<T> result = mapQuery (this._replicas, 1, query, mapper, params);
+		return result.isEmpty () ? null : result.get (0);
+	}
+
+	/*
+	 * Runs a query on the primary, or through the replica router when one
+	 * is given, and maps up to limit records.
+	 */
+	private <T> List<T> mapQuery (ReplicaRouter replicas, int limit, String query, RowMapper<T> mapper, Object... params) throws SQLException {
+		StatementMetrics.Stats stats = this._metrics.statement (query);
+		long start = this._metrics.beginStatement (stats);
+		int rows = -1;
+		try{
+			List<T> result = replicas == null ? mapResult (this._pool, limit, query, mapper, params)
+					: replicas.read (pool -> mapResult (pool, limit, query, mapper, params));
+			rows = result.size ();
+			return result;
+		}finally{
+			finish (stats, start, rows, query, params);
+		}
+	}
+
+	private <T> List<T> mapResult (ConnectionPool pool, int limit, String query, RowMapper<T> mapper, Object... params) throws SQLException {
+		PooledConnection conn = pool.borrow ();
+		try (ResultSet rs = bind (conn.prepare (query), params).executeQuery ()){
+			Row row = new Row (rs);
+			List<T> result = new ArrayList<T>();
+			while (result.size () < limit && rs.next ()){
+				row.advance ();
+				result.add (mapper.map (row));
+			}
+			return result;
+		}finally{
+			pool.release (conn);
+		}
+	}
+
+	private List<List<String>> returnResult (ConnectionPool pool, boolean header, String query, Object... params) throws SQLException {
+		PooledConnection conn = pool.borrow ();
+		//fetches the cached statement object and issues the query instruction 
+		try (ResultSet rs = bind (conn.prepare (query), params).executeQuery ()){
+			/*
+			 * obtains the metadata object for the returned result set.  The metadata 
+			 * contains row and column info. 
+			*/ 
+			ResultSetMetaData rsmd = rs.getMetaData (); 
+			int numCol = rsmd.getColumnCount (); 
+		 
+			//iterates through the result set and saves the data returned by the query. 
+			List<List<String>> result  = new ArrayList<List<String>>(); 
+			if (header) {
+				List<String> names = new ArrayList<String>();
+				for (int i=1; i<=numCol; ++i)
+					names.add(rsmd.getColumnName (i));
+				result.add(names);
+			}
+			while (rs.next()){
+				List<String> record = new ArrayList<String>(); 
+				for (int i=1; i<=numCol; ++i) 
+					record.add(rs.getString (i)); 
+				result.add(record); 
+			}//end while 
+			return result; 
+		}finally{
+			pool.release (conn);
+		}
+	}
+	
+	/**
+	 * Method to execute a parameterized query and return the number of
+	 * results
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQuery (String query, Object... params) throws SQLException {
+		StatementMetrics.Stats stats = this._metrics.statement (query);
+		long start = this._metrics.beginStatement (stats);
+		int rowCount = -1;
+		try{
+			PooledConnection conn = this._pool.borrow ();
+			//fetches the cached statement object and issues the query instruction
+			try (ResultSet rs = bind (conn.prepare (query), params).executeQuery ()){
+				rowCount = 0;
+
+				//iterates through the result set and count nuber of results.
+				if(rs.next()){
+					rowCount++;
+				}//end while
+				return rowCount;
+			}finally{
+				this._pool.release (conn);
+			}
+		}finally{
+			finish (stats, start, rowCount, query, params);
+		}
+	}
+
+	/**
+	 * Method to execute a parameterized query and stream the results to a
+	 * channel as CSV, TSV or JSON through a server-side cursor and a large
+	 * write buffer (see QueryExporter for the formats).  The channel is
+	 * not closed.
+	 * 
+	 * @param format the output format
+	 * @param out where the bytes go, e.g. a FileChannel
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the rows and bytes written and the time taken
+	 * @throws java.sql.SQLException when failed to execute the query
+	 * @throws java.io.IOException when writing to the channel failed
+	 */
+	public QueryExporter.Result executeQueryAndExport (QueryExporter.Format format, WritableByteChannel out,
+			String query, Object... params) throws SQLException, IOException {
+		StatementMetrics.Stats stats = this._metrics.statement (query);
+		long start = this._metrics.beginStatement (stats);
+		long rows = -1;
+		try (QueryCursor cursor = openCursor (query, params)){
+			QueryExporter.Result result = QueryExporter.export (cursor, format, out, QueryExporter.DEFAULT_BUFFER);
+			rows = result.rows ();
+			return result;
+		}finally{
+			finish (stats, start, rows, query, params);
+		}
+	}
+
+	/**
+	 * Method to open a server-side cursor over a query.  Rows are fetched
+	 * from the DBMS in batches of the configured fetch size, so memory use
+	 * stays constant no matter how many rows the query returns.  The cursor
+	 * holds a pooled connection until it is closed.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return an open cursor; close it with try-with-resources
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public QueryCursor openCursor (String query, Object... params) throws SQLException {
+		return QueryCursor.open (this._pool, this._fetchSize, query, params);
+	}
+
+	/**
+	 * Method to stream a query's rows to a callback through a server-side
+	 * cursor.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param handler called once per row
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows handled
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long forEachRow (String query, RowHandler handler, Object... params) throws SQLException {
+		try (QueryCursor cursor = openCursor (query, params)){
+			return cursor.forEach (handler);
+		}
+	}
+
+	/**
+	 * Method to stream a query's rows as a java.util.stream.Stream.  The
+	 * stream must be closed (try-with-resources) to release its connection.
+	 * 
+	 * @param query the input query string with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return a stream over the rows
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public Stream<Row> streamQuery (String query, Object... params) throws SQLException {
+		return openCursor (query, params).stream ();
+	}
+
+	/*
+	 * Records a finished statement in the metrics and, when it was slow
+	 * enough, in the slow-query log.
+	 */
+	private void finish (StatementMetrics.Stats stats, long start, long rows, String sql, Object[] params) {
+		long nanos = this._metrics.endStatement (stats, start, rows);
+		SlowQueryLog slowLog = this._slowLog;
+		if (slowLog != null) {
+			slowLog.check (stats, this._metrics.currentOperation (), sql, params, rows, nanos);
+		}
+	}
+
+	/*
+	 * Binds the parameters, in order, to the placeholders of a statement.
+	 */
+	static PreparedStatement bind (PreparedStatement stmt, Object... params) throws SQLException {
+		for (int i = 0; i < params.length; ++i) {
+			stmt.setObject (i + 1, params[i]);
+		}
+		return stmt;
+	}
+	
+	/**
+	 * Stops the waitlist worker, the partition maintenance, the analytics and
+	 * route graph refreshes, the seat cache listener and the metrics dump, closes the slow-query log, the replica
+	 * pools and then the connection pool.
+	 */
+	public void close(){
+		if (this._waitlist != null) {
+			this._waitlist.close ();
+		}
+		if (this._partitions != null) {
+			this._partitions.close ();
+		}
+		if (this._analytics != null) {
+			this._analytics.close ();
+		}
+		if (this._routes != null) {
+			this._routes.close ();
+		}
+		this._metrics.close ();
+		if (this._slowLog != null) {
+			this._slowLog.close ();
+		}
+		if (this._seatCache != null) {
+			this._seatCache.close ();
+		}
+		if (this._replicas != null) {
+			this._replicas.close ();
+		}
+		this._pool.close ();
+	}
+}
@@ -0,0 +1,105 @@
+package airline;
+
+import java.sql.Date;
+
+/**
+ * A row of Flight.
+ */
+public final class Flight {
+	/** The columns {@link #MAPPER} reads, in order. */
+	public static final String COLUMNS =
+		"fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_airport, departure_airport";
+	public static final RowMapper<Flight> MAPPER = row -> new Flight(row.getInt(1), row.getInt(2), row.getInt(3),
+			row.getInt(4), row.getDate(5), row.getDate(6), Plane.trim(row.getString(7)), Plane.trim(row.getString(8)));
+
+	/**
+	 * The orders flight search returns flights in. Flights that tie go by
+	 * flight number, so every flight has one place in the order.
+	 */
+	public enum Order {
+		/** Cheapest first. */
+		COST,
+		/** Earliest departure first. */
+		DEPARTURE
+	}
+
+	/**
+	 * A line of the seat report: a departure airport, the flights leaving
+	 * it, their seats and the seats sold.
+	 */
+	public static final class SeatTotal {
+		/** Reads the airport, flights, seats and seats sold, in order. */
+		public static final RowMapper<SeatTotal> MAPPER = row -> new SeatTotal(Plane.trim(row.getString(1)),
+				row.getLong(2), row.getLong(3), row.getLong(4));
+
+		private final String _airport;
+		private final long _flights;
+		private final long _seats;
+		private final long _sold;
+
+		SeatTotal(String airport, long flights, long seats, long sold) {
+			this._airport = airport;
+			this._flights = flights;
+			this._seats = seats;
+			this._sold = sold;
+		}
+
+		public String airport() { return this._airport; }
+
+		public long flights() { return this._flights; }
+
+		public long seats() { return this._seats; }
+
+		public long sold() { return this._sold; }
+
+		public long available() { return this._seats - this._sold; }
+
+		@Override
+		public String toString() {
+			return this._airport + ": " + this._flights + " flight(s), " + this._sold + " of " + this._seats + " seat(s) sold";
+		}
+	}
+
+	private final int _fnum;
+	private final int _cost;
+	private final int _numSold;
+	private final int _numStops;
+	private final Date _departure;
+	private final Date _arrival;
+	private final String _arrivalAirport;
+	private final String _departureAirport;
+
+	Flight(int fnum, int cost, int numSold, int numStops, Date departure, Date arrival, String arrivalAirport,
+			String departureAirport) {
+		this._fnum = fnum;
+		this._cost = cost;
+		this._numSold = numSold;
+		this._numStops = numStops;
+		this._departure = departure;
+		this._arrival = arrival;
+		this._arrivalAirport = arrivalAirport;
+		this._departureAirport = departureAirport;
+	}
+
+	public int fnum() { return this._fnum; }
+
+	public int cost() { return this._cost; }
+
+	public int numSold() { return this._numSold; }
+
+	public int numStops() { return this._numStops; }
+
+	public Date departure() { return this._departure; }
+
+	public Date arrival() { return this._arrival; }
+
+	public String arrivalAirport() { return this._arrivalAirport; }
+
+	public String departureAirport() { return this._departureAirport; }
+
+	@Override
+	public String toString() {
+		return "flight " + this._fnum + " (" + this._departureAirport + " " + this._departure + " to "
+				+ this._arrivalAirport + " " + this._arrival + ", " + this._numSold + " sold)";
+	}
+}
@@ -0,0 +1,38 @@
+package airline;
+
+/**
+ * A row of FlightInfo: which pilot flies which plane on a flight.
+ */
+public final class FlightInfo {
+	/** The columns {@link #MAPPER} reads, in order. */
+	public static final String COLUMNS = "fiid, flight_id, pilot_id, plane_id";
+	public static final RowMapper<FlightInfo> MAPPER = row -> new FlightInfo(row.getInt(1), row.getInt(2),
+			row.getInt(3), row.getInt(4));
+
+	private final int _fiid;
+	private final int _flightId;
+	private final int _pilotId;
+	private final int _planeId;
+
+	FlightInfo(int fiid, int flightId, int pilotId, int planeId) {
+		this._fiid = fiid;
+		this._flightId = flightId;
+		this._pilotId = pilotId;
+		this._planeId = planeId;
+	}
+
+	public int fiid() { return this._fiid; }
+
+	/** @return the flight's <code>fnum</code> */
+	public int flightId() { return this._flightId; }
+
+	public int pilotId() { return this._pilotId; }
+
+	public int planeId() { return this._planeId; }
+
+	@Override
+	public String toString() {
+		return "flight info " + this._fiid + " (flight " + this._flightId + ", pilot " + this._pilotId + ", plane "
+				+ this._planeId + ")";
+	}
+}
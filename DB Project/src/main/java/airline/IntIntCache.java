@@ -0,0 +1,174 @@
+package airline;
+
+import java.util.Arrays;
+
+/**
+ * A bounded int to int map with no boxing: keys and values live in two
+ * parallel arrays with open addressing and linear probing. When the map is
+ * full, inserting a new key evicts an entry chosen by the CLOCK algorithm,
+ * which keeps recently read entries the way an LRU list would but costs one
+ * byte per slot instead of a linked node per entry.
+ *
+ * Not thread safe; {@link SeatCache} guards it with its own lock.
+ */
+final class IntIntCache {
+	/** Marks an empty slot; callers must not use it as a key. */
+	static final int EMPTY = Integer.MIN_VALUE;
+
+	private final int[] _keys;
+	private final int[] _values;
+	private final byte[] _referenced;
+	private final int _mask;
+	private final int _capacity;
+	private int _size = 0;
+	private int _hand = 0;
+
+	/**
+	 * @param capacity the most entries kept before evicting
+	 */
+	IntIntCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		// at most half full, so probe sequences stay short
+		int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+		this._keys = new int[slots];
+		this._values = new int[slots];
+		this._referenced = new byte[slots];
+		this._mask = slots - 1;
+		this._capacity = capacity;
+		Arrays.fill(this._keys, EMPTY);
+	}
+
+	private int slot(int key) {
+		// spread the bits so consecutive flight numbers do not cluster
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & this._mask;
+	}
+
+	/**
+	 * Looks a key up and marks it recently used.
+	 *
+	 * @param missing returned when the key is absent
+	 */
+	int get(int key, int missing) {
+		int i = find(key);
+		if (i < 0) {
+			return missing;
+		}
+		this._referenced[i] = 1;
+		return this._values[i];
+	}
+
+	/**
+	 * Inserts or replaces an entry.
+	 *
+	 * @return true when another entry was evicted to make room
+	 */
+	boolean put(int key, int value) {
+		int i = find(key);
+		if (i >= 0) {
+			this._values[i] = value;
+			this._referenced[i] = 1;
+			return false;
+		}
+		boolean evicted = false;
+		if (this._size == this._capacity) {
+			evict();
+			evicted = true;
+		}
+		i = slot(key);
+		while (this._keys[i] != EMPTY) {
+			i = (i + 1) & this._mask;
+		}
+		this._keys[i] = key;
+		this._values[i] = value;
+		this._referenced[i] = 0;
+		++this._size;
+		return evicted;
+	}
+
+	/**
+	 * @return true when the key was present
+	 */
+	boolean remove(int key) {
+		int i = find(key);
+		if (i < 0) {
+			return false;
+		}
+		removeAt(i);
+		return true;
+	}
+
+	void clear() {
+		Arrays.fill(this._keys, EMPTY);
+		Arrays.fill(this._referenced, (byte) 0);
+		this._size = 0;
+	}
+
+	int size() {
+		return this._size;
+	}
+
+	int capacity() {
+		return this._capacity;
+	}
+
+	private int find(int key) {
+		int i = slot(key);
+		int k;
+		while ((k = this._keys[i]) != EMPTY) {
+			if (k == key) {
+				return i;
+			}
+			i = (i + 1) & this._mask;
+		}
+		return -1;
+	}
+
+	/*
+	 * CLOCK: sweep the slots, giving referenced entries a second chance, and
+	 * remove the first entry that has not been read since the last sweep.
+	 */
+	private void evict() {
+		while (true) {
+			int i = this._hand;
+			this._hand = (this._hand + 1) & this._mask;
+			if (this._keys[i] == EMPTY) {
+				continue;
+			}
+			if (this._referenced[i] != 0) {
+				this._referenced[i] = 0;
+				continue;
+			}
+			removeAt(i);
+			return;
+		}
+	}
+
+	/*
+	 * Backward-shift deletion: pulls later entries of the same probe run into
+	 * the hole so lookups never need tombstones.
+	 */
+	private void removeAt(int hole) {
+		int i = hole;
+		while (true) {
+			i = (i + 1) & this._mask;
+			int k = this._keys[i];
+			if (k == EMPTY) {
+				break;
+			}
+			int home = slot(k);
+			// move k back if its home slot is not cyclically within (hole, i]
+			if (((i - home) & this._mask) >= ((i - hole) & this._mask)) {
+				this._keys[hole] = k;
+				this._values[hole] = this._values[i];
+				this._referenced[hole] = this._referenced[i];
+				hole = i;
+			}
+		}
+		this._keys[hole] = EMPTY;
+		this._referenced[hole] = 0;
+		--this._size;
+	}
+}
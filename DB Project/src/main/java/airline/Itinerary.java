@@ -0,0 +1,50 @@
+package airline;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A way from one airport to another over one or more flights, as found by
+ * {@link RouteGraph#itineraries}.
+ */
+public final class Itinerary {
+	private final int[] _flights;
+	private final List<String> _airports;
+	private final LocalDate _departure;
+	private final LocalDate _arrival;
+	private final long _cost;
+
+	Itinerary(int[] flights, String[] airports, LocalDate departure, LocalDate arrival, long cost) {
+		this._flights = flights;
+		this._airports = Collections.unmodifiableList(Arrays.asList(airports));
+		this._departure = departure;
+		this._arrival = arrival;
+		this._cost = cost;
+	}
+
+	/** @return the flight numbers, in the order they are flown */
+	public int[] flights() { return this._flights.clone(); }
+
+	/** @return the airports, from the first departure to the final arrival */
+	public List<String> airports() { return this._airports; }
+
+	/** @return the departure date of the first flight */
+	public LocalDate departure() { return this._departure; }
+
+	/** @return the arrival date of the last flight */
+	public LocalDate arrival() { return this._arrival; }
+
+	/** @return the sum of the flights' costs */
+	public long cost() { return this._cost; }
+
+	/** @return flights less one */
+	public int connections() { return this._flights.length - 1; }
+
+	@Override
+	public String toString() {
+		return String.join(" -> ", this._airports) + " (flight(s) " + Arrays.toString(this._flights).replaceAll("[\\[\\]]", "")
+				+ ", " + this._departure + " to " + this._arrival + ", cost " + this._cost + ")";
+	}
+}
@@ -0,0 +1,101 @@
+package airline;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Hands out keys from a database sequence in blocks, so a bulk insert pays
+ * one round trip per block instead of one per row and never has to look the
+ * next key up in the table.
+ *
+ * A block is <code>blockSize</code> calls to <code>nextval</code> made in a
+ * single query. The sequence itself is left alone: the key triggers and the
+ * menu's single-row inserts draw from the same sequence, so raising its
+ * INCREMENT BY would leave gaps of a whole block between their keys.
+ * Concurrent callers may interleave inside a block, so the keys a block holds
+ * are unique and increasing but not necessarily contiguous. Keys handed out
+ * but not used are simply skipped, like any sequence value.
+ *
+ * Each block is fetched on a connection borrowed from the pool just for that
+ * query, because the caller's own connection may be busy streaming a COPY.
+ *
+ * Explicit keys are only kept when the triggers from
+ * <code>migrations/V002__keep_explicit_keys.sql</code> are installed.
+ */
+public class KeyAllocator {
+	private static final String NEXT_BLOCK =
+		"SELECT nextval(?::regclass) FROM generate_series(1, ?)";
+
+	private final ConnectionPool _pool;
+	private final String _sequence;
+	private final int[] _block;
+	private int _next;
+	private int _size;
+	private long _blocks = 0;
+
+	/**
+	 * @param pool the pool blocks are fetched through
+	 * @param sequence the sequence keys are drawn from, e.g. <code>cus_seq</code>
+	 * @param blockSize keys fetched per round trip
+	 */
+	public KeyAllocator(ConnectionPool pool, String sequence, int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("block size must be positive: " + blockSize);
+		}
+		this._pool = pool;
+		this._sequence = sequence;
+		this._block = new int[blockSize];
+	}
+
+	/**
+	 * Returns the next key, fetching a new block when the current one is
+	 * used up.
+	 *
+	 * @return a key nobody else has been given
+	 * @throws java.sql.SQLException when the sequence cannot be read
+	 */
+	public synchronized int next() throws SQLException {
+		if (this._next == this._size) {
+			fill();
+		}
+		return this._block[this._next++];
+	}
+
+	private void fill() throws SQLException {
+		int n = 0;
+		PooledConnection conn = this._pool.borrow();
+		try{
+			PreparedStatement ps = conn.prepare(NEXT_BLOCK);
+			ps.setString(1, this._sequence);
+			ps.setInt(2, this._block.length);
+			try (ResultSet rs = ps.executeQuery()){
+				while (rs.next()) {
+					this._block[n++] = rs.getInt(1);
+				}
+			}
+		}finally{
+			this._pool.release(conn);
+		}
+		if (n == 0) {
+			throw new SQLException("no keys returned from " + this._sequence);
+		}
+		this._next = 0;
+		this._size = n;
+		++this._blocks;
+	}
+
+	/**
+	 * @return the sequence keys are drawn from
+	 */
+	public String getSequence() {
+		return this._sequence;
+	}
+
+	/**
+	 * @return round trips made to fetch blocks so far
+	 */
+	public synchronized long getBlocksFetched() {
+		return this._blocks;
+	}
+}
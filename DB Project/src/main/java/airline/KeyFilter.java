@@ -0,0 +1,275 @@
+package airline;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Answers "does this key exist?" for one table, mostly without a round
+ * trip.
+ *
+ * Keys come from sequences, so they are dense and a bitmap of the known
+ * keys is small: 20,000 flights take 2.5 KB. The bitmap is loaded with one
+ * streamed scan of the key column the first time it is needed. This process
+ * adds its own inserts to it through {@link #added(int)}.
+ *
+ * A key is decided locally in two cases:
+ * <ul>
+ * <li>It is in the bitmap. The application never deletes single rows of
+ * these tables, and the foreign keys still guard the writes that depend on
+ * them. Flight does lose its oldest rows in bulk: maintain_partitions()
+ * detaches its lowest blocks of flight numbers, in this process or any
+ * other. A filter built with <code>detachable</code> therefore also keeps
+ * a floor, the table's smallest key, re-read at most once a second, and
+ * answers every key below it absent. Only a key detached in the last
+ * second can still be answered present.</li>
+ * <li>It is at most 0, or far out of range. Out of range means above twice
+ * the bound plus 1024, where the bound is the larger of the sequence's last
+ * value and the largest key in the table. A sequence does not jump that
+ * far. The bound is re-read, at most once a second, before such a key is
+ * rejected.</li>
+ * </ul>
+ * Any other key may have been inserted by another session since the load.
+ * That includes keys just above the bound. It is checked with one indexed
+ * lookup, and added to the bitmap if found. So the filter never rejects a
+ * key that exists, except one inserted with an explicit, far out of range
+ * key in the last second.
+ */
+public class KeyFilter {
+	// keys at or above this are always looked up rather than kept in the bitmap (32 MB)
+	private static final int MAX_BITMAP_KEY = 1 << 28;
+	private static final long BOUND_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final Database _db;
+	private final String _table;
+	private final String _existsSql;
+	private final String _existingSql;
+	private final String _loadSql;
+	private final String _boundSql;
+	private final String _floorSql;
+
+	private volatile AtomicLongArray _words = new AtomicLongArray(0);
+	private volatile boolean _loaded = false;
+	private volatile int _bound = 0;
+	private volatile long _boundReadAt = 0;
+	private volatile int _floor = 0;
+	private volatile long _floorReadAt = 0;
+
+	private final AtomicLong _hits = new AtomicLong();
+	private final AtomicLong _rejected = new AtomicLong();
+	private final AtomicLong _lookups = new AtomicLong();
+
+	/**
+	 * @param db runs the load, bound and lookup queries
+	 * @param table the table and its key column and sequence
+	 * @param existsSql a query with one <code>?</code> for the key that
+	 *        returns a row only when the key exists
+	 */
+	public KeyFilter(Database db, BulkLoader.Table table, String existsSql) {
+		this(db, table, existsSql, false);
+	}
+
+	/**
+	 * @param detachable whether the table's lowest keys may be detached in
+	 *        bulk, so a key in the bitmap must not be below the table's
+	 *        smallest key
+	 */
+	public KeyFilter(Database db, BulkLoader.Table table, String existsSql, boolean detachable) {
+		this._db = db;
+		this._table = table.tableName;
+		this._existsSql = existsSql;
+		this._existingSql = "SELECT " + table.keyColumn + " FROM " + table.tableName + " WHERE " + table.keyColumn
+				+ " = ANY(?)";
+		this._loadSql = "SELECT " + table.keyColumn + " FROM " + table.tableName;
+		this._boundSql = "SELECT GREATEST((SELECT last_value FROM " + table.keySequence + "), (SELECT max("
+				+ table.keyColumn + ") FROM " + table.tableName + "), 0)";
+		// with every block detached, nothing the sequence has handed out is left
+		this._floorSql = detachable ? "SELECT coalesce(min(" + table.keyColumn + "), (SELECT last_value + 1 FROM "
+				+ table.keySequence + ")) FROM " + table.tableName : null;
+	}
+
+	/**
+	 * @return whether a row with the key exists
+	 */
+	public boolean exists(int key) throws SQLException {
+		ensureLoaded();
+		boolean detached = key < floor();
+		if (isSet(key) && !detached) {
+			this._hits.incrementAndGet();
+			return true;
+		}
+		if (key <= 0 || detached || outOfRange(key)) {
+			this._rejected.incrementAndGet();
+			return false;
+		}
+		this._lookups.incrementAndGet();
+		boolean found = this._db.executeQuery(this._existsSql, key) > 0;
+		if (found) {
+			set(key);
+		}
+		return found;
+	}
+
+	/**
+	 * Checks many keys with at most one query.
+	 *
+	 * @return the keys that do not exist, each once, in the order given
+	 */
+	public int[] missing(int... keys) throws SQLException {
+		ensureLoaded();
+		Set<Integer> unknown = new LinkedHashSet<Integer>();
+		List<Integer> missing = new ArrayList<Integer>();
+		int floor = floor();
+		for (int key : keys) {
+			if (isSet(key) && key >= floor) {
+				this._hits.incrementAndGet();
+			}else if (key <= 0 || key < floor || outOfRange(key)) {
+				this._rejected.incrementAndGet();
+				if (!missing.contains(key)) {
+					missing.add(key);
+				}
+			}else{
+				unknown.add(key);
+			}
+		}
+		if (!unknown.isEmpty()) {
+			this._lookups.incrementAndGet();
+			int[] ask = new int[unknown.size()];
+			int n = 0;
+			for (int key : unknown) {
+				ask[n++] = key;
+			}
+			for (int key : this._db.executeQueryAndMap(this._existingSql, RowMapper.INT, (Object) ask)) {
+				set(key);
+				unknown.remove(key);
+			}
+			missing.addAll(unknown);
+		}
+		int[] result = new int[missing.size()];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = missing.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Records a key this process just inserted.
+	 */
+	public void added(int key) {
+		set(key);
+		if (key > this._bound) {
+			this._bound = key;
+		}
+	}
+
+	private void ensureLoaded() throws SQLException {
+		if (this._loaded) {
+			return;
+		}
+		synchronized (this) {
+			if (this._loaded) {
+				return;
+			}
+			readBound();
+			this._db.forEachRow(this._loadSql, row -> set(row.getInt(1)));
+			this._loaded = true;
+		}
+	}
+
+	/*
+	 * Re-reads the bound when the key is out of range and the last read is
+	 * more than a second old.
+	 */
+	private boolean outOfRange(int key) throws SQLException {
+		if (key <= rangeOf(this._bound)) {
+			return false;
+		}
+		if (System.nanoTime() - this._boundReadAt >= BOUND_REFRESH_NANOS) {
+			synchronized (this) {
+				if (System.nanoTime() - this._boundReadAt >= BOUND_REFRESH_NANOS) {
+					readBound();
+				}
+			}
+		}
+		return key > rangeOf(this._bound);
+	}
+
+	/*
+	 * The smallest key of a detachable table, re-read when the last read is
+	 * more than a second old; 0 for the other tables.
+	 */
+	private int floor() throws SQLException {
+		if (this._floorSql == null) {
+			return 0;
+		}
+		if (System.nanoTime() - this._floorReadAt >= BOUND_REFRESH_NANOS) {
+			synchronized (this) {
+				if (System.nanoTime() - this._floorReadAt >= BOUND_REFRESH_NANOS) {
+					long floor = this._db.executeQueryAndMapFirst(this._floorSql, RowMapper.LONG);
+					this._floor = (int) floor;
+					this._floorReadAt = System.nanoTime();
+				}
+			}
+		}
+		return this._floor;
+	}
+
+	private static long rangeOf(int bound) {
+		return 2L * bound + 1024;
+	}
+
+	private void readBound() throws SQLException {
+		long bound = this._db.executeQueryAndMapFirst(this._boundSql, RowMapper.LONG);
+		this._bound = (int) Math.min(Integer.MAX_VALUE, Math.max(bound, this._bound));
+		this._boundReadAt = System.nanoTime();
+	}
+
+	private boolean isSet(int key) {
+		AtomicLongArray words = this._words;
+		int word = key >>> 6;
+		return key > 0 && word < words.length() && (words.get(word) & (1L << key)) != 0;
+	}
+
+	/*
+	 * Writers are serialized so a grow never loses a concurrent set; readers
+	 * see either the old or the new array.
+	 */
+	private synchronized void set(int key) {
+		if (key <= 0 || key >= MAX_BITMAP_KEY) {
+			return;
+		}
+		int word = key >>> 6;
+		AtomicLongArray words = this._words;
+		if (word >= words.length()) {
+			int size = Math.min(MAX_BITMAP_KEY >>> 6, Math.max(word + 1, words.length() * 2));
+			AtomicLongArray grown = new AtomicLongArray(size);
+			for (int i = 0; i < words.length(); ++i) {
+				grown.set(i, words.get(i));
+			}
+			this._words = grown;
+			words = grown;
+		}
+		words.set(word, words.get(word) | (1L << key));
+	}
+
+	/** @return keys answered present from the bitmap */
+	public long getHits() { return this._hits.get(); }
+
+	/** @return keys answered absent without a round trip */
+	public long getRejected() { return this._rejected.get(); }
+
+	/** @return round trips made to answer exists or missing */
+	public long getLookups() { return this._lookups.get(); }
+
+	@Override
+	public String toString() {
+		return String.format("keyFilter[%s loaded=%b bound=%d%s hits=%d rejected=%d lookups=%d]", this._table,
+				this._loaded, this._bound, this._floorSql == null ? "" : " floor=" + this._floor, getHits(), getRejected(),
+				getLookups());
+	}
+}
@@ -0,0 +1,108 @@
+package airline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, lock-free latency histogram with microsecond resolution.
+ *
+ * Values are bucketed log-linearly: each power of two is split into 16
+ * linear sub-buckets, so any reported percentile is within about 6% of the
+ * true value. Recording is a couple of atomic increments and never
+ * allocates, which makes it cheap enough to leave on permanently.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BITS = 4;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+	private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong _count = new AtomicLong();
+	private final AtomicLong _totalMicros = new AtomicLong();
+	private final AtomicLong _maxMicros = new AtomicLong();
+
+	/**
+	 * Records one latency.
+	 *
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(0L, nanos / 1000L);
+		this._counts.incrementAndGet(bucketOf(micros));
+		this._count.incrementAndGet();
+		this._totalMicros.addAndGet(micros);
+		long max;
+		while (micros > (max = this._maxMicros.get())) {
+			if (this._maxMicros.compareAndSet(max, micros)) {
+				break;
+			}
+		}
+	}
+
+	static int bucketOf(long micros) {
+		if (micros < SUB_COUNT) {
+			return (int) micros;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) ((micros >>> (exp - SUB_BITS)) & (SUB_COUNT - 1));
+		return SUB_COUNT + (exp - SUB_BITS) * SUB_COUNT + sub;
+	}
+
+	/*
+	 * The largest value that falls into the bucket.
+	 */
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_COUNT) {
+			return bucket;
+		}
+		int exp = (bucket - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+		int sub = (bucket - SUB_COUNT) % SUB_COUNT;
+		long lower = (long) (SUB_COUNT + sub) << (exp - SUB_BITS);
+		return lower + (1L << (exp - SUB_BITS)) - 1;
+	}
+
+	public long count() {
+		return this._count.get();
+	}
+
+	public double meanMillis() {
+		long n = this._count.get();
+		return n == 0 ? 0.0 : this._totalMicros.get() / 1000.0 / n;
+	}
+
+	public double maxMillis() {
+		return this._maxMicros.get() / 1000.0;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the latency at that percentile in milliseconds
+	 */
+	public double percentileMillis(double percentile) {
+		long n = this._count.get();
+		if (n == 0) {
+			return 0.0;
+		}
+		long rank = (long) Math.ceil(percentile / 100.0 * n);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += this._counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), this._maxMicros.get()) / 1000.0;
+			}
+		}
+		return maxMillis();
+	}
+
+	/**
+	 * Clears all recorded values.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; ++i) {
+			this._counts.set(i, 0);
+		}
+		this._count.set(0);
+		this._totalMicros.set(0);
+		this._maxMicros.set(0);
+	}
+}
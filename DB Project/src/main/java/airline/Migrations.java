@@ -0,0 +1,208 @@
+package airline;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Applies the versioned SQL scripts in <code>migrations/</code> in order and
+ * records each one in a <code>schema_version</code> table, so running it
+ * again only applies the scripts that are new.
+ *
+ * Scripts are named <code>V&lt;version&gt;__&lt;description&gt;.sql</code>
+ * and each one runs in its own transaction.
+ */
+public class Migrations {
+	public static final String TABLE = "schema_version";
+
+	private static final Pattern NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+	private static final String CREATE_TABLE =
+		"CREATE TABLE IF NOT EXISTS " + TABLE + " (version INTEGER PRIMARY KEY, description TEXT NOT NULL, applied_at TIMESTAMP NOT NULL DEFAULT now())";
+	private static final String APPLIED_VERSIONS = "SELECT version FROM " + TABLE;
+	private static final String RECORD_VERSION = "INSERT INTO " + TABLE + " (version, description) VALUES (?, ?)";
+	private static final String TABLE_EXISTS = "SELECT (to_regclass('" + TABLE + "') IS NOT NULL)::int";
+	private static final String VERSION_APPLIED = "SELECT count(*) FROM " + TABLE + " WHERE version = ?";
+
+	/** One migration script. */
+	public static final class Migration implements Comparable<Migration> {
+		private final int _version;
+		private final String _description;
+		private final String _sql;
+
+		Migration(int version, String description, String sql) {
+			this._version = version;
+			this._description = description;
+			this._sql = sql;
+		}
+
+		public int version() {
+			return this._version;
+		}
+
+		public String description() {
+			return this._description;
+		}
+
+		@Override
+		public int compareTo(Migration other) {
+			return Integer.compare(this._version, other._version);
+		}
+
+		@Override
+		public String toString() {
+			return "V" + this._version + " " + this._description.replace('_', ' ');
+		}
+	}
+
+	private final ConnectionPool _pool;
+
+	public Migrations(ConnectionPool pool) {
+		this._pool = pool;
+	}
+
+	/**
+	 * Reads the migration scripts in a directory, sorted by version.
+	 *
+	 * @throws IllegalArgumentException on two scripts with the same version
+	 */
+	public static List<Migration> fromDirectory(Path dir) throws IOException {
+		List<Migration> migrations = new ArrayList<Migration>();
+		try (Stream<Path> files = Files.list(dir)){
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Matcher m = NAME.matcher(file.getFileName().toString());
+				if (m.matches()) {
+					migrations.add(new Migration(Integer.parseInt(m.group(1)), m.group(2),
+							new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+				}
+			}
+		}
+		Collections.sort(migrations);
+		for (int i = 1; i < migrations.size(); ++i) {
+			if (migrations.get(i).version() == migrations.get(i - 1).version()) {
+				throw new IllegalArgumentException("two migrations with version " + migrations.get(i).version());
+			}
+		}
+		return migrations;
+	}
+
+	/**
+	 * Reads the migration scripts packaged under <code>/migrations</code> on
+	 * the classpath, whether that is a directory or a jar.
+	 */
+	public static List<Migration> fromClasspath() throws IOException {
+		URL url = Migrations.class.getResource("/migrations");
+		if (url == null) {
+			throw new IOException("/migrations is not on the classpath");
+		}
+		try{
+			URI uri = url.toURI();
+			if (!"jar".equals(uri.getScheme())) {
+				return fromDirectory(Path.of(uri));
+			}
+			FileSystem jar;
+			boolean opened = false;
+			try{
+				jar = FileSystems.newFileSystem(uri, Collections.<String, Object>emptyMap());
+				opened = true;
+			}catch(FileSystemAlreadyExistsException e){
+				jar = FileSystems.getFileSystem(uri);
+			}
+			try{
+				return fromDirectory(jar.getPath("/migrations"));
+			}finally{
+				if (opened) {
+					jar.close();
+				}
+			}
+		}catch(URISyntaxException e){
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * @return whether the migration with this version is recorded in
+	 *         <code>schema_version</code>; false when no migration was ever
+	 *         applied to this database
+	 */
+	public boolean isApplied(int version) throws SQLException {
+		PooledConnection conn = this._pool.borrow();
+		try{
+			try (ResultSet rs = conn.prepare(TABLE_EXISTS).executeQuery()){
+				if (!rs.next() || rs.getInt(1) == 0) {
+					return false;
+				}
+			}
+			PreparedStatement ps = conn.prepare(VERSION_APPLIED);
+			ps.setInt(1, version);
+			try (ResultSet rs = ps.executeQuery()){
+				return rs.next() && rs.getInt(1) > 0;
+			}
+		}finally{
+			this._pool.release(conn);
+		}
+	}
+
+	/**
+	 * Applies every migration that is not yet recorded in
+	 * <code>schema_version</code>.
+	 *
+	 * @return the migrations that were applied, in order
+	 */
+	public List<Migration> apply(List<Migration> migrations) throws SQLException {
+		List<Migration> applied = new ArrayList<Migration>();
+		PooledConnection conn = this._pool.borrow();
+		try{
+			Set<Integer> done = new HashSet<Integer>();
+			try (Statement stmt = conn.connection().createStatement()){
+				stmt.execute(CREATE_TABLE);
+				try (ResultSet rs = stmt.executeQuery(APPLIED_VERSIONS)){
+					while (rs.next()) {
+						done.add(rs.getInt(1));
+					}
+				}
+			}
+
+			conn.connection().setAutoCommit(false);
+			for (Migration migration : migrations) {
+				if (done.contains(migration.version())) {
+					continue;
+				}
+				try (Statement stmt = conn.connection().createStatement();
+						PreparedStatement record = conn.connection().prepareStatement(RECORD_VERSION)){
+					stmt.execute(migration._sql);
+					record.setInt(1, migration.version());
+					record.setString(2, migration.description());
+					record.executeUpdate();
+					conn.connection().commit();
+				}catch(SQLException e){
+					conn.connection().rollback();
+					throw new SQLException("migration " + migration + " failed: " + e.getMessage(), e.getSQLState(), e);
+				}
+				applied.add(migration);
+			}
+		}finally{
+			this._pool.release(conn);
+		}
+		return applied;
+	}
+}
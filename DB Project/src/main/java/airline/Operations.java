@@ -0,0 +1,669 @@
+package airline;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Non-interactive implementations of the DBproject menu operations.
+ *
+ * The menu methods in DBproject prompt for input and then call these; the
+ * workload driver and the benchmarks call them directly, so every caller runs
+ * exactly the same SQL. Arguments are checked against {@link Validation} and
+ * rejected with an IllegalArgumentException.
+ *
+ * Each menu operation is timed as one {@link StatementMetrics} operation,
+ * named as in {@link Command}, and the statements it runs are counted
+ * against it.
+ *
+ * The reports, options 6 to 9, read through the database's replica
+ * helpers, so they run on a replica when one is configured and fresh.
+ * Bookings, cancellations, inserts and existence checks stay on the
+ * primary.
+ */
+public class Operations {
+	public static final String INSERT_PLANE =
+		"INSERT INTO Plane (make, model, age, seats) VALUES(?, ?, ?, ?) RETURNING id;";
+	public static final String INSERT_PILOT =
+		"INSERT INTO Pilot (fullname, nationality) VALUES(?, ?) RETURNING id;";
+	public static final String INSERT_FLIGHT =
+		"INSERT INTO Flight(cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_airport, departure_airport) Values (?, ?, ?, ?, ?, ?, ?) RETURNING fnum;";
+	public static final String INSERT_FLIGHT_INFO =
+		"INSERT INTO FlightInfo(pilot_id, plane_id) Values (?, ?);";
+	// one statement, so the Flight and its FlightInfo are inserted together or not at all
+	public static final String INSERT_FLIGHT_WITH_INFO =
+		"WITH F AS (INSERT INTO Flight(cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_airport, departure_airport) Values (?, ?, ?, ?, ?, ?, ?) RETURNING fnum) " +
+		"INSERT INTO FlightInfo(flight_id, pilot_id, plane_id) SELECT F.fnum, ?, ? FROM F RETURNING flight_id;";
+	public static final String INSERT_TECHNICIAN =
+		"INSERT INTO Technician(full_name) VALUES(?) RETURNING id;";
+	public static final String INSERT_CUSTOMER =
+		"INSERT INTO Customer(fname, lname, gtype, dob, address, phone, zipcode) Values(?, ?, ?, ?, ?, ?, ?) RETURNING id;";
+
+	// existence checks read the primary key index only
+	public static final String PILOT_EXISTS = "SELECT 1 FROM Pilot WHERE id = ?;";
+	public static final String PLANE_EXISTS = "SELECT 1 FROM Plane WHERE id = ?;";
+	public static final String FLIGHT_EXISTS = "SELECT 1 FROM Flight WHERE fnum = ?;";
+	public static final String CUSTOMER_EXISTS = "SELECT 1 FROM Customer WHERE id = ?;";
+	public static final String PLANE_SEATS = "SELECT seats FROM Plane WHERE id = ?;";
+	public static final String FLIGHT_COST = "SELECT cost FROM Flight WHERE fnum = ?;";
+
+	public static final String AVAILABLE_SEATS =
+		"SELECT (seats_available.seats - seats_available.num_sold) AS seats_available FROM (SELECT P.seats, F.num_sold FROM Plane P, Flight F, FlightInfo FI WHERE FI.plane_id = P.id AND F.fnum = FI.flight_id AND F.fnum = ?) as seats_available;";
+	// options 7 and 8 read the trigger-maintained summaries from migration V004
+	public static final String REPAIRS_PER_PLANE =
+		"SELECT S.plane_id AS id, S.repairs AS count FROM repairs_per_plane S ORDER BY S.repairs DESC";
+	public static final String REPAIRS_PER_YEAR =
+		"SELECT S.repair_year AS year, S.repairs AS count FROM repairs_per_year S ORDER BY S.repairs ASC";
+	// and fall back to aggregating Repairs on databases without it
+	public static final String REPAIRS_PER_PLANE_SCAN =
+		"SELECT R.plane_id AS id, COUNT(*) AS count FROM Repairs R GROUP BY R.plane_id ORDER BY COUNT(*) DESC";
+	public static final String REPAIRS_PER_YEAR_SCAN =
+		"SELECT EXTRACT(YEAR FROM R.repair_date)::int AS year, COUNT(*) AS count FROM Repairs R GROUP BY(EXTRACT(YEAR FROM R.repair_date)) ORDER BY COUNT(*) ASC";
+	// seats per departure airport, each flight counted with the smallest plane assigned to it
+	public static final String SEATS_BY_DEPARTURE_AIRPORT =
+		"SELECT F.departure_airport::text, count(*), sum(S.seats), sum(F.num_sold) FROM Flight F, " +
+		"(SELECT FI.flight_id, MIN(P.seats) AS seats FROM FlightInfo FI, Plane P WHERE FI.plane_id = P.id GROUP BY FI.flight_id) S " +
+		"WHERE S.flight_id = F.fnum AND F.actual_departure_date BETWEEN ? AND ? GROUP BY 1 ORDER BY F.departure_airport::text COLLATE \"C\"";
+	// a route's flights in a departure window, one page at a time; a page starts after the
+	// (sort key, fnum) of the previous page's last flight, which the V008 route indexes seek to
+	public static final String SEARCH_FLIGHTS_BY_COST =
+		"SELECT " + Flight.COLUMNS + " FROM Flight WHERE departure_airport = CAST(? AS CHAR(5)) AND arrival_airport = CAST(? AS CHAR(5)) " +
+		"AND actual_departure_date BETWEEN ? AND ? AND (cost, fnum) > (?, ?) ORDER BY cost, fnum LIMIT ?;";
+	public static final String SEARCH_FLIGHTS_BY_DEPARTURE =
+		"SELECT " + Flight.COLUMNS + " FROM Flight WHERE departure_airport = CAST(? AS CHAR(5)) AND arrival_airport = CAST(? AS CHAR(5)) " +
+		"AND actual_departure_date BETWEEN ? AND ? AND (actual_departure_date, fnum) > (?, ?) ORDER BY actual_departure_date, fnum LIMIT ?;";
+	public static final int MAX_SEARCH_PAGE = 500;
+	public static final int MAX_CONNECTIONS = 4;
+	public static final int MAX_ITINERARIES = 100;
+	public static final String REPAIR_SUMMARIES_INSTALLED =
+		"SELECT (to_regclass('repairs_per_plane') IS NOT NULL AND to_regclass('repairs_per_year') IS NOT NULL)::int";
+	// removes a reservation and, if it held a seat, gives the seat back, in one statement
+	public static final String CANCEL_RESERVATION =
+		"WITH C AS (DELETE FROM Reservation WHERE rnum = ? RETURNING " + Reservation.COLUMNS + "), " +
+		"F AS (UPDATE Flight F SET num_sold = F.num_sold - 1 FROM C WHERE F.fnum = C.fid AND C.status IN ('R', 'C')) " +
+		"SELECT " + Reservation.COLUMNS + " FROM C;";
+	public static final String PASSENGERS_WITH_STATUS =
+		"(SELECT count(*) FROM Reservation R, Flight F, Customer C WHERE R.fid = F.fnum AND R.cid = C.id AND R.fid = ? AND R.status = CAST(? AS CHAR(1)));";
+
+	// whole rows, read into the typed records by their mappers
+	public static final String PLANE_BY_ID = "SELECT " + Plane.COLUMNS + " FROM Plane WHERE id = ?;";
+	public static final String PILOT_BY_ID = "SELECT " + Pilot.COLUMNS + " FROM Pilot WHERE id = ?;";
+	public static final String FLIGHT_BY_FNUM = "SELECT " + Flight.COLUMNS + " FROM Flight WHERE fnum = ?;";
+	public static final String FLIGHT_INFO_BY_FLIGHT =
+		"SELECT " + FlightInfo.COLUMNS + " FROM FlightInfo WHERE flight_id = ? ORDER BY fiid;";
+	public static final String RESERVATION_BY_RNUM = "SELECT " + Reservation.COLUMNS + " FROM Reservation WHERE rnum = ?;";
+	public static final String REPAIRS_OF_PLANE =
+		"SELECT " + Repair.COLUMNS + " FROM Repairs WHERE plane_id = ? ORDER BY repair_date, rid;";
+
+	private final Database _db;
+	private final StatementMetrics _metrics;
+	private final KeyFilter _pilots;
+	private final KeyFilter _planes;
+	private final KeyFilter _flights;
+	private final KeyFilter _customers;
+	private volatile Boolean _repairSummaries = null;
+	private volatile Boolean _explicitKeys = null;
+
+	public Operations(Database db) {
+		this._db = db;
+		this._metrics = db.getMetrics();
+		this._pilots = new KeyFilter(db, BulkLoader.Table.PILOT, PILOT_EXISTS);
+		this._planes = new KeyFilter(db, BulkLoader.Table.PLANE, PLANE_EXISTS);
+		// maintain_partitions() detaches Flight's oldest blocks of flight numbers
+		this._flights = new KeyFilter(db, BulkLoader.Table.FLIGHT, FLIGHT_EXISTS, true);
+		this._customers = new KeyFilter(db, BulkLoader.Table.CUSTOMER, CUSTOMER_EXISTS);
+	}
+
+	public Database getDatabase() {
+		return this._db;
+	}
+
+	private static void require(boolean condition, String message) {
+		if (!condition) {
+			throw new IllegalArgumentException(message);
+		}
+	}
+
+	/**
+	 * Menu option 1.
+	 *
+	 * @return the id of the new plane
+	 */
+	public int addPlane(String make, String model, int age, int seats) throws SQLException {
+		long start = this._metrics.beginOperation("add_plane");
+		boolean failed = false;
+		try{
+			require(Validation.isValidMake(make), "invalid make");
+			require(Validation.isValidModel(model), "invalid model");
+			require(Validation.isValidAge(age), "invalid age");
+			require(Validation.isValidSeats(seats), "invalid seats");
+			int id = this._db.executeInsert(INSERT_PLANE, make, model, age, seats);
+			this._planes.added(id);
+			return id;
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("add_plane", start, failed);
+		}
+	}
+
+	/**
+	 * Menu option 2.
+	 *
+	 * @return the id of the new pilot
+	 */
+	public int addPilot(String fullname, String nationality) throws SQLException {
+		long start = this._metrics.beginOperation("add_pilot");
+		boolean failed = false;
+		try{
+			require(Validation.isValidFullName(fullname), "invalid pilot name");
+			require(Validation.isValidNationality(nationality), "invalid nationality");
+			int id = this._db.executeInsert(INSERT_PILOT, fullname, nationality);
+			this._pilots.added(id);
+			return id;
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("add_pilot", start, failed);
+		}
+	}
+
+	/**
+	 * Menu option 3. Checks that the pilot and plane exist and that the seats
+	 * sold fit on the plane, then inserts the Flight and its FlightInfo.
+	 *
+	 * With migration V002 both rows go in as one statement and FlightInfo is
+	 * linked to the <code>fnum</code> the Flight got. Without it the
+	 * FlightInfo trigger overwrites <code>flight_id</code> from its own
+	 * sequence, so the two rows are inserted separately as before.
+	 *
+	 * @return the number of the new flight
+	 */
+	public int addFlight(int cost, int numSold, int numStops, Date departure, Date arrival,
+			String arrivalAirport, String departureAirport, int pilotId, int planeId) throws SQLException {
+		long start = this._metrics.beginOperation("add_flight");
+		boolean failed = false;
+		try{
+			require(Validation.isValidCost(cost), "invalid cost");
+			require(Validation.isValidNumSold(numSold), "invalid number sold");
+			require(Validation.isValidNumStops(numStops), "invalid number of stops");
+			require(Validation.isValidAirport(arrivalAirport), "invalid arrival airport");
+			require(Validation.isValidAirport(departureAirport), "invalid departure airport");
+			require(pilotExists(pilotId), "pilot " + pilotId + " does not exist");
+			require(planeExists(planeId), "plane " + planeId + " does not exist");
+			require(numSold <= planeSeats(planeId), "number of seats sold exceeds seats on plane");
+
+			int fnum;
+			if (keepsExplicitKeys()) {
+				fnum = this._db.executeInsert(INSERT_FLIGHT_WITH_INFO, cost, numSold, numStops, departure, arrival,
+						arrivalAirport, departureAirport, pilotId, planeId);
+			}else{
+				fnum = this._db.executeInsert(INSERT_FLIGHT, cost, numSold, numStops, departure, arrival, arrivalAirport, departureAirport);
+				this._db.executeUpdate(INSERT_FLIGHT_INFO, pilotId, planeId);
+			}
+			this._flights.added(fnum);
+			return fnum;
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("add_flight", start, failed);
+		}
+	}
+
+	/**
+	 * Menu option 4.
+	 *
+	 * @return the id of the new technician
+	 */
+	public int addTechnician(String fullName) throws SQLException {
+		long start = this._metrics.beginOperation("add_technician");
+		boolean failed = false;
+		try{
+			require(Validation.isValidFullName(fullName), "invalid technician name");
+			return this._db.executeInsert(INSERT_TECHNICIAN, fullName);
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("add_technician", start, failed);
+		}
+	}
+
+	/**
+	 * Signs up a new guest (the new-customer branch of menu option 5).
+	 *
+	 * @return the id of the new customer
+	 */
+	public int addCustomer(String fname, String lname, String gtype, Date dob, String address,
+			String phone, String zipcode) throws SQLException {
+		long start = this._metrics.beginOperation("add_customer");
+		boolean failed = false;
+		try{
+			require(Validation.isValidFirstName(fname), "invalid first name");
+			require(Validation.isValidLastName(lname), "invalid last name");
+			require(Validation.isValidGender(gtype), "invalid gender");
+			require(Validation.isValidAddress(address), "invalid address");
+			require(Validation.isValidPhone(phone), "invalid phone");
+			require(Validation.isValidZipcode(zipcode), "invalid zipcode");
+			int id = this._db.executeInsert(INSERT_CUSTOMER, fname, lname, gtype, dob, address, phone, zipcode);
+			this._customers.added(id);
+			return id;
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("add_customer", start, failed);
+		}
+	}
+
+	/**
+	 * Menu option 5: reserves a seat, or waitlists the customer when the
+	 * flight is full.
+	 */
+	public BookingEngine.Booking bookFlight(int cid, int fnum) throws SQLException {
+		long start = this._metrics.beginOperation("book_flight");
+		boolean failed = false;
+		try{
+			BookingEngine.Booking booking = this._db.getBookingEngine().book(cid, fnum);
+			SeatCache cache = this._db.getSeatCache();
+			if (cache != null && !booking.isWaitlisted()) {
+				// the trigger's notification will follow, but this caller should
+				// see its own booking straight away
+				cache.invalidate(fnum);
+			}
+			return booking;
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("book_flight", start, failed);
+		}
+	}
+
+	/**
+	 * Menu option 10: cancels a reservation by removing it; the status
+	 * domain has no cancelled state ('C' is confirmed). A reserved or
+	 * confirmed reservation's seat goes back to the flight, where the
+	 * waitlist worker gives it to the first waitlisted customer.
+	 *
+	 * @return the status the reservation had
+	 * @throws IllegalArgumentException when there is no such reservation
+	 */
+	public char cancelReservation(int rnum) throws SQLException {
+		long start = this._metrics.beginOperation("cancel");
+		boolean failed = false;
+		try{
+			Reservation cancelled = this._db.executeQueryAndMapFirst(CANCEL_RESERVATION, Reservation.MAPPER, rnum);
+			require(cancelled != null, "reservation " + rnum + " does not exist");
+			char status = cancelled.status();
+			if (cancelled.holdsSeat()) {
+				SeatCache cache = this._db.getSeatCache();
+				if (cache != null) {
+					cache.invalidate(cancelled.fid());
+				}
+				WaitlistWorker waitlist = this._db.getWaitlistWorker();
+				if (waitlist != null) {
+					waitlist.wakeUp();
+				}
+			}
+			return status;
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("cancel", start, failed);
+		}
+	}
+
+	/**
+	 * Menu option 6.
+	 *
+	 * Served from the seat cache when it is enabled and holds the flight.
+	 * Cache misses load from the primary: the cache is invalidated by the
+	 * primary's notifications, and a replica may not have the change yet
+	 * when one arrives. Without the cache the count comes from a replica.
+	 *
+	 * @return seats minus seats sold for the flight
+	 */
+	public int availableSeats(int fnum) throws SQLException {
+		long start = this._metrics.beginOperation("seats");
+		boolean failed = false;
+		try{
+			SeatCache cache = this._db.getSeatCache();
+			if (cache == null) {
+				return seatsOf(this._db.executeReplicaQueryAndMapFirst(AVAILABLE_SEATS, RowMapper.INT, fnum), fnum);
+			}
+			int seats = cache.get(fnum);
+			if (seats != SeatCache.MISSING) {
+				return seats;
+			}
+			long stamp = cache.stamp();
+			seats = seatsOf(this._db.executeQueryAndMapFirst(AVAILABLE_SEATS, RowMapper.INT, fnum), fnum);
+			cache.put(fnum, seats, stamp);
+			return seats;
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("seats", start, failed);
+		}
+	}
+
+	private static int seatsOf(Integer seats, int fnum) {
+		require(seats != null, "flight " + fnum + " does not exist");
+		return seats;
+	}
+
+	/**
+	 * Menu option 7.
+	 *
+	 * Answered from the analytics snapshot when one is loaded, as of its
+	 * last refresh.
+	 *
+	 * @return the repair count of each plane id, most repaired first
+	 */
+	public List<Repair.Total> repairsPerPlane() throws SQLException {
+		long start = this._metrics.beginOperation("repairs_per_plane");
+		boolean failed = false;
+		try{
+			AnalyticsSnapshot analytics = this._db.getAnalytics();
+			if (analytics != null && analytics.isLoaded()) {
+				return analytics.repairsPerPlane();
+			}
+			return this._db.executeReplicaQueryAndMap(repairsPerPlaneQuery(), Repair.Total.MAPPER);
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("repairs_per_plane", start, failed);
+		}
+	}
+
+	/**
+	 * @return the option 7 query: the summary table when it is installed,
+	 *         otherwise the aggregate over Repairs
+	 */
+	public String repairsPerPlaneQuery() throws SQLException {
+		return hasRepairSummaries() ? REPAIRS_PER_PLANE : REPAIRS_PER_PLANE_SCAN;
+	}
+
+	/**
+	 * Menu option 8.
+	 *
+	 * Answered from the analytics snapshot when one is loaded, as of its
+	 * last refresh.
+	 *
+	 * @return the repair count of each year, fewest repairs first
+	 */
+	public List<Repair.Total> repairsPerYear() throws SQLException {
+		long start = this._metrics.beginOperation("repairs_per_year");
+		boolean failed = false;
+		try{
+			AnalyticsSnapshot analytics = this._db.getAnalytics();
+			if (analytics != null && analytics.isLoaded()) {
+				return analytics.repairsPerYear();
+			}
+			return this._db.executeReplicaQueryAndMap(repairsPerYearQuery(), Repair.Total.MAPPER);
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("repairs_per_year", start, failed);
+		}
+	}
+
+	/**
+	 * @return the option 8 query: the summary table when it is installed,
+	 *         otherwise the aggregate over Repairs
+	 */
+	public String repairsPerYearQuery() throws SQLException {
+		return hasRepairSummaries() ? REPAIRS_PER_YEAR : REPAIRS_PER_YEAR_SCAN;
+	}
+
+	/**
+	 * The seat report: per departure airport, the flights leaving between
+	 * two dates, their seats and the seats sold. A flight's seats are those
+	 * of the smallest plane assigned to it; flights without a plane are left
+	 * out. Answered from the analytics snapshot when one is loaded.
+	 *
+	 * @return one line per departure airport, by airport
+	 */
+	public List<Flight.SeatTotal> seatsByDepartureAirport(Date from, Date to) throws SQLException {
+		long start = this._metrics.beginOperation("seats_by_airport");
+		boolean failed = false;
+		try{
+			require(from != null && to != null && !from.after(to), "invalid date range");
+			AnalyticsSnapshot analytics = this._db.getAnalytics();
+			if (analytics != null && analytics.isLoaded()) {
+				return analytics.seatsByDepartureAirport(from.toLocalDate(), to.toLocalDate());
+			}
+			return this._db.executeReplicaQueryAndMap(SEATS_BY_DEPARTURE_AIRPORT, Flight.SeatTotal.MAPPER, from, to);
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("seats_by_airport", start, failed);
+		}
+	}
+
+	/**
+	 * Flight search: the flights from one airport to another that leave
+	 * between two dates, cheapest or earliest first, a page at a time.
+	 *
+	 * The next page is asked for with the last flight of this one, and
+	 * starts right after it in the order, so a deep page costs what the
+	 * first does. Flights added or changed between pages are seen or not
+	 * by where they now fall in the order; none is returned twice.
+	 *
+	 * @param order COST or DEPARTURE
+	 * @param after the last flight of the previous page, or null for the first
+	 * @param limit flights per page, at most {@link #MAX_SEARCH_PAGE}
+	 * @return up to <code>limit</code> flights; fewer means there are no more
+	 */
+	public List<Flight> searchFlights(String from, String to, Date first, Date last, Flight.Order order, Flight after,
+			int limit) throws SQLException {
+		long start = this._metrics.beginOperation("search_flights");
+		boolean failed = false;
+		try{
+			require(Validation.isValidAirport(from), "invalid departure airport");
+			require(Validation.isValidAirport(to), "invalid arrival airport");
+			require(first != null && last != null && !first.after(last), "invalid date range");
+			require(order != null, "invalid order");
+			require(limit > 0 && limit <= MAX_SEARCH_PAGE, "page size must be between 1 and " + MAX_SEARCH_PAGE);
+			if (order == Flight.Order.COST) {
+				return this._db.executeReplicaQueryAndMap(SEARCH_FLIGHTS_BY_COST, Flight.MAPPER, from, to, first, last,
+						after == null ? Integer.MIN_VALUE : after.cost(), after == null ? Integer.MIN_VALUE : after.fnum(), limit);
+			}
+			return this._db.executeReplicaQueryAndMap(SEARCH_FLIGHTS_BY_DEPARTURE, Flight.MAPPER, from, to, first, last,
+					after == null ? first : after.departure(), after == null ? Integer.MIN_VALUE : after.fnum(), limit);
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("search_flights", start, failed);
+		}
+	}
+
+	/**
+	 * Itinerary search: the cheapest ways from one airport to another over
+	 * up to <code>maxConnections</code> connections, the first flight
+	 * leaving between two dates. Runs on the route graph, as of its last
+	 * refresh; seats are checked when each flight is booked.
+	 *
+	 * @return up to <code>limit</code> itineraries, cheapest first
+	 * @throws IllegalStateException when this process keeps no route graph
+	 *         or it has not loaded yet
+	 */
+	public List<Itinerary> findItineraries(String from, String to, Date first, Date last, int maxConnections, int limit) {
+		long start = this._metrics.beginOperation("itineraries");
+		boolean failed = false;
+		try{
+			require(Validation.isValidAirport(from), "invalid departure airport");
+			require(Validation.isValidAirport(to), "invalid arrival airport");
+			require(!from.equals(to), "departure and arrival airport are the same");
+			require(first != null && last != null && !first.after(last), "invalid date range");
+			require(maxConnections >= 0 && maxConnections <= MAX_CONNECTIONS, "connections must be between 0 and " + MAX_CONNECTIONS);
+			require(limit > 0 && limit <= MAX_ITINERARIES, "itineraries must be between 1 and " + MAX_ITINERARIES);
+			RouteGraph routes = this._db.getRouteGraph();
+			if (routes == null) {
+				throw new IllegalStateException("itinerary search is off; set -Ddbproject.routes.refreshSeconds");
+			}
+			return routes.itineraries(from, to, first.toLocalDate(), last.toLocalDate(), maxConnections, limit);
+		}catch(RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("itineraries", start, failed);
+		}
+	}
+
+	/*
+	 * Checked once; a database migrated while the program runs is picked up
+	 * on the next start.
+	 */
+	private boolean keepsExplicitKeys() throws SQLException {
+		Boolean installed = this._explicitKeys;
+		if (installed == null) {
+			installed = new Migrations(this._db.getPool()).isApplied(2);
+			this._explicitKeys = installed;
+		}
+		return installed;
+	}
+
+	private boolean hasRepairSummaries() throws SQLException {
+		Boolean installed = this._repairSummaries;
+		if (installed == null) {
+			installed = this._db.executeQueryAndMapFirst(REPAIR_SUMMARIES_INSTALLED, RowMapper.INT) == 1;
+			this._repairSummaries = installed;
+		}
+		return installed;
+	}
+
+	/**
+	 * Menu option 9.
+	 *
+	 * @param status 'W', 'C' or 'R'
+	 * @return the number of passengers on the flight with that status
+	 */
+	public int passengerCount(int fnum, String status) throws SQLException {
+		long start = this._metrics.beginOperation("status_count");
+		boolean failed = false;
+		try{
+			require("W".equals(status) || "C".equals(status) || "R".equals(status), "invalid status");
+			return this._db.executeReplicaQueryAndMapFirst(PASSENGERS_WITH_STATUS, RowMapper.INT, fnum, status);
+		}catch(SQLException | RuntimeException e){
+			failed = true;
+			throw e;
+		}finally{
+			this._metrics.endOperation("status_count", start, failed);
+		}
+	}
+
+	/*
+	 * Existence checks go through the key filters, which answer most of
+	 * them without a round trip.
+	 */
+
+	public boolean pilotExists(int id) throws SQLException {
+		return this._pilots.exists(id);
+	}
+
+	public boolean planeExists(int id) throws SQLException {
+		return this._planes.exists(id);
+	}
+
+	public boolean flightExists(int fnum) throws SQLException {
+		return this._flights.exists(fnum);
+	}
+
+	public boolean customerExists(int id) throws SQLException {
+		return this._customers.exists(id);
+	}
+
+	/**
+	 * Checks many keys of one table with at most one query.
+	 *
+	 * @param table PILOT, PLANE, FLIGHT or CUSTOMER
+	 * @return the keys that do not exist, each once, in the order given
+	 */
+	public int[] missingKeys(BulkLoader.Table table, int... keys) throws SQLException {
+		switch (table) {
+			case PILOT: return this._pilots.missing(keys);
+			case PLANE: return this._planes.missing(keys);
+			case FLIGHT: return this._flights.missing(keys);
+			case CUSTOMER: return this._customers.missing(keys);
+			default: throw new IllegalArgumentException("no key filter for " + table);
+		}
+	}
+
+	/**
+	 * @return the key filters, for reporting
+	 */
+	public List<KeyFilter> getKeyFilters() {
+		return Arrays.asList(this._pilots, this._planes, this._flights, this._customers);
+	}
+
+	/**
+	 * @return the seat count of the plane
+	 */
+	public int planeSeats(int planeId) throws SQLException {
+		Integer seats = this._db.executeQueryAndMapFirst(PLANE_SEATS, RowMapper.INT, planeId);
+		require(seats != null, "plane " + planeId + " does not exist");
+		return seats;
+	}
+
+	/**
+	 * @return the cost of the flight
+	 */
+	public int flightCost(int fnum) throws SQLException {
+		Integer cost = this._db.executeQueryAndMapFirst(FLIGHT_COST, RowMapper.INT, fnum);
+		require(cost != null, "flight " + fnum + " does not exist");
+		return cost;
+	}
+
+	/**
+	 * @return the plane, or null when there is none with that id
+	 */
+	public Plane findPlane(int id) throws SQLException {
+		return this._db.executeQueryAndMapFirst(PLANE_BY_ID, Plane.MAPPER, id);
+	}
+
+	/**
+	 * @return the pilot, or null when there is none with that id
+	 */
+	public Pilot findPilot(int id) throws SQLException {
+		return this._db.executeQueryAndMapFirst(PILOT_BY_ID, Pilot.MAPPER, id);
+	}
+
+	/**
+	 * @return the flight, or null when there is none with that number
+	 */
+	public Flight findFlight(int fnum) throws SQLException {
+		return this._db.executeQueryAndMapFirst(FLIGHT_BY_FNUM, Flight.MAPPER, fnum);
+	}
+
+	/**
+	 * @return the flight's pilot and plane assignments, oldest first
+	 */
+	public List<FlightInfo> flightInfo(int fnum) throws SQLException {
+		return this._db.executeQueryAndMap(FLIGHT_INFO_BY_FLIGHT, FlightInfo.MAPPER, fnum);
+	}
+
+	/**
+	 * @return the reservation, or null when there is none with that number
+	 */
+	public Reservation findReservation(int rnum) throws SQLException {
+		return this._db.executeQueryAndMapFirst(RESERVATION_BY_RNUM, Reservation.MAPPER, rnum);
+	}
+
+	/**
+	 * @return the plane's repairs, oldest first
+	 */
+	public List<Repair> repairsOfPlane(int planeId) throws SQLException {
+		return this._db.executeQueryAndMap(REPAIRS_OF_PLANE, Repair.MAPPER, planeId);
+	}
+}
@@ -0,0 +1,162 @@
+package airline;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs <code>maintain_partitions()</code> from migration V007, once or on
+ * a schedule.
+ *
+ * Flight and Reservation are partitioned in blocks of flight numbers. Each
+ * run creates the blocks that <code>fnum_seq</code> will reach next. Rows
+ * that went to a default partition because their block did not exist yet
+ * are moved into it. With a retention period, a run also detaches the
+ * blocks whose flights all departed before it. The work is one call and one
+ * transaction on the server, so runs from several processes take turns
+ * there, and a run that cannot get its locks within a few seconds fails and
+ * is retried on the next tick.
+ */
+public class PartitionMaintainer implements AutoCloseable {
+	static final String MAINTAIN =
+		"SELECT action, partition_name, moved_rows FROM maintain_partitions(?, ?, ?)";
+
+	private final ConnectionPool _pool;
+	private final int _retainMonths;
+	private final int _blocksAhead;
+	private final int _flightsPerBlock;
+	private ScheduledExecutorService _scheduler = null;
+	private volatile String _lastError = null;
+
+	private final AtomicLong _runs = new AtomicLong();
+	private final AtomicLong _created = new AtomicLong();
+	private final AtomicLong _detached = new AtomicLong();
+	private final AtomicLong _moved = new AtomicLong();
+	private final AtomicLong _errors = new AtomicLong();
+
+	/**
+	 * @param pool the pool each run borrows its connection from
+	 * @param retainMonths months of departed flights kept attached; 0 never
+	 *        detaches anything
+	 * @param blocksAhead blocks created past <code>fnum_seq</code>
+	 * @param flightsPerBlock flight numbers per new block
+	 */
+	public PartitionMaintainer(ConnectionPool pool, int retainMonths, int blocksAhead, int flightsPerBlock) {
+		if (retainMonths < 0 || blocksAhead < 1 || flightsPerBlock < 1) {
+			throw new IllegalArgumentException("retention must not be negative, blocks ahead and flights per block must be positive");
+		}
+		this._pool = pool;
+		this._retainMonths = retainMonths;
+		this._blocksAhead = blocksAhead;
+		this._flightsPerBlock = flightsPerBlock;
+	}
+
+	/**
+	 * Runs maintenance once on the calling thread.
+	 *
+	 * @return one line per partition created or detached
+	 * @throws java.sql.SQLException when the run fails; nothing is changed
+	 */
+	public List<String> maintain() throws SQLException {
+		List<String> actions = new ArrayList<String>();
+		PooledConnection conn = this._pool.borrow();
+		try{
+			PreparedStatement ps = conn.prepare(MAINTAIN);
+			ps.setInt(1, this._retainMonths);
+			ps.setInt(2, this._blocksAhead);
+			ps.setInt(3, this._flightsPerBlock);
+			try (ResultSet rs = ps.executeQuery()){
+				while (rs.next()) {
+					String action = rs.getString(1);
+					long moved = rs.getLong(3);
+					if (action.equals("created")) {
+						this._created.incrementAndGet();
+						this._moved.addAndGet(moved);
+					}else{
+						this._detached.incrementAndGet();
+					}
+					actions.add(action + " " + rs.getString(2) + (moved > 0 ? " (moved " + moved + " row(s) from the default partition)" : ""));
+				}
+			}
+			this._runs.incrementAndGet();
+			this._lastError = null;
+			return actions;
+		}catch(SQLException e){
+			this._errors.incrementAndGet();
+			this._lastError = e.getMessage();
+			throw e;
+		}finally{
+			this._pool.release(conn);
+		}
+	}
+
+	/**
+	 * Runs maintenance now and then every <code>periodMinutes</code> on a
+	 * daemon thread. Failed runs are counted and retried on the next tick.
+	 */
+	public synchronized void start(long periodMinutes) {
+		if (this._scheduler != null) {
+			return;
+		}
+		this._scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "partition-maintainer");
+			t.setDaemon(true);
+			return t;
+		});
+		this._scheduler.scheduleWithFixedDelay(() -> {
+			try{
+				maintain();
+			}catch(SQLException e){
+				// counted; the next run tries again.
+			}
+		}, 0L, periodMinutes, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Stops the schedule, waiting briefly for a running call to finish.
+	 */
+	@Override
+	public synchronized void close() {
+		if (this._scheduler == null) {
+			return;
+		}
+		this._scheduler.shutdown();
+		try{
+			this._scheduler.awaitTermination(10, TimeUnit.SECONDS);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		this._scheduler = null;
+	}
+
+	/** @return runs that completed */
+	public long getRuns() { return this._runs.get(); }
+
+	/** @return partitions created */
+	public long getCreated() { return this._created.get(); }
+
+	/** @return partitions detached */
+	public long getDetached() { return this._detached.get(); }
+
+	/** @return rows moved out of the default partitions */
+	public long getMoved() { return this._moved.get(); }
+
+	/** @return runs that failed */
+	public long getErrors() { return this._errors.get(); }
+
+	/** @return why the last run failed, or null when it succeeded */
+	public String getLastError() { return this._lastError; }
+
+	@Override
+	public String toString() {
+		return String.format("partitionMaintainer[retainMonths=%d runs=%d created=%d detached=%d moved=%d errors=%d%s]",
+				this._retainMonths, getRuns(), getCreated(), getDetached(), getMoved(), getErrors(),
+				this._lastError == null ? "" : " lastError=" + this._lastError);
+	}
+}
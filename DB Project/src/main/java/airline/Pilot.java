@@ -0,0 +1,34 @@
+package airline;
+
+/**
+ * A row of Pilot.
+ */
+public final class Pilot {
+	/** The columns {@link #MAPPER} reads, in order. */
+	public static final String COLUMNS = "id, fullname, nationality";
+	public static final RowMapper<Pilot> MAPPER = row -> new Pilot(row.getInt(1), Plane.trim(row.getString(2)),
+			Plane.trim(row.getString(3)));
+
+	private final int _id;
+	private final String _fullname;
+	private final String _nationality;
+
+	Pilot(int id, String fullname, String nationality) {
+		this._id = id;
+		this._fullname = fullname;
+		this._nationality = nationality;
+	}
+
+	public int id() { return this._id; }
+
+	/** @return the pilot's name, or null when it was never recorded */
+	public String fullname() { return this._fullname; }
+
+	/** @return the pilot's nationality, or null when it was never recorded */
+	public String nationality() { return this._nationality; }
+
+	@Override
+	public String toString() {
+		return "pilot " + this._id + " (" + this._fullname + ")";
+	}
+}
@@ -0,0 +1,217 @@
+package airline;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Captures <code>EXPLAIN</code> for every query the menu runs and fails when
+ * one of them plans a sequential scan over a large table.
+ *
+ * Lookups by key must never scan a large table. The whole-table reports
+ * (options 7 and 8) read a whole table, so a sequential scan can be the
+ * cheapest plan for them; for those the check instead re-plans with
+ * <code>enable_seqscan</code> off and fails if no index path exists, which is
+ * what happens when their covering indexes are missing.
+ *
+ * A table is large when <code>pg_class.reltuples</code> is at least
+ * <code>minRows</code>, so run ANALYZE first.
+ *
+ * Queries over tables added by a migration are skipped until it is applied.
+ * A query that fails to plan is reported as a failure; it runs under its own
+ * savepoint so the queries after it are still checked.
+ *
+ * Usage: java airline.PlanCheck &lt;dbname&gt; &lt;port&gt; &lt;user&gt; [minRows]
+ */
+public class PlanCheck {
+	private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+	private static final String TABLE_ROWS =
+		"SELECT reltuples FROM pg_class WHERE oid = to_regclass(?)";
+
+	private static final class Query {
+		final String name;
+		final String sql;
+		final Object[] params;
+		final boolean scansAll;
+		final int migration;
+
+		Query(String name, String sql, boolean scansAll, Object... params) {
+			this(name, 0, sql, scansAll, params);
+		}
+
+		Query(String name, int migration, String sql, boolean scansAll, Object... params) {
+			this.name = name;
+			this.migration = migration;
+			this.sql = sql;
+			this.scansAll = scansAll;
+			this.params = params;
+		}
+	}
+
+	/** The menu's queries, with sample parameters. */
+	private static final Query[] QUERIES = {
+		new Query("pilot exists", Operations.PILOT_EXISTS, false, 1),
+		new Query("plane exists", Operations.PLANE_EXISTS, false, 1),
+		new Query("flight exists", Operations.FLIGHT_EXISTS, false, 1),
+		new Query("customer exists", Operations.CUSTOMER_EXISTS, false, 1),
+		new Query("plane seats", Operations.PLANE_SEATS, false, 1),
+		new Query("flight cost", Operations.FLIGHT_COST, false, 1),
+		new Query("reserve seat", BookingEngine.RESERVE_SEAT_BEHIND_WAITLIST, false, 1),
+		new Query("available seats (6)", Operations.AVAILABLE_SEATS, false, 1),
+		new Query("repairs per plane (7)", 4, Operations.REPAIRS_PER_PLANE, true),
+		new Query("repairs per year (8)", 4, Operations.REPAIRS_PER_YEAR, true),
+		new Query("repairs per plane (7, no summaries)", Operations.REPAIRS_PER_PLANE_SCAN, true),
+		new Query("repairs per year (8, no summaries)", Operations.REPAIRS_PER_YEAR_SCAN, true),
+		new Query("passengers with status (9)", Operations.PASSENGERS_WITH_STATUS, false, 1, "R"),
+		new Query("search flights by cost", Operations.SEARCH_FLIGHTS_BY_COST, false, "A0001", "A0007",
+				Date.valueOf("2020-01-01"), Date.valueOf("2020-12-31"), 0, 0, 20),
+		new Query("search flights by departure", Operations.SEARCH_FLIGHTS_BY_DEPARTURE, false, "A0001", "A0007",
+				Date.valueOf("2020-01-01"), Date.valueOf("2020-12-31"), Date.valueOf("2020-01-01"), 0, 20),
+	};
+
+	private final ConnectionPool _pool;
+	private final long _minRows;
+
+	public PlanCheck(ConnectionPool pool, long minRows) {
+		this._pool = pool;
+		this._minRows = minRows;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("Usage: java airline.PlanCheck <dbname> <port> <user> [minRows]");
+			return;
+		}
+		String url = "jdbc:postgresql://localhost:" + args[1] + "/" + args[0];
+		long minRows = args.length > 3 ? Long.parseLong(args[3]) : 1000L;
+
+		ConnectionPool pool = new ConnectionPool(url, args[2], "", 1, 1, 60000L, 30000L);
+		List<String> failures;
+		try{
+			failures = new PlanCheck(pool, minRows).run();
+		}finally{
+			pool.close();
+		}
+		if (!failures.isEmpty()) {
+			System.out.println("FAILED: " + failures.size() + " query plan(s) scan a large table or do not plan");
+			for (String failure : failures) {
+				System.out.println("\t" + failure);
+			}
+			System.exit(1);
+		}
+		System.out.println("OK: no sequential scans on tables with " + minRows + " or more rows");
+	}
+
+	/**
+	 * Prints the plan of every menu query.
+	 *
+	 * @return one line per query that scans a large table or fails to plan;
+	 *         empty when all pass
+	 */
+	public List<String> run() throws SQLException {
+		List<String> failures = new ArrayList<String>();
+		Migrations migrations = new Migrations(this._pool);
+		List<Query> queries = new ArrayList<Query>();
+		for (Query query : QUERIES) {
+			if (query.migration == 0 || migrations.isApplied(query.migration)) {
+				queries.add(query);
+			}else{
+				System.out.println("== " + query.name + ": skipped, migration " + query.migration + " is not applied");
+			}
+		}
+
+		PooledConnection conn = this._pool.borrow();
+		try{
+			// EXPLAIN never runs the statement, but the reserve seat UPDATE still
+			// takes locks while planning; keep it all in one rolled back transaction
+			conn.connection().setAutoCommit(false);
+			for (Query query : queries) {
+				List<String> plan;
+				Savepoint savepoint = conn.connection().setSavepoint();
+				try{
+					plan = check(conn, query);
+					conn.connection().releaseSavepoint(savepoint);
+				}catch(SQLException e){
+					conn.connection().rollback(savepoint);
+					System.out.println("== " + query.name + ": " + e.getMessage());
+					failures.add(query.name + ": " + e.getMessage());
+					continue;
+				}
+				for (String table : seqScans(plan)) {
+					long rows = tableRows(conn, table);
+					if (rows >= this._minRows) {
+						failures.add(query.name + ": Seq Scan on " + table + " (" + rows + " rows)"
+								+ (query.scansAll ? " with no usable index" : ""));
+					}
+				}
+			}
+			conn.connection().rollback();
+		}finally{
+			this._pool.release(conn);
+		}
+		return failures;
+	}
+
+	/*
+	 * Prints the plan of the query and returns the plan to judge it by: the
+	 * same one, or for a whole-table report the plan with sequential scans
+	 * turned off.
+	 */
+	private static List<String> check(PooledConnection conn, Query query) throws SQLException {
+		List<String> plan = explain(conn, query);
+		System.out.println("== " + query.name);
+		for (String line : plan) {
+			System.out.println(line);
+		}
+
+		if (query.scansAll) {
+			try (Statement stmt = conn.connection().createStatement()){
+				stmt.execute("SET LOCAL enable_seqscan = off");
+			}
+			plan = explain(conn, query);
+			try (Statement stmt = conn.connection().createStatement()){
+				stmt.execute("SET LOCAL enable_seqscan = on");
+			}
+		}
+		return plan;
+	}
+
+	private static List<String> explain(PooledConnection conn, Query query) throws SQLException {
+		List<String> plan = new ArrayList<String>();
+		try (PreparedStatement ps = Database.bind(conn.connection().prepareStatement("EXPLAIN " + query.sql), query.params);
+				ResultSet rs = ps.executeQuery()){
+			while (rs.next()) {
+				plan.add(rs.getString(1));
+			}
+		}
+		return plan;
+	}
+
+	private static List<String> seqScans(List<String> plan) {
+		List<String> tables = new ArrayList<String>();
+		for (String line : plan) {
+			Matcher m = SEQ_SCAN.matcher(line);
+			if (m.find()) {
+				tables.add(m.group(1).toLowerCase(Locale.ROOT));
+			}
+		}
+		return tables;
+	}
+
+	private static long tableRows(PooledConnection conn, String table) throws SQLException {
+		PreparedStatement ps = conn.prepare(TABLE_ROWS);
+		ps.setString(1, table);
+		try (ResultSet rs = ps.executeQuery()){
+			return rs.next() ? (long) rs.getFloat(1) : 0L;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package airline;
+
+/**
+ * A row of Plane.
+ */
+public final class Plane {
+	/** The columns {@link #MAPPER} reads, in order. */
+	public static final String COLUMNS = "id, make, model, age, seats";
+	public static final RowMapper<Plane> MAPPER = row -> new Plane(row.getInt(1), trim(row.getString(2)),
+			trim(row.getString(3)), row.getInt(4), row.getInt(5));
+
+	private final int _id;
+	private final String _make;
+	private final String _model;
+	private final int _age;
+	private final int _seats;
+
+	Plane(int id, String make, String model, int age, int seats) {
+		this._id = id;
+		this._make = make;
+		this._model = model;
+		this._age = age;
+		this._seats = seats;
+	}
+
+	public int id() { return this._id; }
+
+	public String make() { return this._make; }
+
+	public String model() { return this._model; }
+
+	/** @return the year the plane was built */
+	public int age() { return this._age; }
+
+	public int seats() { return this._seats; }
+
+	/*
+	 * CHAR columns come back blank-padded to their length.
+	 */
+	static String trim(String value) {
+		return value == null ? null : value.trim();
+	}
+
+	@Override
+	public String toString() {
+		return "plane " + this._id + " (" + this._make + " " + this._model + ", " + this._seats + " seats)";
+	}
+}
@@ -0,0 +1,100 @@
+package airline;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A physical connection owned by a {@link ConnectionPool}. Callers borrow it,
+ * use {@link #connection()} and hand it back with
+ * {@link ConnectionPool#release(PooledConnection)}; they never close it
+ * themselves.
+ */
+public final class PooledConnection {
+	private final Connection _connection;
+	private final StatementCache _statements;
+	private final AtomicBoolean _borrowed = new AtomicBoolean();
+	private volatile long _lastUsed;
+
+	PooledConnection(Connection connection, StatementCache statements) {
+		this._connection = connection;
+		this._statements = statements;
+		this._lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return the underlying physical connection
+	 */
+	public Connection connection() {
+		return this._connection;
+	}
+
+	/**
+	 * Returns a cached PreparedStatement for <code>sql</code> on this connection.
+	 * The statement must not be closed by the caller.
+	 *
+	 * @param sql the SQL text with <code>?</code> placeholders
+	 * @return the cached statement
+	 * @throws java.sql.SQLException when the statement cannot be prepared
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		return this._statements.prepare(sql);
+	}
+
+	/**
+	 * Returns a cached CallableStatement for <code>sql</code> on this
+	 * connection. The statement must not be closed by the caller.
+	 *
+	 * @param sql the call escape with <code>?</code> placeholders
+	 * @return the cached statement
+	 * @throws java.sql.SQLException when the statement cannot be prepared
+	 */
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		return this._statements.prepareCall(sql);
+	}
+
+	/*
+	 * Marks the connection as handed out; false when it already was.
+	 */
+	boolean markBorrowed() {
+		return this._borrowed.compareAndSet(false, true);
+	}
+
+	/*
+	 * Marks the connection as handed back; false when it was not out, i.e.
+	 * on a second release.
+	 */
+	boolean markReturned() {
+		return this._borrowed.compareAndSet(true, false);
+	}
+
+	long lastUsed() {
+		return this._lastUsed;
+	}
+
+	void touch() {
+		this._lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * Puts the connection back into the state a fresh borrower expects:
+	 * autocommit on and no transaction left open.
+	 */
+	void reset() throws SQLException {
+		if (!this._connection.getAutoCommit()) {
+			this._connection.rollback();
+			this._connection.setAutoCommit(true);
+		}
+	}
+
+	void closeQuietly() {
+		this._statements.clear();
+		try{
+			this._connection.close();
+		}catch(SQLException e){
+			// ignored.
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package airline;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams the rows of a query through a server-side cursor.
+ *
+ * pgjdbc only fetches rows in batches when autocommit is off and a fetch size
+ * is set; otherwise it buffers the whole result on the client. A cursor
+ * therefore holds a pooled connection in an open transaction until it is
+ * closed, and memory use is bounded by the fetch size regardless of how many
+ * rows the query returns. Always close a cursor, preferably with
+ * try-with-resources.
+ */
+public final class QueryCursor implements Iterator<Row>, AutoCloseable {
+	private final ConnectionPool _pool;
+	private final PooledConnection _conn;
+	private final PreparedStatement _stmt;
+	private final ResultSet _rs;
+	private final Row _row;
+	private boolean _fetched = false;
+	private boolean _hasNext = false;
+	private boolean _closed = false;
+
+	/**
+	 * Borrows a connection from the pool and opens a cursor over the query.
+	 *
+	 * @param pool the pool to borrow the connection from
+	 * @param fetchSize rows fetched per round trip
+	 * @param sql the query with <code>?</code> placeholders
+	 * @param params the values bound to the placeholders
+	 * @return an open cursor positioned before the first row
+	 * @throws java.sql.SQLException when the query fails
+	 */
+	public static QueryCursor open(ConnectionPool pool, int fetchSize, String sql, Object... params) throws SQLException {
+		PooledConnection conn = pool.borrow();
+		PreparedStatement stmt = null;
+		try{
+			Connection c = conn.connection();
+			c.setAutoCommit(false);
+			// cursor statements are not cached so their fetch size never leaks to other callers
+			stmt = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(fetchSize);
+			for (int i = 0; i < params.length; ++i) {
+				stmt.setObject(i + 1, params[i]);
+			}
+			return new QueryCursor(pool, conn, stmt, stmt.executeQuery());
+		}catch(SQLException e){
+			if (stmt != null) {
+				try{ stmt.close(); }catch(SQLException ignored){ }
+			}
+			pool.release(conn);
+			throw e;
+		}
+	}
+
+	private QueryCursor(ConnectionPool pool, PooledConnection conn, PreparedStatement stmt, ResultSet rs) throws SQLException {
+		this._pool = pool;
+		this._conn = conn;
+		this._stmt = stmt;
+		this._rs = rs;
+		this._row = new Row(rs);
+	}
+
+	/**
+	 * @return the column count of the result
+	 */
+	public int columnCount() {
+		return this._row.columnCount();
+	}
+
+	/**
+	 * @return the row view; only meaningful after {@link #next()}
+	 */
+	public Row row() {
+		return this._row;
+	}
+
+	/**
+	 * Calls the handler for every remaining row.
+	 *
+	 * @param handler the row callback
+	 * @return the number of rows handled
+	 * @throws java.sql.SQLException when fetching a row or the handler fails
+	 */
+	public long forEach(RowHandler handler) throws SQLException {
+		long count = 0;
+		while (advance()) {
+			handler.handle(this._row);
+			++count;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean hasNext() {
+		try{
+			return peek();
+		}catch(SQLException e){
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public Row next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		this._fetched = false;
+		return this._row;
+	}
+
+	/**
+	 * @return a sequential stream over the remaining rows; closing the stream
+	 *         closes the cursor
+	 */
+	public Stream<Row> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+	}
+
+	private boolean peek() throws SQLException {
+		if (!this._fetched) {
+			this._hasNext = !this._closed && this._rs.next();
+			if (this._hasNext) {
+				this._row.advance();
+			}
+			this._fetched = true;
+		}
+		return this._hasNext;
+	}
+
+	private boolean advance() throws SQLException {
+		boolean has = peek();
+		this._fetched = false;
+		return has;
+	}
+
+	/**
+	 * Closes the cursor, ends its transaction and hands the connection back
+	 * to the pool. Safe to call more than once.
+	 */
+	@Override
+	public void close() {
+		if (this._closed) {
+			return;
+		}
+		this._closed = true;
+		try{
+			this._rs.close();
+			this._stmt.close();
+			this._conn.connection().commit();
+		}catch(SQLException e){
+			// ignored, the pool rolls back whatever is left open.
+		}finally{
+			this._pool.release(this._conn);
+		}
+	}
+}
@@ -0,0 +1,354 @@
+package airline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Streams the rows of a {@link QueryCursor} to a byte channel as CSV, TSV
+ * or JSON.
+ *
+ * Characters are written straight into a char buffer and encoded to UTF-8
+ * into a large byte buffer, which goes to the channel only when it is full.
+ * No line or cell is built as a String first. Integer columns are read with
+ * <code>getLong</code> and written digit by digit, so they allocate nothing.
+ * Other columns cost the one String the driver returns.
+ *
+ * <ul>
+ * <li>CSV follows RFC 4180 with a header line. A cell is quoted when it
+ * holds a comma, a quote or a line break. NULL is an empty cell, and an
+ * empty string is <code>""</code>. {@link BulkLoader} reads it back.</li>
+ * <li>TSV follows the PostgreSQL COPY text format with a header line. Tab,
+ * newline, carriage return and backslash are escaped with a backslash, and
+ * NULL is <code>\N</code>.</li>
+ * <li>JSON is an array with one object per row. Numbers and booleans are
+ * unquoted, and NULL is <code>null</code>.</li>
+ * </ul>
+ */
+public final class QueryExporter {
+	public enum Format { CSV, TSV, JSON }
+
+	/** The byte buffer size used when none is given. */
+	public static final int DEFAULT_BUFFER = 1 << 20;
+
+	// how each column is read and written
+	private static final int KIND_INTEGER = 0;
+	private static final int KIND_NUMBER = 1;
+	private static final int KIND_BOOLEAN = 2;
+	private static final int KIND_TEXT = 3;
+
+	/**
+	 * What an export wrote and how long it took.
+	 */
+	public static final class Result {
+		private final Format _format;
+		private final long _rows;
+		private final long _bytes;
+		private final long _nanos;
+
+		Result(Format format, long rows, long bytes, long nanos) {
+			this._format = format;
+			this._rows = rows;
+			this._bytes = bytes;
+			this._nanos = nanos;
+		}
+
+		public long rows() { return this._rows; }
+
+		public long bytes() { return this._bytes; }
+
+		public double seconds() { return this._nanos / 1e9; }
+
+		public double rowsPerSecond() { return this._nanos == 0 ? 0.0 : this._rows / seconds(); }
+
+		public double bytesPerSecond() { return this._nanos == 0 ? 0.0 : this._bytes / seconds(); }
+
+		@Override
+		public String toString() {
+			return String.format("exported %d row(s), %d byte(s) as %s in %.3fs (%.1f rows/s, %.2f MB/s)",
+					this._rows, this._bytes, this._format, seconds(), rowsPerSecond(), bytesPerSecond() / (1 << 20));
+		}
+	}
+
+	private final Format _format;
+	private final WritableByteChannel _channel;
+	private final ByteBuffer _bytes;
+	private final CharBuffer _chars = CharBuffer.allocate(8192);
+	private final CharsetEncoder _encoder = StandardCharsets.UTF_8.newEncoder()
+		.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final char[] _digits = new char[20];
+	private long _written = 0;
+
+	private QueryExporter(Format format, WritableByteChannel channel, int bufferSize) {
+		this._format = format;
+		this._channel = channel;
+		this._bytes = ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	/**
+	 * Writes every remaining row of the cursor to the channel. Neither is
+	 * closed.
+	 *
+	 * @param bufferSize bytes buffered before each write to the channel
+	 */
+	public static Result export(QueryCursor cursor, Format format, WritableByteChannel out, int bufferSize)
+			throws SQLException, IOException {
+		long start = System.nanoTime();
+		QueryExporter exporter = new QueryExporter(format, out, bufferSize);
+		long rows = exporter.write(cursor);
+		return new Result(format, rows, exporter._written, System.nanoTime() - start);
+	}
+
+	private long write(QueryCursor cursor) throws SQLException, IOException {
+		Row row = cursor.row();
+		int columns = cursor.columnCount();
+		int[] kinds = new int[columns + 1];
+		String[] names = new String[columns + 1];
+		for (int col = 1; col <= columns; ++col) {
+			kinds[col] = kindOf(row.columnType(col));
+			names[col] = row.columnName(col);
+		}
+
+		if (this._format == Format.JSON) {
+			put('[');
+		}else{
+			for (int col = 1; col <= columns; ++col) {
+				if (col > 1) {
+					put(separator());
+				}
+				putText(names[col]);
+			}
+			put('\n');
+		}
+
+		long rows = 0;
+		while (cursor.hasNext()) {
+			cursor.next();
+			if (this._format == Format.JSON) {
+				put(rows == 0 ? "\n{" : ",\n{");
+			}
+			for (int col = 1; col <= columns; ++col) {
+				if (this._format == Format.JSON) {
+					if (col > 1) {
+						put(',');
+					}
+					putJsonString(names[col]);
+					put(':');
+				}else if (col > 1) {
+					put(separator());
+				}
+				putCell(row, col, kinds[col]);
+			}
+			put(this._format == Format.JSON ? '}' : '\n');
+			++rows;
+		}
+		if (this._format == Format.JSON) {
+			put(rows == 0 ? "]\n" : "\n]\n");
+		}
+		finish();
+		return rows;
+	}
+
+	private static int kindOf(int sqlType) {
+		switch (sqlType) {
+			case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+				return KIND_INTEGER;
+			case Types.NUMERIC: case Types.DECIMAL: case Types.REAL: case Types.FLOAT: case Types.DOUBLE:
+				return KIND_NUMBER;
+			case Types.BOOLEAN: case Types.BIT:
+				return KIND_BOOLEAN;
+			default:
+				return KIND_TEXT;
+		}
+	}
+
+	private char separator() {
+		return this._format == Format.TSV ? '\t' : ',';
+	}
+
+	private void putCell(Row row, int col, int kind) throws SQLException, IOException {
+		switch (kind) {
+			case KIND_INTEGER: {
+				long v = row.getLong(col);
+				if (row.wasNull()) {
+					putNull();
+				}else{
+					putLong(v);
+				}
+				return;
+			}
+			case KIND_BOOLEAN: {
+				boolean v = row.getBoolean(col);
+				if (row.wasNull()) {
+					putNull();
+				}else{
+					put(v ? "true" : "false");
+				}
+				return;
+			}
+			default: {
+				String v = row.getString(col);
+				if (v == null) {
+					putNull();
+				}else if (kind == KIND_NUMBER && isJsonNumber(v)) {
+					put(v);
+				}else{
+					putText(v);
+				}
+			}
+		}
+	}
+
+	/*
+	 * NaN and Infinity are valid in numeric columns but not as JSON numbers.
+	 */
+	private static boolean isJsonNumber(String v) {
+		char c = v.isEmpty() ? 'x' : v.charAt(0);
+		return c == '-' ? v.length() > 1 && Character.isDigit(v.charAt(1)) : Character.isDigit(c);
+	}
+
+	private void putNull() throws IOException {
+		switch (this._format) {
+			case CSV: break;
+			case TSV: put("\\N"); break;
+			default: put("null");
+		}
+	}
+
+	private void putText(String v) throws IOException {
+		switch (this._format) {
+			case CSV: putCsv(v); break;
+			case TSV: putTsv(v); break;
+			default: putJsonString(v);
+		}
+	}
+
+	private void putCsv(String v) throws IOException {
+		boolean quote = v.isEmpty();
+		for (int i = 0; i < v.length() && !quote; ++i) {
+			char c = v.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			put(v);
+			return;
+		}
+		put('"');
+		for (int i = 0; i < v.length(); ++i) {
+			char c = v.charAt(i);
+			if (c == '"') {
+				put('"');
+			}
+			put(c);
+		}
+		put('"');
+	}
+
+	private void putTsv(String v) throws IOException {
+		for (int i = 0; i < v.length(); ++i) {
+			char c = v.charAt(i);
+			switch (c) {
+				case '\t': put("\\t"); break;
+				case '\n': put("\\n"); break;
+				case '\r': put("\\r"); break;
+				case '\\': put("\\\\"); break;
+				default: put(c);
+			}
+		}
+	}
+
+	private void putJsonString(String v) throws IOException {
+		put('"');
+		for (int i = 0; i < v.length(); ++i) {
+			char c = v.charAt(i);
+			switch (c) {
+				case '"': put("\\\""); break;
+				case '\\': put("\\\\"); break;
+				case '\n': put("\\n"); break;
+				case '\r': put("\\r"); break;
+				case '\t': put("\\t"); break;
+				default:
+					if (c < 0x20) {
+						put("\\u00");
+						put(Character.forDigit(c >> 4, 16));
+						put(Character.forDigit(c & 0xF, 16));
+					}else{
+						put(c);
+					}
+			}
+		}
+		put('"');
+	}
+
+	private void putLong(long v) throws IOException {
+		if (v == Long.MIN_VALUE) {
+			put(Long.toString(v));
+			return;
+		}
+		if (v < 0) {
+			put('-');
+			v = -v;
+		}
+		int i = this._digits.length;
+		do {
+			this._digits[--i] = (char) ('0' + v % 10);
+			v /= 10;
+		} while (v != 0);
+		while (i < this._digits.length) {
+			put(this._digits[i++]);
+		}
+	}
+
+	private void put(String s) throws IOException {
+		for (int i = 0; i < s.length(); ++i) {
+			put(s.charAt(i));
+		}
+	}
+
+	private void put(char c) throws IOException {
+		if (!this._chars.hasRemaining()) {
+			encode(false);
+		}
+		this._chars.put(c);
+	}
+
+	/*
+	 * Moves the buffered characters into the byte buffer, writing the byte
+	 * buffer to the channel whenever it fills up.
+	 */
+	private void encode(boolean endOfInput) throws IOException {
+		this._chars.flip();
+		CoderResult result;
+		while ((result = this._encoder.encode(this._chars, this._bytes, endOfInput)).isOverflow()) {
+			drain();
+		}
+		if (result.isError()) {
+			result.throwException();
+		}
+		// a surrogate pair split across the boundary stays for the next round
+		this._chars.compact();
+	}
+
+	private void drain() throws IOException {
+		this._bytes.flip();
+		while (this._bytes.hasRemaining()) {
+			this._written += this._channel.write(this._bytes);
+		}
+		this._bytes.clear();
+	}
+
+	private void finish() throws IOException {
+		encode(true);
+		while (this._encoder.flush(this._bytes).isOverflow()) {
+			drain();
+		}
+		drain();
+	}
+}
@@ -0,0 +1,74 @@
+package airline;
+
+import java.sql.Date;
+
+/**
+ * A row of Repairs.
+ */
+public final class Repair {
+	/** The columns {@link #MAPPER} reads, in order. */
+	public static final String COLUMNS = "rid, repair_date, repair_code, pilot_id, plane_id, technician_id";
+	public static final RowMapper<Repair> MAPPER = row -> new Repair(row.getInt(1), row.getDate(2),
+			Plane.trim(row.getString(3)), row.getInt(4), row.getInt(5), row.getInt(6));
+
+	/**
+	 * A line of the repair reports, options 7 and 8: a plane id or a year,
+	 * and its number of repairs.
+	 */
+	public static final class Total {
+		/** Reads the key and the count, the first two columns. */
+		public static final RowMapper<Total> MAPPER = row -> new Total(row.getInt(1), row.getLong(2));
+
+		private final int _key;
+		private final long _repairs;
+
+		Total(int key, long repairs) {
+			this._key = key;
+			this._repairs = repairs;
+		}
+
+		/** @return the plane id or the year */
+		public int key() { return this._key; }
+
+		public long repairs() { return this._repairs; }
+
+		@Override
+		public String toString() {
+			return this._key + ": " + this._repairs + " repair(s)";
+		}
+	}
+
+	private final int _rid;
+	private final Date _date;
+	private final String _code;
+	private final int _pilotId;
+	private final int _planeId;
+	private final int _technicianId;
+
+	Repair(int rid, Date date, String code, int pilotId, int planeId, int technicianId) {
+		this._rid = rid;
+		this._date = date;
+		this._code = code;
+		this._pilotId = pilotId;
+		this._planeId = planeId;
+		this._technicianId = technicianId;
+	}
+
+	public int rid() { return this._rid; }
+
+	public Date date() { return this._date; }
+
+	/** @return 'MJ', 'MN' or 'SV', or null when unset */
+	public String code() { return this._code; }
+
+	public int pilotId() { return this._pilotId; }
+
+	public int planeId() { return this._planeId; }
+
+	public int technicianId() { return this._technicianId; }
+
+	@Override
+	public String toString() {
+		return "repair " + this._rid + " (plane " + this._planeId + ", " + this._date + ", " + this._code + ")";
+	}
+}
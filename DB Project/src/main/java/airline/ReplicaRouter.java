@@ -0,0 +1,252 @@
+package airline;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends read-only queries to streaming replicas while they keep up with the
+ * primary, and to the primary otherwise.
+ *
+ * A background task checks every replica each <code>checkMillis</code>.
+ * The check asks the server whether it is in recovery and how far behind
+ * the primary it is. A replica that has replayed everything it received
+ * from a live WAL stream is 0 ms behind. Otherwise the lag is the time
+ * since the last transaction it replayed was committed. A replica is
+ * used while its last check succeeded, is recent, and found it at most
+ * <code>maxLagMillis</code> behind. Reads go round robin over the usable
+ * replicas.
+ *
+ * A read that fails on a replica because the server went away, is
+ * shutting down, or cancelled it over a recovery conflict is run again on
+ * the primary. A lost connection also takes the replica out of rotation
+ * until the next check finds it healthy. When no replica is usable, reads
+ * go to the primary. So callers see at most the lag limit of staleness,
+ * and never an error that the primary would not have given them.
+ *
+ * Writes never come through here. A caller that must see its own writes
+ * reads the primary directly.
+ */
+public class ReplicaRouter implements AutoCloseable {
+	static final String LAG =
+		"SELECT pg_is_in_recovery(), CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() " +
+		"AND EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN 0 " +
+		"ELSE COALESCE((extract(epoch FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint, -1) END";
+
+	/**
+	 * A read that runs against whichever pool the router picks.
+	 */
+	public interface Read<T> {
+		T run(ConnectionPool pool) throws SQLException;
+	}
+
+	/*
+	 * One replica and what its last check found.
+	 */
+	private static final class Replica {
+		final String name;
+		final ConnectionPool pool;
+		volatile long lagMillis = -1;
+		volatile String down = "not checked yet";
+		volatile long checkedAt = 0;
+		final AtomicLong reads = new AtomicLong();
+
+		Replica(String name, ConnectionPool pool) {
+			this.name = name;
+			this.pool = pool;
+		}
+	}
+
+	private final ConnectionPool _primary;
+	private final List<Replica> _replicas = new ArrayList<Replica>();
+	private final long _maxLagMillis;
+	private final long _checkMillis;
+	private final AtomicInteger _next = new AtomicInteger();
+	private ScheduledExecutorService _checker = null;
+
+	private final AtomicLong _primaryReads = new AtomicLong();
+	private final AtomicLong _fallbacks = new AtomicLong();
+	private final AtomicLong _checks = new AtomicLong();
+
+	/**
+	 * @param primary the pool reads fall back to
+	 * @param maxLagMillis how far behind a replica may be and still be read
+	 * @param checkMillis time between checks of each replica
+	 */
+	public ReplicaRouter(ConnectionPool primary, long maxLagMillis, long checkMillis) {
+		if (maxLagMillis < 0 || checkMillis < 1) {
+			throw new IllegalArgumentException("lag limit must not be negative and check interval must be positive");
+		}
+		this._primary = primary;
+		this._maxLagMillis = maxLagMillis;
+		this._checkMillis = checkMillis;
+	}
+
+	/**
+	 * Adds a replica; call before {@link #start()}. The router closes its
+	 * pool.
+	 *
+	 * @param name how the replica is reported, e.g. its host and port
+	 */
+	public synchronized void addReplica(String name, ConnectionPool pool) {
+		if (this._checker != null) {
+			throw new IllegalStateException("replicas are added before the router starts");
+		}
+		this._replicas.add(new Replica(name, pool));
+	}
+
+	/**
+	 * Checks every replica now and then every <code>checkMillis</code> on
+	 * a daemon thread.
+	 */
+	public synchronized void start() {
+		if (this._checker != null) {
+			return;
+		}
+		checkAll();
+		this._checker = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "replica-check");
+			t.setDaemon(true);
+			return t;
+		});
+		this._checker.scheduleWithFixedDelay(this::checkAll, this._checkMillis, this._checkMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs a read-only query on a usable replica, or on the primary.
+	 *
+	 * @return what the read returned
+	 * @throws java.sql.SQLException when the read fails on the primary, or
+	 *         fails on the replica for a reason the primary shares
+	 */
+	public <T> T read(Read<T> read) throws SQLException {
+		Replica replica = pick();
+		if (replica == null) {
+			this._primaryReads.incrementAndGet();
+			return read.run(this._primary);
+		}
+		try{
+			T result = read.run(replica.pool);
+			replica.reads.incrementAndGet();
+			return result;
+		}catch(SQLException e){
+			String state = e.getSQLState() == null ? "" : e.getSQLState();
+			if (state.startsWith("08") || state.startsWith("57P")) {
+				replica.down = e.getMessage();
+			}else if (!state.equals("40001")) {
+				throw e;
+			}
+			this._fallbacks.incrementAndGet();
+			this._primaryReads.incrementAndGet();
+			return read.run(this._primary);
+		}
+	}
+
+	/*
+	 * The next usable replica in round-robin order, or null. A check older
+	 * than three intervals means the checker is stuck, so it does not count.
+	 */
+	private Replica pick() {
+		int n = this._replicas.size();
+		if (n == 0) {
+			return null;
+		}
+		long stale = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(3 * this._checkMillis);
+		int start = Math.floorMod(this._next.getAndIncrement(), n);
+		for (int i = 0; i < n; ++i) {
+			Replica replica = this._replicas.get((start + i) % n);
+			if (replica.down == null && replica.checkedAt - stale > 0 && replica.lagMillis >= 0
+					&& replica.lagMillis <= this._maxLagMillis) {
+				return replica;
+			}
+		}
+		return null;
+	}
+
+	private void checkAll() {
+		for (Replica replica : this._replicas) {
+			check(replica);
+		}
+		this._checks.incrementAndGet();
+	}
+
+	private void check(Replica replica) {
+		PooledConnection conn = null;
+		try{
+			conn = replica.pool.borrow();
+			try (Statement stmt = conn.connection().createStatement()){
+				stmt.setQueryTimeout(2);
+				try (ResultSet rs = stmt.executeQuery(LAG)){
+					rs.next();
+					if (!rs.getBoolean(1)) {
+						replica.lagMillis = -1;
+						replica.down = "not a standby";
+					}else{
+						replica.lagMillis = rs.getLong(2);
+						replica.down = null;
+					}
+				}
+			}
+		}catch(SQLException e){
+			replica.lagMillis = -1;
+			replica.down = e.getMessage();
+		}finally{
+			replica.pool.release(conn);
+			replica.checkedAt = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Stops the checks and closes the replica pools.
+	 */
+	@Override
+	public synchronized void close() {
+		if (this._checker != null) {
+			this._checker.shutdownNow();
+			this._checker = null;
+		}
+		for (Replica replica : this._replicas) {
+			replica.pool.close();
+		}
+	}
+
+	/** @return replicas configured */
+	public int getReplicaCount() { return this._replicas.size(); }
+
+	/** @return reads answered by a replica */
+	public long getReplicaReads() {
+		long reads = 0;
+		for (Replica replica : this._replicas) {
+			reads += replica.reads.get();
+		}
+		return reads;
+	}
+
+	/** @return reads answered by the primary, fallbacks included */
+	public long getPrimaryReads() { return this._primaryReads.get(); }
+
+	/** @return reads that failed on a replica and were run again on the primary */
+	public long getFallbacks() { return this._fallbacks.get(); }
+
+	@Override
+	public String toString() {
+		StringBuilder replicas = new StringBuilder();
+		for (Replica replica : this._replicas) {
+			replicas.append(' ').append(replica.name).append('=');
+			if (replica.down != null) {
+				replicas.append("down(").append(replica.down).append(')');
+			}else{
+				replicas.append(replica.lagMillis < 0 ? "?" : replica.lagMillis + "ms").append('/').append(replica.reads.get());
+			}
+		}
+		return String.format("replicaRouter[maxLag=%dms checks=%d replicaReads=%d primaryReads=%d fallbacks=%d%s]",
+				this._maxLagMillis, this._checks.get(), getReplicaReads(), getPrimaryReads(), getFallbacks(), replicas);
+	}
+}
@@ -0,0 +1,45 @@
+package airline;
+
+/**
+ * A row of Reservation.
+ */
+public final class Reservation {
+	/** The columns {@link #MAPPER} reads, in order. */
+	public static final String COLUMNS = "rnum, cid, fid, status";
+	public static final RowMapper<Reservation> MAPPER = row -> {
+		String status = row.getString(4);
+		return new Reservation(row.getInt(1), row.getInt(2), row.getInt(3), status == null ? ' ' : status.charAt(0));
+	};
+
+	private final int _rnum;
+	private final int _cid;
+	private final int _fid;
+	private final char _status;
+
+	Reservation(int rnum, int cid, int fid, char status) {
+		this._rnum = rnum;
+		this._cid = cid;
+		this._fid = fid;
+		this._status = status;
+	}
+
+	public int rnum() { return this._rnum; }
+
+	/** @return the customer's id */
+	public int cid() { return this._cid; }
+
+	/** @return the flight's <code>fnum</code> */
+	public int fid() { return this._fid; }
+
+	/** @return 'W' waitlisted, 'C' confirmed or 'R' reserved; ' ' when unset */
+	public char status() { return this._status; }
+
+	/** @return true when the reservation holds a seat */
+	public boolean holdsSeat() { return this._status == 'R' || this._status == 'C'; }
+
+	@Override
+	public String toString() {
+		return "reservation " + this._rnum + " (customer " + this._cid + ", flight " + this._fid + ", status "
+				+ this._status + ")";
+	}
+}
@@ -0,0 +1,533 @@
+package airline;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The flight schedule as a graph of airports, kept in memory for itinerary
+ * search.
+ *
+ * Airports are numbered through a dictionary. The flights leaving each
+ * airport are one run of a set of parallel int arrays (flight number,
+ * destination, departure and arrival day, cost), sorted by departure day,
+ * so the flights a connection can take are found by binary search.
+ *
+ * {@link #refresh()} reads the flights added since the last refresh, by
+ * flight number, and merges them into the runs. It then compares the row
+ * count and a checksum of Flight, the sum of a hash of each row's columns
+ * the graph uses, with the graph's; when either disagrees, because a
+ * flight was deleted or its cost, dates or airports changed, a partition
+ * was detached or a lower number committed late, the graph is built again
+ * from scratch. The comparison hashes every row of Flight, so a refresh
+ * costs one scan of it even when nothing changed. Searches see the graph
+ * as of the last refresh.
+ *
+ * {@link #itineraries} finds the cheapest ways from one airport to
+ * another, in order. Flights carry dates, not times, so connections are in
+ * days: a connection leaves between <code>minConnectionDays</code> and
+ * <code>maxLayoverDays</code> after the flight before it lands. The search
+ * is A* over partial itineraries, ordered by cost plus the cheapest flight
+ * into the destination; at each airport and arrival day, a partial
+ * itinerary is dropped once as many as were asked for have reached that
+ * point for no more cost and no more flights. Itineraries never visit an
+ * airport twice.
+ */
+public class RouteGraph implements AutoCloseable {
+	// a hash of the columns the graph holds; an update to any of them changes the checksum
+	static final String ROW_HASH =
+		"hashtext(concat_ws(',', fnum, cost, actual_departure_date, actual_arrival_date, departure_airport, arrival_airport))::bigint";
+	static final String FLIGHTS_AFTER =
+		"SELECT fnum, cost, actual_departure_date - DATE '1970-01-01', actual_arrival_date - DATE '1970-01-01', " +
+		"departure_airport::text, arrival_airport::text, " + ROW_HASH + " FROM Flight WHERE fnum > ? ORDER BY fnum";
+	static final String FLIGHT_CHECKSUM = "SELECT count(*), coalesce(sum(" + ROW_HASH + "), 0) FROM Flight";
+
+	// partial itineraries one search may create before it returns what it found
+	static final int MAX_LABELS = 1 << 20;
+
+	/*
+	 * One published graph. The flights leaving airport a are edges
+	 * first[a] to first[a + 1] - 1, by departure day.
+	 */
+	private static final class Graph {
+		final String[] airports;
+		final Map<String, Integer> codes;
+		final int[] first;
+		final int[] fnum;
+		final int[] to;
+		final int[] departureDay;
+		final int[] arrivalDay;
+		final int[] cost;
+		// the cheapest flight into each airport, the search's lower bound; MAX_VALUE for none
+		final int[] cheapestInto;
+
+		Graph(String[] airports, int[] first, int[] fnum, int[] to, int[] departureDay, int[] arrivalDay, int[] cost,
+				int[] cheapestInto) {
+			this.airports = airports;
+			this.codes = new HashMap<String, Integer>();
+			for (int i = 0; i < airports.length; ++i) {
+				this.codes.put(airports[i], i);
+			}
+			this.first = first;
+			this.fnum = fnum;
+			this.to = to;
+			this.departureDay = departureDay;
+			this.arrivalDay = arrivalDay;
+			this.cost = cost;
+			this.cheapestInto = cheapestInto;
+		}
+
+		int edges() {
+			return this.fnum.length;
+		}
+
+		/* the first flight out of the airport departing on or after the day */
+		int departingFrom(int airport, int day) {
+			int lo = this.first[airport], hi = this.first[airport + 1];
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (this.departureDay[mid] < day) {
+					lo = mid + 1;
+				}else{
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+	}
+
+	private static final Graph EMPTY = new Graph(new String[0], new int[] { 0 }, new int[0], new int[0], new int[0],
+			new int[0], new int[0], new int[0]);
+
+	/*
+	 * Flights read by one refresh, in the order read.
+	 */
+	private static final class Batch {
+		int size = 0;
+		int[] fnum = new int[64];
+		int[] from = new int[64];
+		int[] to = new int[64];
+		int[] departureDay = new int[64];
+		int[] arrivalDay = new int[64];
+		int[] cost = new int[64];
+		long checksum = 0;
+
+		void add(int fnum, int from, int to, int departureDay, int arrivalDay, int cost, long hash) {
+			if (this.size == this.fnum.length) {
+				int capacity = 2 * this.size;
+				this.fnum = Arrays.copyOf(this.fnum, capacity);
+				this.from = Arrays.copyOf(this.from, capacity);
+				this.to = Arrays.copyOf(this.to, capacity);
+				this.departureDay = Arrays.copyOf(this.departureDay, capacity);
+				this.arrivalDay = Arrays.copyOf(this.arrivalDay, capacity);
+				this.cost = Arrays.copyOf(this.cost, capacity);
+			}
+			this.fnum[this.size] = fnum;
+			this.from[this.size] = from;
+			this.to[this.size] = to;
+			this.departureDay[this.size] = departureDay;
+			this.arrivalDay[this.size] = arrivalDay;
+			this.cost[this.size] = cost;
+			this.checksum += hash;
+			++this.size;
+		}
+	}
+
+	/*
+	 * A partial itinerary: its last flight and the one before.
+	 */
+	private static final class Label {
+		final Label parent;
+		final int edge;
+		final int airport;
+		final int arrivalDay;
+		final int legs;
+		final long cost;
+		final long bound;
+
+		Label(Label parent, int edge, int airport, int arrivalDay, int legs, long cost, long bound) {
+			this.parent = parent;
+			this.edge = edge;
+			this.airport = airport;
+			this.arrivalDay = arrivalDay;
+			this.legs = legs;
+			this.cost = cost;
+			this.bound = bound;
+		}
+
+		boolean visits(int airport, int origin) {
+			for (Label l = this; l != null; l = l.parent) {
+				if (l.airport == airport) {
+					return true;
+				}
+			}
+			return airport == origin;
+		}
+	}
+
+	private final ConnectionPool _pool;
+	private final int _minConnectionDays;
+	private final int _maxLayoverDays;
+	private volatile Graph _graph = null;
+	private ScheduledExecutorService _scheduler = null;
+
+	// the writer's state, guarded by refresh()
+	private int _maxFnum = Integer.MIN_VALUE;
+	private long _checksum = 0;
+	private final Map<String, Integer> _airportCodes = new HashMap<String, Integer>();
+	private final List<String> _airportNames = new ArrayList<String>();
+
+	private final AtomicLong _refreshes = new AtomicLong();
+	private final AtomicLong _reloads = new AtomicLong();
+	private final AtomicLong _loadedRows = new AtomicLong();
+	private final AtomicLong _errors = new AtomicLong();
+	private final AtomicLong _searches = new AtomicLong();
+	private final AtomicLong _labels = new AtomicLong();
+	private volatile long _lastRefreshNanos = 0;
+	private volatile String _lastError = null;
+
+	/**
+	 * @param pool the pool a refresh borrows its connection from
+	 * @param minConnectionDays the fewest days between landing and the next
+	 *        departure; 0 allows a connection on the day of arrival
+	 * @param maxLayoverDays the most days between landing and the next
+	 *        departure
+	 */
+	public RouteGraph(ConnectionPool pool, int minConnectionDays, int maxLayoverDays) {
+		if (minConnectionDays < 0 || maxLayoverDays < minConnectionDays) {
+			throw new IllegalArgumentException("connection days must not be negative nor more than the layover days");
+		}
+		this._pool = pool;
+		this._minConnectionDays = minConnectionDays;
+		this._maxLayoverDays = maxLayoverDays;
+	}
+
+	/**
+	 * Brings the graph up to date; the first call loads every flight.
+	 *
+	 * @throws java.sql.SQLException when the refresh fails; searches keep
+	 *         using the previous graph
+	 */
+	public synchronized void refresh() throws SQLException {
+		long start = System.nanoTime();
+		PooledConnection conn = this._pool.borrow();
+		try{
+			Connection c = conn.connection();
+			c.setAutoCommit(false);
+			try (Statement stmt = c.createStatement()){
+				stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+			}
+			Graph graph = this._graph == null ? EMPTY : this._graph;
+			int maxFnum = this._maxFnum;
+			long checksum = this._checksum;
+			Batch batch = load(c, maxFnum);
+			long rows;
+			long flightChecksum;
+			try (Statement stmt = c.createStatement(); ResultSet rs = stmt.executeQuery(FLIGHT_CHECKSUM)){
+				rs.next();
+				rows = rs.getLong(1);
+				flightChecksum = rs.getLong(2);
+			}
+			if (graph.edges() + batch.size != rows || checksum + batch.checksum != flightChecksum) {
+				this._reloads.incrementAndGet();
+				graph = EMPTY;
+				maxFnum = Integer.MIN_VALUE;
+				checksum = 0;
+				batch = load(c, maxFnum);
+			}
+			c.commit();
+			for (int i = 0; i < batch.size; ++i) {
+				maxFnum = Math.max(maxFnum, batch.fnum[i]);
+			}
+			if (this._graph == null || graph != this._graph || batch.size > 0) {
+				this._graph = merge(graph, batch);
+			}
+			this._maxFnum = maxFnum;
+			this._checksum = checksum + batch.checksum;
+			this._loadedRows.addAndGet(batch.size);
+			this._refreshes.incrementAndGet();
+			this._lastRefreshNanos = System.nanoTime() - start;
+			this._lastError = null;
+		}catch(SQLException | RuntimeException e){
+			this._errors.incrementAndGet();
+			this._lastError = e.getMessage();
+			throw e;
+		}finally{
+			this._pool.release(conn);
+		}
+	}
+
+	/**
+	 * Refreshes now and then every <code>periodMillis</code> on a daemon
+	 * thread. Failed refreshes are counted and retried on the next tick.
+	 */
+	public synchronized void start(long periodMillis) {
+		if (this._scheduler != null) {
+			return;
+		}
+		this._scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "route-graph-refresh");
+			t.setDaemon(true);
+			return t;
+		});
+		this._scheduler.scheduleWithFixedDelay(() -> {
+			try{
+				refresh();
+			}catch(SQLException e){
+				// counted; the next refresh tries again.
+			}
+		}, 0L, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the scheduled refreshes.
+	 */
+	@Override
+	public void close() {
+		ScheduledExecutorService scheduler;
+		synchronized (this) {
+			scheduler = this._scheduler;
+			this._scheduler = null;
+		}
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return true once a refresh has succeeded
+	 */
+	public boolean isLoaded() {
+		return this._graph != null;
+	}
+
+	/**
+	 * The cheapest itineraries from one airport to another, first flight
+	 * leaving between two dates, with ties going to the earlier arrival and
+	 * then the fewer flights.
+	 *
+	 * @param maxConnections the most flights less one
+	 * @param limit the most itineraries returned
+	 * @return up to <code>limit</code> itineraries, cheapest first; empty
+	 *         when an airport has no flights
+	 */
+	public List<Itinerary> itineraries(String from, String to, LocalDate earliest, LocalDate latest, int maxConnections,
+			int limit) {
+		Graph g = this._graph;
+		if (g == null) {
+			throw new IllegalStateException("route graph not loaded yet");
+		}
+		this._searches.incrementAndGet();
+		Integer origin = g.codes.get(from);
+		Integer destination = g.codes.get(to);
+		if (origin == null || destination == null || origin.equals(destination)
+				|| g.cheapestInto[destination] == Integer.MAX_VALUE) {
+			return Collections.emptyList();
+		}
+		final int o = origin, d = destination;
+		final long bound = g.cheapestInto[d];
+
+		PriorityQueue<Label> queue = new PriorityQueue<Label>((x, y) -> {
+			int c = Long.compare(x.bound, y.bound);
+			if (c == 0) {
+				c = Integer.compare(x.arrivalDay, y.arrivalDay);
+			}
+			return c != 0 ? c : Integer.compare(x.legs, y.legs);
+		});
+		int labels = 0;
+		int last = (int) latest.toEpochDay();
+		for (int e = g.departingFrom(o, (int) earliest.toEpochDay()); e < g.first[o + 1] && g.departureDay[e] <= last; ++e) {
+			int next = g.to[e];
+			if (next != o) {
+				queue.add(new Label(null, e, next, g.arrivalDay[e], 1, g.cost[e], g.cost[e] + (next == d ? 0 : bound)));
+				++labels;
+			}
+		}
+
+		List<List<Label>> settled = new ArrayList<List<Label>>(Collections.nCopies(g.airports.length, (List<Label>) null));
+		List<Itinerary> result = new ArrayList<Itinerary>();
+		while (!queue.isEmpty() && result.size() < limit && labels < MAX_LABELS) {
+			Label label = queue.poll();
+			if (label.airport == d) {
+				result.add(itinerary(g, o, label));
+				continue;
+			}
+			if (dominated(settled, label, limit)) {
+				continue;
+			}
+			if (label.legs > maxConnections) {
+				continue;
+			}
+			int latestDeparture = label.arrivalDay + this._maxLayoverDays;
+			for (int e = g.departingFrom(label.airport, label.arrivalDay + this._minConnectionDays);
+					e < g.first[label.airport + 1] && g.departureDay[e] <= latestDeparture; ++e) {
+				int next = g.to[e];
+				if (label.visits(next, o)) {
+					continue;
+				}
+				long cost = label.cost + g.cost[e];
+				queue.add(new Label(label, e, next, g.arrivalDay[e], label.legs + 1, cost, cost + (next == d ? 0 : bound)));
+				++labels;
+			}
+		}
+		this._labels.addAndGet(labels);
+		return result;
+	}
+
+	/*
+	 * Whether enough partial itineraries reached the same airport on the
+	 * same day for no more cost and no more flights; if not, the label
+	 * counts as one of them from now on.
+	 */
+	private static boolean dominated(List<List<Label>> settled, Label label, int limit) {
+		List<Label> at = settled.get(label.airport);
+		if (at == null) {
+			at = new ArrayList<Label>();
+			settled.set(label.airport, at);
+		}
+		int better = 0;
+		for (Label other : at) {
+			if (other.arrivalDay == label.arrivalDay && other.cost <= label.cost && other.legs <= label.legs && ++better >= limit) {
+				return true;
+			}
+		}
+		at.add(label);
+		return false;
+	}
+
+	private static Itinerary itinerary(Graph g, int origin, Label label) {
+		int[] flights = new int[label.legs];
+		String[] airports = new String[label.legs + 1];
+		airports[0] = g.airports[origin];
+		int firstEdge = label.edge;
+		for (Label l = label; l != null; l = l.parent) {
+			flights[l.legs - 1] = g.fnum[l.edge];
+			airports[l.legs] = g.airports[l.airport];
+			firstEdge = l.edge;
+		}
+		return new Itinerary(flights, airports, LocalDate.ofEpochDay(g.departureDay[firstEdge]),
+				LocalDate.ofEpochDay(label.arrivalDay), label.cost);
+	}
+
+	private Batch load(Connection c, int afterFnum) throws SQLException {
+		Batch batch = new Batch();
+		try (PreparedStatement ps = c.prepareStatement(FLIGHTS_AFTER, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)){
+			ps.setFetchSize(10000);
+			ps.setInt(1, afterFnum);
+			try (ResultSet rs = ps.executeQuery()){
+				while (rs.next()) {
+					batch.add(rs.getInt(1), airportCode(rs.getString(5)), airportCode(rs.getString(6)), rs.getInt(3),
+							rs.getInt(4), rs.getInt(2), rs.getLong(7));
+				}
+			}
+		}
+		return batch;
+	}
+
+	private int airportCode(String airport) {
+		Integer code = this._airportCodes.get(airport);
+		if (code == null) {
+			code = this._airportNames.size();
+			this._airportCodes.put(airport, code);
+			this._airportNames.add(airport);
+		}
+		return code;
+	}
+
+	/*
+	 * A new graph with the batch's flights merged into each airport's run.
+	 * Only the batch is sorted; the existing runs are already in order.
+	 */
+	private Graph merge(Graph old, Batch batch) {
+		int airports = this._airportNames.size();
+		Integer[] order = new Integer[batch.size];
+		for (int i = 0; i < order.length; ++i) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (x, y) -> {
+			int c = Integer.compare(batch.from[x], batch.from[y]);
+			return c != 0 ? c : Integer.compare(batch.departureDay[x], batch.departureDay[y]);
+		});
+
+		int edges = old.edges() + batch.size;
+		int[] first = new int[airports + 1];
+		int[] fnum = new int[edges];
+		int[] to = new int[edges];
+		int[] departureDay = new int[edges];
+		int[] arrivalDay = new int[edges];
+		int[] cost = new int[edges];
+		int[] cheapestInto = Arrays.copyOf(old.cheapestInto, airports);
+		Arrays.fill(cheapestInto, old.cheapestInto.length, airports, Integer.MAX_VALUE);
+
+		int n = 0;
+		int b = 0;
+		for (int a = 0; a < airports; ++a) {
+			first[a] = n;
+			int e = a < old.airports.length ? old.first[a] : 0;
+			int end = a < old.airports.length ? old.first[a + 1] : 0;
+			while (e < end || b < order.length && batch.from[order[b]] == a) {
+				boolean fromOld = e < end && (b == order.length || batch.from[order[b]] != a
+						|| old.departureDay[e] <= batch.departureDay[order[b]]);
+				if (fromOld) {
+					fnum[n] = old.fnum[e];
+					to[n] = old.to[e];
+					departureDay[n] = old.departureDay[e];
+					arrivalDay[n] = old.arrivalDay[e];
+					cost[n] = old.cost[e];
+					++e;
+				}else{
+					int i = order[b++];
+					fnum[n] = batch.fnum[i];
+					to[n] = batch.to[i];
+					departureDay[n] = batch.departureDay[i];
+					arrivalDay[n] = batch.arrivalDay[i];
+					cost[n] = batch.cost[i];
+					cheapestInto[to[n]] = Math.min(cheapestInto[to[n]], cost[n]);
+				}
+				++n;
+			}
+		}
+		first[airports] = n;
+		return new Graph(this._airportNames.toArray(new String[0]), first, fnum, to, departureDay, arrivalDay, cost,
+				cheapestInto);
+	}
+
+	/** @return refreshes that succeeded */
+	public long getRefreshes() { return this._refreshes.get(); }
+
+	/** @return times the graph was built again from scratch */
+	public long getReloads() { return this._reloads.get(); }
+
+	/** @return flights read from the database over all refreshes */
+	public long getLoadedRows() { return this._loadedRows.get(); }
+
+	/** @return refreshes that failed */
+	public long getErrors() { return this._errors.get(); }
+
+	/** @return itinerary searches run */
+	public long getSearches() { return this._searches.get(); }
+
+	@Override
+	public String toString() {
+		Graph g = this._graph;
+		long searches = getSearches();
+		return String.format("routeGraph[airports=%d flights=%d refreshes=%d reloads=%d loadedRows=%d lastRefresh=%.3fms searches=%d labelsPerSearch=%.1f errors=%d%s]",
+				g == null ? 0 : g.airports.length, g == null ? 0 : g.edges(), getRefreshes(), getReloads(), getLoadedRows(),
+				this._lastRefreshNanos / 1e6, searches, searches == 0 ? 0.0 : (double) this._labels.get() / searches, getErrors(),
+				this._lastError == null ? "" : " lastError=" + this._lastError);
+	}
+}
@@ -0,0 +1,70 @@
+package airline;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Typed, read-only view of the current row of a {@link QueryCursor}.
+ *
+ * A cursor reuses one Row for every record, so a Row is only valid until the
+ * cursor advances; copy out the values you need to keep. Columns are numbered
+ * from 1 as in JDBC.
+ */
+public final class Row {
+	private final ResultSet _rs;
+	private final ResultSetMetaData _meta;
+	private final int _columnCount;
+	private long _rowNumber;
+
+	Row(ResultSet rs) throws SQLException {
+		this._rs = rs;
+		this._meta = rs.getMetaData();
+		this._columnCount = this._meta.getColumnCount();
+	}
+
+	void advance() {
+		++this._rowNumber;
+	}
+
+	/** @return the 1-based position of this row in the result */
+	public long rowNumber() { return this._rowNumber; }
+
+	public int columnCount() { return this._columnCount; }
+
+	public String columnName(int col) throws SQLException { return this._meta.getColumnName(col); }
+
+	/** @return the column's java.sql.Types code */
+	public int columnType(int col) throws SQLException { return this._meta.getColumnType(col); }
+
+	public int getInt(int col) throws SQLException { return this._rs.getInt(col); }
+
+	public long getLong(int col) throws SQLException { return this._rs.getLong(col); }
+
+	public double getDouble(int col) throws SQLException { return this._rs.getDouble(col); }
+
+	public boolean getBoolean(int col) throws SQLException { return this._rs.getBoolean(col); }
+
+	public BigDecimal getBigDecimal(int col) throws SQLException { return this._rs.getBigDecimal(col); }
+
+	public String getString(int col) throws SQLException { return this._rs.getString(col); }
+
+	public Date getDate(int col) throws SQLException { return this._rs.getDate(col); }
+
+	/**
+	 * @return true when the column is SQL NULL; the primitive getters return 0 for NULL
+	 */
+	public boolean isNull(int col) throws SQLException {
+		return this._rs.getObject(col) == null;
+	}
+
+	/**
+	 * @return true when the column read last was SQL NULL; cheaper than
+	 *         {@link #isNull(int)} after a primitive getter
+	 */
+	public boolean wasNull() throws SQLException {
+		return this._rs.wasNull();
+	}
+}
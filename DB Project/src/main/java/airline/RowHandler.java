@@ -0,0 +1,11 @@
+package airline;
+
+import java.sql.SQLException;
+
+/**
+ * Callback invoked once per row of a streamed query.
+ */
+@FunctionalInterface
+public interface RowHandler {
+	void handle(Row row) throws SQLException;
+}
@@ -0,0 +1,22 @@
+package airline;
+
+import java.sql.SQLException;
+
+/**
+ * Turns the current row of a query into one value, reading its columns
+ * with the typed getters of {@link Row}.
+ *
+ * Mappers are plain lambdas over column positions, so mapping a row costs
+ * the getter calls and the object it builds; nothing is looked up by
+ * reflection or converted through strings.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+	/** The first column as an int, e.g. a key or a count. */
+	RowMapper<Integer> INT = row -> row.getInt(1);
+
+	/** The first column as a long. */
+	RowMapper<Long> LONG = row -> row.getLong(1);
+
+	T map(Row row) throws SQLException;
+}
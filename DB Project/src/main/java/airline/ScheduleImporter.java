@@ -0,0 +1,315 @@
+package airline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the flights of recurring routes over a date range and inserts
+ * each Flight together with its FlightInfo.
+ *
+ * A route flies on a fixed set of weekdays between a first and a last date.
+ * Every matching date becomes one Flight with no seats sold and one
+ * FlightInfo for the route's pilot and plane. Flight numbers are drawn from
+ * <code>fnum_seq</code> in blocks through a {@link KeyAllocator}, and
+ * FlightInfo gets the same number as its <code>flight_id</code>, so the two
+ * rows are linked by key rather than by two sequences that happen to agree.
+ * Rows go to the server in JDBC batches, Flight before FlightInfo, and the
+ * whole import is one transaction: a season of schedules loads in one pass,
+ * or not at all.
+ *
+ * The explicit keys are only kept with migration V002, so the import
+ * refuses to run without it.
+ *
+ * A schedule file has one route per CSV line:
+ * <pre>
+ * departure_airport,arrival_airport,cost,num_stops,pilot_id,plane_id,first_date,last_date,days,duration_days
+ * </pre>
+ * <code>days</code> lists the ISO weekdays flown, 1 for Monday to 7 for
+ * Sunday, as in <code>135</code> or <code>1234567</code>.
+ * <code>duration_days</code> is how many days after departure the flight
+ * arrives. Lines that fail validation are reported and skipped, and a header
+ * line is skipped.
+ */
+public class ScheduleImporter {
+	private static final int MAX_REPORTED_ERRORS = 20;
+	private static final String[] HEADER = { "departure_airport", "arrival_airport", "cost", "num_stops",
+		"pilot_id", "plane_id", "first_date", "last_date", "days", "duration_days" };
+
+	static final String INSERT_FLIGHT =
+		"INSERT INTO Flight(fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_airport, departure_airport) VALUES (?, ?, 0, ?, ?, ?, ?, ?)";
+	static final String INSERT_FLIGHT_INFO =
+		"INSERT INTO FlightInfo(flight_id, pilot_id, plane_id) VALUES (?, ?, ?)";
+	static final String PILOT_AND_PLANE_EXIST =
+		"SELECT (SELECT count(*) FROM Pilot WHERE id = ?) + (SELECT count(*) FROM Plane WHERE id = ?)";
+
+	/**
+	 * One recurring route.
+	 */
+	public static final class Route {
+		final String departureAirport;
+		final String arrivalAirport;
+		final int cost;
+		final int numStops;
+		final int pilotId;
+		final int planeId;
+		final LocalDate firstDate;
+		final LocalDate lastDate;
+		final Set<DayOfWeek> days;
+		final int durationDays;
+
+		/**
+		 * @param days the weekdays the route is flown
+		 * @param durationDays days between departure and arrival
+		 * @throws IllegalArgumentException when a value breaks the menu's rules
+		 */
+		public Route(String departureAirport, String arrivalAirport, int cost, int numStops, int pilotId,
+				int planeId, LocalDate firstDate, LocalDate lastDate, Set<DayOfWeek> days, int durationDays) {
+			require(Validation.isValidAirport(departureAirport), "invalid departure airport");
+			require(Validation.isValidAirport(arrivalAirport), "invalid arrival airport");
+			require(Validation.isValidCost(cost), "invalid cost");
+			require(Validation.isValidNumStops(numStops), "invalid number of stops");
+			require(!lastDate.isBefore(firstDate), "last date is before first date");
+			require(!days.isEmpty(), "no days of the week");
+			require(durationDays >= 0, "invalid duration");
+			this.departureAirport = departureAirport;
+			this.arrivalAirport = arrivalAirport;
+			this.cost = cost;
+			this.numStops = numStops;
+			this.pilotId = pilotId;
+			this.planeId = planeId;
+			this.firstDate = firstDate;
+			this.lastDate = lastDate;
+			this.days = EnumSet.copyOf(days);
+			this.durationDays = durationDays;
+		}
+
+		/**
+		 * Parses one schedule line's fields.
+		 *
+		 * @throws IllegalArgumentException when a field is malformed or invalid
+		 */
+		static Route parse(List<String> f) {
+			require(f.size() == HEADER.length, "expected " + HEADER.length + " fields but found " + f.size());
+			try{
+				return new Route(f.get(0).trim(), f.get(1).trim(), Integer.parseInt(f.get(2).trim()),
+						Integer.parseInt(f.get(3).trim()), Integer.parseInt(f.get(4).trim()),
+						Integer.parseInt(f.get(5).trim()), LocalDate.parse(f.get(6).trim()),
+						LocalDate.parse(f.get(7).trim()), parseDays(f.get(8).trim()), Integer.parseInt(f.get(9).trim()));
+			}catch(NumberFormatException | DateTimeParseException e){
+				throw new IllegalArgumentException(e.getMessage());
+			}
+		}
+
+		private static Set<DayOfWeek> parseDays(String days) {
+			Set<DayOfWeek> set = EnumSet.noneOf(DayOfWeek.class);
+			for (int i = 0; i < days.length(); ++i) {
+				char c = days.charAt(i);
+				require(c >= '1' && c <= '7', "days must be digits 1 (Monday) to 7 (Sunday): " + days);
+				set.add(DayOfWeek.of(c - '0'));
+			}
+			return set;
+		}
+
+		@Override
+		public String toString() {
+			return this.departureAirport + "-" + this.arrivalAirport + " " + this.firstDate + ".." + this.lastDate;
+		}
+	}
+
+	/**
+	 * What an import inserted and how fast.
+	 */
+	public static final class Result {
+		public final int routes;
+		public final long flights;
+		public final long rejected;
+		public final long batches;
+		public final long nanos;
+
+		Result(int routes, long flights, long rejected, long batches, long nanos) {
+			this.routes = routes;
+			this.flights = flights;
+			this.rejected = rejected;
+			this.batches = batches;
+			this.nanos = nanos;
+		}
+
+		public double flightsPerSecond() {
+			return this.nanos == 0 ? 0.0 : this.flights * 1e9 / this.nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("schedule: inserted %d flight(s) for %d route(s), rejected %d line(s), in %.3fs (%.0f flights/s, %d batch(es))",
+					this.flights, this.routes, this.rejected, this.nanos / 1e9, flightsPerSecond(), this.batches);
+		}
+	}
+
+	private final ConnectionPool _pool;
+	private final int _batchSize;
+
+	public ScheduleImporter(ConnectionPool pool) {
+		this(pool, 1000);
+	}
+
+	/**
+	 * @param pool the pool to borrow the import connection from; it needs
+	 *        room for a second connection to fetch key blocks
+	 * @param batchSize flights per executeBatch, and keys per sequence round trip
+	 */
+	public ScheduleImporter(ConnectionPool pool, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+		}
+		this._pool = pool;
+		this._batchSize = batchSize;
+	}
+
+	/**
+	 * Reads the routes in a schedule file and imports them in one
+	 * transaction.
+	 *
+	 * @throws java.sql.SQLException when the database rejects the import; nothing is committed
+	 * @throws java.io.IOException when the file cannot be read
+	 */
+	public Result importFile(Path csv) throws SQLException, IOException {
+		List<Route> routes = new ArrayList<Route>();
+		long rejected = 0;
+		try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)){
+			long lineNo = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				++lineNo;
+				if (line.isEmpty()) {
+					continue;
+				}
+				List<String> fields = BulkLoader.parseCsvLine(line);
+				if (lineNo == 1 && isHeader(fields)) {
+					continue;
+				}
+				try{
+					routes.add(Route.parse(fields));
+				}catch(IllegalArgumentException e){
+					if (++rejected <= MAX_REPORTED_ERRORS) {
+						System.err.println(csv + ":" + lineNo + ": " + e.getMessage());
+					}
+				}
+			}
+		}
+		Result result = importRoutes(routes);
+		return new Result(result.routes, result.flights, rejected, result.batches, result.nanos);
+	}
+
+	/**
+	 * Inserts every flight of every route in one transaction.
+	 *
+	 * @throws java.sql.SQLException when V002 is missing, a pilot or plane
+	 *         does not exist, or the database rejects the import; nothing is
+	 *         committed
+	 */
+	public Result importRoutes(List<Route> routes) throws SQLException {
+		long start = System.nanoTime();
+		if (!new Migrations(this._pool).isApplied(2)) {
+			throw new SQLException("Schedule import needs migration V002 to keep flight numbers; run migrate first");
+		}
+		KeyAllocator keys = new KeyAllocator(this._pool, BulkLoader.Table.FLIGHT.keySequence, this._batchSize);
+		PooledConnection conn = this._pool.borrow();
+		try{
+			Connection c = conn.connection();
+			c.setAutoCommit(false);
+			try (PreparedStatement flight = c.prepareStatement(INSERT_FLIGHT);
+					PreparedStatement info = c.prepareStatement(INSERT_FLIGHT_INFO);
+					PreparedStatement exist = c.prepareStatement(PILOT_AND_PLANE_EXIST)){
+				long flights = 0;
+				long batches = 0;
+				int pending = 0;
+				for (Route route : routes) {
+					exist.setInt(1, route.pilotId);
+					exist.setInt(2, route.planeId);
+					try (ResultSet rs = exist.executeQuery()){
+						if (!rs.next() || rs.getInt(1) != 2) {
+							throw new SQLException("Route " + route + ": pilot " + route.pilotId + " or plane "
+									+ route.planeId + " does not exist");
+						}
+					}
+					for (LocalDate day = route.firstDate; !day.isAfter(route.lastDate); day = day.plusDays(1)) {
+						if (!route.days.contains(day.getDayOfWeek())) {
+							continue;
+						}
+						int fnum = keys.next();
+						flight.setInt(1, fnum);
+						flight.setInt(2, route.cost);
+						flight.setInt(3, route.numStops);
+						flight.setDate(4, java.sql.Date.valueOf(day));
+						flight.setDate(5, java.sql.Date.valueOf(day.plusDays(route.durationDays)));
+						flight.setString(6, route.arrivalAirport);
+						flight.setString(7, route.departureAirport);
+						flight.addBatch();
+						info.setInt(1, fnum);
+						info.setInt(2, route.pilotId);
+						info.setInt(3, route.planeId);
+						info.addBatch();
+						if (++pending == this._batchSize) {
+							flush(flight, info);
+							flights += pending;
+							pending = 0;
+							++batches;
+						}
+					}
+				}
+				if (pending > 0) {
+					flush(flight, info);
+					flights += pending;
+					++batches;
+				}
+				c.commit();
+				return new Result(routes.size(), flights, 0, batches, System.nanoTime() - start);
+			}catch(SQLException | RuntimeException e){
+				c.rollback();
+				throw e;
+			}
+		}finally{
+			this._pool.release(conn);
+		}
+	}
+
+	/*
+	 * FlightInfo references Flight, so the Flight batch goes first.
+	 */
+	private static void flush(PreparedStatement flight, PreparedStatement info) throws SQLException {
+		flight.executeBatch();
+		info.executeBatch();
+	}
+
+	private static boolean isHeader(List<String> fields) {
+		if (fields.size() != HEADER.length) {
+			return false;
+		}
+		for (int i = 0; i < HEADER.length; ++i) {
+			if (!HEADER[i].equalsIgnoreCase(fields.get(i).trim())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void require(boolean condition, String message) {
+		if (!condition) {
+			throw new IllegalArgumentException(message);
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package airline;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Caches seats minus seats sold per flight number, so menu option 6 and the
+ * booking flow do not rerun the Plane/Flight/FlightInfo join for a flight
+ * whose bookings have not changed.
+ *
+ * Entries are dropped when the triggers from
+ * <code>migrations/V003__flight_seat_notify.sql</code> announce a change on
+ * the <code>flight_seats</code> channel. A daemon thread LISTENs on a
+ * dedicated connection and applies the notifications. While that connection
+ * is down the cache is emptied and bypassed, and it is emptied again on
+ * reconnect because notifications sent in between are lost.
+ *
+ * A value loaded from the database is only stored if no invalidation
+ * arrived while it was being read. Otherwise a load that raced with a
+ * booking could put back the count from before the booking, after that
+ * booking's notification had already been applied. Those discarded loads
+ * are counted as stale.
+ */
+public class SeatCache implements AutoCloseable {
+	public static final String CHANNEL = "flight_seats";
+
+	/** Returned by {@link #get(int)} when the flight is not cached. */
+	public static final int MISSING = IntIntCache.EMPTY;
+
+	private static final String TRIGGER_INSTALLED =
+		"SELECT 1 FROM pg_trigger WHERE tgname = 'flight_seats_notify_trig'";
+	private static final int POLL_MILLIS = 1000;
+	private static final long MAX_BACKOFF_MILLIS = 30000L;
+
+	private final ConnectionPool _pool;
+	private final IntIntCache _map;
+	private final Thread _listener;
+	private volatile boolean _closed = false;
+	private volatile boolean _online = false;
+
+	// bumped on every invalidation; loads compare it to detect a race
+	private long _epoch = 0;
+
+	private final AtomicLong _hits = new AtomicLong();
+	private final AtomicLong _misses = new AtomicLong();
+	private final AtomicLong _bypassed = new AtomicLong();
+	private final AtomicLong _evictions = new AtomicLong();
+	private final AtomicLong _invalidations = new AtomicLong();
+	private final AtomicLong _clears = new AtomicLong();
+	private final AtomicLong _staleLoads = new AtomicLong();
+	private final AtomicLong _reconnects = new AtomicLong();
+
+	/**
+	 * Starts the listener thread. The cache stays bypassed until the
+	 * listener is connected.
+	 *
+	 * @param pool supplies the URL and credentials for the listener connection
+	 * @param capacity the most flights cached
+	 */
+	public SeatCache(ConnectionPool pool, int capacity) {
+		this._pool = pool;
+		this._map = new IntIntCache(capacity);
+		this._listener = new Thread(this::listen, "seat-cache-listener");
+		this._listener.setDaemon(true);
+		this._listener.start();
+	}
+
+	/**
+	 * @return the cached seats available on the flight, or {@link #MISSING}
+	 */
+	public int get(int fnum) {
+		if (!this._online) {
+			this._bypassed.incrementAndGet();
+			return MISSING;
+		}
+		int seats;
+		synchronized (this) {
+			seats = this._map.get(fnum, MISSING);
+		}
+		(seats == MISSING ? this._misses : this._hits).incrementAndGet();
+		return seats;
+	}
+
+	/**
+	 * Call before reading a value from the database; pass the result to
+	 * {@link #put(int, int, long)} with the value.
+	 *
+	 * @return the current invalidation epoch
+	 */
+	public synchronized long stamp() {
+		return this._epoch;
+	}
+
+	/**
+	 * Caches a value read from the database, unless an invalidation arrived
+	 * after <code>stamp</code> was taken.
+	 */
+	public void put(int fnum, int seats, long stamp) {
+		if (!this._online) {
+			return;
+		}
+		boolean evicted;
+		synchronized (this) {
+			if (stamp != this._epoch) {
+				this._staleLoads.incrementAndGet();
+				return;
+			}
+			evicted = this._map.put(fnum, seats);
+		}
+		if (evicted) {
+			this._evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Drops one flight. Called by the listener, and by this process right
+	 * after it books a seat so it sees its own change before the
+	 * notification comes back.
+	 */
+	public synchronized void invalidate(int fnum) {
+		++this._epoch;
+		this._map.remove(fnum);
+		this._invalidations.incrementAndGet();
+	}
+
+	/**
+	 * Drops every flight.
+	 */
+	public synchronized void clear() {
+		++this._epoch;
+		this._map.clear();
+		this._clears.incrementAndGet();
+	}
+
+	/**
+	 * Stops the listener and closes its connection.
+	 */
+	@Override
+	public void close() {
+		this._closed = true;
+		this._online = false;
+		this._listener.interrupt();
+	}
+
+	private void listen() {
+		long backoff = 500L;
+		while (!this._closed) {
+			try (Connection c = this._pool.openDedicated()){
+				try (Statement stmt = c.createStatement()){
+					try (ResultSet rs = stmt.executeQuery(TRIGGER_INSTALLED)){
+						if (!rs.next()) {
+							System.err.println("seat cache disabled: apply migration V003 (flight_seat_notify) first");
+							return;
+						}
+					}
+					stmt.execute("LISTEN " + CHANNEL);
+				}
+				// anything cached before the LISTEN may have missed a notification
+				clear();
+				this._online = true;
+				backoff = 500L;
+
+				PGConnection pg = c.unwrap(PGConnection.class);
+				while (!this._closed) {
+					PGNotification[] notes = pg.getNotifications(POLL_MILLIS);
+					if (notes == null) {
+						continue;
+					}
+					for (PGNotification note : notes) {
+						apply(note.getParameter());
+					}
+				}
+			}catch(SQLException e){
+				if (this._closed) {
+					return;
+				}
+				this._online = false;
+				clear();
+				this._reconnects.incrementAndGet();
+				try{
+					Thread.sleep(backoff);
+				}catch(InterruptedException ie){
+					return;
+				}
+				backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+			}
+		}
+	}
+
+	private void apply(String payload) {
+		if ("*".equals(payload)) {
+			clear();
+			return;
+		}
+		try{
+			invalidate(Integer.parseInt(payload));
+		}catch(NumberFormatException e){
+			// not ours; something else notified on the channel.
+			clear();
+		}
+	}
+
+	public boolean isOnline() { return this._online; }
+
+	public synchronized int getSize() { return this._map.size(); }
+
+	public int getCapacity() { return this._map.capacity(); }
+
+	public long getHits() { return this._hits.get(); }
+
+	public long getMisses() { return this._misses.get(); }
+
+	public long getBypassed() { return this._bypassed.get(); }
+
+	public long getEvictions() { return this._evictions.get(); }
+
+	public long getInvalidations() { return this._invalidations.get(); }
+
+	public long getClears() { return this._clears.get(); }
+
+	public long getStaleLoads() { return this._staleLoads.get(); }
+
+	public long getReconnects() { return this._reconnects.get(); }
+
+	@Override
+	public String toString() {
+		return String.format("seatCache[online=%b size=%d/%d hits=%d misses=%d bypassed=%d evictions=%d invalidations=%d clears=%d staleLoads=%d reconnects=%d]",
+				isOnline(), getSize(), getCapacity(), getHits(), getMisses(), getBypassed(), getEvictions(),
+				getInvalidations(), getClears(), getStaleLoads(), getReconnects());
+	}
+}
@@ -0,0 +1,336 @@
+package airline;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the menu operations to many concurrent clients over a line-based
+ * TCP protocol on the loopback interface.
+ *
+ * Each client connection is a session. A session sends one {@link Command}
+ * per line and gets one reply per request:
+ * <pre>
+ * OK &lt;value&gt;                      an id, a seat count or a passenger count
+ * OK &lt;rnum&gt; &lt;status&gt;               book_flight
+ * OK &lt;n&gt; rows                     a report, followed by n tab-separated rows
+ * ERR &lt;message&gt;                   bad request, database error or overload
+ * </pre>
+ * <code>quit</code> ends the session.
+ *
+ * Every session runs on its own thread. That is a virtual thread when the
+ * JDK has them (21 and later, found by reflection so the build still targets
+ * 17); otherwise it is a platform thread from a pool capped at
+ * <code>maxSessions</code>. Either way all sessions share one connection
+ * pool.
+ *
+ * Load is bounded in two places. Connections beyond <code>maxSessions</code>
+ * are answered with <code>ERR busy</code> and closed. At most
+ * <code>maxInFlight</code> requests run at once. The others wait, at most one
+ * per session, and get <code>ERR busy</code> if no slot frees up within
+ * <code>queueTimeoutMillis</code>.
+ *
+ * {@link #close()} shuts down gracefully. It stops accepting connections,
+ * lets running requests finish, and then closes the sessions.
+ */
+public class ServiceServer implements AutoCloseable {
+	private final Operations _ops;
+	private final ServerSocket _server;
+	private final ExecutorService _sessions;
+	private final Semaphore _sessionSlots;
+	private final Semaphore _inFlight;
+	private final int _maxInFlight;
+	private final long _queueTimeoutMillis;
+	private final Set<Socket> _open = ConcurrentHashMap.newKeySet();
+	private final Thread _acceptor;
+	private final boolean _virtual;
+	private volatile boolean _closing = false;
+
+	private final AtomicInteger _activeSessions = new AtomicInteger();
+	private final AtomicLong _sessionsAccepted = new AtomicLong();
+	private final AtomicLong _sessionsRejected = new AtomicLong();
+	private final AtomicLong _requests = new AtomicLong();
+	private final AtomicLong _errors = new AtomicLong();
+	private final AtomicLong _busy = new AtomicLong();
+
+	/**
+	 * Binds to <code>127.0.0.1:port</code> and starts accepting sessions.
+	 *
+	 * @param ops the operations every session runs
+	 * @param port the TCP port, or 0 for any free port
+	 * @param maxSessions sessions served at once
+	 * @param maxInFlight requests running at once over all sessions
+	 * @param queueTimeoutMillis how long a request waits for a slot before it is refused
+	 * @throws java.io.IOException when the port cannot be bound
+	 */
+	public ServiceServer(Operations ops, int port, int maxSessions, int maxInFlight, long queueTimeoutMillis)
+			throws IOException {
+		this._ops = ops;
+		this._sessionSlots = new Semaphore(maxSessions);
+		this._inFlight = new Semaphore(maxInFlight, true);
+		this._maxInFlight = maxInFlight;
+		this._queueTimeoutMillis = queueTimeoutMillis;
+		ExecutorService virtual = newVirtualThreadExecutor();
+		this._virtual = virtual != null;
+		this._sessions = virtual != null ? virtual : newPlatformExecutor(maxSessions, "service-session");
+		this._server = new ServerSocket();
+		this._server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), maxSessions);
+		this._acceptor = new Thread(this::accept, "service-acceptor");
+		this._acceptor.start();
+	}
+
+	/**
+	 * @return a virtual-thread-per-task executor, or null on a JDK without
+	 *         virtual threads
+	 */
+	static ExecutorService newVirtualThreadExecutor() {
+		try{
+			Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		}catch(ReflectiveOperationException e){
+			return null;
+		}
+	}
+
+	/*
+	 * A thread per task up to max threads; submitting more is rejected
+	 * rather than queued.
+	 */
+	static ExecutorService newPlatformExecutor(int maxThreads, final String name) {
+		final AtomicInteger n = new AtomicInteger();
+		return new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), r -> {
+			Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * @return the port the server is listening on
+	 */
+	public int getPort() {
+		return this._server.getLocalPort();
+	}
+
+	private void accept() {
+		while (!this._closing) {
+			final Socket socket;
+			try{
+				socket = this._server.accept();
+			}catch(IOException e){
+				// closed by close(), or the socket failed; either way stop
+				return;
+			}
+			if (!this._sessionSlots.tryAcquire()) {
+				this._sessionsRejected.incrementAndGet();
+				refuse(socket, "ERR busy: too many sessions");
+				continue;
+			}
+			this._sessionsAccepted.incrementAndGet();
+			try{
+				this._sessions.execute(() -> session(socket));
+			}catch(RejectedExecutionException e){
+				this._sessionSlots.release();
+				this._sessionsRejected.incrementAndGet();
+				refuse(socket, "ERR busy: too many sessions");
+			}
+		}
+	}
+
+	private static void refuse(Socket socket, String reply) {
+		try (Socket s = socket){
+			s.getOutputStream().write((reply + "\n").getBytes(StandardCharsets.UTF_8));
+		}catch(IOException e){
+			// ignored.
+		}
+	}
+
+	private void session(Socket socket) {
+		this._open.add(socket);
+		this._activeSessions.incrementAndGet();
+		try (Socket s = socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+				Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))){
+			s.setTcpNoDelay(true);
+			String line;
+			while (!this._closing && (line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				if (line.equals("quit")) {
+					break;
+				}
+				out.write(handle(line));
+				out.flush();
+			}
+		}catch(SocketException e){
+			// the client went away or close() closed the socket
+		}catch(IOException e){
+			System.err.println("session failed: " + e.getMessage());
+		}finally{
+			this._open.remove(socket);
+			this._activeSessions.decrementAndGet();
+			this._sessionSlots.release();
+		}
+	}
+
+	/*
+	 * Runs one request and returns its reply, newline terminated.
+	 */
+	private String handle(String line) {
+		this._requests.incrementAndGet();
+		Command command;
+		try{
+			command = Command.parse(line);
+		}catch(RuntimeException e){
+			this._errors.incrementAndGet();
+			return "ERR " + e.getMessage() + "\n";
+		}
+
+		boolean admitted;
+		try{
+			admitted = this._inFlight.tryAcquire(this._queueTimeoutMillis, TimeUnit.MILLISECONDS);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			admitted = false;
+		}
+		if (!admitted) {
+			this._busy.incrementAndGet();
+			return "ERR busy: request queue full\n";
+		}
+		try{
+			return "OK " + format(command.run(this._ops));
+		}catch(Exception e){
+			this._errors.incrementAndGet();
+			String message = e.getMessage() == null ? e.toString() : e.getMessage();
+			return "ERR " + message.replace('\n', ' ') + "\n";
+		}finally{
+			this._inFlight.release();
+		}
+	}
+
+	private static String format(Object result) {
+		if (result instanceof BookingEngine.Booking) {
+			BookingEngine.Booking b = (BookingEngine.Booking) result;
+			return b.rnum() + " " + b.status() + "\n";
+		}
+		if (result instanceof List) {
+			List<?> rows = (List<?>) result;
+			StringBuilder sb = new StringBuilder().append(rows.size()).append(" rows\n");
+			for (Object row : rows) {
+				if (row instanceof Flight.SeatTotal) {
+					Flight.SeatTotal total = (Flight.SeatTotal) row;
+					sb.append(total.airport()).append('\t').append(total.flights()).append('\t').append(total.seats())
+							.append('\t').append(total.sold()).append('\n');
+					continue;
+				}
+				if (row instanceof Flight) {
+					Flight flight = (Flight) row;
+					sb.append(flight.fnum()).append('\t').append(flight.cost()).append('\t').append(flight.departureAirport())
+							.append('\t').append(flight.departure()).append('\t').append(flight.arrivalAirport())
+							.append('\t').append(flight.arrival()).append('\t').append(flight.numSold()).append('\n');
+					continue;
+				}
+				if (row instanceof Itinerary) {
+					Itinerary itinerary = (Itinerary) row;
+					StringBuilder flights = new StringBuilder();
+					for (int fnum : itinerary.flights()) {
+						flights.append(flights.length() == 0 ? "" : ",").append(fnum);
+					}
+					sb.append(itinerary.cost()).append('\t').append(itinerary.departure()).append('\t').append(itinerary.arrival())
+							.append('\t').append(flights).append('\t').append(String.join(",", itinerary.airports())).append('\n');
+					continue;
+				}
+				Repair.Total total = (Repair.Total) row;
+				sb.append(total.key()).append('\t').append(total.repairs()).append('\n');
+			}
+			return sb.toString();
+		}
+		return result + "\n";
+	}
+
+	/**
+	 * Stops accepting sessions, waits up to <code>drainMillis</code> for the
+	 * requests in flight to finish, then closes every session.
+	 *
+	 * @return true when every request finished within the drain time
+	 */
+	public boolean shutdown(long drainMillis) throws InterruptedException {
+		this._closing = true;
+		try{
+			this._server.close();
+		}catch(IOException e){
+			// ignored.
+		}
+		this._acceptor.join(drainMillis);
+
+		// holding every slot means nothing is running and nothing new starts
+		boolean drained = this._inFlight.tryAcquire(this._maxInFlight, drainMillis, TimeUnit.MILLISECONDS);
+		for (Socket s : this._open) {
+			try{
+				s.close();
+			}catch(IOException e){
+				// ignored.
+			}
+		}
+		this._sessions.shutdown();
+		this._sessions.awaitTermination(drainMillis, TimeUnit.MILLISECONDS);
+		return drained;
+	}
+
+	/**
+	 * {@link #shutdown(long)} with a 10 second drain. An interrupt cuts the
+	 * drain short and is left set on the calling thread.
+	 */
+	@Override
+	public void close() {
+		try{
+			shutdown(10000L);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public boolean isVirtualThreads() { return this._virtual; }
+
+	public int getActiveSessions() { return this._activeSessions.get(); }
+
+	public long getSessionsAccepted() { return this._sessionsAccepted.get(); }
+
+	public long getSessionsRejected() { return this._sessionsRejected.get(); }
+
+	public long getRequests() { return this._requests.get(); }
+
+	public long getErrors() { return this._errors.get(); }
+
+	public long getBusyRejections() { return this._busy.get(); }
+
+	@Override
+	public String toString() {
+		return String.format("service[port=%d threads=%s sessions=%d accepted=%d rejected=%d requests=%d errors=%d busy=%d]",
+				getPort(), this._virtual ? "virtual" : "platform", getActiveSessions(), getSessionsAccepted(),
+				getSessionsRejected(), getRequests(), getErrors(), getBusyRejections());
+	}
+}
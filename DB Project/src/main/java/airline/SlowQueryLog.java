@@ -0,0 +1,287 @@
+package airline;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.regex.Pattern;
+
+/**
+ * Logs {@link Database} statements that take longer than a threshold, with
+ * their bind values, duration, row count and menu operation, to a rotating
+ * log file.
+ *
+ * For the first few slow occurrences of each statement shape (see
+ * {@link StatementMetrics}) the plan is captured as well, with the same
+ * bind values, on a dedicated connection and a background thread, so the
+ * caller that hit the slow statement is not delayed. A plain SELECT is
+ * captured with <code>EXPLAIN (ANALYZE, BUFFERS)</code>, which runs it
+ * again, in a read-only transaction that is always rolled back, under a
+ * statement timeout. Anything else, and a SELECT that turns out to write
+ * (a function such as book_flight, <code>nextval</code>), gets a plain
+ * EXPLAIN: running a slow write again would take its row locks again and
+ * use up sequence values, adding to whatever made it slow. Plans are logged as separate entries that refer back
+ * to the slow statement's number. When plans are requested faster than
+ * they can be captured, the extra requests are dropped and counted.
+ *
+ * The file rotates through <code>java.util.logging.FileHandler</code>:
+ * <code>slow-queries.0.log</code> is the newest, and the oldest file is
+ * removed once <code>files</code> of them exist.
+ */
+public class SlowQueryLog implements AutoCloseable {
+	private static final DateTimeFormatter TIME =
+		DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+	private static final int PLAN_QUEUE = 64;
+	// SELECT or WITH, with no data-modifying statement or row-locking clause anywhere in it
+	private static final Pattern PLAIN_SELECT = Pattern.compile(
+		"\\s*(select|with)\\b(?!.*\\b(insert|update|delete|merge)\\b)(?!.*\\bfor\\s+(key\\s+)?share\\b).*",
+		Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	private final ConnectionPool _pool;
+	private final long _thresholdNanos;
+	private final int _explainsPerShape;
+	private final int _explainTimeoutSeconds;
+	private final FileHandler _file;
+	private final ThreadPoolExecutor _explainer;
+	private final ConcurrentMap<String, AtomicInteger> _explained = new ConcurrentHashMap<String, AtomicInteger>();
+	private Connection _explainConnection = null;
+
+	private final AtomicLong _slow = new AtomicLong();
+	private final AtomicLong _plans = new AtomicLong();
+	private final AtomicLong _plansDropped = new AtomicLong();
+	private final AtomicLong _planErrors = new AtomicLong();
+
+	/**
+	 * Opens the log file.
+	 *
+	 * @param pool supplies the URL and credentials for the EXPLAIN connection
+	 * @param thresholdMillis statements taking at least this long are logged
+	 * @param explainsPerShape plans captured per statement shape; 0 captures none
+	 * @param logFile the log file name, e.g. <code>slow-queries.log</code>;
+	 *        rotated copies are numbered before the extension
+	 * @param maxBytes size at which the log rotates
+	 * @param files rotated files kept
+	 * @throws java.io.IOException when the log file cannot be opened
+	 */
+	public SlowQueryLog(ConnectionPool pool, long thresholdMillis, int explainsPerShape, String logFile,
+			int maxBytes, int files) throws IOException {
+		this._pool = pool;
+		this._thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		this._explainsPerShape = explainsPerShape;
+		this._explainTimeoutSeconds = 30;
+		this._file = new FileHandler(rotationPattern(logFile), maxBytes, files, true);
+		this._file.setEncoding("UTF-8");
+		this._file.setFormatter(new Formatter() {
+			@Override
+			public String format(LogRecord record) {
+				return TIME.format(Instant.ofEpochMilli(record.getMillis())) + " " + record.getMessage()
+						+ System.lineSeparator();
+			}
+		});
+		this._explainer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(PLAN_QUEUE), r -> {
+					Thread t = new Thread(r, "slow-query-explain");
+					t.setDaemon(true);
+					return t;
+				}, (r, executor) -> this._plansDropped.incrementAndGet());
+	}
+
+	/*
+	 * "slow-queries.log" rotates as slow-queries.0.log, slow-queries.1.log, ...
+	 */
+	private static String rotationPattern(String logFile) {
+		String escaped = logFile.replace("%", "%%");
+		int dot = escaped.lastIndexOf('.');
+		int slash = Math.max(escaped.lastIndexOf('/'), escaped.lastIndexOf('\\'));
+		return dot > slash + 1 ? escaped.substring(0, dot) + ".%g" + escaped.substring(dot) : escaped + ".%g";
+	}
+
+	/**
+	 * @return the threshold in milliseconds
+	 */
+	public long getThresholdMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this._thresholdNanos);
+	}
+
+	/*
+	 * Called by Database after every statement; only statements over the
+	 * threshold cost more than a comparison.
+	 */
+	void check(StatementMetrics.Stats shape, String operation, String sql, Object[] params, long rows, long nanos) {
+		if (nanos < this._thresholdNanos) {
+			return;
+		}
+		long id = this._slow.incrementAndGet();
+		StringBuilder sb = new StringBuilder(256 + sql.length());
+		sb.append("slow #").append(id).append(String.format(" %.3f ms", nanos / 1e6));
+		sb.append(rows < 0 ? " failed" : " rows=" + rows).append(" operation=").append(operation);
+		sb.append(System.lineSeparator()).append("  sql: ").append(sql.trim());
+		sb.append(System.lineSeparator()).append("  params: ");
+		appendParams(sb, params);
+
+		boolean explain = rows >= 0 && this._explained.computeIfAbsent(shape.name, k -> new AtomicInteger())
+				.incrementAndGet() <= this._explainsPerShape;
+		if (explain) {
+			sb.append(System.lineSeparator()).append("  plan: follows as plan #").append(id);
+		}
+		this._file.publish(new LogRecord(Level.WARNING, sb.toString()));
+		if (explain) {
+			this._explainer.execute(() -> explain(id, sql, params));
+		}
+	}
+
+	private static void appendParams(StringBuilder sb, Object[] params) {
+		sb.append('[');
+		for (int i = 0; i < params.length; ++i) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			Object p = params[i];
+			if (p == null) {
+				sb.append("NULL");
+			}else if (p instanceof Number || p instanceof Boolean) {
+				sb.append(p);
+			}else{
+				sb.append('\'').append(p.toString().replace("'", "''")).append('\'');
+			}
+		}
+		sb.append(']');
+	}
+
+	/*
+	 * Runs on the explain thread only, which owns the connection.
+	 */
+	private void explain(long id, String sql, Object[] params) {
+		StringBuilder sb = new StringBuilder(1024);
+		sb.append("plan #").append(id).append(':');
+		try{
+			Connection c = explainConnection();
+			boolean analyze = isPlainSelect(sql);
+			try{
+				plan(c, sb, analyze, sql, params);
+			}catch(SQLException e){
+				// 25006 is read_only_sql_transaction: the SELECT writes after all
+				if (!analyze || !"25006".equals(e.getSQLState())) {
+					throw e;
+				}
+				plan(c, sb, false, sql, params);
+			}
+			this._plans.incrementAndGet();
+		}catch(SQLException e){
+			this._planErrors.incrementAndGet();
+			sb.append(" not captured: ").append(e.getMessage());
+			closeExplainConnection();
+		}
+		this._file.publish(new LogRecord(Level.INFO, sb.toString()));
+	}
+
+	private static void plan(Connection c, StringBuilder sb, boolean analyze, String sql, Object[] params)
+			throws SQLException {
+		String explain = analyze ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ";
+		try (PreparedStatement stmt = c.prepareStatement(explain + stripSemicolon(sql))){
+			for (int i = 0; i < params.length; ++i) {
+				stmt.setObject(i + 1, params[i]);
+			}
+			try (ResultSet rs = stmt.executeQuery()){
+				if (!analyze) {
+					sb.append(System.lineSeparator()).append("    (not run again: estimates only)");
+				}
+				while (rs.next()) {
+					sb.append(System.lineSeparator()).append("    ").append(rs.getString(1));
+				}
+			}
+		}finally{
+			// nothing can have been written, but end the transaction either way
+			c.rollback();
+		}
+	}
+
+	static boolean isPlainSelect(String sql) {
+		return PLAIN_SELECT.matcher(sql).matches();
+	}
+
+	private Connection explainConnection() throws SQLException {
+		if (this._explainConnection == null) {
+			Connection c = this._pool.openDedicated();
+			try (Statement stmt = c.createStatement()){
+				stmt.execute("SET statement_timeout = " + (this._explainTimeoutSeconds * 1000));
+				// a statement that writes fails here instead of taking locks
+				stmt.execute("SET SESSION CHARACTERISTICS AS TRANSACTION READ ONLY");
+			}
+			c.setAutoCommit(false);
+			this._explainConnection = c;
+		}
+		return this._explainConnection;
+	}
+
+	private void closeExplainConnection() {
+		if (this._explainConnection != null) {
+			try{
+				this._explainConnection.close();
+			}catch(SQLException e){
+				// ignored.
+			}
+			this._explainConnection = null;
+		}
+	}
+
+	private static String stripSemicolon(String sql) {
+		String s = sql.trim();
+		while (s.endsWith(";")) {
+			s = s.substring(0, s.length() - 1).trim();
+		}
+		return s;
+	}
+
+	/**
+	 * Waits briefly for queued plans, then closes the EXPLAIN connection and
+	 * the log file.
+	 */
+	@Override
+	public void close() {
+		this._explainer.shutdown();
+		try{
+			this._explainer.awaitTermination(5, TimeUnit.SECONDS);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		this._explainer.shutdownNow();
+		try{
+			this._explainer.awaitTermination(1, TimeUnit.SECONDS);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		closeExplainConnection();
+		this._file.close();
+	}
+
+	public long getSlowCount() { return this._slow.get(); }
+
+	public long getPlansCaptured() { return this._plans.get(); }
+
+	public long getPlansDropped() { return this._plansDropped.get(); }
+
+	public long getPlanErrors() { return this._planErrors.get(); }
+
+	@Override
+	public String toString() {
+		return String.format("slowQueryLog[threshold=%dms slow=%d plans=%d dropped=%d planErrors=%d]",
+				getThresholdMillis(), getSlowCount(), getPlansCaptured(), getPlansDropped(), getPlanErrors());
+	}
+}
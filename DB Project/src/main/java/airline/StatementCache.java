@@ -0,0 +1,124 @@
+package airline;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An LRU cache of PreparedStatements for one physical connection, keyed by
+ * SQL text. Reusing the same PreparedStatement lets the driver switch it to a
+ * named server-side statement (see the <code>prepareThreshold</code> connection
+ * property), so Postgres parses and plans hot queries once per connection
+ * instead of once per call.
+ *
+ * A cache belongs to exactly one connection and is only touched by whoever
+ * has that connection borrowed, so it needs no locking. Statements handed out
+ * by the cache must not be closed by the caller; they are closed when they are
+ * evicted or when the connection is closed.
+ */
+public final class StatementCache {
+	private final Connection _connection;
+	private final AtomicLong _hits;
+	private final AtomicLong _misses;
+	private final LinkedHashMap<String, PreparedStatement> _statements;
+
+	/**
+	 * @param connection the connection statements are prepared on
+	 * @param capacity the maximum number of statements kept open
+	 * @param hits counter incremented on every cache hit (may be shared)
+	 * @param misses counter incremented on every cache miss (may be shared)
+	 */
+	StatementCache(Connection connection, final int capacity, AtomicLong hits, AtomicLong misses) {
+		this._connection = connection;
+		this._hits = hits;
+		this._misses = misses;
+		this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= capacity) {
+					return false;
+				}
+				closeQuietly(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached statement for <code>sql</code>, preparing it on a miss.
+	 * Parameters left over from the previous use are cleared.
+	 *
+	 * @param sql the SQL text with <code>?</code> placeholders
+	 * @return a prepared statement owned by the cache
+	 * @throws java.sql.SQLException when the statement cannot be prepared
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement ps = this._statements.get(sql);
+		if (ps != null && !ps.isClosed()) {
+			this._hits.incrementAndGet();
+			ps.clearParameters();
+			return ps;
+		}
+		this._misses.incrementAndGet();
+		ps = this._connection.prepareStatement(sql);
+		this._statements.put(sql, ps);
+		return ps;
+	}
+
+	/**
+	 * Returns the cached CallableStatement for a JDBC escape call such as
+	 * <code>{call f(?, ?)}</code>, preparing it on a miss. Parameters left
+	 * over from the previous use are cleared; registered OUT parameters are
+	 * kept.
+	 *
+	 * @param sql the call escape with <code>?</code> placeholders
+	 * @return a callable statement owned by the cache
+	 * @throws java.sql.SQLException when the statement cannot be prepared
+	 */
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		PreparedStatement ps = this._statements.get(sql);
+		if (ps instanceof CallableStatement && !ps.isClosed()) {
+			this._hits.incrementAndGet();
+			ps.clearParameters();
+			return (CallableStatement) ps;
+		}
+		this._misses.incrementAndGet();
+		if (ps != null) {
+			// a plain PreparedStatement cached under the same text
+			closeQuietly(ps);
+			this._statements.remove(sql);
+		}
+		CallableStatement cs = this._connection.prepareCall(sql);
+		this._statements.put(sql, cs);
+		return cs;
+	}
+
+	/**
+	 * @return the number of statements currently cached
+	 */
+	public int size() {
+		return this._statements.size();
+	}
+
+	/**
+	 * Closes and forgets every cached statement.
+	 */
+	public void clear() {
+		for (PreparedStatement ps : this._statements.values()) {
+			closeQuietly(ps);
+		}
+		this._statements.clear();
+	}
+
+	private static void closeQuietly(PreparedStatement ps) {
+		try{
+			ps.close();
+		}catch(SQLException e){
+			// ignored.
+		}
+	}
+}
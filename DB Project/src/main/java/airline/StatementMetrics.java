@@ -0,0 +1,472 @@
+package airline;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms, row counts, error counts and in-flight counts for the
+ * {@link Database} helpers, kept per statement shape and per menu operation.
+ *
+ * A statement's shape is its SQL with whitespace collapsed and literals
+ * replaced by <code>?</code>, so the same query issued with different
+ * literals is counted once. The shape is worked out the first time a SQL
+ * string is seen and looked up by that string afterwards. The helpers pass
+ * the same constant strings every time, so recording a statement is a hash
+ * lookup, a few atomic increments and a histogram update, and never
+ * allocates.
+ *
+ * The menu operation is tracked per thread between
+ * {@link #beginOperation(String)} and
+ * {@link #endOperation(String, long, boolean)}. Statements run in between
+ * add their rows to the operation; the operation's own histogram holds its
+ * end-to-end latency. An operation begun inside another one is folded into
+ * the outer one.
+ */
+public class StatementMetrics implements StatementMetricsMXBean {
+	/** The operation name for statements run outside any operation. */
+	public static final String NO_OPERATION = "-";
+
+	// beyond this many distinct SQL strings the shape is recomputed on every call
+	private static final int MAX_SQL_STRINGS = 4096;
+
+	private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	/**
+	 * The counters for one statement shape or one operation. Obtained from
+	 * {@link StatementMetrics#statement(String)} and passed back to
+	 * {@link StatementMetrics#beginStatement(Stats)} and
+	 * {@link StatementMetrics#endStatement(Stats, long, long)}.
+	 */
+	public static final class Stats {
+		final String name;
+		final LatencyHistogram latency = new LatencyHistogram();
+		final LongAdder rows = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder statements = new LongAdder();
+		final AtomicInteger inFlight = new AtomicInteger();
+
+		Stats(String name) {
+			this.name = name;
+		}
+
+		Snapshot snapshot() {
+			return new Snapshot(this.name, this.latency.count(), this.errors.sum(), this.inFlight.get(),
+					this.rows.sum(), this.statements.sum(), this.latency.meanMillis(),
+					this.latency.percentileMillis(50), this.latency.percentileMillis(95),
+					this.latency.percentileMillis(99), this.latency.maxMillis());
+		}
+
+		void reset() {
+			this.latency.reset();
+			this.rows.reset();
+			this.errors.reset();
+			this.statements.reset();
+		}
+	}
+
+	/**
+	 * A point-in-time copy of one statement shape's or operation's counters,
+	 * as returned over JMX.
+	 */
+	public static final class Snapshot {
+		private final String _name;
+		private final long _count;
+		private final long _errors;
+		private final int _inFlight;
+		private final long _rows;
+		private final long _statements;
+		private final double _meanMillis;
+		private final double _p50Millis;
+		private final double _p95Millis;
+		private final double _p99Millis;
+		private final double _maxMillis;
+
+		Snapshot(String name, long count, long errors, int inFlight, long rows, long statements, double meanMillis,
+				double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+			this._name = name;
+			this._count = count;
+			this._errors = errors;
+			this._inFlight = inFlight;
+			this._rows = rows;
+			this._statements = statements;
+			this._meanMillis = meanMillis;
+			this._p50Millis = p50Millis;
+			this._p95Millis = p95Millis;
+			this._p99Millis = p99Millis;
+			this._maxMillis = maxMillis;
+		}
+
+		/** @return the statement shape or the operation name */
+		public String getName() { return this._name; }
+
+		public long getCount() { return this._count; }
+
+		public long getErrors() { return this._errors; }
+
+		public int getInFlight() { return this._inFlight; }
+
+		/** @return rows returned or affected */
+		public long getRows() { return this._rows; }
+
+		/** @return statements run; for a statement shape this equals the count */
+		public long getStatements() { return this._statements; }
+
+		public double getMeanMillis() { return this._meanMillis; }
+
+		public double getP50Millis() { return this._p50Millis; }
+
+		public double getP95Millis() { return this._p95Millis; }
+
+		public double getP99Millis() { return this._p99Millis; }
+
+		public double getMaxMillis() { return this._maxMillis; }
+	}
+
+	private final ConcurrentMap<String, Stats> _bySql = new ConcurrentHashMap<String, Stats>();
+	private final ConcurrentMap<String, Stats> _byShape = new ConcurrentHashMap<String, Stats>();
+	private final ConcurrentMap<String, Stats> _byOperation = new ConcurrentHashMap<String, Stats>();
+	private final ThreadLocal<Stats> _current = new ThreadLocal<Stats>();
+
+	private ScheduledExecutorService _dumper = null;
+	private PrintStream _dumpOut = null;
+	private ObjectName _jmxName = null;
+
+	/**
+	 * Looks up the counters for a SQL string, working out its shape the
+	 * first time it is seen.
+	 */
+	public Stats statement(String sql) {
+		Stats stats = this._bySql.get(sql);
+		if (stats != null) {
+			return stats;
+		}
+		String shape = normalize(sql);
+		stats = this._byShape.computeIfAbsent(shape, Stats::new);
+		if (this._bySql.size() < MAX_SQL_STRINGS) {
+			this._bySql.putIfAbsent(sql, stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * Marks a statement as started.
+	 *
+	 * @return the start time to pass to {@link #endStatement(Stats, long, long)}
+	 */
+	public long beginStatement(Stats stats) {
+		stats.inFlight.incrementAndGet();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records a finished statement.
+	 *
+	 * @param rows rows returned or affected, or a negative number when the
+	 *        statement threw
+	 * @return the statement's duration in nanoseconds
+	 */
+	public long endStatement(Stats stats, long start, long rows) {
+		long nanos = System.nanoTime() - start;
+		stats.inFlight.decrementAndGet();
+		stats.latency.record(nanos);
+		stats.statements.increment();
+		if (rows < 0) {
+			stats.errors.increment();
+		}else{
+			stats.rows.add(rows);
+		}
+
+		Stats op = this._current.get();
+		if (op == null) {
+			op = operation(NO_OPERATION);
+			op.latency.record(nanos);
+			if (rows < 0) {
+				op.errors.increment();
+			}
+		}
+		op.statements.increment();
+		if (rows > 0) {
+			op.rows.add(rows);
+		}
+		return nanos;
+	}
+
+	/**
+	 * @return the calling thread's current operation, or {@link #NO_OPERATION}
+	 */
+	public String currentOperation() {
+		Stats op = this._current.get();
+		return op == null ? NO_OPERATION : op.name;
+	}
+
+	private Stats operation(String name) {
+		Stats stats = this._byOperation.get(name);
+		return stats != null ? stats : this._byOperation.computeIfAbsent(name, Stats::new);
+	}
+
+	/**
+	 * Makes <code>name</code> the calling thread's current operation.
+	 * Always pair with {@link #endOperation(String, long, boolean)} in a
+	 * finally block.
+	 *
+	 * @param name the operation, e.g. <code>book_flight</code>
+	 * @return the start time, or -1 when another operation is already running
+	 *         on this thread
+	 */
+	public long beginOperation(String name) {
+		if (this._current.get() != null) {
+			return -1L;
+		}
+		Stats op = operation(name);
+		op.inFlight.incrementAndGet();
+		this._current.set(op);
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the operation's latency and clears the thread's current
+	 * operation.
+	 *
+	 * @param start the value {@link #beginOperation(String)} returned
+	 * @param failed whether the operation threw
+	 */
+	public void endOperation(String name, long start, boolean failed) {
+		if (start < 0) {
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		Stats op = operation(name);
+		// set(null) rather than remove(), which would allocate a new entry on the next set()
+		this._current.set(null);
+		op.inFlight.decrementAndGet();
+		op.latency.record(nanos);
+		if (failed) {
+			op.errors.increment();
+		}
+	}
+
+	/*
+	 * Collapses whitespace, replaces string and numeric literals with ? and
+	 * drops the trailing semicolon.
+	 */
+	static String normalize(String sql) {
+		int n = sql.length();
+		StringBuilder sb = new StringBuilder(n);
+		boolean space = false;
+		int i = 0;
+		while (i < n) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = true;
+				++i;
+				continue;
+			}
+			if (space && sb.length() > 0) {
+				sb.append(' ');
+			}
+			space = false;
+			if (c == '\'') {
+				// '' inside a literal is an escaped quote
+				int j = i + 1;
+				while (j < n && !(sql.charAt(j) == '\'' && (j + 1 >= n || sql.charAt(j + 1) != '\''))) {
+					j += sql.charAt(j) == '\'' ? 2 : 1;
+				}
+				sb.append('?');
+				i = j + 1;
+			}else if (c == '"') {
+				int j = sql.indexOf('"', i + 1);
+				j = j < 0 ? n : j + 1;
+				sb.append(sql, i, j);
+				i = j;
+			}else if (Character.isDigit(c) && (sb.length() == 0 || !isIdentifierChar(sb.charAt(sb.length() - 1)))) {
+				int j = i;
+				while (j < n && (Character.isDigit(sql.charAt(j)) || sql.charAt(j) == '.')) {
+					++j;
+				}
+				sb.append('?');
+				i = j;
+			}else{
+				sb.append(c);
+				++i;
+			}
+		}
+		int end = sb.length();
+		while (end > 0 && (sb.charAt(end - 1) == ';' || sb.charAt(end - 1) == ' ')) {
+			--end;
+		}
+		sb.setLength(end);
+		return sb.toString();
+	}
+
+	private static boolean isIdentifierChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+
+	// the totals are summed on read so recording touches no shared counter
+
+	@Override
+	public int getInFlight() {
+		int n = 0;
+		for (Stats stats : this._byShape.values()) {
+			n += stats.inFlight.get();
+		}
+		return n;
+	}
+
+	@Override
+	public long getStatementCount() {
+		long n = 0;
+		for (Stats stats : this._byShape.values()) {
+			n += stats.statements.sum();
+		}
+		return n;
+	}
+
+	@Override
+	public long getErrorCount() {
+		long n = 0;
+		for (Stats stats : this._byShape.values()) {
+			n += stats.errors.sum();
+		}
+		return n;
+	}
+
+	@Override
+	public List<Snapshot> getStatements() {
+		return snapshots(this._byShape);
+	}
+
+	@Override
+	public List<Snapshot> getOperations() {
+		return snapshots(this._byOperation);
+	}
+
+	private static List<Snapshot> snapshots(Map<String, Stats> map) {
+		List<Snapshot> result = new ArrayList<Snapshot>(map.size());
+		for (Stats stats : map.values()) {
+			result.add(stats.snapshot());
+		}
+		// busiest first
+		result.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+		return result;
+	}
+
+	@Override
+	public void reset() {
+		for (Stats stats : this._byShape.values()) {
+			stats.reset();
+		}
+		for (Stats stats : this._byOperation.values()) {
+			stats.reset();
+		}
+	}
+
+	@Override
+	public String dump() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("statement metrics at %s: %d statement(s), %d error(s), %d in flight%n",
+				LocalDateTime.now().format(TIME), getStatementCount(), getErrorCount(), getInFlight()));
+		sb.append(String.format("%-18s %9s %7s %6s %10s %6s %9s %9s %9s %9s %9s%n", "operation", "count", "errors",
+				"busy", "rows", "stmts", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+		for (Snapshot s : getOperations()) {
+			sb.append(String.format("%-18s %9d %7d %6d %10d %6d %9.3f %9.3f %9.3f %9.3f %9.3f%n", s.getName(),
+					s.getCount(), s.getErrors(), s.getInFlight(), s.getRows(), s.getStatements(), s.getMeanMillis(),
+					s.getP50Millis(), s.getP95Millis(), s.getP99Millis(), s.getMaxMillis()));
+		}
+		sb.append(String.format("%9s %7s %6s %10s %9s %9s %9s %9s %9s  %s%n", "count", "errors", "busy", "rows",
+				"mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "statement"));
+		for (Snapshot s : getStatements()) {
+			sb.append(String.format("%9d %7d %6d %10d %9.3f %9.3f %9.3f %9.3f %9.3f  %s%n", s.getCount(),
+					s.getErrors(), s.getInFlight(), s.getRows(), s.getMeanMillis(), s.getP50Millis(),
+					s.getP95Millis(), s.getP99Millis(), s.getMaxMillis(), s.getName()));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes {@link #dump()} to <code>out</code> every
+	 * <code>periodSeconds</code> on a daemon thread, replacing any earlier
+	 * schedule.
+	 */
+	public synchronized void startDump(long periodSeconds, final PrintStream out) {
+		stopDump();
+		this._dumpOut = out;
+		this._dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "statement-metrics-dump");
+			t.setDaemon(true);
+			return t;
+		});
+		this._dumper.scheduleAtFixedRate(() -> {
+			out.print(dump());
+			out.flush();
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops the periodic dump, writing one last dump so the final interval
+	 * is not lost.
+	 */
+	public synchronized void stopDump() {
+		if (this._dumper == null) {
+			return;
+		}
+		this._dumper.shutdownNow();
+		this._dumper = null;
+		this._dumpOut.print(dump());
+		this._dumpOut.flush();
+		this._dumpOut = null;
+	}
+
+	/**
+	 * Registers this instance with the platform MBean server as
+	 * <code>airline:type=StatementMetrics,name=&lt;name&gt;</code>.
+	 *
+	 * @throws javax.management.JMException when the name is taken or invalid
+	 */
+	public synchronized void register(String name) throws JMException {
+		unregister();
+		ObjectName objectName = new ObjectName("airline:type=StatementMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this._jmxName = objectName;
+	}
+
+	/**
+	 * Removes the MBean registered by {@link #register(String)}, if any.
+	 */
+	public synchronized void unregister() {
+		if (this._jmxName == null) {
+			return;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try{
+			server.unregisterMBean(this._jmxName);
+		}catch(JMException e){
+			// already gone.
+		}
+		this._jmxName = null;
+	}
+
+	/**
+	 * Stops the dump and unregisters the MBean.
+	 */
+	public void close() {
+		stopDump();
+		unregister();
+	}
+}
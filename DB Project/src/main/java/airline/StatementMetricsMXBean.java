@@ -0,0 +1,30 @@
+package airline;
+
+import java.util.List;
+
+/**
+ * JMX view of a {@link StatementMetrics}, registered as
+ * <code>airline:type=StatementMetrics,name=...</code>.
+ */
+public interface StatementMetricsMXBean {
+	/** @return statements running right now, over all shapes */
+	int getInFlight();
+
+	/** @return statements run since start or the last reset */
+	long getStatementCount();
+
+	/** @return statements that threw since start or the last reset */
+	long getErrorCount();
+
+	/** @return one entry per normalized statement */
+	List<StatementMetrics.Snapshot> getStatements();
+
+	/** @return one entry per menu operation */
+	List<StatementMetrics.Snapshot> getOperations();
+
+	/** @return the same text the periodic dump writes */
+	String dump();
+
+	/** Clears every histogram and counter. */
+	void reset();
+}
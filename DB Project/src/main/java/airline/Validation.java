@@ -0,0 +1,81 @@
+package airline;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Input rules shared by the interactive menu and the bulk loader, so a row
+ * that the menu would reject cannot sneak in through a CSV file either.
+ */
+public final class Validation {
+	private Validation() {
+	}
+
+	private static boolean length(String s, int min, int max) {
+		return s != null && s.length() >= min && s.length() <= max;
+	}
+
+	// Plane
+	public static boolean isValidMake(String make) { return length(make, 1, 32); }
+
+	public static boolean isValidModel(String model) { return length(model, 1, 64); }
+
+	public static boolean isValidAge(int age) { return age > 0; }
+
+	public static boolean isValidSeats(int seats) { return seats > 0; }
+
+	// Pilot and Technician
+	public static boolean isValidFullName(String name) { return length(name, 1, 128); }
+
+	public static boolean isValidNationality(String nationality) { return length(nationality, 1, 24); }
+
+	// Customer
+	public static boolean isValidFirstName(String name) { return length(name, 1, 24); }
+
+	public static boolean isValidLastName(String name) { return length(name, 1, 24); }
+
+	public static boolean isValidGender(String gtype) { return "M".equals(gtype) || "F".equals(gtype); }
+
+	public static boolean isValidAddress(String address) { return length(address, 1, 256); }
+
+	public static boolean isValidPhone(String phone) { return phone != null && phone.length() == 10; }
+
+	public static boolean isValidZipcode(String zipcode) { return length(zipcode, 1, 10); }
+
+	// Flight
+	public static boolean isValidCost(int cost) { return cost > 0; }
+
+	public static boolean isValidNumSold(int numSold) { return numSold >= 0; }
+
+	public static boolean isValidNumStops(int numStops) { return numStops >= 0; }
+
+	/**
+	 * @return true for a 5-character airport code
+	 */
+	public static boolean isValidAirport(String code) { return code != null && code.length() == 5; }
+
+	/**
+	 * @return true when the date is a real calendar date in yyyy-MM-dd format
+	 */
+	public static boolean isValidDate(String date) {
+		return parseDate(date) != null;
+	}
+
+	/**
+	 * Parses a date strictly: ISO yyyy-MM-dd with a four-digit year from 1
+	 * to 9999, the form both java.sql.Date and PostgreSQL read the same way.
+	 *
+	 * @return the date, or null when it is not a real calendar date in that form
+	 */
+	public static LocalDate parseDate(String date) {
+		if (date == null || date.length() != 10) {
+			return null;
+		}
+		try{
+			LocalDate parsed = LocalDate.parse(date);
+			return parsed.getYear() >= 1 ? parsed : null;
+		}catch(DateTimeParseException e){
+			return null;
+		}
+	}
+}
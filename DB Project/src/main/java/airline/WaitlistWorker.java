@@ -0,0 +1,194 @@
+package airline;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Promotes waitlisted reservations ('W') to reserved ones ('R') as seats
+ * free up.
+ *
+ * The waitlist is treated as a work queue: each flight's 'W' reservations,
+ * oldest <code>rnum</code> first. A pass is one statement in its own
+ * transaction. It claims up to <code>flightsPerBatch</code> flights that
+ * have a waitlist and a free seat with <code>FOR UPDATE SKIP LOCKED</code>,
+ * the flights whose first waiter has waited longest first. It takes the
+ * head of each claimed flight's queue, as many reservations as the flight
+ * has free seats, promotes them to 'R' and adds them to
+ * <code>num_sold</code>.
+ *
+ * Holding the Flight row lock is what makes this safe to run in many
+ * threads and processes at once. Two workers never claim the same flight,
+ * so nobody is promoted twice and <code>num_sold</code> cannot pass the
+ * seat count. A worker skips flights another worker holds instead of
+ * waiting for them, so workers do not queue up behind each other. Bookings
+ * and cancellations of a claimed flight wait for the pass to commit, which
+ * takes milliseconds. Queue rows locked by a concurrent cancellation are
+ * skipped and picked up by a later pass.
+ *
+ * Each thread runs passes back to back while they keep finding work, then
+ * sleeps for <code>pollMillis</code>. {@link #wakeUp()} ends the sleep
+ * early; this process calls it after a cancellation frees a seat.
+ */
+public class WaitlistWorker implements AutoCloseable {
+	static final String PROMOTE_BATCH =
+		"WITH waiting AS (" +
+			"SELECT Q.fid, Q.head, MIN(P.seats) AS seats " +
+			"FROM (SELECT W.fid, MIN(W.rnum) AS head FROM Reservation W WHERE W.status = 'W' GROUP BY W.fid) Q, FlightInfo FI, Plane P " +
+			"WHERE FI.flight_id = Q.fid AND FI.plane_id = P.id GROUP BY Q.fid, Q.head), " +
+		"flights AS (" +
+			"SELECT F.fnum, waiting.seats - F.num_sold AS free FROM waiting JOIN Flight F ON F.fnum = waiting.fid " +
+			"WHERE F.num_sold < waiting.seats ORDER BY waiting.head LIMIT ? FOR UPDATE OF F SKIP LOCKED), " +
+		"queue AS (" +
+			"SELECT H.rnum FROM flights, LATERAL (SELECT R.rnum FROM Reservation R WHERE R.fid = flights.fnum AND R.status = 'W' " +
+			"ORDER BY R.rnum LIMIT flights.free FOR UPDATE SKIP LOCKED) H), " +
+		"promoted AS (" +
+			"UPDATE Reservation R SET status = 'R' FROM queue WHERE R.rnum = queue.rnum RETURNING R.rnum, R.fid), " +
+		"sold AS (" +
+			"UPDATE Flight F SET num_sold = F.num_sold + P.n FROM (SELECT fid, count(*) AS n FROM promoted GROUP BY fid) P " +
+			"WHERE F.fnum = P.fid RETURNING F.fnum) " +
+		"SELECT (SELECT count(*) FROM promoted), (SELECT count(*) FROM sold)";
+
+	private final ConnectionPool _pool;
+	private final int _flightsPerBatch;
+	private final long _pollMillis;
+	private final Thread[] _threads;
+	private final Object _signal = new Object();
+	private long _wakeUps = 0;
+	private volatile boolean _closed = false;
+
+	private final AtomicLong _passes = new AtomicLong();
+	private final AtomicLong _promoted = new AtomicLong();
+	private final AtomicLong _flights = new AtomicLong();
+	private final AtomicLong _errors = new AtomicLong();
+
+	/**
+	 * Creates the worker; {@link #start()} starts its threads.
+	 *
+	 * @param pool the pool each pass borrows its connection from
+	 * @param threads passes that may run at once in this process
+	 * @param flightsPerBatch flights claimed per pass
+	 * @param pollMillis how long a thread sleeps after a pass that found no work
+	 */
+	public WaitlistWorker(ConnectionPool pool, int threads, int flightsPerBatch, long pollMillis) {
+		if (threads < 1 || flightsPerBatch < 1) {
+			throw new IllegalArgumentException("threads and flights per batch must be positive");
+		}
+		this._pool = pool;
+		this._flightsPerBatch = flightsPerBatch;
+		this._pollMillis = pollMillis;
+		this._threads = new Thread[threads];
+		for (int i = 0; i < threads; ++i) {
+			this._threads[i] = new Thread(this::run, "waitlist-worker-" + i);
+			this._threads[i].setDaemon(true);
+		}
+	}
+
+	/**
+	 * Starts the worker threads.
+	 */
+	public void start() {
+		for (Thread t : this._threads) {
+			t.start();
+		}
+	}
+
+	/**
+	 * Runs one pass on the calling thread.
+	 *
+	 * @return the reservations promoted
+	 * @throws java.sql.SQLException when the pass fails; nothing is promoted
+	 */
+	public int promoteBatch() throws SQLException {
+		PooledConnection conn = this._pool.borrow();
+		try{
+			PreparedStatement ps = conn.prepare(PROMOTE_BATCH);
+			ps.setInt(1, this._flightsPerBatch);
+			try (ResultSet rs = ps.executeQuery()){
+				rs.next();
+				int promoted = rs.getInt(1);
+				this._passes.incrementAndGet();
+				this._promoted.addAndGet(promoted);
+				this._flights.addAndGet(rs.getInt(2));
+				return promoted;
+			}
+		}finally{
+			this._pool.release(conn);
+		}
+	}
+
+	/**
+	 * Ends the threads' sleep so they look for work now.
+	 */
+	public void wakeUp() {
+		synchronized (this._signal) {
+			++this._wakeUps;
+			this._signal.notifyAll();
+		}
+	}
+
+	private void run() {
+		while (!this._closed) {
+			long seen;
+			synchronized (this._signal) {
+				seen = this._wakeUps;
+			}
+			boolean more;
+			try{
+				more = promoteBatch() > 0;
+			}catch(SQLException e){
+				this._errors.incrementAndGet();
+				more = false;
+			}
+			if (more) {
+				continue;
+			}
+			synchronized (this._signal) {
+				// a wake-up that came in during the pass means there may be new work
+				if (seen == this._wakeUps && !this._closed) {
+					try{
+						this._signal.wait(this._pollMillis);
+					}catch(InterruptedException e){
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the threads, waiting for a running pass to finish.
+	 */
+	@Override
+	public void close() {
+		this._closed = true;
+		wakeUp();
+		for (Thread t : this._threads) {
+			try{
+				t.join(5000L);
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/** @return passes run */
+	public long getPasses() { return this._passes.get(); }
+
+	/** @return reservations promoted from 'W' to 'R' */
+	public long getPromoted() { return this._promoted.get(); }
+
+	/** @return flights that had reservations promoted, summed over passes */
+	public long getFlights() { return this._flights.get(); }
+
+	/** @return passes that failed */
+	public long getErrors() { return this._errors.get(); }
+
+	@Override
+	public String toString() {
+		return String.format("waitlistWorker[threads=%d passes=%d promoted=%d flights=%d errors=%d]",
+				this._threads.length, getPasses(), getPromoted(), getFlights(), getErrors());
+	}
+}
@@ -0,0 +1,143 @@
+package airline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a workload file against {@link Operations} from N worker threads,
+ * either as fast as possible or at a target rate, and reports throughput and
+ * p50/p95/p99 latency per operation.
+ *
+ * A workload file has one {@link Command} per line; blank lines and lines
+ * starting with '#' are ignored.
+ * The file is replayed <code>repeat</code> times. In rate mode every
+ * operation has a scheduled start time and its latency is measured from that
+ * time, so a stalled database shows up as queueing delay instead of being
+ * hidden by the workers slowing down.
+ */
+public class WorkloadDriver {
+	private static final class OpStats {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final AtomicLong errors = new AtomicLong();
+	}
+
+	private final Operations _ops;
+	private final List<Command> _steps;
+
+	private WorkloadDriver(Operations ops, List<Command> steps) {
+		this._ops = ops;
+		this._steps = steps;
+	}
+
+	/**
+	 * Parses a workload file.
+	 *
+	 * @throws IllegalArgumentException on an unknown operation or a wrong argument count
+	 */
+	public static WorkloadDriver load(Operations ops, Path file) throws IOException {
+		List<Command> steps = new ArrayList<Command>();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+			String line;
+			int lineNo = 0;
+			while ((line = reader.readLine()) != null) {
+				++lineNo;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				try{
+					steps.add(Command.parse(line));
+				}catch(RuntimeException e){
+					throw new IllegalArgumentException(file + ":" + lineNo + ": " + e.getMessage(), e);
+				}
+			}
+		}
+		if (steps.isEmpty()) {
+			throw new IllegalArgumentException(file + " contains no operations");
+		}
+		return new WorkloadDriver(ops, steps);
+	}
+
+	/**
+	 * Replays the workload and prints the report to standard out.
+	 *
+	 * @param threads number of worker threads
+	 * @param opsPerSecond target rate over all workers, or 0 for maximum rate
+	 * @param repeat how many times the workload file is replayed
+	 */
+	public void run(int threads, double opsPerSecond, int repeat) throws InterruptedException {
+		final Map<String, OpStats> stats = new LinkedHashMap<String, OpStats>();
+		for (Command c : this._steps) {
+			if (!stats.containsKey(c.op())) {
+				stats.put(c.op(), new OpStats());
+			}
+		}
+		final long total = (long) this._steps.size() * repeat;
+		final long interval = opsPerSecond > 0 ? (long) (1e9 / opsPerSecond) : 0L;
+		final AtomicLong next = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(threads);
+		final long start = System.nanoTime();
+
+		for (int t = 0; t < threads; ++t) {
+			new Thread(() -> {
+				try{
+					long i;
+					while ((i = next.getAndIncrement()) < total) {
+						Command step = this._steps.get((int) (i % this._steps.size()));
+						long scheduled = System.nanoTime();
+						if (interval > 0) {
+							scheduled = start + i * interval;
+							long wait;
+							while ((wait = scheduled - System.nanoTime()) > 0) {
+								LockSupport.parkNanos(wait);
+							}
+						}
+						OpStats s = stats.get(step.op());
+						try{
+							step.run(this._ops);
+						}catch(Exception e){
+							s.errors.incrementAndGet();
+						}
+						s.latency.record(System.nanoTime() - scheduled);
+					}
+				}finally{
+					done.countDown();
+				}
+			}, "workload-" + t).start();
+		}
+		done.await();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d operation(s) on %d thread(s) in %.3fs (%.1f ops/s%s)%n", total, threads, seconds,
+				total / seconds, interval > 0 ? ", target " + opsPerSecond : "");
+		System.out.printf("%-18s %9s %7s %10s %9s %9s %9s %9s%n", "operation", "count", "errors", "ops/s",
+				"p50 ms", "p95 ms", "p99 ms", "max ms");
+		for (Map.Entry<String, OpStats> e : stats.entrySet()) {
+			LatencyHistogram h = e.getValue().latency;
+			System.out.printf("%-18s %9d %7d %10.1f %9.3f %9.3f %9.3f %9.3f%n", e.getKey(), h.count(),
+					e.getValue().errors.get(), h.count() / seconds, h.percentileMillis(50),
+					h.percentileMillis(95), h.percentileMillis(99), h.maxMillis());
+		}
+		System.out.println(this._ops.getDatabase().getPool());
+		if (this._ops.getDatabase().getSeatCache() != null) {
+			System.out.println(this._ops.getDatabase().getSeatCache());
+		}
+		if (this._ops.getDatabase().getSlowQueryLog() != null) {
+			System.out.println(this._ops.getDatabase().getSlowQueryLog());
+		}
+		for (KeyFilter filter : this._ops.getKeyFilters()) {
+			System.out.println(filter);
+		}
+		System.out.print(this._ops.getDatabase().getMetrics().dump());
+	}
+}
@@ -0,0 +1,71 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The snapshot's reports agree with the database's after rows already
+ * loaded are updated: a repair moved to another plane and year, a flight
+ * given another plane, and a flight moved to another day and airport.
+ */
+class AnalyticsSnapshotTest {
+	static final Date FIRST = Date.valueOf("2020-01-01");
+	static final Date LAST = Date.valueOf("2020-12-31");
+
+	static TestDatabase db;
+	static AnalyticsSnapshot analytics;
+
+	@BeforeAll
+	static void start() throws Exception {
+		db = TestDatabase.start(1000, 2);
+		analytics = new AnalyticsSnapshot(db.pool());
+		analytics.refresh();
+	}
+
+	@AfterAll
+	static void stop() throws Exception {
+		analytics.close();
+		db.close();
+	}
+
+	@Test
+	void seesUpdatedRows() throws Exception {
+		assertReportsAgree();
+		long reloads = analytics.getReloads();
+
+		db.execute("UPDATE Repairs SET plane_id = 1, repair_date = DATE '1990-06-01' WHERE rid BETWEEN 1 AND 50");
+		db.execute("UPDATE FlightInfo SET plane_id = 1 WHERE flight_id BETWEEN 1 AND 50");
+		db.execute("UPDATE Flight SET actual_departure_date = DATE '2020-02-02', departure_airport = 'ZZZ01' WHERE fnum BETWEEN 1 AND 50");
+		analytics.refresh();
+
+		assertReportsAgree();
+		assertEquals(reloads + 3, analytics.getReloads(), "each updated table loaded again");
+
+		analytics.refresh();
+		assertEquals(reloads + 3, analytics.getReloads(), "nothing updated, nothing loaded again");
+	}
+
+	private static void assertReportsAgree() throws Exception {
+		Operations ops = db.ops();
+		assertEquals(byKey(ops.repairsPerPlane()), byKey(analytics.repairsPerPlane()), "repairs per plane");
+		assertEquals(byKey(ops.repairsPerYear()), byKey(analytics.repairsPerYear()), "repairs per year");
+		assertEquals(ops.seatsByDepartureAirport(FIRST, LAST).toString(),
+				analytics.seatsByDepartureAirport(FIRST.toLocalDate(), LAST.toLocalDate()).toString(), "seats by airport");
+	}
+
+	private static Map<Integer, Long> byKey(List<Repair.Total> totals) {
+		Map<Integer, Long> result = new TreeMap<Integer, Long>();
+		for (Repair.Total t : totals) {
+			result.put(t.key(), t.repairs());
+		}
+		return result;
+	}
+}
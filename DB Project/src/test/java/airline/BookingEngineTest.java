@@ -0,0 +1,97 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Many threads booking the last seats of one flight at once: exactly the
+ * free seats are reserved, everyone else is waitlisted and
+ * <code>num_sold</code> ends at the plane's seat count.
+ */
+class BookingEngineTest {
+	static final int THREADS = 16;
+	static final int PER_THREAD = 5;
+	static final int FREE_SEATS = 8;
+
+	static TestDatabase db;
+
+	@BeforeAll
+	static void start() throws Exception {
+		db = TestDatabase.start(1000, THREADS);
+	}
+
+	@AfterAll
+	static void stop() throws Exception {
+		db.close();
+	}
+
+	@Test
+	void statementsDoNotOverbook() throws Exception {
+		BookingEngine engine = new BookingEngine(db.pool());
+		engine.setUseFunction(false);
+		bookConcurrently(engine, 1);
+	}
+
+	@Test
+	void functionDoesNotOverbook() throws Exception {
+		BookingEngine engine = new BookingEngine(db.pool());
+		bookConcurrently(engine, 2);
+		assertTrue(engine.isUsingFunction());
+	}
+
+	private static void bookConcurrently(final BookingEngine engine, final int fnum) throws Exception {
+		long seats = db.queryLong("SELECT MIN(P.seats) FROM FlightInfo FI, Plane P WHERE FI.flight_id = " + fnum + " AND FI.plane_id = P.id");
+		db.execute("UPDATE Flight SET num_sold = " + (seats - FREE_SEATS) + " WHERE fnum = " + fnum);
+		// nobody may jump a waitlist, so start without one
+		db.execute("DELETE FROM Reservation WHERE fid = " + fnum + " AND status = 'W'");
+		long reservedBefore = countReserved(fnum);
+
+		final AtomicInteger reserved = new AtomicInteger();
+		final AtomicInteger waitlisted = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; ++t) {
+			final int cid = 1 + t;
+			new Thread(() -> {
+				try{
+					start.await();
+					for (int i = 0; i < PER_THREAD; ++i) {
+						try{
+							if (engine.book(cid, fnum).isWaitlisted()) {
+								waitlisted.incrementAndGet();
+							}else{
+								reserved.incrementAndGet();
+							}
+						}catch(Exception e){
+							failed.incrementAndGet();
+						}
+					}
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+				}finally{
+					done.countDown();
+				}
+			}, "booking-" + t).start();
+		}
+		start.countDown();
+		done.await();
+
+		assertEquals(0, failed.get(), "failed bookings");
+		assertEquals(FREE_SEATS, reserved.get(), "seats reserved");
+		assertEquals(THREADS * PER_THREAD - FREE_SEATS, waitlisted.get(), "bookings waitlisted");
+		assertEquals(seats, db.queryLong("SELECT num_sold FROM Flight WHERE fnum = " + fnum), "num_sold");
+		assertEquals(reservedBefore + FREE_SEATS, countReserved(fnum), "'R' reservations");
+	}
+
+	private static long countReserved(int fnum) throws Exception {
+		return db.queryLong("SELECT count(*) FROM Reservation WHERE fid = " + fnum + " AND status = 'R'");
+	}
+}
@@ -0,0 +1,66 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A bad date rejects its row, through COPY and through batched inserts
+ * alike, and the rest of the file loads.
+ */
+class BulkLoaderTest {
+	static final String[] CUSTOMERS = {
+		"fname,lname,gtype,dob,address,phone,zipcode",
+		"Ann,Good,F,1980-02-29,1 Main St,0123456789,12345",
+		"Bob,Short,M,99-01-01,2 Main St,0123456789,12345",
+		"Cid,Long,M,20200-01-01,3 Main St,0123456789,12345",
+		"Dee,Leap,F,1981-02-29,4 Main St,0123456789,12345",
+		"Eve,Good,F,0999-12-31,5 Main St,0123456789,12345",
+	};
+
+	static TestDatabase db;
+
+	@TempDir
+	static Path dir;
+
+	@BeforeAll
+	static void start() throws Exception {
+		db = TestDatabase.start(100, 2);
+	}
+
+	@AfterAll
+	static void stop() throws Exception {
+		db.close();
+	}
+
+	@Test
+	void rejectsBadDatesThroughCopy() throws Exception {
+		load(true);
+	}
+
+	@Test
+	void rejectsBadDatesThroughBatches() throws Exception {
+		load(false);
+	}
+
+	private static void load(boolean useCopy) throws Exception {
+		Path csv = dir.resolve("customers-" + useCopy + ".csv");
+		Files.write(csv, Arrays.asList(CUSTOMERS), StandardCharsets.UTF_8);
+		long before = db.queryLong("SELECT count(*) FROM Customer WHERE dob IN (DATE '1980-02-29', DATE '0999-12-31')");
+
+		BulkLoader.Result result = new BulkLoader(db.pool(), useCopy, 2, 10).load(BulkLoader.Table.CUSTOMER, csv);
+
+		assertEquals(useCopy, result.viaCopy);
+		assertEquals(2, result.rows);
+		assertEquals(3, result.rejected);
+		assertEquals(before + 2, db.queryLong("SELECT count(*) FROM Customer WHERE dob IN (DATE '1980-02-29', DATE '0999-12-31')"));
+	}
+}
@@ -0,0 +1,45 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The flight filter stops answering for flights whose block
+ * maintain_partitions() detached, once it re-reads its floor.
+ */
+class KeyFilterTest {
+	static TestDatabase db;
+
+	@BeforeAll
+	static void start() throws Exception {
+		db = TestDatabase.start(1000, 2);
+	}
+
+	@AfterAll
+	static void stop() throws Exception {
+		db.close();
+	}
+
+	@Test
+	void forgetsDetachedFlights() throws Exception {
+		// past the blocks made so far, so it stays attached in the default partition
+		db.execute("INSERT INTO Flight (fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, "
+				+ "arrival_airport, departure_airport) VALUES (50000, 100, 0, 0, DATE '2030-01-01', DATE '2030-01-02', 'A0002', 'A0001')");
+		Operations ops = db.ops();
+		assertTrue(ops.flightExists(5));
+		assertTrue(ops.flightExists(50000));
+
+		// every seeded flight is in the first block
+		db.execute("ALTER TABLE Flight DETACH PARTITION flight_p0000000000");
+		Thread.sleep(1100L);
+
+		assertFalse(ops.flightExists(5));
+		assertTrue(ops.flightExists(50000));
+		assertArrayEquals(new int[] { 5, 6 }, ops.missingKeys(BulkLoader.Table.FLIGHT, 5, 50000, 6));
+	}
+}
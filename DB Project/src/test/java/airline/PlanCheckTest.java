@@ -0,0 +1,61 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The plan check against a seeded database: clean once every migration is
+ * in, and still able to judge the other queries when one cannot be planned
+ * or predates the repair summaries.
+ */
+class PlanCheckTest {
+	static final int FLIGHTS = 5000;
+	static final long MIN_ROWS = 1000L;
+
+	@Test
+	void everyQueryUsesAnIndex() throws Exception {
+		try (TestDatabase db = TestDatabase.start(FLIGHTS, 1)){
+			assertEquals(Collections.emptyList(), new PlanCheck(db.pool(), MIN_ROWS).run());
+		}
+	}
+
+	@Test
+	void skipsTheSummariesBeforeV004() throws Exception {
+		try (TestDatabase db = TestDatabase.start(FLIGHTS, 1, 3)){
+			List<String> failures = new PlanCheck(db.pool(), MIN_ROWS).run();
+			// without V008 the searches have no route index; nothing else fails
+			assertEquals(2, failures.size(), failures.toString());
+			for (String failure : failures) {
+				assertTrue(failure.startsWith("search flights by ") && failure.contains("Seq Scan on flight"), failure);
+			}
+		}
+	}
+
+	@Test
+	void checksTheQueriesAfterOneThatFails() throws Exception {
+		try (TestDatabase db = TestDatabase.start(FLIGHTS, 1)){
+			db.execute("DROP TABLE repairs_per_plane CASCADE");
+			List<String> failures = new PlanCheck(db.pool(), MIN_ROWS).run();
+			assertEquals(1, failures.size(), failures.toString());
+			assertTrue(failures.get(0).startsWith("repairs per plane (7): "), failures.get(0));
+		}
+	}
+
+	@Test
+	void reportsAMissingIndex() throws Exception {
+		try (TestDatabase db = TestDatabase.start(FLIGHTS, 1)){
+			db.execute("DROP INDEX flightinfo_flight_id_idx");
+			List<String> failures = new PlanCheck(db.pool(), MIN_ROWS).run();
+			assertFalse(failures.isEmpty());
+			for (String failure : failures) {
+				assertTrue(failure.contains("Seq Scan on flightinfo"), failure);
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The repair summaries kept by the triggers from V004 and V009 match a
+ * recount of Repairs after writers insert, move and delete repairs of the
+ * same planes concurrently. Each writer changes its own repairs, so any
+ * deadlock comes from the summary rows: half the writers move repairs of
+ * the lowest planes up by one and half those of the highest planes, which
+ * wraps around to plane 1.
+ */
+class RepairSummaryTest {
+	static final int WRITERS = 8;
+	static final int ROUNDS = 50;
+
+	static final String PLANE_DRIFT =
+		"SELECT count(*) FROM (SELECT plane_id, COUNT(*) AS repairs FROM Repairs GROUP BY plane_id) r " +
+		"FULL JOIN repairs_per_plane s USING (plane_id) WHERE r.repairs IS DISTINCT FROM s.repairs";
+	static final String YEAR_DRIFT =
+		"SELECT count(*) FROM (SELECT EXTRACT(YEAR FROM repair_date)::int AS repair_year, COUNT(*) AS repairs FROM Repairs GROUP BY 1) r " +
+		"FULL JOIN repairs_per_year s USING (repair_year) WHERE r.repairs IS DISTINCT FROM s.repairs";
+
+	static TestDatabase db;
+
+	@BeforeAll
+	static void start() throws Exception {
+		db = TestDatabase.start(1000, 1);
+		db.execute("CREATE SEQUENCE repair_test_seq START 100000");
+	}
+
+	@AfterAll
+	static void stop() throws Exception {
+		db.close();
+	}
+
+	@Test
+	void concurrentWritersKeepTheSummariesExact() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+		try{
+			List<Future<?>> writers = new ArrayList<Future<?>>();
+			for (int w = 0; w < WRITERS; ++w) {
+				final int writer = w;
+				writers.add(pool.submit(() -> {
+					write(writer);
+					return null;
+				}));
+			}
+			for (Future<?> writer : writers) {
+				writer.get();
+			}
+		}finally{
+			pool.shutdown();
+		}
+
+		assertEquals(0, db.queryLong(PLANE_DRIFT), "planes whose summary is off");
+		assertEquals(0, db.queryLong(YEAR_DRIFT), "years whose summary is off");
+	}
+
+	private static void write(int writer) throws Exception {
+		String mine = "rid % " + WRITERS + " = " + writer;
+		String order = writer % 2 == 0 ? "ASC" : "DESC";
+		try (Connection c = DriverManager.getConnection(db.url(), "postgres", "");
+				Statement stmt = c.createStatement()){
+			for (int i = 0; i < ROUNDS; ++i) {
+				stmt.execute("UPDATE Repairs SET plane_id = 1 + (plane_id % 10) WHERE rid IN "
+						+ "(SELECT rid FROM Repairs WHERE " + mine + " AND plane_id <= 10 ORDER BY plane_id " + order + " LIMIT 10)");
+				stmt.execute("DELETE FROM Repairs WHERE rid IN "
+						+ "(SELECT rid FROM Repairs WHERE " + mine + " AND plane_id <= 10 ORDER BY plane_id " + order + " LIMIT 2)");
+				stmt.execute("INSERT INTO Repairs (rid, repair_date, repair_code, pilot_id, plane_id, technician_id) "
+						+ "SELECT nextval('repair_test_seq') * " + WRITERS + " + " + writer + ", DATE '2000-01-01' + 400 * k, 'MJ', 1, k, 1 "
+						+ "FROM generate_series(1, 10) k");
+			}
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link ReplicaRouter} against a second server posing as a standby.
+ *
+ * The replica's sessions put a <code>fake</code> schema ahead of
+ * pg_catalog on their search path. It shadows the recovery functions the
+ * lag check calls, so the server reports itself in recovery and as far
+ * behind as <code>fake.standby.lag_millis</code> says. The replica's
+ * copy of flight 1 has a different num_sold, which shows where a read ran.
+ */
+class ReplicaRouterTest {
+	static final long MAX_LAG_MILLIS = 1000L;
+	static final long CHECK_MILLIS = 100L;
+	static final int PRIMARY_SOLD = 11;
+	static final int REPLICA_SOLD = 22;
+
+	static final String[] FAKE_STANDBY = {
+		"CREATE SCHEMA fake",
+		"CREATE TABLE fake.standby (lag_millis BIGINT NOT NULL)",
+		"INSERT INTO fake.standby VALUES (0)",
+		"CREATE FUNCTION fake.pg_is_in_recovery() RETURNS BOOLEAN LANGUAGE sql AS 'SELECT true'",
+		// replay behind receive, so the lag comes from the replay timestamp
+		"CREATE FUNCTION fake.pg_last_wal_receive_lsn() RETURNS pg_lsn LANGUAGE sql AS 'SELECT ''0/2''::pg_lsn'",
+		"CREATE FUNCTION fake.pg_last_wal_replay_lsn() RETURNS pg_lsn LANGUAGE sql AS 'SELECT ''0/1''::pg_lsn'",
+		"CREATE FUNCTION fake.pg_last_xact_replay_timestamp() RETURNS TIMESTAMPTZ LANGUAGE sql "
+				+ "AS 'SELECT now() - lag_millis * interval ''1 millisecond'' FROM fake.standby'",
+	};
+
+	static final ReplicaRouter.Read<Integer> NUM_SOLD = pool -> {
+		PooledConnection conn = pool.borrow();
+		try{
+			PreparedStatement ps = conn.prepare("SELECT num_sold FROM Flight WHERE fnum = 1");
+			try (ResultSet rs = ps.executeQuery()){
+				rs.next();
+				return rs.getInt(1);
+			}
+		}finally{
+			pool.release(conn);
+		}
+	};
+
+	static TestDatabase primary;
+	TestDatabase replica;
+	ReplicaRouter router;
+
+	@BeforeAll
+	static void startPrimary() throws Exception {
+		primary = TestDatabase.start(1000, 2);
+		primary.execute("UPDATE Flight SET num_sold = " + PRIMARY_SOLD + " WHERE fnum = 1");
+	}
+
+	@AfterAll
+	static void stopPrimary() throws Exception {
+		primary.close();
+	}
+
+	@BeforeEach
+	void startReplica() throws Exception {
+		this.replica = TestDatabase.start(1000, 1);
+		this.replica.execute("UPDATE Flight SET num_sold = " + REPLICA_SOLD + " WHERE fnum = 1");
+		for (String sql : FAKE_STANDBY) {
+			this.replica.execute(sql);
+		}
+	}
+
+	@AfterEach
+	void stopReplica() throws Exception {
+		if (this.router != null) {
+			this.router.close();
+		}
+		this.replica.close();
+	}
+
+	private void startRouter(long checkMillis) throws SQLException {
+		Properties props = new Properties();
+		props.setProperty("options", "-c search_path=fake,pg_catalog,public");
+		props.setProperty("connectTimeout", "2");
+		this.router = new ReplicaRouter(primary.pool(), MAX_LAG_MILLIS, checkMillis);
+		this.router.addReplica("replica", new ConnectionPool(this.replica.url(), "postgres", "", props, 0, 2,
+				60000L, 5000L, 16));
+		this.router.start();
+	}
+
+	@Test
+	void readsTheReplicaWhileItKeepsUp() throws Exception {
+		startRouter(CHECK_MILLIS);
+		for (int i = 0; i < 10; ++i) {
+			assertEquals(REPLICA_SOLD, this.router.read(NUM_SOLD));
+		}
+		assertEquals(10, this.router.getReplicaReads());
+		assertEquals(0, this.router.getPrimaryReads());
+	}
+
+	@Test
+	void readsThePrimaryWhileTheReplicaLags() throws Exception {
+		startRouter(CHECK_MILLIS);
+		this.replica.execute("UPDATE fake.standby SET lag_millis = " + (10 * MAX_LAG_MILLIS));
+		assertTrue(awaitRead(PRIMARY_SOLD), "reads never moved to the primary");
+
+		this.replica.execute("UPDATE fake.standby SET lag_millis = 0");
+		assertTrue(awaitRead(REPLICA_SOLD), "reads never came back to the replica");
+		assertEquals(0, this.router.getFallbacks());
+	}
+
+	@Test
+	void fallsBackToThePrimaryWhenTheReplicaGoesAway() throws Exception {
+		// no check runs during the test, so the read is what finds the replica gone
+		startRouter(60000L);
+		assertEquals(REPLICA_SOLD, this.router.read(NUM_SOLD));
+		this.replica.close();
+
+		// the read that finds the replica gone is answered by the primary
+		assertEquals(PRIMARY_SOLD, this.router.read(NUM_SOLD));
+		assertEquals(1, this.router.getFallbacks());
+		// and the replica is out of rotation, so the next read goes straight to the primary
+		assertEquals(PRIMARY_SOLD, this.router.read(NUM_SOLD));
+		assertEquals(1, this.router.getFallbacks());
+		assertTrue(this.router.toString().contains("replica=down("), this.router.toString());
+	}
+
+	/*
+	 * Reads until one returns the expected num_sold, for up to twenty
+	 * check intervals.
+	 */
+	private boolean awaitRead(int expected) throws SQLException, InterruptedException {
+		for (int i = 0; i < 20; ++i) {
+			if (this.router.read(NUM_SOLD) == expected) {
+				return true;
+			}
+			Thread.sleep(CHECK_MILLIS);
+		}
+		return false;
+	}
+}
@@ -0,0 +1,66 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Reservation numbers stay unique across the partitions of Reservation
+ * (V007, V010), through bookings, cancellations and rows that
+ * maintain_partitions() moves out of the default partition.
+ */
+class ReservationKeyTest {
+	static final String KEYS_IN_STEP =
+		"SELECT (SELECT count(*) FROM Reservation) - (SELECT count(*) FROM reservation_key R JOIN Reservation USING (rnum))";
+
+	static TestDatabase db;
+
+	@BeforeAll
+	static void start() throws Exception {
+		db = TestDatabase.start(1000, 2);
+	}
+
+	@AfterAll
+	static void stop() throws Exception {
+		db.close();
+	}
+
+	@Test
+	void rejectsANumberUsedOnAnotherFlight() throws Exception {
+		long fid = db.queryLong("SELECT fid FROM Reservation WHERE rnum = 1");
+		SQLException e = assertThrows(SQLException.class, () -> db.execute(
+				"INSERT INTO Reservation (rnum, cid, fid, status) VALUES (1, 1, " + (fid % 1000 + 1) + ", 'W')"));
+		assertEquals("23505", e.getSQLState());
+	}
+
+	@Test
+	void keepsTheKeysOfBookingsAndCancellations() throws Exception {
+		BookingEngine.Booking booking = db.ops().bookFlight(7, 8);
+		assertEquals(1, db.queryLong("SELECT count(*) FROM reservation_key WHERE rnum = " + booking.rnum()));
+		// a cancellation deletes the reservation and frees its number
+		db.ops().cancelReservation(booking.rnum());
+		assertEquals(0, db.queryLong("SELECT count(*) FROM reservation_key WHERE rnum = " + booking.rnum()));
+		assertEquals(0, db.queryLong(KEYS_IN_STEP));
+	}
+
+	@Test
+	void keepsTheKeysOfRowsMovedOutOfTheDefaultPartition() throws Exception {
+		// past the blocks made so far, so both rows land in the default partitions
+		db.execute("INSERT INTO Flight (fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, "
+				+ "arrival_airport, departure_airport) VALUES (50000, 100, 0, 0, DATE '2030-01-01', DATE '2030-01-02', 'A0002', 'A0001')");
+		db.execute("INSERT INTO Reservation (rnum, cid, fid, status) VALUES (900000, 1, 50000, 'R')");
+		assertEquals(1, db.queryLong("SELECT count(*) FROM reservation_default"));
+
+		db.execute("SELECT count(*) FROM maintain_partitions(0, 5)");
+		assertEquals(0, db.queryLong("SELECT count(*) FROM reservation_default"));
+		assertEquals(0, db.queryLong(KEYS_IN_STEP));
+		SQLException e = assertThrows(SQLException.class, () -> db.execute(
+				"INSERT INTO Reservation (rnum, cid, fid, status) VALUES (900000, 1, 1, 'W')"));
+		assertEquals("23505", e.getSQLState());
+	}
+}
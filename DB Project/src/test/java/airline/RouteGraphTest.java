@@ -0,0 +1,69 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link RouteGraph#refresh()} picks up flights that were added, and
+ * rebuilds the graph when a flight already in it changed.
+ */
+class RouteGraphTest {
+	static final LocalDate DAY = LocalDate.of(2031, 1, 1);
+
+	static TestDatabase db;
+	static RouteGraph routes;
+
+	@BeforeAll
+	static void start() throws Exception {
+		db = TestDatabase.start(1000, 1);
+		// two airports only these flights serve, so the searches see nothing else
+		db.execute("INSERT INTO Flight (fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, "
+				+ "arrival_airport, departure_airport) VALUES (60000, 500, 0, 0, DATE '2031-01-01', DATE '2031-01-01', 'ZZZ02', 'ZZZ01')");
+		routes = new RouteGraph(db.pool(), 0, 2);
+		routes.refresh();
+	}
+
+	@AfterAll
+	static void stop() throws Exception {
+		routes.close();
+		db.close();
+	}
+
+	@Test
+	void seesAddedAndChangedFlights() throws Exception {
+		assertEquals(500L, cheapest().cost());
+		long reloads = routes.getReloads();
+
+		db.execute("INSERT INTO Flight (fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, "
+				+ "arrival_airport, departure_airport) VALUES (60001, 400, 0, 0, DATE '2031-01-01', DATE '2031-01-01', 'ZZZ02', 'ZZZ01')");
+		routes.refresh();
+		assertEquals(400L, cheapest().cost());
+		assertEquals(reloads, routes.getReloads(), "an added flight is merged in");
+
+		db.execute("UPDATE Flight SET cost = 300 WHERE fnum = 60000");
+		routes.refresh();
+		assertEquals(300L, cheapest().cost());
+		assertEquals(60000, cheapest().flights()[0]);
+		assertEquals(reloads + 1, routes.getReloads(), "a changed flight rebuilds the graph");
+
+		db.execute("UPDATE Flight SET arrival_airport = 'ZZZ03' WHERE fnum = 60000");
+		routes.refresh();
+		assertEquals(400L, cheapest().cost());
+
+		routes.refresh();
+		assertEquals(reloads + 2, routes.getReloads(), "nothing changed, nothing rebuilt");
+	}
+
+	private static Itinerary cheapest() {
+		List<Itinerary> found = routes.itineraries("ZZZ01", "ZZZ02", DAY, DAY, 0, 1);
+		assertTrue(!found.isEmpty(), "no itinerary found");
+		return found.get(0);
+	}
+}
@@ -0,0 +1,163 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link ServiceServer} under concurrent sessions: every request is
+ * answered, sessions beyond the limit are refused and
+ * {@link ServiceServer#close()} ends the sessions still open.
+ */
+class ServiceServerTest {
+	static final Pattern ROWS = Pattern.compile("OK (\\d+) rows");
+	static final String[] WORKLOAD = {
+		"seats,1",
+		"status_count,2,R",
+		"book_flight,3,4",
+		"repairs_per_plane",
+		"seats_by_airport,2020-01-01,2020-12-31",
+		"search_flights,A0001,A0007,2020-01-01,2020-12-31,cost,5",
+	};
+
+	static TestDatabase db;
+
+	@BeforeAll
+	static void start() throws Exception {
+		db = TestDatabase.start(1000, 4);
+	}
+
+	@AfterAll
+	static void stop() throws Exception {
+		db.close();
+	}
+
+	@Test
+	void answersEveryRequestOfConcurrentSessions() throws Exception {
+		final int sessions = 16;
+		final int perSession = 30;
+		try (ServiceServer server = new ServiceServer(db.ops(), 0, sessions, 4, 30000L)){
+			ExecutorService clients = Executors.newFixedThreadPool(sessions);
+			try{
+				List<Future<List<String>>> replies = new ArrayList<Future<List<String>>>();
+				for (int s = 0; s < sessions; ++s) {
+					final int first = s;
+					replies.add(clients.submit(() -> session(server.getPort(), first, perSession)));
+				}
+				for (Future<List<String>> session : replies) {
+					List<String> lines = session.get();
+					assertEquals(perSession, lines.size());
+					for (String reply : lines) {
+						assertTrue(reply.startsWith("OK "), reply);
+					}
+				}
+			}finally{
+				clients.shutdown();
+			}
+			assertEquals(sessions * perSession, server.getRequests());
+			assertEquals(0, server.getErrors());
+			assertEquals(0, server.getBusyRejections());
+		}
+	}
+
+	@Test
+	void refusesSessionsBeyondTheLimit() throws Exception {
+		try (ServiceServer server = new ServiceServer(db.ops(), 0, 2, 2, 30000L);
+				Client a = new Client(server.getPort());
+				Client b = new Client(server.getPort())){
+			// a reply means the session holds its slot
+			assertTrue(a.request("seats,1").startsWith("OK "));
+			assertTrue(b.request("seats,1").startsWith("OK "));
+			try (Client c = new Client(server.getPort())){
+				String refused = c.in.readLine();
+				assertNotNull(refused);
+				assertTrue(refused.startsWith("ERR busy"), refused);
+			}
+			assertEquals(1, server.getSessionsRejected());
+		}
+	}
+
+	@Test
+	void closeEndsOpenSessions() throws Exception {
+		ServiceServer server = new ServiceServer(db.ops(), 0, 2, 2, 30000L);
+		try (Client a = new Client(server.getPort())){
+			assertTrue(a.request("seats,1").startsWith("OK "));
+			server.close();
+			assertEquals(null, a.in.readLine());
+		}
+		assertEquals(0, server.getActiveSessions());
+	}
+
+	/*
+	 * Sends the workload from line first on, one request at a time, and
+	 * returns the first line of every reply with the request it answers.
+	 */
+	private static List<String> session(int port, int first, int requests) throws IOException {
+		List<String> replies = new ArrayList<String>();
+		try (Client client = new Client(port)){
+			for (int i = 0; i < requests; ++i) {
+				String request = WORKLOAD[(first + i) % WORKLOAD.length];
+				replies.add(client.request(request) + " <- " + request);
+			}
+			client.out.write("quit\n");
+			client.out.flush();
+		}
+		return replies;
+	}
+
+	private static final class Client implements AutoCloseable {
+		final Socket socket;
+		final BufferedReader in;
+		final Writer out;
+
+		Client(int port) throws IOException {
+			this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8));
+			this.out = new OutputStreamWriter(this.socket.getOutputStream(), StandardCharsets.UTF_8);
+		}
+
+		/*
+		 * Returns the first line of the reply, skipping the rows of a report.
+		 */
+		String request(String line) throws IOException {
+			this.out.write(line + "\n");
+			this.out.flush();
+			String reply = this.in.readLine();
+			if (reply == null) {
+				throw new IOException("server closed the session");
+			}
+			Matcher m = ROWS.matcher(reply);
+			if (m.matches()) {
+				for (int r = Integer.parseInt(m.group(1)); r > 0; --r) {
+					this.in.readLine();
+				}
+			}
+			return reply;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.socket.close();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Only plain SELECTs are run again for their plan: a slow insert gets an
+ * EXPLAIN without ANALYZE, so it takes no second key from its sequence.
+ */
+class SlowQueryLogTest {
+	static TestDatabase db;
+
+	@TempDir
+	static Path dir;
+
+	@BeforeAll
+	static void start() throws Exception {
+		db = TestDatabase.start(100, 2);
+	}
+
+	@AfterAll
+	static void stop() throws Exception {
+		db.close();
+	}
+
+	@Test
+	void analyzesOnlyPlainSelects() throws Exception {
+		Path file = dir.resolve("slow.log");
+		// every statement is slow
+		SlowQueryLog log = new SlowQueryLog(db.pool(), 0L, 10, file.toString(), 1 << 20, 2);
+		Database database = db.ops().getDatabase();
+		database.setSlowQueryLog(log);
+		try{
+			int id = db.ops().addPlane("Make", "Model", 2000, 150);
+			db.ops().availableSeats(1);
+			log.close();
+			assertEquals(id, db.queryLong("SELECT last_value FROM plane_id_seq"), "plane ids used");
+		}finally{
+			database.setSlowQueryLog(null);
+		}
+
+		assertEquals(0, log.getPlanErrors());
+		String text = new String(Files.readAllBytes(dir.resolve("slow.0.log")), StandardCharsets.UTF_8);
+		String insertPlan = text.substring(text.indexOf("Insert on plane") - 200, text.indexOf("Insert on plane"));
+		assertTrue(insertPlan.contains("estimates only"), text);
+		assertFalse(text.substring(text.indexOf("Insert on plane")).split("plan #")[0].contains("actual time"), text);
+		assertTrue(text.contains("actual time"), "a SELECT was analyzed: " + text);
+	}
+
+	@Test
+	void tellsPlainSelects() {
+		assertTrue(SlowQueryLog.isPlainSelect("SELECT num_sold FROM Flight WHERE fnum = ?"));
+		assertTrue(SlowQueryLog.isPlainSelect("  with t AS (SELECT 1) SELECT * FROM t"));
+		assertFalse(SlowQueryLog.isPlainSelect("INSERT INTO Plane (make) VALUES (?) RETURNING id"));
+		assertFalse(SlowQueryLog.isPlainSelect("WITH c AS (DELETE FROM Reservation WHERE rnum = ? RETURNING fid) SELECT * FROM c"));
+		assertFalse(SlowQueryLog.isPlainSelect("SELECT * FROM Flight WHERE fnum = ? FOR UPDATE"));
+		assertFalse(SlowQueryLog.isPlainSelect("SELECT * FROM Flight WHERE fnum = ? FOR KEY SHARE"));
+	}
+}
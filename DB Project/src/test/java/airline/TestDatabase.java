@@ -0,0 +1,179 @@
+package airline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * A throwaway PostgreSQL server for the tests, started in-process and
+ * seeded the way the benchmarks seed theirs: <code>flights</code> flights
+ * and customers, three reservations and one repair per flight, and one
+ * plane, pilot and technician per hundred flights (at least ten of each).
+ * Migrations are applied after seeding, up to the version asked for.
+ *
+ * Every instance is its own server, so a test may change whatever it likes;
+ * {@link #close()} stops it and deletes its data directory.
+ */
+final class TestDatabase implements AutoCloseable {
+	private final EmbeddedPostgres _embedded;
+	private final String _url;
+	private final ConnectionPool _pool;
+	private final Operations _ops;
+	final int flights;
+	final int planes;
+
+	private TestDatabase(EmbeddedPostgres embedded, int flights, int poolSize, Properties driverProps) throws SQLException {
+		this._embedded = embedded;
+		this._url = embedded.getJdbcUrl("postgres", "postgres");
+		this.flights = flights;
+		this.planes = Math.max(10, flights / 100);
+		this._pool = new ConnectionPool(this._url, "postgres", "", driverProps, 1, poolSize, 60000L, 30000L, 64);
+		this._ops = new Operations(new Database(this._pool, 1000));
+	}
+
+	/**
+	 * Starts a server with every migration applied.
+	 */
+	static TestDatabase start(int flights, int poolSize) throws IOException, SQLException {
+		return start(flights, poolSize, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Starts a server with the migrations up to and including
+	 * <code>lastVersion</code> applied.
+	 */
+	static TestDatabase start(int flights, int poolSize, int lastVersion) throws IOException, SQLException {
+		return start(EmbeddedPostgres.builder(), flights, poolSize, lastVersion, new Properties());
+	}
+
+	static TestDatabase start(EmbeddedPostgres.Builder builder, int flights, int poolSize, int lastVersion,
+			Properties driverProps) throws IOException, SQLException {
+		EmbeddedPostgres embedded = builder.start();
+		try{
+			seed(embedded.getJdbcUrl("postgres", "postgres"), flights, lastVersion);
+			return new TestDatabase(embedded, flights, poolSize, driverProps);
+		}catch(IOException | SQLException | RuntimeException e){
+			embedded.close();
+			throw e;
+		}
+	}
+
+	String url() {
+		return this._url;
+	}
+
+	ConnectionPool pool() {
+		return this._pool;
+	}
+
+	Operations ops() {
+		return this._ops;
+	}
+
+	/**
+	 * Runs a statement on a connection outside the pool.
+	 */
+	void execute(String sql) throws SQLException {
+		try (Connection c = DriverManager.getConnection(this._url, "postgres", "");
+				Statement stmt = c.createStatement()){
+			stmt.execute(sql);
+		}
+	}
+
+	/**
+	 * Runs a query on a connection outside the pool and returns the first
+	 * column of its only row.
+	 */
+	long queryLong(String sql) throws SQLException {
+		try (Connection c = DriverManager.getConnection(this._url, "postgres", "");
+				Statement stmt = c.createStatement();
+				ResultSet rs = stmt.executeQuery(sql)){
+			if (!rs.next()) {
+				throw new SQLException("no row for " + sql);
+			}
+			return rs.getLong(1);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this._pool.close();
+		this._embedded.close();
+	}
+
+	private static void seed(String url, int flights, int lastVersion) throws SQLException, IOException {
+		int customers = flights;
+		int planes = Math.max(10, flights / 100);
+		int pilots = planes;
+		int techs = planes;
+
+		try (Connection c = DriverManager.getConnection(url, "postgres", "");
+				Statement stmt = c.createStatement()){
+			stmt.execute(script("/create_tables.sql"));
+
+			stmt.execute("INSERT INTO Plane SELECT i, 'Make' || (i % 10), 'Model' || (i % 50), 1980 + i % 40, 100 + i % 300 FROM generate_series(1, " + planes + ") i");
+			stmt.execute("INSERT INTO Pilot SELECT i, 'Pilot ' || i, 'Nation' || (i % 20) FROM generate_series(1, " + pilots + ") i");
+			stmt.execute("INSERT INTO Technician SELECT i, 'Technician ' || i FROM generate_series(1, " + techs + ") i");
+			stmt.execute("INSERT INTO Customer SELECT i, 'First' || i, 'Last' || i, CASE WHEN i % 2 = 0 THEN 'M' ELSE 'F' END, "
+					+ "DATE '1950-01-01' + (i % 18000), i || ' Main St', lpad(i::text, 10, '0'), lpad((i % 100000)::text, 5, '0') "
+					+ "FROM generate_series(1, " + customers + ") i");
+			stmt.execute("INSERT INTO Flight SELECT i, 100 + i % 900, i % 100, i % 3, DATE '2020-01-01' + (i % 1500), "
+					+ "DATE '2020-01-01' + (i % 1500) + 1, 'A' || lpad(((i * 7) % 50)::text, 4, '0'), 'A' || lpad((i % 50)::text, 4, '0') "
+					+ "FROM generate_series(1, " + flights + ") i");
+			stmt.execute("INSERT INTO FlightInfo SELECT i, i, 1 + i % " + pilots + ", 1 + i % " + planes
+					+ " FROM generate_series(1, " + flights + ") i");
+			stmt.execute("INSERT INTO Reservation SELECT i, 1 + i % " + customers + ", 1 + i % " + flights
+					+ ", (ARRAY['W','C','R'])[1 + i % 3] FROM generate_series(1, " + (3 * flights) + ") i");
+			stmt.execute("INSERT INTO Repairs SELECT i, DATE '2000-01-01' + (i % 7300), (ARRAY['MJ','MN','SV'])[1 + i % 3], "
+					+ "1 + i % " + pilots + ", 1 + i % " + planes + ", 1 + i % " + techs
+					+ " FROM generate_series(1, " + flights + ") i");
+
+			stmt.execute(script("/triggers.sql"));
+			stmt.execute("SELECT setval('plane_id_seq', (SELECT MAX(id) FROM Plane)), "
+					+ "setval('pilot_id_seq', (SELECT MAX(id) FROM Pilot)), "
+					+ "setval('tech_seq', (SELECT MAX(id) FROM Technician)), "
+					+ "setval('cus_seq', (SELECT MAX(id) FROM Customer)), "
+					+ "setval('fnum_seq', (SELECT MAX(fnum) FROM Flight)), "
+					+ "setval('flight_id_seq', (SELECT MAX(flight_id) FROM FlightInfo)), "
+					+ "setval('fiid_seq', (SELECT MAX(fiid) FROM FlightInfo)), "
+					+ "setval('res_seq', (SELECT MAX(rnum) FROM Reservation))");
+		}
+
+		List<Migrations.Migration> migrations = new ArrayList<Migrations.Migration>();
+		for (Migrations.Migration m : Migrations.fromClasspath()) {
+			if (m.version() <= lastVersion) {
+				migrations.add(m);
+			}
+		}
+		ConnectionPool pool = new ConnectionPool(url, "postgres", "", 1, 1, 60000L, 30000L);
+		try{
+			new Migrations(pool).apply(migrations);
+		}finally{
+			pool.close();
+		}
+
+		try (Connection c = DriverManager.getConnection(url, "postgres", "");
+				Statement stmt = c.createStatement()){
+			stmt.execute("VACUUM ANALYZE");
+		}
+	}
+
+	private static String script(String resource) throws IOException {
+		try (InputStream in = TestDatabase.class.getResourceAsStream(resource)){
+			if (in == null) {
+				throw new IOException(resource + " is not on the classpath");
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package airline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link WaitlistWorker} promotes each flight's waitlist oldest first, up to
+ * the free seats and no further, and concurrent passes never promote a
+ * reservation twice. Bookings queue behind a waitlist only while a worker
+ * promotes it.
+ */
+class WaitlistWorkerTest {
+	static final int THREADS = 8;
+
+	static TestDatabase db;
+
+	@BeforeAll
+	static void start() throws Exception {
+		db = TestDatabase.start(1000, THREADS);
+		// promote the seeded waitlists, so each test starts from its own
+		WaitlistWorker worker = new WaitlistWorker(db.pool(), 1, 100, 1000L);
+		while (worker.promoteBatch() > 0) {
+		}
+	}
+
+	@AfterAll
+	static void stop() throws Exception {
+		db.close();
+	}
+
+	@Test
+	void promotesTheOldestUpToTheFreeSeats() throws Exception {
+		final int fnum = 10;
+		long seats = seats(fnum);
+		List<Integer> waiting = waitlist(fnum, 5, seats);
+		db.execute("UPDATE Flight SET num_sold = " + (seats - 2) + " WHERE fnum = " + fnum);
+
+		WaitlistWorker worker = new WaitlistWorker(db.pool(), 1, 100, 1000L);
+		assertEquals(2, worker.promoteBatch());
+		assertEquals(0, worker.promoteBatch());
+
+		assertEquals(seats, db.queryLong("SELECT num_sold FROM Flight WHERE fnum = " + fnum), "num_sold");
+		for (int i = 0; i < waiting.size(); ++i) {
+			String status = i < 2 ? "R" : "W";
+			assertEquals(1, db.queryLong("SELECT count(*) FROM Reservation WHERE rnum = " + waiting.get(i)
+					+ " AND status = '" + status + "'"), "reservation " + i + " in line");
+		}
+	}
+
+	@Test
+	void concurrentPassesPromoteEachReservationOnce() throws Exception {
+		final int firstFlight = 100, flights = 50, free = 3, waits = 6;
+		List<List<Integer>> waiting = new ArrayList<List<Integer>>();
+		long soldBefore = 0;
+		for (int f = firstFlight; f < firstFlight + flights; ++f) {
+			long seats = seats(f);
+			waiting.add(waitlist(f, waits, seats));
+			db.execute("UPDATE Flight SET num_sold = " + (seats - free) + " WHERE fnum = " + f);
+			soldBefore += seats - free;
+		}
+
+		// few flights per pass, so the passes keep running into each other's claims
+		final WaitlistWorker worker = new WaitlistWorker(db.pool(), THREADS, 2, 1000L);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		long promoted = 0;
+		try{
+			List<Future<Integer>> passes = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < THREADS; ++t) {
+				passes.add(pool.submit(() -> {
+					int n = 0;
+					for (int p; (p = worker.promoteBatch()) > 0; ) {
+						n += p;
+					}
+					return n;
+				}));
+			}
+			for (Future<Integer> pass : passes) {
+				promoted += pass.get();
+			}
+		}finally{
+			pool.shutdown();
+		}
+		// a thread may have stopped on a pass that only found claimed flights
+		for (int p; (p = worker.promoteBatch()) > 0; ) {
+			promoted += p;
+		}
+
+		assertEquals(flights * free, promoted, "reservations promoted");
+		assertEquals(flights * free, worker.getPromoted());
+		String range = "BETWEEN " + firstFlight + " AND " + (firstFlight + flights - 1);
+		assertEquals(soldBefore + flights * free, db.queryLong("SELECT sum(num_sold) FROM Flight WHERE fnum " + range));
+		assertEquals(0, db.queryLong("SELECT count(*) FROM Flight F, FlightInfo FI, Plane P WHERE F.fnum " + range
+				+ " AND FI.flight_id = F.fnum AND FI.plane_id = P.id AND F.num_sold > P.seats"), "flights oversold");
+		for (List<Integer> line : waiting) {
+			for (int i = 0; i < line.size(); ++i) {
+				String status = i < free ? "R" : "W";
+				assertEquals(1, db.queryLong("SELECT count(*) FROM Reservation WHERE rnum = " + line.get(i)
+						+ " AND status = '" + status + "'"), "reservation " + i + " in line");
+			}
+		}
+	}
+
+	@Test
+	void bookingsQueueBehindTheWaitlistOnlyWhileAWorkerPromotesIt() throws Exception {
+		final int fnum = 20;
+		long seats = seats(fnum);
+		waitlist(fnum, 1, seats);
+		db.execute("UPDATE Flight SET num_sold = " + (seats - 10) + " WHERE fnum = " + fnum);
+
+		for (boolean useFunction : new boolean[] { true, false }) {
+			BookingEngine engine = new BookingEngine(db.pool());
+			engine.setUseFunction(useFunction);
+			assertEquals('R', engine.book(1, fnum).status(), "no worker, function " + useFunction);
+			engine.setQueueBehindWaitlist(true);
+			assertEquals('W', engine.book(1, fnum).status(), "worker, function " + useFunction);
+			assertEquals(useFunction, engine.isUsingFunction());
+		}
+		// leave no waitlist with free seats behind for the other tests' passes
+		db.execute("DELETE FROM Reservation WHERE fid = " + fnum + " AND status = 'W'");
+	}
+
+	private static long seats(int fnum) throws Exception {
+		return db.queryLong("SELECT MIN(P.seats) FROM FlightInfo FI, Plane P WHERE FI.flight_id = " + fnum + " AND FI.plane_id = P.id");
+	}
+
+	/*
+	 * Fills the flight and waitlists n customers on it; returns their
+	 * reservation numbers in the order they joined.
+	 */
+	private static List<Integer> waitlist(int fnum, int n, long seats) throws Exception {
+		db.execute("UPDATE Flight SET num_sold = " + seats + " WHERE fnum = " + fnum);
+		List<Integer> rnums = new ArrayList<Integer>();
+		try (Connection c = DriverManager.getConnection(db.url(), "postgres", "");
+				Statement stmt = c.createStatement()){
+			for (int i = 0; i < n; ++i) {
+				try (ResultSet rs = stmt.executeQuery("INSERT INTO Reservation (cid, fid, status) VALUES ("
+						+ (1 + i) + ", " + fnum + ", 'W') RETURNING rnum")){
+					rs.next();
+					rnums.add(rs.getInt(1));
+				}
+			}
+		}
+		return rnums;
+	}
+}